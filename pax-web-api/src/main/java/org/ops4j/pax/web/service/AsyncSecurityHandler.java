@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service;
+
+import java.util.concurrent.CompletionStage;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * <p>Optional interface that may be implemented by {@link org.osgi.service.http.HttpContext} or
+ * {@link org.osgi.service.http.context.ServletContextHelper} (and is reflected by
+ * {@link WebContainerContext#handleSecurityAsync}) when the security check may take time without using CPU
+ * (for example, OAuth token introspection using remote endpoint).</p>
+ *
+ * <p>When the request supports asynchronous processing, Pax Web suspends it (using
+ * {@link HttpServletRequest#startAsync()}) and continues with the filters and target servlet when the returned
+ * stage completes - in the thread that completed it. Requests without asynchronous support use the
+ * synchronous {@code handleSecurity()} method.</p>
+ *
+ * <p>Waiting for the stage is bounded by {@link PaxWebConstants#CONTEXT_PARAM_ASYNC_SECURITY_TIMEOUT} - when
+ * the timeout expires, the request is rejected with {@code 503 Service Unavailable}.</p>
+ */
+public interface AsyncSecurityHandler {
+
+	/**
+	 * Asynchronous variant of {@code handleSecurity()}. The semantics of the result are the same - {@code true}
+	 * when the request should be processed, {@code false} when it should not (the implementation may send
+	 * a response, e.g., {@code 401} with {@code WWW-Authenticate}). Exceptional completion results in
+	 * {@code 500} response.
+	 *
+	 * @param request
+	 * @param response
+	 * @return
+	 */
+	CompletionStage<Boolean> handleSecurityAsync(HttpServletRequest request, HttpServletResponse response);
+
+}
@@ -79,6 +79,27 @@ public interface PaxWebConfig {
 	/** Comma-separated list of addresses to bind listeners/connectors to. Defaults to {@code 0.0.0.0} */
 	String PID_CFG_LISTENING_ADDRESSES = "org.ops4j.pax.web.listening.addresses";
 
+	/**
+	 * Path of Unix domain socket for additional non-secure (HTTP/1.1 and, if enabled, {@code h2c}) connector,
+	 * intended for traffic from local proxies. Not set by default.
+	 * Only Jetty runtime supports it, using {@code org.eclipse.jetty.unixsocket.UnixSocketConnector} (requires
+	 * {@code jetty-unixsocket}). Tomcat (before 9.0.56) and Undertow (XNIO NIO provider) can't bind to Unix domain
+	 * sockets, so the property is ignored there (with a warning).
+	 */
+	String PID_CFG_UNIX_DOMAIN_SOCKET = "org.ops4j.pax.web.server.unixDomainSocket";
+
+	/**
+	 * Comma-separated list of connectors which expect HAProxy PROXY protocol (v1 or v2) header carrying original
+	 * client address, which is then returned from {@code ServletRequest.getRemoteAddr()}. Allowed values are
+	 * {@code http} (default connector), {@code https} (secure connector) and {@code unix} (connector bound to
+	 * {@link #PID_CFG_UNIX_DOMAIN_SOCKET}, Jetty only). Not set by default - connections without the header are rejected
+	 * by connectors listed here, so these should be reachable only through the proxy.
+	 * Jetty: {@code org.eclipse.jetty.server.ProxyConnectionFactory}.
+	 * Tomcat: header is consumed by Pax Web before passing the connection to NIO2 endpoint.
+	 * Undertow: {@code io.undertow.server.protocol.proxy.ProxyProtocolOpenListener}.
+	 */
+	String PID_CFG_PROXY_PROTOCOL = "org.ops4j.pax.web.server.proxyProtocol";
+
 	/** Name to use as <em>default</em> (non-secure) connector, defaults to {@code default}. */
 	String PID_CFG_HTTP_CONNECTOR_NAME = "org.osgi.service.http.connector.name";
 
@@ -124,6 +145,168 @@ public interface PaxWebConfig {
 	 */
 	String PID_CFG_EVENT_DISPATCHER_THREAD_COUNT = "org.ops4j.pax.web.server.eventDispatcherThreadCount";
 
+	/**
+	 * Boolean property to enable per-element (servlet, filter, preprocessor, {@code handleSecurity()}) latency
+	 * histograms. When enabled, the metrics are available as {@code org.ops4j.pax.web.service.spi.metrics.WebMetrics}
+	 * OSGi service and {@code org.ops4j.pax.web:type=WebMetrics} MBean. Defaults to {@code false}.
+	 */
+	String PID_CFG_METRICS_ENABLED = "org.ops4j.pax.web.server.metrics.enabled";
+
+	// --- HTTP/2 configuration properties - mapped by each container onto its native HTTP/2 implementation
+
+	/**
+	 * Whether HTTP/2 over TLS ({@code h2}, negotiated with ALPN) should be enabled on secure connector, if the
+	 * container supports it. Defaults to {@code true}.
+	 */
+	String PID_CFG_HTTP2_ENABLED = "org.ops4j.pax.web.server.http2.enabled";
+
+	/**
+	 * Whether HTTP/2 cleartext ({@code h2c}, upgraded from HTTP/1.1) should be enabled on default connector, if
+	 * the container supports it. Defaults to {@code true}.
+	 */
+	String PID_CFG_HTTP2_CLEARTEXT_ENABLED = "org.ops4j.pax.web.server.http2.cleartext.enabled";
+
+	/** {@code SETTINGS_MAX_CONCURRENT_STREAMS} - maximum number of concurrent streams per connection */
+	String PID_CFG_HTTP2_MAX_CONCURRENT_STREAMS = "org.ops4j.pax.web.server.http2.maxConcurrentStreams";
+
+	/** {@code SETTINGS_INITIAL_WINDOW_SIZE} - initial flow control window of each stream (in bytes) */
+	String PID_CFG_HTTP2_INITIAL_STREAM_WINDOW_SIZE = "org.ops4j.pax.web.server.http2.initialStreamWindowSize";
+
+	/** Initial flow control window of entire connection (in bytes), if the container allows to configure it */
+	String PID_CFG_HTTP2_INITIAL_SESSION_WINDOW_SIZE = "org.ops4j.pax.web.server.http2.initialSessionWindowSize";
+
+	/** {@code SETTINGS_HEADER_TABLE_SIZE} - size of HPACK dynamic table (in bytes) */
+	String PID_CFG_HTTP2_HEADER_TABLE_SIZE = "org.ops4j.pax.web.server.http2.headerTableSize";
+
+	/** {@code SETTINGS_MAX_FRAME_SIZE} - largest frame payload the server is willing to receive (in bytes) */
+	String PID_CFG_HTTP2_MAX_FRAME_SIZE = "org.ops4j.pax.web.server.http2.maxFrameSize";
+
+	/**
+	 * Comma-separated list of protocols offered during ALPN negotiation, in order of server preference.
+	 * Defaults to {@code h2,http/1.1}.
+	 */
+	String PID_CFG_HTTP2_ALPN_PROTOCOLS = "org.ops4j.pax.web.server.http2.alpnProtocols";
+
+	// --- response compression properties - global defaults that may be overriden per context using context
+	//     init parameters with the same names (except deflater pool size)
+
+	/**
+	 * Boolean property to enable streaming gzip compression of responses. Defaults to {@code false}.
+	 */
+	String PID_CFG_COMPRESSION_ENABLED = "org.ops4j.pax.web.server.compression.enabled";
+
+	/**
+	 * Comma-separated list of compressible MIME types. {@code type/*} entries match all subtypes. Defaults to
+	 * textual types, JavaScript, JSON, XML and SVG.
+	 */
+	String PID_CFG_COMPRESSION_MIME_TYPES = "org.ops4j.pax.web.server.compression.mimeTypes";
+
+	/** Comma-separated list of MIME types that are never compressed, even if matching included types. */
+	String PID_CFG_COMPRESSION_EXCLUDED_MIME_TYPES = "org.ops4j.pax.web.server.compression.excludedMimeTypes";
+
+	/**
+	 * Minimum size of the response (in bytes) to be compressed. Responses with smaller declared or actual
+	 * length are sent uncompressed. Defaults to {@code 2048}.
+	 */
+	String PID_CFG_COMPRESSION_MIN_SIZE = "org.ops4j.pax.web.server.compression.minSize";
+
+	/** Deflater compression level ({@code 1-9}). Defaults to {@code -1} (default level of the JDK). */
+	String PID_CFG_COMPRESSION_LEVEL = "org.ops4j.pax.web.server.compression.level";
+
+	/** Maximum number of idle {@link java.util.zip.Deflater deflaters} kept for reuse. Defaults to {@code 64}. */
+	String PID_CFG_COMPRESSION_DEFLATER_POOL_SIZE = "org.ops4j.pax.web.server.compression.deflaterPoolSize";
+
+	// --- bulkhead properties - global defaults that may be overriden per context using context init parameters
+	//     with the same names. Single bulkhead is shared by all OSGi contexts with the same context path
+
+	/**
+	 * Boolean property to limit number of requests processed concurrently within single context path.
+	 * Requests over the limit are rejected with HTTP 503. Defaults to {@code false}.
+	 */
+	String PID_CFG_BULKHEAD_ENABLED = "org.ops4j.pax.web.server.bulkhead.enabled";
+
+	/** Maximum number of concurrently processed requests of single context path. Defaults to {@code 32}. */
+	String PID_CFG_BULKHEAD_MAX_CONCURRENT_REQUESTS = "org.ops4j.pax.web.server.bulkhead.maxConcurrentRequests";
+
+	/**
+	 * Maximum number of requests waiting for processing when the concurrency limit is reached. Only requests
+	 * supporting asynchronous processing may wait (see {@link #PID_CFG_BULKHEAD_ASYNC_QUEUE}), other requests are
+	 * always rejected immediately. Defaults to {@code 0} - requests are rejected immediately.
+	 */
+	String PID_CFG_BULKHEAD_MAX_QUEUED_REQUESTS = "org.ops4j.pax.web.server.bulkhead.maxQueuedRequests";
+
+	/** Maximum time (ms) a request may wait in bulkhead queue. Defaults to {@code 1000}. */
+	String PID_CFG_BULKHEAD_MAX_QUEUE_TIME = "org.ops4j.pax.web.server.bulkhead.maxQueueTime";
+
+	/**
+	 * Boolean property to let requests (supporting async processing) over the concurrency limit wait in
+	 * bulkhead queue. Waiting requests are suspended without occupying container threads and are resumed using
+	 * {@code AsyncContext.dispatch()} when other request of the context path completes. Defaults to {@code false}.
+	 */
+	String PID_CFG_BULKHEAD_ASYNC_QUEUE = "org.ops4j.pax.web.server.bulkhead.asyncQueue";
+
+	/**
+	 * Boolean property to process requests (supporting async processing) of the context path in dedicated
+	 * executor instead of container thread pool, so container threads are returned to the container right after
+	 * routing. Requests processed this way can't start async processing on their own. Defaults to {@code false}.
+	 */
+	String PID_CFG_BULKHEAD_DEDICATED_EXECUTOR = "org.ops4j.pax.web.server.bulkhead.dedicatedExecutor";
+
+	/** Value of {@code Retry-After} header (seconds) sent with requests rejected by bulkhead. Defaults to {@code 1}. */
+	String PID_CFG_BULKHEAD_RETRY_AFTER = "org.ops4j.pax.web.server.bulkhead.retryAfter";
+
+	// --- adaptive admission control properties - global defaults that may be overriden per context using
+	//     context init parameters with the same names
+
+	/**
+	 * Boolean property to enable adaptive concurrency limits. Limit of each context path is adjusted using
+	 * observed latency and requests over the limit are rejected with HTTP 503 and {@code Retry-After}.
+	 * Defaults to {@code false}.
+	 */
+	String PID_CFG_ADMISSION_ENABLED = "org.ops4j.pax.web.server.admission.enabled";
+
+	/** Initial concurrency limit of a context path. Defaults to {@code 20}. */
+	String PID_CFG_ADMISSION_INITIAL_LIMIT = "org.ops4j.pax.web.server.admission.initialLimit";
+
+	/** Minimal concurrency limit of a context path. Defaults to {@code 4}. */
+	String PID_CFG_ADMISSION_MIN_LIMIT = "org.ops4j.pax.web.server.admission.minLimit";
+
+	/** Maximal concurrency limit of a context path. Defaults to {@code 1000}. */
+	String PID_CFG_ADMISSION_MAX_LIMIT = "org.ops4j.pax.web.server.admission.maxLimit";
+
+	/**
+	 * Accepted ratio of current to long-term latency before the limit is decreased. Defaults to {@code 2.0}.
+	 */
+	String PID_CFG_ADMISSION_TOLERANCE = "org.ops4j.pax.web.server.admission.tolerance";
+
+	/** Value of {@code Retry-After} header (seconds) sent with rejected requests. Defaults to {@code 1}. */
+	String PID_CFG_ADMISSION_RETRY_AFTER = "org.ops4j.pax.web.server.admission.retryAfter";
+
+	/**
+	 * Priority of the context - {@code critical}, {@code normal} or {@code low}. When all contexts together
+	 * use most of their limits, requests of {@code low} priority contexts are rejected first, then {@code normal}
+	 * ones. {@code critical} contexts are limited only by their own limit. Defaults to {@code normal}.
+	 */
+	String PID_CFG_ADMISSION_PRIORITY = "org.ops4j.pax.web.server.admission.priority";
+
+	// --- multipart properties - defaults for servlets with multipart configuration which don't specify the
+	//     values themselves (in {@code @MultipartConfig}, {@code <multipart-config>} or Whiteboard properties)
+
+	/**
+	 * Directory where uploaded parts are stored. Relative value is resolved against {@code multipart/<context>}
+	 * subdirectory of {@link #PID_CFG_TEMP_DIR}, which is also the default location.
+	 */
+	String PID_CFG_MULTIPART_LOCATION = "org.ops4j.pax.web.multipart.location";
+
+	/** Size (bytes) after which uploaded parts are written to disk. Defaults to {@code 0}. */
+	String PID_CFG_MULTIPART_FILE_SIZE_THRESHOLD = "org.ops4j.pax.web.multipart.fileSizeThreshold";
+
+	/** Maximum size (bytes) of single uploaded part. Defaults to {@code -1} (no limit). */
+	String PID_CFG_MULTIPART_MAX_FILE_SIZE = "org.ops4j.pax.web.multipart.maxFileSize";
+
+	/** Maximum size (bytes) of entire {@code multipart/form-data} request. Defaults to {@code -1} (no limit). */
+	String PID_CFG_MULTIPART_MAX_REQUEST_SIZE = "org.ops4j.pax.web.multipart.maxRequestSize";
+
 	// --- security configuration properties
 
 	/**
@@ -278,6 +461,22 @@ public interface PaxWebConfig {
 	/** Whether NCSA log file access should be buffered. Defaults to {@code true}. */
 	String PID_CFG_LOG_NCSA_BUFFERED = "org.ops4j.pax.web.log.ncsa.buffered";
 
+	/**
+	 * Whether to use Pax Web's own asynchronous request log (the same for all containers) instead of the
+	 * container-specific one. Request threads only publish records into a bounded ring buffer and single writer
+	 * thread formats and writes them. When the buffer is full, records are dropped. Defaults to {@code false}.
+	 */
+	String PID_CFG_LOG_NCSA_ASYNC = "org.ops4j.pax.web.log.ncsa.async";
+
+	/** Capacity (rounded up to power of 2) of asynchronous request log ring buffer. Defaults to {@code 8192}. */
+	String PID_CFG_LOG_NCSA_BUFFER_SIZE = "org.ops4j.pax.web.log.ncsa.async.bufferSize";
+
+	/**
+	 * Whether asynchronous request log should be written in compact binary format instead of NCSA text format.
+	 * Defaults to {@code false}.
+	 */
+	String PID_CFG_LOG_NCSA_BINARY = "org.ops4j.pax.web.log.ncsa.async.binary";
+
 	// --- default/resource servlet configuration - common properties for "default" servlets of all the containers
 
 	/**
@@ -350,6 +549,19 @@ public interface PaxWebConfig {
 	 */
 	String PID_CFG_DEFAULT_SERVLET_CACHE_TTL = "org.ops4j.pax.web.resource.cache.ttl";
 
+	/**
+	 * <p>Integer property to specify minimal size (kB) of non-file resources (e.g., bundle entries) written using
+	 * non-blocking {@link javax.servlet.WriteListener}, so slow clients don't hold container threads. Negative
+	 * value disables non-blocking writes. Defaults to {@code 64}.</p>
+	 * <p><ul>
+	 *     <li>Jetty: not used - {@code org.eclipse.jetty.server.ResourceService} already writes content larger
+	 *     than response buffer asynchronously</li>
+	 *     <li>Tomcat: used by Pax Web resource servlet for virtual (non-file) resources</li>
+	 *     <li>Undertow: used by Pax Web resource servlet for resources without file path</li>
+	 * </ul></p>
+	 */
+	String PID_CFG_DEFAULT_SERVLET_NON_BLOCKING_THRESHOLD = "org.ops4j.pax.web.resource.nonBlockingThreshold";
+
 	/** Boolean property to configure the container to show or hide stack traces in <em>error handler</em>. */
 	String PID_CFG_SHOW_STACKS = "org.ops4j.pax.web.server.showStacks";
 
@@ -385,6 +597,18 @@ public interface PaxWebConfig {
 	/** Global Scratch directory for JSPs - by default it is relative to global tmp dir and depends on the context */
 	String PID_CFG_JSP_SCRATCH_DIR = "org.ops4j.pax.web.jsp.scratch.dir";
 
+	/**
+	 * Boolean property that enables compilation of all JSPs of a context when JSP servlet is initialized (so
+	 * before WAB is deployed), instead of compiling them on first request. Defaults to {@code false}.
+	 */
+	String PID_CFG_JSP_PRECOMPILATION = "org.ops4j.pax.web.jsp.precompilation";
+
+	/**
+	 * Directory where classes of precompiled JSPs are kept across restarts (per bundle revision). By default
+	 * it's {@code jsp-cache} directory relative to global tmp dir.
+	 */
+	String PID_CFG_JSP_PRECOMPILATION_CACHE_DIR = "org.ops4j.pax.web.jsp.precompilation.cache.dir";
+
 //	String PROPERTY_JSP_CHECK_INTERVAL = "org.ops4j.pax.web.jsp.check.interval";
 //
 //	String PROPERTY_JSP_DEBUG_INFO = "org.ops4j.pax.web.jsp.debug.info";
@@ -404,7 +628,5 @@ public interface PaxWebConfig {
 //	String PROPERTY_JSP_MAPPED_FILE = "org.ops4j.pax.web.jsp.mapped.file";
 //
 //	String PROPERTY_JSP_TAGPOOL_MAX_SIZE = "org.ops4j.pax.web.jsp.tagpool.max.size";
-//
-//	String PROPERTY_JSP_PRECOMPILATION = "org.ops4j.pax.web.jsp.precompilation";
 
 }
@@ -66,6 +66,21 @@ public interface PaxWebConstants {
 	/** The only supported {@link javax.servlet.ServletContainerInitializer} class that configures JSP engine */
 	String DEFAULT_JSP_SCI_CLASS = "org.ops4j.pax.web.jsp.JasperInitializer";
 
+	/** Init parameter of JSP servlet that enables precompilation of all JSPs during servlet initialization */
+	String INIT_PARAM_JSP_PRECOMPILATION = "org.ops4j.pax.web.jsp.precompilation";
+
+	/** Init parameter of JSP servlet with a directory where precompiled JSP classes are cached across restarts */
+	String INIT_PARAM_JSP_PRECOMPILATION_CACHE_DIR = "org.ops4j.pax.web.jsp.precompilation.cache.dir";
+
+	/**
+	 * Context parameter with maximum time (in milliseconds) to wait for {@link AsyncSecurityHandler}. Defaults
+	 * to {@link #DEFAULT_ASYNC_SECURITY_TIMEOUT}.
+	 */
+	String CONTEXT_PARAM_ASYNC_SECURITY_TIMEOUT = "org.ops4j.pax.web.security.asyncTimeout";
+
+	/** Default maximum time (in milliseconds) to wait for {@link AsyncSecurityHandler} */
+	long DEFAULT_ASYNC_SECURITY_TIMEOUT = 30000L;
+
 	/** Default {@link ServletContext#getContextPath() context path} */
 	String DEFAULT_CONTEXT_PATH = "/";
 
@@ -219,6 +234,13 @@ public interface PaxWebConstants {
 	 */
 	String BUNDLE_CONTEXT_PROPERTY_WAR_EXTENDER_THREADS = "org.ops4j.pax.web.extender.war.threads";
 
+	/**
+	 * {@link org.osgi.framework.BundleContext} property to configure the parallelism of the fork-join pool used
+	 * by WAR extender to discover web fragments and {@link javax.servlet.ServletContainerInitializer SCIs} of single
+	 * WAB. Defaults to the number of available processors. {@code 1} means sequential discovery.
+	 */
+	String BUNDLE_CONTEXT_PROPERTY_WAR_EXTENDER_DISCOVERY_THREADS = "org.ops4j.pax.web.extender.war.discovery.threads";
+
 
 
 
@@ -936,8 +936,30 @@ public interface WebContainer extends HttpService {
 	 */
 	void setContextParams(Dictionary<String, Object> params, HttpContext httpContext);
 
+	// methods used to alter security constraints
 
+	/**
+	 * Registers security constraint mapping (equivalent of {@code <security-constraint>} element with single
+	 * {@code <web-resource-collection>}). Constraints are checked before any filter or servlet of the context
+	 * corresponding to specified http context is invoked.
+	 *
+	 * @param constraintName name of the constraint
+	 * @param mapping HTTP method this constraint applies to ({@code null} or {@code *} for all methods)
+	 * @param url URL pattern this constraint applies to
+	 * @param dataConstraint {@code NONE}, {@code INTEGRAL} or {@code CONFIDENTIAL} ({@code null} means {@code NONE})
+	 * @param authentication whether there's {@code <auth-constraint>} - without roles it precludes any access
+	 * @param roles roles allowed to access the resources ({@code *} and {@code **} have Servlet spec meaning)
+	 * @param httpContext http context
+	 */
+	void registerConstraintMapping(String constraintName, String mapping, String url, String dataConstraint,
+			boolean authentication, List<String> roles, HttpContext httpContext);
 
+	/**
+	 * Unregisters all security constraint mappings of the context corresponding to specified http context.
+	 *
+	 * @param httpContext http context
+	 */
+	void unregisterConstraintMapping(HttpContext httpContext);
 
 //
 //    /**
@@ -959,27 +981,6 @@ public interface WebContainer extends HttpService {
 //     */
 //    void unregisterLoginConfig(HttpContext httpContext);
 //
-//    /**
-//     * Registers constraint mappings....
-//     *
-//     * @param constraintName
-//     * @param mapping
-//     * @param url
-//     * @param dataConstraint
-//     * @param authentication
-//     * @param roles
-//     * @param httpContext
-//     */
-//    void registerConstraintMapping(String constraintName, String mapping, String url, String dataConstraint,
-//            boolean authentication, List<String> roles, HttpContext httpContext);
-//
-//    /**
-//     * Unregisters constraint mappings....
-//     *
-//     * @param httpContext
-//     */
-//    void unregisterConstraintMapping(HttpContext httpContext);
-//
 //    void registerWebSocket(Object webSocket, HttpContext httpContext);
 //
 //    void unregisterWebSocket(Object webSocket, HttpContext httpContext);
@@ -16,6 +16,7 @@
 package org.ops4j.pax.web.service;
 
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -96,6 +97,18 @@ public interface WebContainerContext extends HttpContext {
 	 */
 	void finishSecurity(HttpServletRequest request, HttpServletResponse response);
 
+	/**
+	 * Asynchronous variant of {@link #handleSecurity}, available if the wrapped context implements
+	 * {@link AsyncSecurityHandler}.
+	 *
+	 * @param request
+	 * @param response
+	 * @return {@code null} if only synchronous {@link #handleSecurity} is available
+	 */
+	default CompletionStage<Boolean> handleSecurityAsync(HttpServletRequest request, HttpServletResponse response) {
+		return null;
+	}
+
 	/**
 	 * <p>Returns the name (identifier) of this <em>context</em>.</p>
 	 *
@@ -37,7 +37,9 @@ import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Pattern;
@@ -61,6 +63,15 @@ public class ClassPathUtil {
 
 	private static final Logger LOG = LoggerFactory.getLogger(ClassPathUtil.class);
 
+	/**
+	 * Framework-wide cache of transitive <em>class space</em> of bundles - keyed by {@link BundleRevision}. An entry
+	 * is valid as long as the {@link BundleWiring} used to calculate it is current (refresh of any bundle in the
+	 * class space also refreshes the dependent bundles, so their wirings are no longer current) and none of the
+	 * bundles is uninstalled or unresolved. Invalid entries are removed when found during lookup or
+	 * when {@link #evictClassSpaceCache(Bundle)} is called for uninstalled/unresolved bundle.
+	 */
+	private static final Map<BundleRevision, ClassSpace> CLASS_SPACE_CACHE = new ConcurrentHashMap<>();
+
 	private ClassPathUtil() {
 	}
 
@@ -199,6 +210,9 @@ public class ClassPathUtil {
 	 * Gets a list of bundles that are imported or required by {@link BundleContext}. This method also returns
 	 * attached fragments.
 	 *
+	 * The transitive set of bundles is cached per {@link BundleRevision}, so calling this method for many bundles
+	 * sharing the same libraries doesn't walk the wiring graph again and again.
+	 *
 	 * @param context
 	 * @param bundle
 	 * @param bundleSet
@@ -211,6 +225,78 @@ public class ClassPathUtil {
 			throw new IllegalArgumentException("Bundle, BundleContext or BundleWiring is null");
 		}
 
+		bundleSet.addAll(getClassSpace(bundleWiring));
+
+		// Sanity checkpoint to remove uninstalled bundles
+		bundleSet.removeIf(b -> b.getState() == Bundle.UNINSTALLED);
+		// And system bundle
+		bundleSet.removeIf(b -> b.getBundleId() == 0L);
+
+		return bundleSet;
+	}
+
+	/**
+	 * Removes all entries from the cache of class spaces calculated in
+	 * {@link #getBundlesInClassSpace(Bundle, Set)}. Should be called when bundles are refreshed.
+	 */
+	public static void clearClassSpaceCache() {
+		CLASS_SPACE_CACHE.clear();
+	}
+
+	/**
+	 * Removes the entries which are no longer valid from the cache of class spaces calculated in
+	 * {@link #getBundlesInClassSpace(Bundle, Set)}.
+	 */
+	public static void purgeClassSpaceCache() {
+		CLASS_SPACE_CACHE.values().removeIf(cs -> !cs.isValid());
+	}
+
+	/**
+	 * Removes the entries for given bundle and the entries of class spaces containing given bundle from the cache
+	 * of class spaces calculated in {@link #getBundlesInClassSpace(Bundle, Set)}. Should be called when bundle
+	 * is uninstalled or unresolved - without waiting for refresh.
+	 * @param bundle
+	 */
+	public static void evictClassSpaceCache(Bundle bundle) {
+		CLASS_SPACE_CACHE.values().removeIf(cs -> cs.wiring.getBundle() == bundle || cs.bundles.contains(bundle)
+				|| !cs.isValid());
+	}
+
+	/**
+	 * Number of cached class spaces - for tests.
+	 * @return
+	 */
+	static int classSpaceCacheSize() {
+		return CLASS_SPACE_CACHE.size();
+	}
+
+	/**
+	 * Returns cached (or calculates new) transitive class space for given {@link BundleWiring}.
+	 * @param bundleWiring
+	 * @return
+	 */
+	private static Set<Bundle> getClassSpace(BundleWiring bundleWiring) {
+		BundleRevision revision = bundleWiring.getRevision();
+		ClassSpace cached = revision == null ? null : CLASS_SPACE_CACHE.get(revision);
+		if (cached != null) {
+			if (cached.isValid()) {
+				return cached.bundles;
+			}
+			CLASS_SPACE_CACHE.remove(revision, cached);
+		}
+
+		Set<Bundle> bundles = new HashSet<>();
+		collectBundlesInClassSpace(bundleWiring, bundles);
+		bundles.removeIf(b -> b.getBundleId() == 0L);
+
+		ClassSpace classSpace = new ClassSpace(bundleWiring, Collections.unmodifiableSet(bundles));
+		if (revision != null && classSpace.isValid()) {
+			CLASS_SPACE_CACHE.put(revision, classSpace);
+		}
+		return classSpace.bundles;
+	}
+
+	private static void collectBundlesInClassSpace(BundleWiring bundleWiring, Set<Bundle> bundleSet) {
 		Set<Bundle> bundles = new HashSet<>();
 
 		// This will give us all required Wires (including Require-Bundle). We're mostly interested in
@@ -247,18 +333,20 @@ public class ClassPathUtil {
 			bundles.removeAll(bundleSet);
 			// include the new ones in the set we're collecting
 			bundleSet.addAll(bundles);
-			// collect transitively
+			// collect transitively - reusing already cached class spaces
 			for (Bundle b : bundles) {
-				getBundlesInClassSpace(b, bundleSet);
+				BundleWiring wiring = b.adapt(BundleWiring.class);
+				if (wiring == null) {
+					continue;
+				}
+				ClassSpace cached = wiring.getRevision() == null ? null : CLASS_SPACE_CACHE.get(wiring.getRevision());
+				if (cached != null && cached.isValid()) {
+					bundleSet.addAll(cached.bundles);
+				} else {
+					collectBundlesInClassSpace(wiring, bundleSet);
+				}
 			}
 		}
-
-		// Sanity checkpoint to remove uninstalled bundles
-		bundleSet.removeIf(b -> b.getState() == Bundle.UNINSTALLED);
-		// And system bundle
-		bundleSet.removeIf(b -> b.getBundleId() == 0L);
-
-		return bundleSet;
 	}
 
 	/**
@@ -543,8 +631,16 @@ public class ClassPathUtil {
 
 		for (URL root : roots) {
 			String protocol = root.getProtocol();
-			if ("jar".equals(protocol) && !jarClassPathEntryExists(root)) {
-				continue;
+			if ("jar".equals(protocol)) {
+				// JARs are read once into an index of entries, which is used by all later pattern queries
+				JarIndex index = JarIndex.forRoot(root, bundle);
+				if (index != null) {
+					scanJarIndex(index, root, p, recurse, resources);
+					continue;
+				}
+				if (!jarClassPathEntryExists(root)) {
+					continue;
+				}
 			}
 
 			if ("jar".equals(protocol)) {
@@ -559,6 +655,51 @@ public class ClassPathUtil {
 		}
 	}
 
+	/**
+	 * Same as {@link #scanJar(URL, Pattern, boolean, Collection)}, but using already indexed entries of the JAR.
+	 * @param index
+	 * @param root
+	 * @param pattern
+	 * @param recurse
+	 * @param result
+	 */
+	private static void scanJarIndex(JarIndex index, URL root, Pattern pattern, boolean recurse, Collection<URL> result) {
+		String location = root.getFile();
+		int separator = location.indexOf("!/");
+		// this should never start with "/"
+		String rootEntryPath = separator == -1 ? "" : JarIndex.decode(location.substring(separator + 2));
+		if (!"".equals(rootEntryPath) && !rootEntryPath.endsWith("/")) {
+			// we need the root to be a directory entry, unless it's the root
+			rootEntryPath += "/";
+		}
+		if (!index.contains(rootEntryPath)) {
+			return;
+		}
+
+		try {
+			for (String entryPath : index.entriesWithPrefix(rootEntryPath)) {
+				String relativePath = entryPath.substring(rootEntryPath.length());
+				if (relativePath.startsWith("/")) {
+					relativePath = relativePath.substring(1);
+				}
+				if (matches(relativePath, pattern, recurse)) {
+					// # can appear in filenames, java.net.URL should not treat it as a fragment
+					relativePath = relativePath.replaceAll("#", "%23");
+					result.add(new URL(root, relativePath));
+				}
+			}
+		} catch (IOException e) {
+			LOG.warn(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Removes all cached JAR indexes used when scanning JARs in {@code findEntries()} methods.
+	 */
+	public static void clearJarIndexCache() {
+		JarIndex.clear();
+	}
+
 	/**
 	 * Similar to Spring's {@code PathMatchingResourcePatternResolver#doFindPathMatchingJarResources()}
 	 * @param root
@@ -700,4 +841,33 @@ public class ClassPathUtil {
 		}
 	}
 
+	/**
+	 * Cached, transitive class space of a bundle together with the wiring used to calculate it.
+	 */
+	private static final class ClassSpace {
+		private final BundleWiring wiring;
+		private final Set<Bundle> bundles;
+
+		ClassSpace(BundleWiring wiring, Set<Bundle> bundles) {
+			this.wiring = wiring;
+			this.bundles = bundles;
+		}
+
+		boolean isValid() {
+			if (!wiring.isCurrent() || !isResolved(wiring.getBundle())) {
+				return false;
+			}
+			for (Bundle b : bundles) {
+				if (!isResolved(b)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static boolean isResolved(Bundle bundle) {
+			return bundle != null && bundle.getState() != Bundle.UNINSTALLED && bundle.getState() != Bundle.INSTALLED;
+		}
+	}
+
 }
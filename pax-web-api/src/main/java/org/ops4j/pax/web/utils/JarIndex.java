@@ -0,0 +1,278 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.JarURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.osgi.framework.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>In-memory index of JAR entry names, so scanning the same JAR for different patterns
+ * ({@code META-INF/services/*}, {@code web-fragment.xml}, TLDs, {@code META-INF/resources}) doesn't require
+ * opening the JAR and iterating over its entries each time.</p>
+ *
+ * <p>File-backed JARs are read using {@link ZipFile}. Other JARs (e.g., {@code jar:bundle://...!/} URLs of
+ * {@code WEB-INF/lib/*.jar} inside a WAB) are read once through {@link JarURLConnection} and their indexes are
+ * validated using {@link Bundle#getLastModified()} of the bundle containing the JAR.</p>
+ */
+final class JarIndex {
+
+	private static final Logger LOG = LoggerFactory.getLogger(JarIndex.class);
+
+	/** Maximum number of indexed JARs - least recently used indexes are removed first */
+	private static final int MAX_CACHE_SIZE = 1024;
+
+	private static final Map<String, JarIndex> CACHE
+			= Collections.synchronizedMap(new LinkedHashMap<String, JarIndex>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, JarIndex> eldest) {
+					return size() > MAX_CACHE_SIZE;
+				}
+			});
+
+	/** Sorted entry names */
+	private final String[] names;
+
+	/** For file-backed JARs - to detect changes of the file */
+	private final File file;
+	private final long length;
+
+	/**
+	 * For other JARs (like {@code bundle:} URLs) - to detect changes of the bundle (e.g., after update), because
+	 * the URL doesn't have to include bundle revision
+	 */
+	private final Bundle bundle;
+
+	/** Last modification time of the {@link #file} or the {@link #bundle} */
+	private final long lastModified;
+
+	private JarIndex(List<String> entries, File file, Bundle bundle, long lastModified) {
+		this.names = entries.toArray(new String[0]);
+		Arrays.sort(names);
+		this.file = file;
+		this.length = file == null ? 0L : file.length();
+		this.bundle = bundle;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Returns (possibly cached) {@link JarIndex} for a {@code jar:} URL in the form of {@code jar:<location>!/path}.
+	 *
+	 * @param root
+	 * @return {@code null} if the JAR can't be read
+	 */
+	static JarIndex forRoot(URL root) {
+		return forRoot(root, null);
+	}
+
+	/**
+	 * Returns (possibly cached) {@link JarIndex} for a {@code jar:} URL in the form of {@code jar:<location>!/path}.
+	 *
+	 * @param root
+	 * @param bundle the bundle containing the JAR, used to validate the index of not file-backed JARs. When
+	 *        {@code null}, such index is valid until {@link #clear()} (called after bundles are refreshed)
+	 * @return {@code null} if the JAR can't be read
+	 */
+	static JarIndex forRoot(URL root, Bundle bundle) {
+		String location = root.getFile();
+		int separator = location.indexOf("!/");
+		if (separator != -1) {
+			location = location.substring(0, separator);
+		}
+
+		JarIndex index = CACHE.get(location);
+		if (index != null && index.isValid()) {
+			return index;
+		}
+
+		try {
+			File f = toFile(location);
+			if (f != null && f.isFile()) {
+				index = readZipFile(f);
+			} else {
+				index = readEntries(root, bundle);
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			LOG.debug("Can't index {}: {}", location, e.getMessage());
+			return null;
+		}
+
+		CACHE.put(location, index);
+		return index;
+	}
+
+	/**
+	 * Removes all cached indexes
+	 */
+	static void clear() {
+		CACHE.clear();
+	}
+
+	/**
+	 * Decodes {@code %XX} sequences of URL path (like {@code %20} for spaces in directory names). Unlike
+	 * {@link URLDecoder}, {@code +} is not decoded to space.
+	 * @param path
+	 * @return
+	 */
+	static String decode(String path) {
+		if (path.indexOf('%') == -1) {
+			return path;
+		}
+		try {
+			return URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+		} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+			return path;
+		}
+	}
+
+	/**
+	 * Converts {@code file:} location (possibly not properly encoded) into a {@link File}
+	 * @param location
+	 * @return {@code null} for other locations
+	 */
+	private static File toFile(String location) {
+		if (!location.startsWith("file:")) {
+			return null;
+		}
+		try {
+			return new File(URI.create(location));
+		} catch (IllegalArgumentException e) {
+			// e.g., not encoded spaces
+			return new File(decode(location.substring("file:".length())));
+		}
+	}
+
+	/**
+	 * Reads the entries of a file-backed JAR
+	 * @param f
+	 * @return
+	 * @throws IOException
+	 */
+	private static JarIndex readZipFile(File f) throws IOException {
+		long lastModified = f.lastModified();
+		try (ZipFile zip = new ZipFile(f)) {
+			List<String> entries = new ArrayList<>(zip.size());
+			for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+				entries.add(e.nextElement().getName());
+			}
+			return new JarIndex(entries, f, null, lastModified);
+		}
+	}
+
+	/**
+	 * Reads entries using {@link JarURLConnection} - single iteration over all entries.
+	 * @param root
+	 * @param bundle
+	 * @return
+	 * @throws IOException
+	 */
+	private static JarIndex readEntries(URL root, Bundle bundle) throws IOException {
+		long lastModified = bundle == null ? 0L : bundle.getLastModified();
+
+		URLConnection con = root.openConnection();
+		if (!(con instanceof JarURLConnection)) {
+			throw new IOException("Can't read entries of " + root);
+		}
+		JarURLConnection jarCon = (JarURLConnection) con;
+		JarFile jar = jarCon.getJarFile();
+		try {
+			List<String> entries = new ArrayList<>();
+			for (Enumeration<? extends ZipEntry> e = jar.entries(); e.hasMoreElements(); ) {
+				entries.add(e.nextElement().getName());
+			}
+			return new JarIndex(entries, null, bundle, lastModified);
+		} finally {
+			if (!jarCon.getUseCaches()) {
+				jar.close();
+			}
+		}
+	}
+
+	/**
+	 * Whether this index still represents the indexed JAR. Checking a file-backed JAR doesn't open it and checking
+	 * a JAR from a bundle only compares {@link Bundle#getLastModified()} (changed when the bundle is updated).
+	 * For JARs without known file or bundle the index is valid until {@link #clear()}.
+	 * @return
+	 */
+	boolean isValid() {
+		if (file != null) {
+			return file.lastModified() == lastModified && file.length() == length;
+		}
+		if (bundle != null) {
+			return bundle.getState() != Bundle.UNINSTALLED && bundle.getLastModified() == lastModified;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns entry names starting with given prefix (in sorted order)
+	 * @param prefix
+	 * @return
+	 */
+	List<String> entriesWithPrefix(String prefix) {
+		int from = Arrays.binarySearch(names, prefix);
+		if (from < 0) {
+			from = -from - 1;
+		}
+		List<String> result = new ArrayList<>();
+		for (int i = from; i < names.length && names[i].startsWith(prefix); i++) {
+			result.add(names[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether given entry (or a directory - when the name ends with {@code /}) exists
+	 * @param name
+	 * @return
+	 */
+	boolean contains(String name) {
+		if ("".equals(name)) {
+			return true;
+		}
+		int pos = Arrays.binarySearch(names, name);
+		if (pos >= 0) {
+			return true;
+		}
+		// directory entries may not be stored in the JAR
+		pos = -pos - 1;
+		return name.endsWith("/") && pos < names.length && names[pos].startsWith(name);
+	}
+
+	int size() {
+		return names.length;
+	}
+
+}
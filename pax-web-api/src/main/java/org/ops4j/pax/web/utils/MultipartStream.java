@@ -0,0 +1,494 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * <p>Streaming parser of {@code multipart/form-data} requests (RFC 7578). Unlike
+ * {@link HttpServletRequest#getParts()}, parts are passed to {@link PartHandler} as they arrive and their content
+ * is read directly from the request's input stream - nothing is kept in memory or spooled to disk, so uploads of
+ * any size may be consumed (e.g., copied to final destination) with constant memory.</p>
+ *
+ * <p>Servlet using this class should not have multipart configuration and should not call
+ * {@code getParameter*()} methods before parsing, otherwise the container may consume the request body
+ * itself.</p>
+ */
+public final class MultipartStream {
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final int MAX_HEADERS_SIZE = 8192;
+
+	private final InputStream in;
+	private final Charset charset;
+	private final long maxFileSize;
+	private final long maxRequestSize;
+
+	/** {@code CRLF--boundary} */
+	private final byte[] delimiter;
+
+	private final byte[] buffer;
+	private int head;
+	private int tail;
+	private boolean eof;
+	private long requestSize;
+
+	private boolean partEnded;
+	private int partNumber;
+
+	/**
+	 * Creates parser of multipart content.
+	 * @param in
+	 * @param contentType {@code Content-Type} of the content, which should contain {@code boundary} parameter
+	 * @param charset charset of part headers
+	 * @param maxFileSize maximum size of single part ({@code -1} for no limit)
+	 * @param maxRequestSize maximum size of the entire content ({@code -1} for no limit)
+	 * @throws IOException if there's no boundary in content type
+	 */
+	public MultipartStream(InputStream in, String contentType, Charset charset, long maxFileSize,
+			long maxRequestSize) throws IOException {
+		String boundary = parameter(contentType, "boundary");
+		if (boundary == null || "".equals(boundary)) {
+			throw new IOException("No multipart boundary in content type \"" + contentType + "\"");
+		}
+		this.in = in;
+		this.charset = charset == null ? StandardCharsets.UTF_8 : charset;
+		this.maxFileSize = maxFileSize;
+		this.maxRequestSize = maxRequestSize;
+
+		byte[] b = boundary.getBytes(StandardCharsets.ISO_8859_1);
+		delimiter = new byte[b.length + 4];
+		delimiter[0] = '\r';
+		delimiter[1] = '\n';
+		delimiter[2] = '-';
+		delimiter[3] = '-';
+		System.arraycopy(b, 0, delimiter, 4, b.length);
+
+		buffer = new byte[BUFFER_SIZE + delimiter.length];
+		// first boundary may not be preceded by CRLF if there's no preamble, so the preamble is always
+		// treated as content ended by a delimiter
+		buffer[0] = '\r';
+		buffer[1] = '\n';
+		tail = 2;
+	}
+
+	/**
+	 * Checks whether the request has {@code multipart/form-data} content.
+	 * @param request
+	 * @return
+	 */
+	public static boolean isMultipart(HttpServletRequest request) {
+		String contentType = request.getContentType();
+		return contentType != null
+				&& contentType.toLowerCase(Locale.ENGLISH).startsWith("multipart/form-data");
+	}
+
+	/**
+	 * Parses the request content without size limits.
+	 * @param request
+	 * @param handler
+	 * @throws IOException
+	 */
+	public static void parse(HttpServletRequest request, PartHandler handler) throws IOException {
+		parse(request, null, handler);
+	}
+
+	/**
+	 * Parses the request content, applying the limits from passed configuration ({@link MultipartConfigElement}
+	 * location and threshold are not relevant). Exceeding the limits is signalled with
+	 * {@link IllegalStateException}, the same as with {@link HttpServletRequest#getParts()}.
+	 * @param request
+	 * @param config
+	 * @param handler
+	 * @throws IOException
+	 */
+	public static void parse(HttpServletRequest request, MultipartConfigElement config, PartHandler handler)
+			throws IOException {
+		long maxFileSize = config == null ? -1L : config.getMaxFileSize();
+		long maxRequestSize = config == null ? -1L : config.getMaxRequestSize();
+		if (maxRequestSize > 0L && request.getContentLengthLong() > maxRequestSize) {
+			throw new IllegalStateException("Multipart request size " + request.getContentLengthLong()
+					+ " exceeds the limit of " + maxRequestSize + " bytes");
+		}
+		Charset charset = StandardCharsets.UTF_8;
+		if (request.getCharacterEncoding() != null) {
+			try {
+				charset = Charset.forName(request.getCharacterEncoding());
+			} catch (RuntimeException ignored) {
+			}
+		}
+		new MultipartStream(request.getInputStream(), request.getContentType(), charset, maxFileSize,
+				maxRequestSize).parse(handler);
+	}
+
+	/**
+	 * Passes all the parts to the handler. Content of a part not entirely read by the handler is skipped.
+	 * @param handler
+	 * @throws IOException
+	 */
+	public void parse(PartHandler handler) throws IOException {
+		// preamble
+		skipPart();
+		while (nextPart()) {
+			Map<String, List<String>> headers = readHeaders();
+			partEnded = false;
+			handler.handle(new Part(++partNumber, headers));
+			skipPart();
+		}
+	}
+
+	/**
+	 * Reads what follows the delimiter.
+	 * @return {@code false} if it was a close delimiter
+	 */
+	private boolean nextPart() throws IOException {
+		ensure(2);
+		if (buffer[head] == '-' && buffer[head + 1] == '-') {
+			// the epilogue is ignored
+			return false;
+		}
+		// transport padding
+		while (true) {
+			ensure(1);
+			if (buffer[head] != ' ' && buffer[head] != '\t') {
+				break;
+			}
+			head++;
+		}
+		ensure(2);
+		if (buffer[head] != '\r' || buffer[head + 1] != '\n') {
+			throw new IOException("Malformed multipart delimiter");
+		}
+		head += 2;
+		return true;
+	}
+
+	private Map<String, List<String>> readHeaders() throws IOException {
+		Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int size = 0;
+		String lastName = null;
+		while (true) {
+			ensure(1);
+			byte b = buffer[head++];
+			if (++size > MAX_HEADERS_SIZE) {
+				throw new IOException("Multipart headers exceed " + MAX_HEADERS_SIZE + " bytes");
+			}
+			if (b != '\n') {
+				line.write(b);
+				continue;
+			}
+			String header = new String(line.toByteArray(), charset);
+			line.reset();
+			if (header.endsWith("\r")) {
+				header = header.substring(0, header.length() - 1);
+			}
+			if ("".equals(header)) {
+				return headers;
+			}
+			if ((header.charAt(0) == ' ' || header.charAt(0) == '\t') && lastName != null) {
+				// obsolete line folding
+				List<String> values = headers.get(lastName);
+				int last = values.size() - 1;
+				values.set(last, values.get(last) + " " + header.trim());
+				continue;
+			}
+			int colon = header.indexOf(':');
+			if (colon <= 0) {
+				throw new IOException("Malformed multipart header \"" + header + "\"");
+			}
+			lastName = header.substring(0, colon).trim();
+			headers.computeIfAbsent(lastName, n -> new ArrayList<>()).add(header.substring(colon + 1).trim());
+		}
+	}
+
+	/**
+	 * Reads content of current part up to the next delimiter.
+	 * @return number of bytes read or {@code -1} at the end of the part
+	 */
+	private int read(byte[] b, int off, int len) throws IOException {
+		if (partEnded) {
+			return -1;
+		}
+		if (len == 0) {
+			return 0;
+		}
+		while (true) {
+			int idx = indexOfDelimiter();
+			int available;
+			if (idx >= 0) {
+				available = idx - head;
+				if (available == 0) {
+					head += delimiter.length;
+					partEnded = true;
+					return -1;
+				}
+			} else {
+				// the end of buffer may be a beginning of the delimiter
+				available = tail - head - (delimiter.length - 1);
+				if (available <= 0) {
+					if (!fill()) {
+						throw new IOException("Unexpected end of multipart content");
+					}
+					continue;
+				}
+			}
+			int count = Math.min(len, available);
+			System.arraycopy(buffer, head, b, off, count);
+			head += count;
+			return count;
+		}
+	}
+
+	private void skipPart() throws IOException {
+		byte[] skip = new byte[BUFFER_SIZE];
+		while (read(skip, 0, skip.length) >= 0) {
+			// skipping
+		}
+	}
+
+	private int indexOfDelimiter() {
+		int last = tail - delimiter.length;
+		outer:
+		for (int i = head; i <= last; i++) {
+			for (int j = 0; j < delimiter.length; j++) {
+				if (buffer[i + j] != delimiter[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	private void ensure(int count) throws IOException {
+		while (tail - head < count) {
+			if (!fill()) {
+				throw new IOException("Unexpected end of multipart content");
+			}
+		}
+	}
+
+	private boolean fill() throws IOException {
+		if (eof) {
+			return false;
+		}
+		if (head > 0) {
+			System.arraycopy(buffer, head, buffer, 0, tail - head);
+			tail -= head;
+			head = 0;
+		}
+		int read = in.read(buffer, tail, buffer.length - tail);
+		if (read < 0) {
+			eof = true;
+			return false;
+		}
+		tail += read;
+		requestSize += read;
+		if (maxRequestSize > 0L && requestSize > maxRequestSize) {
+			throw new IllegalStateException("Multipart request exceeds the limit of " + maxRequestSize + " bytes");
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a parameter of header value like {@code form-data; name="file"; filename="a.txt"}.
+	 * @param header
+	 * @param name
+	 * @return
+	 */
+	static String parameter(String header, String name) {
+		if (header == null) {
+			return null;
+		}
+		int pos = header.indexOf(';');
+		int length = header.length();
+		while (pos >= 0 && pos < length) {
+			pos++;
+			while (pos < length && (header.charAt(pos) == ' ' || header.charAt(pos) == '\t')) {
+				pos++;
+			}
+			int eq = pos;
+			while (eq < length && header.charAt(eq) != '=' && header.charAt(eq) != ';') {
+				eq++;
+			}
+			String key = header.substring(pos, eq).trim();
+			if (eq >= length || header.charAt(eq) == ';') {
+				pos = eq;
+				continue;
+			}
+			pos = eq + 1;
+			StringBuilder value = new StringBuilder();
+			if (pos < length && header.charAt(pos) == '"') {
+				pos++;
+				while (pos < length && header.charAt(pos) != '"') {
+					char c = header.charAt(pos);
+					// only escaped quote and backslash - filenames may contain windows paths
+					if (c == '\\' && pos + 1 < length
+							&& (header.charAt(pos + 1) == '"' || header.charAt(pos + 1) == '\\')) {
+						c = header.charAt(++pos);
+					}
+					value.append(c);
+					pos++;
+				}
+				pos = header.indexOf(';', pos);
+			} else {
+				int end = header.indexOf(';', pos);
+				value.append(header, pos, end < 0 ? length : end);
+				pos = end;
+			}
+			if (key.equalsIgnoreCase(name)) {
+				return value.toString().trim();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Callback invoked for each part of multipart content.
+	 */
+	@FunctionalInterface
+	public interface PartHandler {
+
+		/**
+		 * Handles single part. Its content is available only until this method returns.
+		 * @param part
+		 * @throws IOException
+		 */
+		void handle(StreamingPart part) throws IOException;
+	}
+
+	/**
+	 * Single part of multipart content, which can be read only once.
+	 */
+	public interface StreamingPart {
+
+		/**
+		 * Name of the form field.
+		 * @return
+		 */
+		String getName();
+
+		/**
+		 * File name specified by the client or {@code null} if the part is not a file.
+		 * @return
+		 */
+		String getSubmittedFileName();
+
+		String getContentType();
+
+		String getHeader(String name);
+
+		Collection<String> getHeaders(String name);
+
+		Collection<String> getHeaderNames();
+
+		/**
+		 * Stream with the content of the part. When {@code maxFileSize} is exceeded, the stream throws
+		 * {@link IllegalStateException}.
+		 * @return
+		 */
+		InputStream getInputStream();
+	}
+
+	private final class Part extends InputStream implements StreamingPart {
+
+		private final int number;
+		private final Map<String, List<String>> headers;
+		private final String disposition;
+		private long size;
+
+		Part(int number, Map<String, List<String>> headers) {
+			this.number = number;
+			this.headers = headers;
+			this.disposition = getHeader("Content-Disposition");
+		}
+
+		@Override
+		public String getName() {
+			return parameter(disposition, "name");
+		}
+
+		@Override
+		public String getSubmittedFileName() {
+			return parameter(disposition, "filename");
+		}
+
+		@Override
+		public String getContentType() {
+			return getHeader("Content-Type");
+		}
+
+		@Override
+		public String getHeader(String name) {
+			List<String> values = headers.get(name);
+			return values == null || values.isEmpty() ? null : values.get(0);
+		}
+
+		@Override
+		public Collection<String> getHeaders(String name) {
+			List<String> values = headers.get(name);
+			return values == null ? Collections.emptyList() : Collections.unmodifiableList(values);
+		}
+
+		@Override
+		public Collection<String> getHeaderNames() {
+			return Collections.unmodifiableSet(headers.keySet());
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return this;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int read = read(b, 0, 1);
+			return read < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (number != partNumber) {
+				return -1;
+			}
+			int read = MultipartStream.this.read(b, off, len);
+			if (read > 0) {
+				size += read;
+				if (maxFileSize > 0L && size > maxFileSize) {
+					throw new IllegalStateException("Part \"" + getName() + "\" exceeds the limit of "
+							+ maxFileSize + " bytes");
+				}
+			}
+			return read;
+		}
+	}
+
+}
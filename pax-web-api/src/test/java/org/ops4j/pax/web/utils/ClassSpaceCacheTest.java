@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRequirement;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ClassSpaceCacheTest {
+
+	@Before
+	@After
+	public void clear() {
+		ClassPathUtil.clearClassSpaceCache();
+	}
+
+	@Test
+	public void classSpaceIsCached() {
+		Bundle lib = bundle(2L);
+		Bundle wab = bundle(1L, lib);
+
+		assertThat(classSpace(wab), equalTo(Collections.singleton(lib)));
+		assertThat(classSpace(wab), equalTo(Collections.singleton(lib)));
+
+		verify(wab.adapt(BundleWiring.class), times(1)).getRequiredWires(null);
+		assertThat(ClassPathUtil.classSpaceCacheSize(), equalTo(1));
+	}
+
+	@Test
+	public void uninstalledBundleInvalidatesCachedClassSpace() {
+		Bundle lib1 = bundle(2L);
+		Bundle lib2 = bundle(3L);
+		Bundle wab = bundle(1L, lib1, lib2);
+
+		assertThat(classSpace(wab).size(), equalTo(2));
+
+		when(lib2.getState()).thenReturn(Bundle.UNINSTALLED);
+		assertThat(classSpace(wab), equalTo(Collections.singleton(lib1)));
+
+		// without refresh, the wiring is still current, but the class space had to be calculated again
+		// and it's not cached until the refresh
+		verify(wab.adapt(BundleWiring.class), times(2)).getRequiredWires(null);
+		assertThat(ClassPathUtil.classSpaceCacheSize(), equalTo(0));
+	}
+
+	@Test
+	public void unresolvedBundleIsRemovedFromCacheOnLookup() {
+		Bundle lib = bundle(2L);
+		Bundle wab = bundle(1L, lib);
+
+		classSpace(wab);
+		assertThat(ClassPathUtil.classSpaceCacheSize(), equalTo(1));
+
+		when(lib.getState()).thenReturn(Bundle.INSTALLED);
+		when(lib.adapt(BundleWiring.class)).thenReturn(null);
+
+		assertThat(classSpace(wab), equalTo(Collections.singleton(lib)));
+		verify(wab.adapt(BundleWiring.class), times(2)).getRequiredWires(null);
+		assertThat(ClassPathUtil.classSpaceCacheSize(), equalTo(0));
+	}
+
+	@Test
+	public void evictionRemovesClassSpacesContainingBundle() {
+		Bundle lib = bundle(3L);
+		Bundle other = bundle(4L);
+		Bundle wab1 = bundle(1L, lib);
+		Bundle wab2 = bundle(2L, other);
+
+		classSpace(wab1);
+		classSpace(wab2);
+		assertThat(ClassPathUtil.classSpaceCacheSize(), equalTo(2));
+
+		ClassPathUtil.evictClassSpaceCache(lib);
+		assertThat(ClassPathUtil.classSpaceCacheSize(), equalTo(1));
+
+		ClassPathUtil.evictClassSpaceCache(wab2);
+		assertThat(ClassPathUtil.classSpaceCacheSize(), equalTo(0));
+	}
+
+	private Set<Bundle> classSpace(Bundle bundle) {
+		return ClassPathUtil.getBundlesInClassSpace(bundle, new HashSet<>());
+	}
+
+	private Bundle bundle(long id, Bundle... imports) {
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getBundleId()).thenReturn(id);
+		when(bundle.getState()).thenReturn(Bundle.ACTIVE);
+		BundleWiring wiring = wiring(bundle, imports);
+		when(bundle.adapt(BundleWiring.class)).thenReturn(wiring);
+		return bundle;
+	}
+
+	private BundleWiring wiring(Bundle bundle, Bundle... imports) {
+		BundleWiring wiring = mock(BundleWiring.class);
+		BundleRevision revision = mock(BundleRevision.class);
+		when(revision.getBundle()).thenReturn(bundle);
+		when(wiring.getBundle()).thenReturn(bundle);
+		when(wiring.getRevision()).thenReturn(revision);
+		when(wiring.isCurrent()).thenReturn(true);
+
+		List<BundleWire> wires = new ArrayList<>();
+		for (Bundle exporter : imports) {
+			BundleWire wire = mock(BundleWire.class);
+			BundleRequirement requirement = mock(BundleRequirement.class);
+			when(requirement.getNamespace()).thenReturn(PackageNamespace.PACKAGE_NAMESPACE);
+			BundleCapability capability = mock(BundleCapability.class);
+			BundleRevision exporterRevision = mock(BundleRevision.class);
+			when(exporterRevision.getBundle()).thenReturn(exporter);
+			when(capability.getRevision()).thenReturn(exporterRevision);
+			when(wire.getRequirement()).thenReturn(requirement);
+			when(wire.getCapability()).thenReturn(capability);
+			wires.add(wire);
+		}
+		when(wiring.getRequiredWires(null)).thenReturn(wires);
+		when(wiring.getProvidedWires(BundleRevision.HOST_NAMESPACE)).thenReturn(Collections.emptyList());
+		return wiring;
+	}
+
+}
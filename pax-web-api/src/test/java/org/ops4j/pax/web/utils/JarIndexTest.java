@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JarIndexTest {
+
+	@Test
+	public void indexFileBasedJar() throws Exception {
+		URL testClass = Test.class.getResource("Test.class");
+		assertThat(testClass.getProtocol(), equalTo("jar"));
+		String location = testClass.getFile().substring(0, testClass.getFile().indexOf("!/"));
+		URL root = new URL("jar:" + location + "!/");
+
+		JarIndex index = JarIndex.forRoot(root);
+		assertNotNull(index);
+		assertThat(JarIndex.forRoot(new URL("jar:" + location + "!/org/junit/")), sameInstance(index));
+
+		int count = 0;
+		try (JarFile jar = new JarFile(new File(new URL(location).toURI()))) {
+			for (Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements(); ) {
+				JarEntry entry = e.nextElement();
+				assertTrue(index.contains(entry.getName()));
+				count++;
+			}
+		}
+		assertThat(index.size(), equalTo(count));
+
+		assertTrue(index.contains("org/junit/"));
+		assertFalse(index.contains("org/junit-not-there/"));
+		assertTrue(index.entriesWithPrefix("org/junit/").contains("org/junit/Test.class"));
+	}
+
+	@Test
+	public void jarInDirectoryWithSpaces() throws Exception {
+		File dir = new File("target/jar index/with+plus");
+		dir.mkdirs();
+		File jar = new File(dir, "test.jar");
+		writeJar(jar, "META-INF/resources/a.txt");
+
+		// URL with encoded spaces
+		URL encoded = new URL("jar:" + jar.toURI().toURL() + "!/");
+		assertTrue(encoded.toString().contains("%20"));
+		JarIndex index = JarIndex.forRoot(encoded);
+		assertNotNull(index);
+		assertTrue(index.contains("META-INF/resources/a.txt"));
+
+		// URL with not encoded spaces
+		URL plain = new URL("jar:file:" + jar.getAbsolutePath() + "!/");
+		index = JarIndex.forRoot(plain);
+		assertNotNull(index);
+		assertTrue(index.contains("META-INF/resources/a.txt"));
+
+		assertThat(JarIndex.decode("/a%20b/c+d/e%2Bf"), equalTo("/a b/c+d/e+f"));
+	}
+
+	@Test
+	public void changedJarIsIndexedAgain() throws Exception {
+		File dir = new File("target/jar-index");
+		dir.mkdirs();
+		File jar = new File(dir, "changed.jar");
+		writeJar(jar, "a.txt");
+		URL root = new URL("jar:" + jar.toURI().toURL() + "!/");
+
+		JarIndex index = JarIndex.forRoot(root);
+		assertNotNull(index);
+		assertTrue(index.isValid());
+		assertFalse(index.contains("b.txt"));
+
+		writeJar(jar, "a.txt", "b.txt");
+		assertTrue(jar.setLastModified(jar.lastModified() + 2000L));
+		assertFalse(index.isValid());
+		assertTrue(JarIndex.forRoot(root).contains("b.txt"));
+	}
+
+	@Test
+	public void bundleJarIsValidatedUsingBundle() throws Exception {
+		File dir = new File("target/jar-index");
+		dir.mkdirs();
+		File jar = new File(dir, "bundle.jar");
+		writeJar(jar, "a.txt");
+
+		// not file-backed JAR (like jar:bundle://...!/) - it can't be checked without opening a connection
+		URL root = new URL("jar", "", -1, "http://localhost/bundle.jar!/", new URLStreamHandler() {
+			@Override
+			protected URLConnection openConnection(URL u) throws IOException {
+				JarURLConnection con = new JarURLConnection(u) {
+					@Override
+					public JarFile getJarFile() throws IOException {
+						return new JarFile(jar);
+					}
+
+					@Override
+					public void connect() {
+					}
+				};
+				con.setUseCaches(false);
+				return con;
+			}
+		});
+
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getState()).thenReturn(Bundle.ACTIVE);
+		when(bundle.getLastModified()).thenReturn(1L);
+
+		JarIndex index = JarIndex.forRoot(root, bundle);
+		assertNotNull(index);
+		assertTrue(index.contains("a.txt"));
+		assertTrue(index.isValid());
+		assertThat(JarIndex.forRoot(root, bundle), sameInstance(index));
+
+		// updated bundle
+		when(bundle.getLastModified()).thenReturn(2L);
+		assertFalse(index.isValid());
+
+		when(bundle.getLastModified()).thenReturn(1L);
+		when(bundle.getState()).thenReturn(Bundle.UNINSTALLED);
+		assertFalse(index.isValid());
+	}
+
+	private static void writeJar(File jar, String... entries) throws Exception {
+		try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar))) {
+			for (String entry : entries) {
+				jos.putNextEntry(new JarEntry(entry));
+				jos.write(entry.getBytes(StandardCharsets.UTF_8));
+				jos.closeEntry();
+			}
+		}
+	}
+
+}
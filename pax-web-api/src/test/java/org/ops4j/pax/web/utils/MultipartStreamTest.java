@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+public class MultipartStreamTest {
+
+	@Test
+	public void parameters() {
+		assertThat(MultipartStream.parameter("multipart/form-data; boundary=abc", "boundary"), equalTo("abc"));
+		assertThat(MultipartStream.parameter("multipart/form-data;boundary=\"a;b\"", "boundary"), equalTo("a;b"));
+		assertThat(MultipartStream.parameter("form-data; name=\"f\"; filename=\"C:\\dir\\a.txt\"", "filename"),
+				equalTo("C:\\dir\\a.txt"));
+		assertThat(MultipartStream.parameter("form-data; name=\"f\"", "filename"), nullValue());
+	}
+
+	@Test
+	public void streamingParts() throws Exception {
+		byte[] file = new byte[100_000];
+		new Random(42).nextBytes(file);
+		byte[] body = body(file);
+
+		// also with input stream returning few bytes at a time, so delimiter is split between reads
+		for (boolean slow : new boolean[] { false, true }) {
+			InputStream in = new ByteArrayInputStream(body);
+			if (slow) {
+				in = new FilterInputStream(in) {
+					@Override
+					public int read(byte[] b, int off, int len) throws IOException {
+						return super.read(b, off, Math.min(len, 3));
+					}
+				};
+			}
+			List<String> names = new ArrayList<>();
+			ByteArrayOutputStream field = new ByteArrayOutputStream();
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			new MultipartStream(in, "multipart/form-data; boundary=\"XyZ\"", StandardCharsets.UTF_8, -1L, -1L).parse(part -> {
+				names.add(part.getName());
+				if ("field".equals(part.getName())) {
+					assertThat(part.getSubmittedFileName(), nullValue());
+					int b;
+					while ((b = part.getInputStream().read()) >= 0) {
+						field.write(b);
+					}
+				} else if ("file".equals(part.getName())) {
+					assertThat(part.getSubmittedFileName(), equalTo("a.bin"));
+					assertThat(part.getContentType(), equalTo("application/octet-stream"));
+					byte[] buffer = new byte[7777];
+					int read;
+					while ((read = part.getInputStream().read(buffer)) >= 0) {
+						content.write(buffer, 0, read);
+					}
+				}
+				// "skipped" part is not read at all
+			});
+			assertThat(names.toString(), equalTo("[field, file, skipped]"));
+			assertThat(new String(field.toByteArray(), StandardCharsets.UTF_8), equalTo("value"));
+			assertArrayEquals(file, content.toByteArray());
+		}
+	}
+
+	@Test
+	public void limits() throws Exception {
+		byte[] body = body(new byte[10_000]);
+		try {
+			new MultipartStream(new ByteArrayInputStream(body), "multipart/form-data; boundary=XyZ", null, 1000L, -1L).parse(part -> {
+				byte[] buffer = new byte[100];
+				while (part.getInputStream().read(buffer) >= 0) {
+					// reading
+				}
+			});
+			fail("Should exceed max file size");
+		} catch (IllegalStateException expected) {
+		}
+		try {
+			new MultipartStream(new ByteArrayInputStream(body), "multipart/form-data; boundary=XyZ", null, -1L, 5000L).parse(part -> {
+			});
+			fail("Should exceed max request size");
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	@Test
+	public void truncatedContent() throws Exception {
+		byte[] body = "--XyZ\r\nContent-Disposition: form-data; name=\"f\"\r\n\r\nabc".getBytes(StandardCharsets.ISO_8859_1);
+		try {
+			new MultipartStream(new ByteArrayInputStream(body), "multipart/form-data; boundary=XyZ", null, -1L, -1L).parse(part -> {
+			});
+			fail("Should detect missing delimiter");
+		} catch (IOException expected) {
+		}
+	}
+
+	private byte[] body(byte[] file) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		body.write(("preamble\r\n--XyZ\r\nContent-Disposition: form-data; name=\"field\"\r\n\r\nvalue\r\n"
+				+ "--XyZ\r\nContent-Disposition: form-data; name=\"file\"; filename=\"a.bin\"\r\n"
+				+ "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+		body.write(file);
+		body.write(("\r\n--XyZ\r\nContent-Disposition: form-data; name=\"skipped\"\r\n\r\nzzz\r\n--XyZ--\r\n")
+				.getBytes(StandardCharsets.ISO_8859_1));
+		return body.toByteArray();
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.concurrent.Executor;
+import javax.servlet.ServletContext;
+
+import org.mockito.ArgumentMatchers;
+import org.ops4j.pax.web.service.PaxWebConstants;
+import org.ops4j.pax.web.service.internal.ConfigurationBuilder;
+import org.ops4j.pax.web.service.internal.MetaTypePropertyResolver;
+import org.ops4j.pax.web.service.spi.config.Configuration;
+import org.ops4j.pax.web.service.spi.util.Utils;
+import org.ops4j.util.property.DictionaryPropertyResolver;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.Version;
+import org.osgi.framework.wiring.BundleWiring;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Helper methods shared by the benchmarks - the same mocking approach as in {@code pax-web-itest-server}.
+ */
+public final class BenchmarkSupport {
+
+	private BenchmarkSupport() {
+	}
+
+	/**
+	 * Creates {@link Configuration} from system properties overriden by passed properties.
+	 * @param properties
+	 * @return
+	 */
+	public static Configuration configuration(Hashtable<Object, Object> properties) {
+		Hashtable<Object, Object> all = new Hashtable<>(System.getProperties());
+		all.putAll(properties);
+
+		// it wouldn't work in OSGi because MetaTypePropertyResolver's package is not exported
+		DictionaryPropertyResolver resolver = new DictionaryPropertyResolver(all, new MetaTypePropertyResolver());
+		return ConfigurationBuilder.getConfiguration(resolver, Utils.toMap(all));
+	}
+
+	/**
+	 * Creates mock {@link Bundle} with associated mock {@link BundleContext}.
+	 * @param symbolicName
+	 * @param contextPath a value for {@link PaxWebConstants#CONTEXT_PATH_KEY} (may be {@code null})
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static Bundle mockBundle(String symbolicName, String contextPath) {
+		Bundle bundle = mock(Bundle.class);
+		BundleContext bundleContext = mock(BundleContext.class);
+		when(bundle.getSymbolicName()).thenReturn(symbolicName);
+		when(bundle.getVersion()).thenReturn(Version.parseVersion("1.0.0"));
+		when(bundle.getState()).thenReturn(Bundle.ACTIVE);
+		when(bundle.toString()).thenReturn("Bundle \"" + symbolicName + "\"");
+		when(bundle.getBundleContext()).thenReturn(bundleContext);
+		when(bundleContext.getBundle()).thenReturn(bundle);
+
+		if (contextPath != null) {
+			Dictionary<String, String> headers = new Hashtable<>();
+			headers.put(PaxWebConstants.CONTEXT_PATH_KEY, contextPath);
+			when(bundle.getHeaders()).thenReturn(headers);
+		}
+
+		BundleWiring wiring = mock(BundleWiring.class);
+		when(bundle.adapt(BundleWiring.class)).thenReturn(wiring);
+		when(wiring.getClassLoader()).thenReturn(BenchmarkSupport.class.getClassLoader());
+
+		when(bundleContext.registerService(ArgumentMatchers.eq(ServletContext.class), any(ServletContext.class),
+				any(Dictionary.class)))
+				.thenReturn(mock(ServiceRegistration.class));
+
+		return bundle;
+	}
+
+	/**
+	 * Registration tasks are run in calling thread - there's no concurrency during benchmark setup.
+	 */
+	public static class SameThreadExecutor implements Executor {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	}
+
+}
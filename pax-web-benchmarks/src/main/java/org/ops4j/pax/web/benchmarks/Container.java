@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import org.ops4j.pax.web.service.jetty.internal.JettyServerControllerFactory;
+import org.ops4j.pax.web.service.spi.ServerController;
+import org.ops4j.pax.web.service.spi.config.Configuration;
+import org.ops4j.pax.web.service.tomcat.internal.TomcatServerControllerFactory;
+import org.ops4j.pax.web.service.undertow.internal.UndertowServerControllerFactory;
+import org.xnio.nio.NioXnioProvider;
+
+/**
+ * Supported runtimes, each creating its {@link ServerController} directly through
+ * {@link org.ops4j.pax.web.service.spi.ServerControllerFactory} - without OSGi registry.
+ */
+public enum Container {
+
+	JETTY {
+		@Override
+		public ServerController createServerController(Configuration config, ClassLoader classLoader) {
+			return new JettyServerControllerFactory(null, classLoader).createServerController(config);
+		}
+	},
+
+	TOMCAT {
+		@Override
+		public ServerController createServerController(Configuration config, ClassLoader classLoader) {
+			return new TomcatServerControllerFactory(null, classLoader).createServerController(config);
+		}
+	},
+
+	UNDERTOW {
+		@Override
+		public ServerController createServerController(Configuration config, ClassLoader classLoader) {
+			return new UndertowServerControllerFactory(null, classLoader, new NioXnioProvider())
+					.createServerController(config);
+		}
+	};
+
+	public abstract ServerController createServerController(Configuration config, ClassLoader classLoader);
+
+}
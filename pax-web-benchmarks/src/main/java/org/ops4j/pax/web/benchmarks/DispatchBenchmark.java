@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>End-to-end request dispatch over loopback interface for each {@link Container}. Each benchmark thread
+ * uses own persistent connection, so the numbers include connector, parsing, context/servlet mapping,
+ * Pax Web filter chain ({@code OsgiFilterChain}, {@code handleSecurity()}) and response writing.</p>
+ *
+ * <p>Run with {@code -prof gc} to see allocation rate per request ({@code gc.alloc.rate.norm}) - note that it
+ * includes allocations made by {@link LoopbackClient} in benchmark thread, but not the allocations made
+ * in server's worker threads.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Server {
+
+		@Param({ "JETTY", "TOMCAT", "UNDERTOW" })
+		public Container container;
+
+		@Param({ "0", "5", "20" })
+		public int filters;
+
+		ServerSupport support;
+
+		@Setup(Level.Trial)
+		public void start() throws Exception {
+			support = new ServerSupport(container, filters);
+			support.start();
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() throws Exception {
+			support.stop();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Client {
+
+		LoopbackClient client;
+
+		byte[] plain;
+		byte[] filtered;
+		byte[] secure;
+		byte[] resource;
+		byte[] jsp;
+
+		@Setup(Level.Trial)
+		public void connect(Server server) throws IOException {
+			client = new LoopbackClient(server.support.getPort());
+			plain = client.get("/plain");
+			filtered = client.get("/filtered");
+			secure = client.get("/secure/x", ServerSupport.SECURITY_HEADER + ": 42");
+			resource = client.get("/static/hello.css");
+			jsp = client.get("/hello.jsp?p1=v1");
+
+			// first JSP request triggers compilation
+			check(client.send(jsp));
+			check(client.send(resource));
+		}
+
+		@TearDown(Level.Trial)
+		public void close() throws IOException {
+			client.close();
+		}
+
+		private static void check(int status) {
+			if (status != 200) {
+				throw new IllegalStateException("Unexpected status " + status);
+			}
+		}
+	}
+
+	@Benchmark
+	public int plainServlet(Client c) throws IOException {
+		return c.client.send(c.plain);
+	}
+
+	@Benchmark
+	public int filteredServlet(Client c) throws IOException {
+		return c.client.send(c.filtered);
+	}
+
+	@Benchmark
+	public int securedServlet(Client c) throws IOException {
+		return c.client.send(c.secure);
+	}
+
+	@Benchmark
+	public int staticResource(Client c) throws IOException {
+		return c.client.send(c.resource);
+	}
+
+	@Benchmark
+	public int jsp(Client c) throws IOException {
+		return c.client.send(c.jsp);
+	}
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletContext;
+import javax.servlet.descriptor.JspConfigDescriptor;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.jsp.JspFactory;
+
+import org.apache.jasper.servlet.JspServlet;
+import org.apache.tomcat.SimpleInstanceManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.web.jsp.InstanceManager;
+import org.ops4j.pax.web.jsp.JasperInitializer;
+import org.ops4j.pax.web.service.PaxWebConstants;
+import org.osgi.framework.Bundle;
+import org.springframework.core.io.FileSystemResourceLoader;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+
+/**
+ * <p>Rendering of a tag-heavy JSP page (100 classic tags with lifecycle methods) by Jasper's {@link JspServlet},
+ * initialized by Pax Web's {@link JasperInitializer} - without a container, so the numbers are not blurred by
+ * the network and request dispatch.</p>
+ *
+ * <p>{@code instanceManager} parameter selects the {@code org.apache.tomcat.InstanceManager} used by Jasper to
+ * create and destroy tag handlers:<ul>
+ *     <li>{@code paxweb} - Pax Web's {@link InstanceManager} registered by {@link JasperInitializer}, which
+ *     invokes {@code @PostConstruct}/{@code @PreDestroy} methods</li>
+ *     <li>{@code simple} - Tomcat's {@link SimpleInstanceManager} without lifecycle support, which Jasper used
+ *     before Pax Web's instance manager was registered under the proper attribute name</li>
+ * </ul>With {@code pooling=false}, Jasper calls the instance manager for every tag invocation, so several
+ * threads show the contention on the lifecycle method cache.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class InstanceManagerBenchmark {
+
+	@Param({ "paxweb", "simple" })
+	public String instanceManager;
+
+	@Param({ "true", "false" })
+	public boolean pooling;
+
+	private File baseDir;
+	private ServletContext context;
+	private JspServlet jspServlet;
+
+	@Setup(Level.Trial)
+	public void init() throws Exception {
+		JspFactory.setDefaultFactory(new org.apache.jasper.runtime.JspFactoryImpl());
+
+		baseDir = Files.createTempDirectory("pax-web-benchmarks").toFile();
+		copy("/jsp/tags.jsp", new File(baseDir, "tags.jsp"));
+		copy("/jsp/benchmarks.tld", new File(baseDir, "WEB-INF/benchmarks.tld"));
+
+		MockServletContext context = new MockServletContext("file:" + baseDir.getAbsolutePath(),
+				new FileSystemResourceLoader()) {
+			@Override
+			public JspConfigDescriptor getJspConfigDescriptor() {
+				return null;
+			}
+		};
+		Bundle bundle = BenchmarkSupport.mockBundle("pax-web-benchmarks", null);
+		context.setAttribute(PaxWebConstants.CONTEXT_PARAM_BUNDLE_CONTEXT, bundle.getBundleContext());
+
+		new JasperInitializer().onStartup(null, context);
+		if ("simple".equals(instanceManager)) {
+			context.setAttribute(org.apache.tomcat.InstanceManager.class.getName(), new SimpleInstanceManager());
+		}
+		this.context = context;
+
+		MockServletConfig config = new MockServletConfig(context, "jsp");
+		config.addInitParameter("development", "false");
+		config.addInitParameter("enablePooling", Boolean.toString(pooling));
+		config.addInitParameter("scratchdir", new File(baseDir, "scratch").getAbsolutePath());
+		jspServlet = new JspServlet();
+		jspServlet.init(config);
+
+		// first request compiles the page
+		MockHttpServletResponse res = render(context, jspServlet);
+		if (res.getStatus() != HttpServletResponse.SC_OK || !res.getContentAsString().contains("ab")) {
+			throw new IllegalStateException("Unexpected response " + res.getStatus() + ": "
+					+ res.getContentAsString());
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void destroy() {
+		jspServlet.destroy();
+		delete(baseDir);
+	}
+
+	@Benchmark
+	public int tagHeavyPage() throws Exception {
+		return render(context, jspServlet).getContentLength();
+	}
+
+	private static MockHttpServletResponse render(ServletContext context, JspServlet jspServlet)
+			throws Exception {
+		MockHttpServletRequest req = new MockHttpServletRequest(context, "GET", "/tags.jsp");
+		req.setServletPath("/tags.jsp");
+		MockHttpServletResponse res = new MockHttpServletResponse();
+		jspServlet.service(req, res);
+		return res;
+	}
+
+	private static void copy(String resource, File target) throws IOException {
+		target.getParentFile().mkdirs();
+		try (InputStream is = InstanceManagerBenchmark.class.getResourceAsStream(resource)) {
+			Files.copy(is, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
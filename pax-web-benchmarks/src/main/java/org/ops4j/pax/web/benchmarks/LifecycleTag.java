@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.io.IOException;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.tagext.TagSupport;
+
+/**
+ * Classic tag handler with lifecycle methods, used by {@link InstanceManagerBenchmark}. Jasper pools instances
+ * of such handlers or - when pooling is disabled - creates (and destroys) an instance for each invocation.
+ */
+public class LifecycleTag extends TagSupport {
+
+	private String value;
+	private boolean initialized;
+
+	public void setValue(String value) {
+		this.value = value;
+	}
+
+	@PostConstruct
+	public void init() {
+		initialized = true;
+	}
+
+	@PreDestroy
+	public void destroy() {
+		initialized = false;
+	}
+
+	@Override
+	public int doStartTag() throws JspException {
+		try {
+			pageContext.getOut().write(value);
+		} catch (IOException e) {
+			throw new JspException(e.getMessage(), e);
+		}
+		return SKIP_BODY;
+	}
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>Minimal HTTP/1.1 client keeping single persistent connection over loopback interface. It's intentionally
+ * primitive (no header parsing beyond what's needed to find the end of response), so the client side
+ * contributes as little as possible to measured time and allocation.</p>
+ */
+public class LoopbackClient implements Closeable {
+
+	private final int port;
+	private final byte[] line = new byte[8192];
+
+	private Socket socket;
+	private InputStream in;
+	private OutputStream out;
+
+	public LoopbackClient(int port) {
+		this.port = port;
+	}
+
+	/**
+	 * Sends GET request and reads entire response.
+	 * @param request pre-encoded request created with {@link #get(String, String...)}
+	 * @return HTTP status code
+	 * @throws IOException
+	 */
+	public int send(byte[] request) throws IOException {
+		if (socket == null) {
+			connect();
+		}
+		out.write(request);
+		out.flush();
+
+		int status = statusCode(readLine());
+		long contentLength = -1L;
+		boolean chunked = false;
+		boolean close = false;
+		int len;
+		while ((len = readLineLength()) > 0) {
+			String header = new String(line, 0, len, StandardCharsets.ISO_8859_1);
+			int colon = header.indexOf(':');
+			if (colon <= 0) {
+				continue;
+			}
+			String name = header.substring(0, colon).trim();
+			String value = header.substring(colon + 1).trim();
+			if ("Content-Length".equalsIgnoreCase(name)) {
+				contentLength = Long.parseLong(value);
+			} else if ("Transfer-Encoding".equalsIgnoreCase(name) && "chunked".equalsIgnoreCase(value)) {
+				chunked = true;
+			} else if ("Connection".equalsIgnoreCase(name) && "close".equalsIgnoreCase(value)) {
+				close = true;
+			}
+		}
+
+		if (chunked) {
+			long size;
+			while ((size = Long.parseLong(readLine().split(";")[0].trim(), 16)) > 0) {
+				skip(size);
+				readLine();
+			}
+			// trailers
+			while (readLineLength() > 0) {
+				// skip
+			}
+		} else if (contentLength > 0) {
+			skip(contentLength);
+		}
+
+		if (close) {
+			close();
+		}
+		return status;
+	}
+
+	/**
+	 * Encodes GET request for given URI once, so it can be sent many times without additional allocation.
+	 * @param uri
+	 * @param headers
+	 * @return
+	 */
+	public byte[] get(String uri, String... headers) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("GET ").append(uri).append(" HTTP/1.1\r\n");
+		sb.append("Host: 127.0.0.1:").append(port).append("\r\n");
+		for (String header : headers) {
+			sb.append(header).append("\r\n");
+		}
+		sb.append("\r\n");
+		return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (socket != null) {
+			try {
+				socket.close();
+			} finally {
+				socket = null;
+				in = null;
+				out = null;
+			}
+		}
+	}
+
+	private void connect() throws IOException {
+		socket = new Socket();
+		socket.setTcpNoDelay(true);
+		socket.connect(new InetSocketAddress("127.0.0.1", port));
+		in = new BufferedInputStream(socket.getInputStream(), 16384);
+		out = socket.getOutputStream();
+	}
+
+	private static int statusCode(String statusLine) throws IOException {
+		// HTTP/1.1 200 OK
+		int sp = statusLine.indexOf(' ');
+		if (sp < 0 || statusLine.length() < sp + 4) {
+			throw new IOException("Invalid status line: " + statusLine);
+		}
+		return Integer.parseInt(statusLine.substring(sp + 1, sp + 4));
+	}
+
+	private String readLine() throws IOException {
+		int len = readLineLength();
+		return new String(line, 0, len, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Reads a line (without CRLF) into {@link #line} buffer
+	 * @return length of the line
+	 * @throws IOException
+	 */
+	private int readLineLength() throws IOException {
+		int len = 0;
+		int b;
+		while ((b = in.read()) != -1) {
+			if (b == '\n') {
+				return len > 0 && line[len - 1] == '\r' ? len - 1 : len;
+			}
+			if (len < line.length) {
+				line[len++] = (byte) b;
+			}
+		}
+		throw new IOException("Connection closed by server");
+	}
+
+	private void skip(long count) throws IOException {
+		long left = count;
+		while (left > 0) {
+			long skipped = in.skip(left);
+			if (skipped <= 0) {
+				if (in.read() == -1) {
+					throw new IOException("Connection closed by server");
+				}
+				skipped = 1;
+			}
+			left -= skipped;
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.net.URL;
+import javax.servlet.Servlet;
+
+import org.ops4j.pax.web.service.spi.ServerController;
+import org.ops4j.pax.web.service.spi.ServerState;
+import org.ops4j.pax.web.service.spi.config.Configuration;
+import org.ops4j.pax.web.service.spi.model.events.ServerListener;
+import org.ops4j.pax.web.service.spi.task.Batch;
+
+/**
+ * {@link ServerController} that accepts all the {@link Batch batches} without passing them to any runtime. Used
+ * to measure the cost of model operations ({@link org.ops4j.pax.web.service.spi.model.ServerModel},
+ * {@link org.ops4j.pax.web.service.spi.model.ServiceModel}) only.
+ */
+public class ModelOnlyServerController implements ServerController {
+
+	private final Configuration configuration;
+
+	public ModelOnlyServerController(Configuration configuration) {
+		this.configuration = configuration;
+	}
+
+	@Override
+	public ServerState getState() {
+		return ServerState.STARTED;
+	}
+
+	@Override
+	public void configure() {
+	}
+
+	@Override
+	public void start() {
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	@Override
+	public Configuration getConfiguration() {
+		return configuration;
+	}
+
+	@Override
+	public void addListener(ServerListener listener) {
+	}
+
+	@Override
+	public void removeListener(ServerListener listener) {
+	}
+
+	@Override
+	public void sendBatch(Batch batch) {
+	}
+
+	@Override
+	public Servlet createResourceServlet(URL urlBase, String base) {
+		throw new UnsupportedOperationException("Resources are not supported without a runtime");
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.spi.servlet.OsgiFilterChain;
+import org.osgi.service.http.whiteboard.Preprocessor;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+
+/**
+ * <p>In-process benchmark of {@link OsgiFilterChain} - the part of request processing that Pax Web adds on top
+ * of each runtime: {@link Preprocessor preprocessors} and {@code handleSecurity()}/{@code finishSecurity()}.</p>
+ *
+ * <p>Preprocessors are measured here and not in {@link DispatchBenchmark}, because none of the runtimes
+ * has a registration path for Whiteboard preprocessors yet.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OsgiFilterChainBenchmark {
+
+	@Param({ "0", "1", "5", "20" })
+	public int preprocessors;
+
+	@Param({ "false", "true" })
+	public boolean secured;
+
+	private final List<Preprocessor> preprocessorList = new ArrayList<>();
+	private MockServletContext servletContext;
+	private WebContainerContext context;
+	private MockHttpServletRequest request;
+	private MockHttpServletResponse response;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		for (int i = 0; i < preprocessors; i++) {
+			preprocessorList.add(new PassThroughPreprocessor());
+		}
+		servletContext = new MockServletContext();
+		context = secured ? new ServerSupport.SecuredHttpContext(null) : null;
+		request = new MockHttpServletRequest(servletContext, "GET", "/plain");
+		request.addHeader(ServerSupport.SECURITY_HEADER, "42");
+		response = new MockHttpServletResponse();
+	}
+
+	@Benchmark
+	public void doFilter(Blackhole bh) throws IOException, ServletException {
+		// containers create new chain for each request
+		OsgiFilterChain chain = new OsgiFilterChain(preprocessorList, servletContext, context,
+				(req, res) -> bh.consume(req));
+		chain.doFilter(request, response);
+	}
+
+	private static class PassThroughPreprocessor implements Preprocessor {
+		@Override
+		public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+				throws IOException, ServletException {
+			chain.doFilter(request, response);
+		}
+	}
+
+}
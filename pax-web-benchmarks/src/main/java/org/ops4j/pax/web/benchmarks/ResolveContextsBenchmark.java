@@ -0,0 +1,113 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.web.extender.whiteboard.internal.WhiteboardExtenderContext;
+import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.service.http.whiteboard.HttpWhiteboardConstants;
+
+/**
+ * <p>Benchmark of {@link WhiteboardExtenderContext#resolveContexts(Bundle, Filter)} which is called for each
+ * Whiteboard element (and for each element again, every time a context is added or removed) with many
+ * Whiteboard contexts registered.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResolveContextsBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int contexts;
+
+	private WhiteboardExtenderContext extenderContext;
+	private Bundle bundle;
+
+	private Filter byName;
+	private Filter byDefaultName;
+	private Filter any;
+
+	@Setup(Level.Trial)
+	public void setup() throws InvalidSyntaxException {
+		Bundle extenderBundle = BenchmarkSupport.mockBundle("org.ops4j.pax.web.pax-web-extender-whiteboard", null);
+		extenderContext = new WhiteboardExtenderContext(null, extenderBundle.getBundleContext(), true);
+
+		bundle = BenchmarkSupport.mockBundle("contexts", null);
+		for (int i = 0; i < contexts; i++) {
+			OsgiContextModel model = new OsgiContextModel(bundle, 0, (long) (i + 100), true);
+			model.setName("ctx" + i);
+			model.setContextPath("/ctx" + i);
+			model.getContextRegistrationProperties().put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME, "ctx" + i);
+			model.getContextRegistrationProperties().put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_PATH, "/ctx" + i);
+			extenderContext.addWebContext(bundle, model);
+		}
+
+		byName = FrameworkUtil.createFilter(String.format("(%s=ctx%d)",
+				HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME, contexts / 2));
+		byDefaultName = FrameworkUtil.createFilter(String.format("(%s=%s)",
+				HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME,
+				HttpWhiteboardConstants.HTTP_WHITEBOARD_DEFAULT_CONTEXT_NAME));
+		any = FrameworkUtil.createFilter(String.format("(%s=*)", HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME));
+	}
+
+	@TearDown(Level.Trial)
+	public void shutdown() {
+		extenderContext.shutdown();
+	}
+
+	@Benchmark
+	public List<OsgiContextModel> selectSingleByName() {
+		return extenderContext.resolveContexts(bundle, byName);
+	}
+
+	@Benchmark
+	public List<OsgiContextModel> selectDefault() {
+		return extenderContext.resolveContexts(bundle, byDefaultName);
+	}
+
+	@Benchmark
+	public List<OsgiContextModel> selectAll() {
+		return extenderContext.resolveContexts(bundle, any);
+	}
+
+	@Benchmark
+	public List<OsgiContextModel> noSelector() {
+		return extenderContext.resolveContexts(bundle, null);
+	}
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.Filter;
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.internal.HttpServiceEnabled;
+import org.ops4j.pax.web.service.spi.config.Configuration;
+import org.ops4j.pax.web.service.spi.model.ServerModel;
+
+/**
+ * <p>Registration churn in {@link ServerModel} - each operation (un)registers N servlets or filters through
+ * {@link HttpServiceEnabled}, so it includes context translation, validation, conflict resolution, filter
+ * snapshot calculation and {@link org.ops4j.pax.web.service.spi.model.ServiceModel} bookkeeping.</p>
+ *
+ * <p>{@link ModelOnlyServerController} is used, so the numbers show only the cost of the model - not the cost
+ * of (re)configuring actual runtime. Comparing the score for 100, 1000 and 10000 elements shows how the model
+ * scales - linear growth of the score means O(N^2) cost of single registration.</p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class ServerModelBenchmark {
+
+	@Param({ "100", "1000", "10000" })
+	public int elements;
+
+	private Configuration configuration;
+
+	private HttpServiceEnabled httpService;
+	private WebContainerContext context;
+
+	private final List<Servlet> servlets = new ArrayList<>();
+	private final List<Filter> filters = new ArrayList<>();
+
+	@Setup(Level.Trial)
+	public void configure() {
+		configuration = BenchmarkSupport.configuration(new Hashtable<>());
+		for (int i = 0; i < elements; i++) {
+			servlets.add(new ServerSupport.TextServlet());
+			filters.add(new ServerSupport.PassThroughFilter());
+		}
+	}
+
+	/**
+	 * Each single shot starts with new, empty {@link ServerModel}.
+	 */
+	@Setup(Level.Iteration)
+	public void createModel() {
+		ServerModel serverModel = new ServerModel(new BenchmarkSupport.SameThreadExecutor());
+		httpService = new HttpServiceEnabled(BenchmarkSupport.mockBundle("registration", null),
+				new ModelOnlyServerController(configuration), serverModel, null, configuration);
+		context = httpService.createDefaultHttpContext();
+	}
+
+	@TearDown(Level.Iteration)
+	public void destroyModel() {
+		httpService.stop();
+	}
+
+	@Benchmark
+	public HttpServiceEnabled addServletModels() throws ServletException {
+		registerServlets();
+		return httpService;
+	}
+
+	@Benchmark
+	public HttpServiceEnabled addFilterModels() throws ServletException {
+		// all the filters are mapped to the same servlet, so each registration recalculates bigger filter chain
+		httpService.registerServlet(servlets.get(0), "s", new String[] { "/s" }, null, context);
+		for (int i = 0; i < elements; i++) {
+			httpService.registerFilter(filters.get(i), "f" + i, new String[] { "/*" }, null, null, false, context);
+		}
+		return httpService;
+	}
+
+	@Benchmark
+	public HttpServiceEnabled removeServletModels(RegisteredServlets registered) {
+		for (Servlet servlet : servlets) {
+			httpService.unregisterServlet(servlet);
+		}
+		return httpService;
+	}
+
+	private void registerServlets() throws ServletException {
+		for (int i = 0; i < elements; i++) {
+			httpService.registerServlet(servlets.get(i), "s" + i, new String[] { "/s" + i }, null, context);
+		}
+	}
+
+	/**
+	 * State that registers all the servlets before {@link #removeServletModels} shot, so only the unregistration
+	 * is measured.
+	 */
+	@State(Scope.Thread)
+	public static class RegisteredServlets {
+		@Setup(Level.Iteration)
+		public void register(ServerModelBenchmark benchmark) throws ServletException {
+			benchmark.registerServlets();
+		}
+	}
+
+}
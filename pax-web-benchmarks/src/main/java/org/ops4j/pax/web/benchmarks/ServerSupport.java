@@ -0,0 +1,205 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Hashtable;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.jasper.servlet.JspServlet;
+import org.ops4j.pax.web.jsp.JasperInitializer;
+import org.ops4j.pax.web.service.PaxWebConfig;
+import org.ops4j.pax.web.service.PaxWebConstants;
+import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.internal.HttpServiceEnabled;
+import org.ops4j.pax.web.service.spi.ServerController;
+import org.ops4j.pax.web.service.spi.config.Configuration;
+import org.ops4j.pax.web.service.spi.context.DefaultHttpContext;
+import org.ops4j.pax.web.service.spi.model.ServerModel;
+import org.osgi.framework.Bundle;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * <p>Starts selected {@link Container} the same way as {@code pax-web-itest-server} tests do - without OSGi
+ * framework, with mocked {@link Bundle bundles} and with {@link HttpServiceEnabled} used directly to
+ * register web elements.</p>
+ *
+ * <p>Registered elements:<ul>
+ *     <li>{@code /plain} - servlet writing short text response</li>
+ *     <li>{@code /filtered} - the same servlet behind N pass-through filters</li>
+ *     <li>{@code /secure/*} - the same servlet in a context with {@code handleSecurity()} checking a header</li>
+ *     <li>{@code /static/*} - resources served from a temporary directory</li>
+ *     <li>{@code *.jsp} - JSPs served from the same directory</li>
+ * </ul></p>
+ */
+public class ServerSupport {
+
+	public static final String BODY = "Hello Pax Web!";
+	public static final String SECURITY_HEADER = "X-Pax-Web-Token";
+
+	private final Container container;
+	private final int filters;
+
+	private ServerController controller;
+	private ServerModel serverModel;
+	private HttpServiceEnabled httpService;
+	private File baseDir;
+	private int port;
+
+	public ServerSupport(Container container, int filters) {
+		this.container = container;
+		this.filters = filters;
+	}
+
+	/**
+	 * Configures, starts the server and registers all the elements.
+	 * @throws Exception
+	 */
+	public void start() throws Exception {
+		try (ServerSocket ss = new ServerSocket(0)) {
+			port = ss.getLocalPort();
+		}
+		baseDir = Files.createTempDirectory("pax-web-benchmarks").toFile();
+		copy("/static/hello.css", new File(baseDir, "static/hello.css"));
+		copy("/jsp/hello.jsp", new File(baseDir, "hello.jsp"));
+
+		Hashtable<Object, Object> properties = new Hashtable<>();
+		properties.put(PaxWebConfig.PID_CFG_TEMP_DIR, new File(baseDir, "tmp").getAbsolutePath());
+		properties.put(PaxWebConfig.PID_CFG_HTTP_PORT, Integer.toString(port));
+		properties.put(PaxWebConfig.PID_CFG_LISTENING_ADDRESSES, "127.0.0.1");
+		Configuration config = BenchmarkSupport.configuration(properties);
+
+		ClassLoader cl = ServerSupport.class.getClassLoader();
+		controller = container.createServerController(config, cl);
+		controller.configure();
+		controller.start();
+
+		serverModel = new ServerModel(new BenchmarkSupport.SameThreadExecutor());
+
+		Bundle jspBundle = BenchmarkSupport.mockBundle("org.ops4j.pax.web.pax-web-jsp", null);
+		when(jspBundle.loadClass(PaxWebConstants.DEFAULT_JSP_SERVLET_CLASS)).thenAnswer(inv -> JspServlet.class);
+		when(jspBundle.loadClass(PaxWebConstants.DEFAULT_JSP_SCI_CLASS)).thenAnswer(inv -> JasperInitializer.class);
+
+		Bundle bundle = BenchmarkSupport.mockBundle("pax-web-benchmarks", null);
+		when(bundle.getBundleContext().getBundles()).thenReturn(new Bundle[] { bundle, jspBundle });
+		when(bundle.getResource(anyString())).thenAnswer(inv -> {
+			File f = new File(baseDir, inv.getArgument(0, String.class));
+			return f.isFile() ? f.toURI().toURL() : null;
+		});
+
+		httpService = new HttpServiceEnabled(bundle, controller, serverModel, null, controller.getConfiguration());
+
+		WebContainerContext context = httpService.createDefaultHttpContext();
+		WebContainerContext secured = new SecuredHttpContext(bundle);
+
+		httpService.registerServlet(new TextServlet(), "plain", new String[] { "/plain" }, null, context);
+		httpService.registerServlet(new TextServlet(), "filtered", new String[] { "/filtered" }, null, context);
+		for (int i = 0; i < filters; i++) {
+			httpService.registerFilter(new PassThroughFilter(), "filter" + i, null, new String[] { "filtered" },
+					null, false, context);
+		}
+		httpService.registerServlet(new TextServlet(), "secure", new String[] { "/secure/*" }, null, secured);
+		httpService.registerResources("/static", "/static", context);
+		httpService.registerJsps(null, null, context);
+	}
+
+	public void stop() throws Exception {
+		if (httpService != null) {
+			httpService.stop();
+		}
+		if (controller != null) {
+			controller.stop();
+		}
+		if (baseDir != null) {
+			delete(baseDir);
+		}
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	private static void copy(String resource, File target) throws IOException {
+		target.getParentFile().mkdirs();
+		try (InputStream is = ServerSupport.class.getResourceAsStream(resource)) {
+			Files.copy(is, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Servlet returning {@link #BODY} with known {@code Content-Length}.
+	 */
+	public static class TextServlet extends HttpServlet {
+		private static final byte[] BYTES = BODY.getBytes();
+
+		@Override
+		protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+			resp.setContentType("text/plain");
+			resp.setContentLength(BYTES.length);
+			resp.getOutputStream().write(BYTES);
+		}
+	}
+
+	/**
+	 * Filter that only passes the request further - it measures the cost of the filter chain itself.
+	 */
+	public static class PassThroughFilter implements Filter {
+		@Override
+		public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+				throws IOException, ServletException {
+			chain.doFilter(request, response);
+		}
+	}
+
+	/**
+	 * Context that accepts only requests with {@link #SECURITY_HEADER} header.
+	 */
+	public static class SecuredHttpContext extends DefaultHttpContext {
+		public SecuredHttpContext(Bundle bundle) {
+			super(bundle, "secured");
+		}
+
+		@Override
+		public boolean handleSecurity(HttpServletRequest request, HttpServletResponse response) {
+			return request.getHeader(SECURITY_HEADER) != null;
+		}
+	}
+
+}
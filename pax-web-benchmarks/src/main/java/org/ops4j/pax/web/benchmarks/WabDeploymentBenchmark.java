@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.utils.extender.Extension;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.web.extender.war.internal.WarExtenderContext;
+import org.ops4j.pax.web.service.WebContainer;
+import org.ops4j.pax.web.service.internal.HttpServiceEnabled;
+import org.ops4j.pax.web.service.spi.config.Configuration;
+import org.ops4j.pax.web.service.spi.model.ServerModel;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * <p>End-to-end deployment of synthetic WABs through {@link WarExtenderContext} - from creation of the
+ * extension, through parsing of {@code web.xml}, discovery of fragments/SCIs/TLDs, to passing the web application
+ * to {@link WebContainer}. Each WAB has a generated {@code web.xml} with configurable number of servlets.</p>
+ *
+ * <p>{@link ModelOnlyServerController} is used, so runtime-specific (Jetty/Tomcat/Undertow) context startup
+ * is not included.</p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class WabDeploymentBenchmark {
+
+	@Param({ "1", "10", "50" })
+	public int wabs;
+
+	@Param({ "10", "100" })
+	public int servlets;
+
+	private File baseDir;
+	private URL webXml;
+
+	private Configuration configuration;
+	private ServiceReference<WebContainer> containerRef;
+	private ExecutorService pool;
+	private WarExtenderContext warExtender;
+
+	private ServerModel serverModel;
+	private final List<Bundle> bundles = new ArrayList<>();
+	private final List<Extension> extensions = new ArrayList<>();
+
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setup() throws Exception {
+		baseDir = Files.createTempDirectory("pax-web-wabs").toFile();
+		File webXmlFile = new File(baseDir, "WEB-INF/web.xml");
+		webXmlFile.getParentFile().mkdirs();
+		Files.write(webXmlFile.toPath(), generateWebXml(servlets).getBytes(StandardCharsets.UTF_8));
+		webXml = webXmlFile.toURI().toURL();
+
+		configuration = BenchmarkSupport.configuration(new Hashtable<>());
+
+		containerRef = mock(ServiceReference.class);
+		when(containerRef.getProperty(Constants.SERVICE_ID)).thenReturn(42L);
+
+		Bundle extenderBundle = BenchmarkSupport.mockBundle("org.ops4j.pax.web.pax-web-extender-war", null);
+		BundleContext extenderContext = extenderBundle.getBundleContext();
+		when(extenderContext.getServiceReferences(WebContainer.class.getName(), null))
+				.thenReturn(new ServiceReference[] { containerRef });
+
+		pool = Executors.newFixedThreadPool(1);
+		warExtender = new WarExtenderContext(extenderContext, pool, true);
+		warExtender.webContainerAdded(containerRef);
+	}
+
+	@TearDown(Level.Trial)
+	public void shutdown() {
+		warExtender.shutdown();
+		pool.shutdown();
+		delete(baseDir);
+	}
+
+	/**
+	 * New WAB bundles are created for each shot, because a {@link org.osgi.framework.Bundle} can be deployed
+	 * by the extender only once.
+	 */
+	@Setup(Level.Iteration)
+	public void createWabs() {
+		serverModel = new ServerModel(new BenchmarkSupport.SameThreadExecutor());
+		ModelOnlyServerController controller = new ModelOnlyServerController(configuration);
+		for (int i = 0; i < wabs; i++) {
+			Bundle wab = BenchmarkSupport.mockBundle("wab" + i, "/wab" + i);
+			when(wab.findEntries("WEB-INF", "web.xml", false))
+					.thenAnswer(inv -> Collections.enumeration(Collections.singletonList(webXml)));
+			HttpServiceEnabled container = new HttpServiceEnabled(wab, controller, serverModel, null, configuration);
+			when(wab.getBundleContext().getService(containerRef)).thenReturn(container);
+			bundles.add(wab);
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void undeployWabs() throws Exception {
+		for (Extension extension : extensions) {
+			extension.destroy();
+		}
+		extensions.clear();
+		bundles.clear();
+	}
+
+	@Benchmark
+	public List<Extension> deploy() throws Exception {
+		for (Bundle wab : bundles) {
+			Extension extension = warExtender.createExtension(wab);
+			extension.start();
+			extensions.add(extension);
+		}
+		return extensions;
+	}
+
+	private static String generateWebXml(int servlets) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		sb.append("<web-app xmlns=\"http://xmlns.jcp.org/xml/ns/javaee\" version=\"4.0\">\n");
+		for (int i = 0; i < servlets; i++) {
+			sb.append("\t<servlet>\n");
+			sb.append("\t\t<servlet-name>s").append(i).append("</servlet-name>\n");
+			sb.append("\t\t<servlet-class>").append(ServerSupport.TextServlet.class.getName()).append("</servlet-class>\n");
+			sb.append("\t</servlet>\n");
+			sb.append("\t<servlet-mapping>\n");
+			sb.append("\t\t<servlet-name>s").append(i).append("</servlet-name>\n");
+			sb.append("\t\t<url-pattern>/s").append(i).append("/*</url-pattern>\n");
+			sb.append("\t</servlet-mapping>\n");
+		}
+		sb.append("</web-app>\n");
+		return sb.toString();
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
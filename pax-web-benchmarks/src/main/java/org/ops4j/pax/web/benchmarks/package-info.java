@@ -0,0 +1,31 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * <p>JMH benchmarks of Pax Web running without OSGi framework.</p>
+ *
+ * <p>The module is built only with {@code benchmarks} profile:<pre>
+ * mvn -Pbenchmarks -pl pax-web-benchmarks -am install
+ * java -jar pax-web-benchmarks/target/benchmarks.jar -prof gc
+ * java -jar pax-web-benchmarks/target/benchmarks.jar DispatchBenchmark -p container=UNDERTOW -p filters=5
+ * </pre></p>
+ *
+ * <p>{@link org.ops4j.pax.web.benchmarks.DispatchBenchmark} measures request processing in real runtimes,
+ * while benchmarks of registration and deployment paths ({@link org.ops4j.pax.web.benchmarks.ServerModelBenchmark},
+ * {@link org.ops4j.pax.web.benchmarks.ResolveContextsBenchmark},
+ * {@link org.ops4j.pax.web.benchmarks.WabDeploymentBenchmark}) measure the model only. Results of the latter are
+ * kept as baselines in {@code pax-web-benchmarks/baselines} directory.</p>
+ */
+package org.ops4j.pax.web.benchmarks;
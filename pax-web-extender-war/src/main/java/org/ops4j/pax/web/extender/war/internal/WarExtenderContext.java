@@ -18,6 +18,8 @@ package org.ops4j.pax.web.extender.war.internal;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -76,6 +78,13 @@ public class WarExtenderContext implements WebContainerListener {
 	 */
 	private final ExecutorService pool;
 
+	/**
+	 * Bounded pool used to fan out the discovery (web fragments, SCIs) of single {@link BundleWebApplication}.
+	 * It's separate from {@link #pool}, because the lifecycle tasks from {@link #pool} wait for the results
+	 * of discovery tasks.
+	 */
+	private final ForkJoinPool discoveryPool;
+
 	/** Used to send events related to entire Web Applications being installed/uninstalled. */
 	private final WebApplicationEventDispatcher webApplicationEventDispatcher;
 
@@ -117,6 +126,25 @@ public class WarExtenderContext implements WebContainerListener {
 		this.bundleContext = bundleContext;
 		this.pool = pool;
 
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		String parallelismValue = bundleContext == null ? null
+				: bundleContext.getProperty(PaxWebConstants.BUNDLE_CONTEXT_PROPERTY_WAR_EXTENDER_DISCOVERY_THREADS);
+		if (parallelismValue != null && !"".equals(parallelismValue)) {
+			try {
+				parallelism = Integer.parseInt(parallelismValue);
+			} catch (NumberFormatException ignored) {
+			}
+		}
+		if (parallelism > 1) {
+			discoveryPool = new ForkJoinPool(parallelism, fjp -> {
+				ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(fjp);
+				t.setName("wab-discovery-" + t.getPoolIndex());
+				return t;
+			}, null, false);
+		} else {
+			discoveryPool = null;
+		}
+
 		// dispatcher of events related to WAB lifecycle (128.5 Events)
 		webApplicationEventDispatcher = new WebApplicationEventDispatcher(bundleContext);
 
@@ -158,6 +186,18 @@ public class WarExtenderContext implements WebContainerListener {
 //		}
 
 		webContainerManager.shutdown();
+
+		if (discoveryPool != null) {
+			discoveryPool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns a pool where the discovery tasks of single {@link BundleWebApplication} may be executed in parallel.
+	 * @return {@code null} if the discovery should be sequential
+	 */
+	public ForkJoinPool getDiscoveryPool() {
+		return discoveryPool;
 	}
 
 	/**
@@ -37,11 +37,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import javax.servlet.Servlet;
 import javax.servlet.ServletContainerInitializer;
 import javax.servlet.ServletContext;
@@ -159,7 +163,8 @@ public class BundleWebApplication {
 	private final ClassLoader classLoader;
 
 	// similar to org.apache.catalina.startup.ContextConfig.ok
-	private boolean fragmentParsingOK = true;
+	// may be changed from discovery threads, but only to "false"
+	private volatile boolean fragmentParsingOK = true;
 
 	public BundleWebApplication(Bundle bundle, WebContainerManager webContainerManager,
 			WarExtenderContext extenderContext, ExecutorService pool) {
@@ -915,7 +920,7 @@ public class BundleWebApplication {
 		try {
 			// TCCL set only at the time of parsing - not at the time of deployment of the model to a WebContainer
 			Thread.currentThread().setContextClassLoader(this.classLoader);
-			WebXmlParser parser = new WebXmlParser(false, false, true);
+			WebXmlParser parser = createParser();
 
 			try {
 				// Global web.xml (in Tomcat it's CATALINA_HOME/conf/web.xml and we package it into pax-web-spi)
@@ -1066,9 +1071,12 @@ public class BundleWebApplication {
 
 				// make list of reachable bundles unique, because there may be multiple web-fragment.xmls from single
 				// bundle and bundle fragments
-				for (Bundle reachableBundle : new LinkedHashSet<>(reachableBundles.values())) {
-					List<URL> urls = ClassPathUtil.getResources(Collections.singletonList(reachableBundle), sciService);
-					containerSCIURLs.put(reachableBundle, urls);
+				// the lookups are performed in parallel, but the results are collected in the order of bundles
+				List<Bundle> uniqueReachableBundles = new ArrayList<>(new LinkedHashSet<>(reachableBundles.values()));
+				List<List<URL>> sciURLs = discover(uniqueReachableBundles,
+						reachableBundle -> ClassPathUtil.getResources(Collections.singletonList(reachableBundle), sciService));
+				for (int i = 0; i < uniqueReachableBundles.size(); i++) {
+					containerSCIURLs.put(uniqueReachableBundles.get(i), sciURLs.get(i));
 				}
 
 				// a list of URIs of /META-INF/service/javax.servlet.ServletContainerInitializer WAB's Bundle-ClassPath
@@ -1136,12 +1144,16 @@ public class BundleWebApplication {
 				// a list of instantiated (using correct bundle) SCIs
 				final List<ServletContainerInitializer> detectedSCIs = new LinkedList<>();
 
-				// container SCIs - loaded from respective bundles
-				containerSCIURLs.forEach((b, urls) -> {
-					for (URL url : urls) {
-						loadSCI(url, b, detectedSCIs);
+				// container SCIs - loaded (in parallel) from respective bundles and collected in the order of bundles
+				List<Bundle> sciBundles = new ArrayList<>(containerSCIURLs.keySet());
+				List<List<ServletContainerInitializer>> containerSCIs = discover(sciBundles, b -> {
+					List<ServletContainerInitializer> scis = new ArrayList<>();
+					for (URL url : containerSCIURLs.get(b)) {
+						loadSCI(url, b, scis);
 					}
+					return scis;
 				});
+				containerSCIs.forEach(detectedSCIs::addAll);
 
 				// WAB SCIs - loaded from WAB itself
 				wabSCIURLs.forEach(url -> {
@@ -1223,19 +1235,27 @@ public class BundleWebApplication {
 
 		// just take JARs. We don't want web-fragment.xml from /WEB-INF/classes and we don't want such entry to be
 		// represented as WebXml fragment
-		URL[] jars = ClassPathUtil.getClassPathJars(bundle, false);
-		for (URL url : jars) {
+		// the JARs are processed in parallel, but the fragments are added in the order of Bundle-ClassPath
+		List<URL> jars = Arrays.asList(ClassPathUtil.getClassPathJars(bundle, false));
+		List<WebXml> jarFragments = discover(jars, url -> {
 			if (LOG.isTraceEnabled()) {
 				LOG.trace("Scanning WAB ClassPath entry {}", url);
 			}
 			try {
 				// never search for web-fragment.xml in non-jar Bundle-ClassPath entry - Tomcat doesn't
 				// scan WEB-INF/classes for web-fragment.xmls
-				WebXml fragment = process(parser, url, parseRequired);
-				addFragment(fragments, fragment, url.toString());
-				wabClassPath.put(fragment.getName(), url);
+				return process(createParser(), url, parseRequired);
 			} catch (Exception e) {
 				LOG.warn("Problem scanning {}: {}", url, e.getMessage(), e);
+				return null;
+			}
+		});
+		for (int i = 0; i < jars.size(); i++) {
+			URL url = jars.get(i);
+			WebXml fragment = jarFragments.get(i);
+			if (fragment != null) {
+				addFragment(fragments, fragment, url.toString());
+				wabClassPath.put(fragment.getName(), url);
 			}
 		}
 
@@ -1267,8 +1287,10 @@ public class BundleWebApplication {
 
 		// Scan reachable bundles (ClassPath hierarchy in JavaEE) - without the WAB itself
 
+		// first, (cheaply - the class spaces are cached) establish the order of the bundles to scan, so the
+		// fragments can be merged deterministically after (expensive) parallel processing
 		Set<Bundle> processedBundles = new HashSet<>();
-		processedBundles.add(bundle);
+		Set<Bundle> bundlesToScan = new LinkedHashSet<>();
 		Deque<Bundle> bundles = new LinkedList<>();
 		// added as already processed, but we need it to get reachable bundles
 		bundles.add(bundle);
@@ -1285,6 +1307,9 @@ public class BundleWebApplication {
 			if (IGNORED_BUNDLES.contains(scannedBundle.getSymbolicName()) || scannedBundle.getBundleId() == 0L) {
 				continue;
 			}
+			if (!processedBundles.add(scannedBundle)) {
+				continue;
+			}
 
 			Set<Bundle> reachable = new HashSet<>();
 			ClassPathUtil.getBundlesInClassSpace(scannedBundle, reachable);
@@ -1293,20 +1318,35 @@ public class BundleWebApplication {
 					bundles.add(rb);
 				}
 			}
-			if (processedBundles.contains(scannedBundle)) {
-				continue;
+			if (scannedBundle != bundle) {
+				bundlesToScan.add(scannedBundle);
 			}
+		}
+
+		// second, process the bundles in parallel and merge the results in the order established above
+		List<Bundle> orderedBundles = new ArrayList<>(bundlesToScan);
+		List<List<WebXml>> bundleFragments = discover(orderedBundles, scannedBundle -> {
 			if (LOG.isTraceEnabled()) {
 				LOG.trace("Scanning Bundle {}", scannedBundle);
 			}
-
 			try {
-				List<WebXml> fragmentList = process(parser, scannedBundle, parseRequired);
+				return process(createParser(), scannedBundle, parseRequired);
+			} catch (Exception e) {
+				LOG.warn("Problem scanning {}: {}", scannedBundle, e.getMessage(), e);
+				return null;
+			}
+		});
+		for (int i = 0; i < orderedBundles.size(); i++) {
+			Bundle scannedBundle = orderedBundles.get(i);
+			List<WebXml> fragmentList = bundleFragments.get(i);
+			if (fragmentList == null) {
+				continue;
+			}
+			try {
 				for (WebXml fragment : fragmentList) {
 					addFragment(fragments, fragment, null);
 					reachableBundles.put(fragment.getName(), scannedBundle);
 				}
-				processedBundles.add(scannedBundle);
 			} catch (Exception e) {
 				LOG.warn("Problem scanning {}: {}", scannedBundle, e.getMessage(), e);
 			}
@@ -1457,6 +1497,63 @@ public class BundleWebApplication {
 		return new ArrayList<>(fragments.keySet());
 	}
 
+	/**
+	 * {@link WebXmlParser} uses non thread-safe {@code Digester}, so each discovery task needs its own parser.
+	 * @return
+	 */
+	private WebXmlParser createParser() {
+		return new WebXmlParser(false, false, true);
+	}
+
+	/**
+	 * <p>Applies a discovery task to each of the {@code items} using {@link WarExtenderContext#getDiscoveryPool()}
+	 * and returns the results in the order of the {@code items} - whatever the order of completion is. This
+	 * ensures that the ordering semantics of fragments and SCIs don't depend on the parallelism.</p>
+	 *
+	 * <p>The tasks are run with TCCL set to the classloader of this WAB (as in sequential parsing) and should
+	 * handle their own exceptions.</p>
+	 *
+	 * @param items
+	 * @param task
+	 * @param <T>
+	 * @param <R>
+	 * @return
+	 */
+	private <T, R> List<R> discover(List<T> items, Function<T, R> task) {
+		List<R> results = new ArrayList<>(items.size());
+		ForkJoinPool discoveryPool = extenderContext == null ? null : extenderContext.getDiscoveryPool();
+		if (discoveryPool == null || discoveryPool.isShutdown() || items.size() < 2) {
+			for (T item : items) {
+				results.add(task.apply(item));
+			}
+			return results;
+		}
+
+		List<ForkJoinTask<R>> tasks = new ArrayList<>(items.size());
+		for (T item : items) {
+			tasks.add(discoveryPool.submit(() -> {
+				ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+				try {
+					Thread.currentThread().setContextClassLoader(classLoader);
+					return task.apply(item);
+				} finally {
+					Thread.currentThread().setContextClassLoader(tccl);
+				}
+			}));
+		}
+		for (ForkJoinTask<R> t : tasks) {
+			try {
+				results.add(t.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Discovery interrupted for " + bundle, e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Discovery failed for " + bundle + ": " + e.getCause().getMessage(), e.getCause());
+			}
+		}
+		return results;
+	}
+
 	/**
 	 * See {@code org.apache.tomcat.util.descriptor.web.FragmentJarScannerCallback.addFragment()}
 	 * @param fragments
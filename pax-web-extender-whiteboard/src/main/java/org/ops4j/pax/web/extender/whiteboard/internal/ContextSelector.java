@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.whiteboard.internal;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+import org.osgi.framework.Filter;
+import org.osgi.service.http.whiteboard.HttpWhiteboardConstants;
+
+/**
+ * <p>Parsed form of {@code osgi.http.whiteboard.context.select} property. Most of the selectors have one
+ * of these shapes:<ul>
+ *     <li>{@code (osgi.http.whiteboard.context.name=X)}</li>
+ *     <li>{@code (|(osgi.http.whiteboard.context.name=X)(osgi.http.whiteboard.context.name=Y)...)}</li>
+ *     <li>{@code (osgi.http.whiteboard.context.name=*)}</li>
+ * </ul>
+ * and such selectors can be matched against an index of context names instead of evaluating the LDAP filter
+ * against every known {@link OsgiContextModel}. Other selectors are evaluated using
+ * {@link Filter#matchCase(java.util.Dictionary)}.</p>
+ */
+final class ContextSelector {
+
+	private static final String NAME = HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME;
+
+	/** Single name equality. Values with special LDAP characters are not recognized. */
+	private static final Pattern NAME_EQUALS = Pattern.compile("\\(" + Pattern.quote(NAME) + "=([^()*\\\\]+)\\)");
+	private static final Pattern NAMES_OR = Pattern.compile("\\(\\|((?:" + NAME_EQUALS.pattern() + ")+)\\)");
+	private static final String ANY_NAME = "(" + NAME + "=*)";
+
+	/** Selector used when web element doesn't specify any */
+	static final ContextSelector DEFAULT = new ContextSelector(null,
+			Collections.singleton(HttpWhiteboardConstants.HTTP_WHITEBOARD_DEFAULT_CONTEXT_NAME), false);
+
+	private final Filter filter;
+
+	/** Names of contexts for name-based selector or {@code null} for other selectors */
+	private final Set<String> names;
+
+	/** Whether the selector matches any context with a name */
+	private final boolean anyName;
+
+	private ContextSelector(Filter filter, Set<String> names, boolean anyName) {
+		this.filter = filter;
+		this.names = names;
+		this.anyName = anyName;
+	}
+
+	/**
+	 * Recognizes the shape of the selector.
+	 * @param filter
+	 * @return
+	 */
+	static ContextSelector of(Filter filter) {
+		if (filter == null) {
+			return DEFAULT;
+		}
+		String selector = filter.toString().trim();
+		if (ANY_NAME.equals(selector)) {
+			return new ContextSelector(filter, null, true);
+		}
+		Matcher m = NAME_EQUALS.matcher(selector);
+		if (m.matches()) {
+			return new ContextSelector(filter, Collections.singleton(m.group(1)), false);
+		}
+		if (NAMES_OR.matcher(selector).matches()) {
+			Set<String> names = new LinkedHashSet<>();
+			m = NAME_EQUALS.matcher(selector);
+			while (m.find()) {
+				names.add(m.group(1));
+			}
+			return new ContextSelector(filter, names, false);
+		}
+		return new ContextSelector(filter, null, false);
+	}
+
+	/**
+	 * Returns names of the contexts for name-based selector.
+	 * @return {@code null} if selector is not name-based
+	 */
+	Set<String> getNames() {
+		return names;
+	}
+
+	/**
+	 * Whether the selector is {@code (osgi.http.whiteboard.context.name=*)}
+	 * @return
+	 */
+	boolean isAnyName() {
+		return anyName;
+	}
+
+	/**
+	 * Checks whether the selector matches given context. For recognized selectors it's a single property lookup.
+	 * @param model
+	 * @return
+	 */
+	boolean matches(OsgiContextModel model) {
+		Map<String, Object> properties = model.getContextRegistrationProperties();
+		if (names == null && !anyName) {
+			return filter.matchCase(model.getContextRegistrationProperties());
+		}
+		Object name = properties.get(NAME);
+		if (name == null) {
+			return false;
+		}
+		if (anyName) {
+			return true;
+		}
+		if (name instanceof String) {
+			return names.contains(name);
+		}
+		if (name instanceof String[]) {
+			for (String n : (String[]) name) {
+				if (names.contains(n)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (name instanceof Collection) {
+			for (Object n : (Collection<?>) name) {
+				if (names.contains(n)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		// let the filter decide how to compare other types
+		return filter != null && filter.matchCase(model.getContextRegistrationProperties());
+	}
+
+	@Override
+	public String toString() {
+		return filter == null ? "(default)" : filter.toString();
+	}
+
+}
@@ -16,6 +16,7 @@
  */
 package org.ops4j.pax.web.extender.whiteboard.internal;
 
+import org.ops4j.pax.web.service.spi.model.RuntimeSnapshot;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.http.runtime.HttpServiceRuntime;
 import org.osgi.service.http.runtime.dto.RequestInfoDTO;
@@ -25,6 +26,9 @@ public class ExtendedHttpServiceRuntime implements HttpServiceRuntime /*, Replac
 
 	private final BundleContext bundleContext;
 
+	/** Snapshot maintained by current {@link org.ops4j.pax.web.service.WebContainer}, if available */
+	private volatile RuntimeSnapshot runtimeSnapshot;
+
 	ExtendedHttpServiceRuntime(BundleContext bundleContext) {
 		this.bundleContext = bundleContext;
 //        this.httpServiceLock = new ReentrantReadWriteLock();
@@ -33,7 +37,26 @@ public class ExtendedHttpServiceRuntime implements HttpServiceRuntime /*, Replac
 
 	@Override
 	public RuntimeDTO getRuntimeDTO() {
-		return null;
+		RuntimeSnapshot snapshot = runtimeSnapshot;
+		return snapshot == null ? RuntimeSnapshot.emptyRuntimeDTO() : snapshot.getRuntimeDTO();
+	}
+
+	/**
+	 * Returns the number of changes reflected in {@link #getRuntimeDTO()}, so callers may skip processing of
+	 * unchanged {@link RuntimeDTO}.
+	 * @return
+	 */
+	public long getRuntimeDTOChangeCount() {
+		RuntimeSnapshot snapshot = runtimeSnapshot;
+		return snapshot == null ? 0L : snapshot.getChangeCount();
+	}
+
+	/**
+	 * Called when {@link org.ops4j.pax.web.service.WebContainer} becomes available or goes away.
+	 * @param runtimeSnapshot
+	 */
+	void setRuntimeSnapshot(RuntimeSnapshot runtimeSnapshot) {
+		this.runtimeSnapshot = runtimeSnapshot;
 	}
 
 	@Override
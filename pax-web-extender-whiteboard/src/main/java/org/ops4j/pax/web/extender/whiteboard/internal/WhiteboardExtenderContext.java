@@ -16,10 +16,14 @@
 package org.ops4j.pax.web.extender.whiteboard.internal;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
@@ -71,6 +75,9 @@ public class WhiteboardExtenderContext implements WebContainerListener {
 
 	private static final Logger LOG = LoggerFactory.getLogger(WhiteboardExtenderContext.class);
 
+	/** Maximum number of parsed selectors kept in {@link #selectors} */
+	private static final int MAX_SELECTORS = 256;
+
 	private final BundleContext bundleContext;
 
 	/** This is were the lifecycle of {@link WebContainer} is managed. */
@@ -114,6 +121,28 @@ public class WhiteboardExtenderContext implements WebContainerListener {
 	 */
 	private final List<OsgiContextModel> osgiContextsList = new ArrayList<>();
 
+	/**
+	 * Index of {@link OsgiContextModel contexts} by the value(s) of
+	 * {@link HttpWhiteboardConstants#HTTP_WHITEBOARD_CONTEXT_NAME} registration property, so name-based
+	 * selectors (see {@link ContextSelector}) don't have to be evaluated against all the contexts.
+	 */
+	private final Map<String, List<OsgiContextModel>> osgiContextsByName = new HashMap<>();
+
+	/** Contexts with name property of unexpected type, which are always checked by name-based selectors. */
+	private final List<OsgiContextModel> unindexedOsgiContexts = new ArrayList<>();
+
+	/**
+	 * Parsed selectors of web elements (by filter string), so they're not parsed again during re-registration.
+	 * {@link ContextSelector} references its {@link Filter}, so the cache is a bounded LRU map instead of a map
+	 * with weak keys (which would never be cleared).
+	 */
+	private final Map<String, ContextSelector> selectors = new LinkedHashMap<String, ContextSelector>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ContextSelector> eldest) {
+			return size() > MAX_SELECTORS;
+		}
+	};
+
 	/** Implementation of {@link org.osgi.service.http.runtime.HttpServiceRuntime} from Whiteboard Service spec. */
 	private final ExtendedHttpServiceRuntime httpServiceRuntime;
 
@@ -129,6 +158,7 @@ public class WhiteboardExtenderContext implements WebContainerListener {
 		OsgiContextModel model = OsgiContextModel.DEFAULT_CONTEXT_MODEL;
 		osgiContexts.computeIfAbsent(model.getName(), n -> new TreeSet<>()).add(model);
 		osgiContextsList.add(model);
+		indexContext(model);
 
 		webContainerManager = synchronous
 				? new WebContainerManager(bundleContext, this)
@@ -220,11 +250,13 @@ public class WhiteboardExtenderContext implements WebContainerListener {
 			// so we can even target two different "default" ServletContextHelpers and actual physical ServletContextModel
 			// will be determined at registration time
 			List<OsgiContextModel> targetContexts = new ArrayList<>();
+			ContextSelector contextSelector = selector(selector);
 
-			// check _contexts_ managed at pax-web-extender-whiteboard level
-			for (OsgiContextModel model : osgiContextsList) {
+			// check _contexts_ managed at pax-web-extender-whiteboard level. Typical name-based selectors
+			// are checked only against the contexts with matching names
+			for (OsgiContextModel model : candidateContexts(contextSelector)) {
 				// one line "140.3 Common Whiteboard Properties" implementation of LDAP filter matching
-				if (selector.matchCase(model.getContextRegistrationProperties())) {
+				if (contextSelector.matches(model)) {
 					targetContexts.add(model);
 				}
 			}
@@ -238,7 +270,7 @@ public class WhiteboardExtenderContext implements WebContainerListener {
 			// to work, we're explicitly skipping "shared" contexts - user will still be able to use such shared
 			// HttpService contexts (specific to Pax Web), but with more effort.
 			for (OsgiContextModel model : getBundleApplication(bundle).getWebContainerOsgiContextModels()) {
-				if (!model.isShared() && selector.matchCase(model.getContextRegistrationProperties())) {
+				if (!model.isShared() && contextSelector.matches(model)) {
 					targetContexts.add(model);
 				}
 			}
@@ -266,6 +298,63 @@ public class WhiteboardExtenderContext implements WebContainerListener {
 		}
 	}
 
+	/**
+	 * Returns (possibly cached) {@link ContextSelector} for given filter. Should be called within the lock.
+	 * @param filter
+	 * @return
+	 */
+	private ContextSelector selector(Filter filter) {
+		if (filter == null) {
+			return ContextSelector.DEFAULT;
+		}
+		return selectors.computeIfAbsent(filter.toString(), f -> ContextSelector.of(filter));
+	}
+
+	/**
+	 * Returns the contexts that may match given selector - all of them for generic selectors and only the
+	 * contexts with matching names for name-based selectors.
+	 * @param contextSelector
+	 * @return
+	 */
+	private Collection<OsgiContextModel> candidateContexts(ContextSelector contextSelector) {
+		Set<String> names = contextSelector.getNames();
+		if (names == null) {
+			return osgiContextsList;
+		}
+		Set<OsgiContextModel> candidates = new LinkedHashSet<>();
+		for (String name : names) {
+			List<OsgiContextModel> models = osgiContextsByName.get(name);
+			if (models != null) {
+				candidates.addAll(models);
+			}
+		}
+		candidates.addAll(unindexedOsgiContexts);
+		return candidates;
+	}
+
+	private void indexContext(OsgiContextModel model) {
+		Object name = model.getContextRegistrationProperties().get(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME);
+		if (name == null) {
+			// can't be matched by name-based selectors at all
+			return;
+		}
+		if (name instanceof String) {
+			osgiContextsByName.computeIfAbsent((String) name, n -> new ArrayList<>()).add(model);
+		} else if (name instanceof String[]) {
+			for (String n : (String[]) name) {
+				osgiContextsByName.computeIfAbsent(n, k -> new ArrayList<>()).add(model);
+			}
+		} else {
+			unindexedOsgiContexts.add(model);
+		}
+	}
+
+	private void unindexContext(OsgiContextModel model) {
+		// registration properties may have changed since the model was indexed
+		osgiContextsByName.values().removeIf(models -> models.remove(model) && models.isEmpty());
+		unindexedOsgiContexts.remove(model);
+	}
+
 	// --- Handling registration/unregistration of target WebContainer, where we want to register Whiteboard services
 
 	public void webContainerAdded(ServiceReference<WebContainer> ref) {
@@ -273,6 +362,7 @@ public class WhiteboardExtenderContext implements WebContainerListener {
 		if (view != null) {
 			// install global, default OSGi Context Model using bundle context pf pax-web-extender-whiteboard bundle
 			view.addWhiteboardOsgiContextModel(OsgiContextModel.DEFAULT_CONTEXT_MODEL);
+			httpServiceRuntime.setRuntimeSnapshot(view.getRuntimeSnapshot());
 		}
 
 		// install using new reference which will be dereferenced using a bundle for particular application
@@ -285,6 +375,7 @@ public class WhiteboardExtenderContext implements WebContainerListener {
 
 		WhiteboardWebContainerView view = webContainerManager.whiteboardView(bundleContext, ref);
 		if (view != null) {
+			httpServiceRuntime.setRuntimeSnapshot(null);
 			// uninstall global, default OSGi Context Model
 			view.removeWhiteboardOsgiContextModel(OsgiContextModel.DEFAULT_CONTEXT_MODEL);
 		}
@@ -335,10 +426,11 @@ public class WhiteboardExtenderContext implements WebContainerListener {
 		try {
 			osgiContexts.computeIfAbsent(model.getName(), cp -> new TreeSet<>()).add(model);
 			osgiContextsList.add(model);
+			indexContext(model);
 
 			getBundleApplication(bundle).addWebContext(model);
 
-			reRegisterWebElements();
+			reRegisterWebElements(model);
 		} finally {
 			lock.unlock();
 		}
@@ -349,8 +441,9 @@ public class WhiteboardExtenderContext implements WebContainerListener {
 		try {
 			osgiContexts.get(model.getName()).remove(model);
 			osgiContextsList.remove(model);
+			unindexContext(model);
 
-			reRegisterWebElements();
+			reRegisterWebElements(model);
 
 			getBundleApplication(bundle).removeWebContext(model);
 		} finally {
@@ -370,8 +463,13 @@ public class WhiteboardExtenderContext implements WebContainerListener {
 	 *     <li>Existing {@link javax.servlet.Servlet} should be re-registered from "/" to "/x" path without bothering
 	 *         user who's registered the {@link javax.servlet.Servlet}.</li>
 	 * </ul></p>
+	 *
+	 * <p>Only the elements which are currently associated with the changed context or which have a selector
+	 * matching the changed context are checked.</p>
+	 *
+	 * @param changed added or removed {@link OsgiContextModel}
 	 */
-	private void reRegisterWebElements() {
+	private void reRegisterWebElements(OsgiContextModel changed) {
 		// remember - we're operating within ExtenderContext.lock
 
 		List<BundleWhiteboardApplication> apps;
@@ -385,8 +483,15 @@ public class WhiteboardExtenderContext implements WebContainerListener {
 			WhiteboardWebContainerView view = app.getWhiteboardContainer();
 			for (ElementModel<?, ?> webElement : app.getWebElements()) {
 				Filter filter = webElement.getContextFilter();
-				List<OsgiContextModel> newMatching = resolveContexts(webElement.getRegisteringBundle(), filter);
 				List<OsgiContextModel> oldMatching = webElement.getContextModels();
+				boolean affected = filter == null
+						? HttpWhiteboardConstants.HTTP_WHITEBOARD_DEFAULT_CONTEXT_NAME.equals(changed.getName())
+						: selector(filter).matches(changed);
+				if (!affected && !oldMatching.contains(changed)) {
+					// neither current nor new associations of this element may change
+					continue;
+				}
+				List<OsgiContextModel> newMatching = resolveContexts(webElement.getRegisteringBundle(), filter);
 
 				// 0.
 				if (newMatching.size() == oldMatching.size() && newMatching.containsAll(oldMatching)) {
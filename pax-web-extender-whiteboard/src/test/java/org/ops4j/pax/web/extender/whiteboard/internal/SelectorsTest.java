@@ -15,12 +15,18 @@
  */
 package org.ops4j.pax.web.extender.whiteboard.internal;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Hashtable;
 
 import org.junit.Test;
+import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
 import org.osgi.framework.Filter;
 import org.osgi.framework.FrameworkUtil;
 
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -44,4 +50,45 @@ public class SelectorsTest {
 		assertFalse(filter.matchCase(map));
 	}
 
+	@Test
+	public void nameBasedSelectors() throws Exception {
+		ContextSelector single = ContextSelector.of(FrameworkUtil.createFilter("(osgi.http.whiteboard.context.name=c1)"));
+		assertThat(single.getNames(), equalTo(new HashSet<>(Arrays.asList("c1"))));
+
+		ContextSelector or = ContextSelector.of(FrameworkUtil.createFilter(
+				"(|(osgi.http.whiteboard.context.name=c1)(osgi.http.whiteboard.context.name=c2))"));
+		assertThat(or.getNames(), equalTo(new HashSet<>(Arrays.asList("c1", "c2"))));
+
+		ContextSelector any = ContextSelector.of(FrameworkUtil.createFilter("(osgi.http.whiteboard.context.name=*)"));
+		assertTrue(any.isAnyName());
+		assertThat(any.getNames(), nullValue());
+
+		ContextSelector generic = ContextSelector.of(FrameworkUtil.createFilter(
+				"(&(osgi.http.whiteboard.context.name=c1)(x=y))"));
+		assertFalse(generic.isAnyName());
+		assertThat(generic.getNames(), nullValue());
+
+		ContextSelector prefix = ContextSelector.of(FrameworkUtil.createFilter("(osgi.http.whiteboard.context.name=c*)"));
+		assertThat(prefix.getNames(), nullValue());
+
+		OsgiContextModel c1 = context("c1");
+		OsgiContextModel c3 = context("c3");
+		assertTrue(single.matches(c1));
+		assertFalse(single.matches(c3));
+		assertTrue(or.matches(c1));
+		assertFalse(or.matches(c3));
+		assertTrue(any.matches(c3));
+		assertFalse(generic.matches(c1));
+		c1.getContextRegistrationProperties().put("x", "y");
+		assertTrue(generic.matches(c1));
+		assertTrue(prefix.matches(c3));
+	}
+
+	private OsgiContextModel context(String name) {
+		OsgiContextModel model = new OsgiContextModel(null, 0, 0L, true);
+		model.setName(name);
+		model.getContextRegistrationProperties().put("osgi.http.whiteboard.context.name", name);
+		return model;
+	}
+
 }
@@ -192,6 +192,7 @@ public class MultiContainerTestSupport {
 			if (location != null) {
 				props.put(PaxWebConfig.PID_CFG_SESSION_STORE_DIRECTORY, location);
 			}
+			additionalConfiguration(props);
 		}, port, runtime, getClass().getClassLoader());
 
 		if (enableJSP()) {
@@ -283,6 +284,13 @@ public class MultiContainerTestSupport {
 		return null;
 	}
 
+	/**
+	 * Allows tests to set more PID properties before the {@link ServerController} is created
+	 * @param properties
+	 */
+	protected void additionalConfiguration(Hashtable<Object, Object> properties) {
+	}
+
 	protected boolean enableJSP() {
 		return false;
 	}
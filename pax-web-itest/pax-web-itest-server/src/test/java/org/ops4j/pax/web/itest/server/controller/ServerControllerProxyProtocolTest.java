@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.itest.server.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Hashtable;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.ops4j.pax.web.itest.server.MultiContainerTestSupport;
+import org.ops4j.pax.web.service.PaxWebConfig;
+import org.ops4j.pax.web.service.WebContainer;
+import org.osgi.framework.Bundle;
+
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Checks that the address from PROXY protocol header is returned from {@code ServletRequest.getRemoteAddr()}.
+ */
+@RunWith(Parameterized.class)
+public class ServerControllerProxyProtocolTest extends MultiContainerTestSupport {
+
+	private static final byte[] V2_SIGNATURE = new byte[] {
+			0x0D, 0x0A, 0x0D, 0x0A, 0x00, 0x0D, 0x0A, 0x51, 0x55, 0x49, 0x54, 0x0A
+	};
+
+	@Override
+	protected void additionalConfiguration(Hashtable<Object, Object> properties) {
+		properties.put(PaxWebConfig.PID_CFG_PROXY_PROTOCOL, "http");
+	}
+
+	@Test
+	public void remoteAddressFromV1Header() throws Exception {
+		Bundle sample1 = mockBundle("sample1");
+		WebContainer wc = container(sample1);
+		wc.registerServlet("/addr", new AddressServlet(), null, null);
+
+		// header and the request are sent together, so the server reads both at once
+		String response = proxiedGET("PROXY TCP4 192.168.0.1 10.0.0.1 56324 8080\r\n"
+				.getBytes(StandardCharsets.US_ASCII), "/addr");
+		assertThat(response, startsWith("HTTP/1.1 200"));
+		assertThat(response, endsWith("192.168.0.1:56324"));
+
+		stopContainer(sample1);
+	}
+
+	@Test
+	public void remoteAddressFromV2Header() throws Exception {
+		Bundle sample1 = mockBundle("sample1");
+		WebContainer wc = container(sample1);
+		wc.registerServlet("/addr", new AddressServlet(), null, null);
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		header.write(V2_SIGNATURE);
+		// PROXY command, TCP over IPv4, 12 bytes of addresses
+		header.write(new byte[] { 0x21, 0x11, 0x00, 0x0C });
+		header.write(new byte[] { (byte) 192, (byte) 168, 0, 2, 10, 0, 0, 1 });
+		header.write(new byte[] { (byte) 0xDC, 0x05, 0x1F, (byte) 0x90 });
+
+		String response = proxiedGET(header.toByteArray(), "/addr");
+		assertThat(response, startsWith("HTTP/1.1 200"));
+		assertThat(response, endsWith("192.168.0.2:56325"));
+
+		stopContainer(sample1);
+	}
+
+	private String proxiedGET(byte[] header, String request) throws IOException {
+		try (Socket s = new Socket()) {
+			s.connect(new InetSocketAddress("127.0.0.1", port));
+
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			data.write(header);
+			data.write(("GET " + request + " HTTP/1.1\r\n"
+					+ "Host: 127.0.0.1:" + port + "\r\n"
+					+ "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+			s.getOutputStream().write(data.toByteArray());
+			s.getOutputStream().flush();
+
+			InputStream in = s.getInputStream();
+			byte[] buf = new byte[64];
+			int read;
+			StringWriter sw = new StringWriter();
+			while ((read = in.read(buf)) > 0) {
+				sw.append(new String(buf, 0, read, StandardCharsets.ISO_8859_1));
+			}
+			return sw.toString();
+		}
+	}
+
+	private static class AddressServlet extends HttpServlet {
+		@Override
+		protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+			resp.getWriter().print(req.getRemoteAddr() + ":" + req.getRemotePort());
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.itest.server.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Hashtable;
+
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.ops4j.pax.web.itest.server.MultiContainerTestSupport;
+import org.ops4j.pax.web.itest.server.Runtime;
+import org.ops4j.pax.web.itest.server.support.Utils;
+import org.ops4j.pax.web.service.PaxWebConfig;
+import org.ops4j.pax.web.service.WebContainer;
+import org.osgi.framework.Bundle;
+
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.ops4j.pax.web.itest.server.support.Utils.httpGET;
+
+/**
+ * Unix domain socket connector is supported only by Jetty runtime (using {@code jetty-unixsocket}).
+ */
+@RunWith(Parameterized.class)
+public class ServerControllerUnixDomainSocketTest extends MultiContainerTestSupport {
+
+	private File socket;
+
+	@Parameterized.Parameters(name = "{0}")
+	public static Collection<Object[]> data() {
+		return Collections.singletonList(new Object[] { Runtime.JETTY });
+	}
+
+	@Override
+	protected void additionalConfiguration(Hashtable<Object, Object> properties) {
+		socket = new File("target/paxweb-" + port + ".sock").getAbsoluteFile();
+		socket.delete();
+		properties.put(PaxWebConfig.PID_CFG_UNIX_DOMAIN_SOCKET, socket.getPath());
+	}
+
+	@Test
+	public void servletIsReachableThroughUnixDomainSocket() throws Exception {
+		assertTrue(socket.exists());
+
+		Bundle sample1 = mockBundle("sample1");
+		WebContainer wc = container(sample1);
+		wc.registerServlet("/visit", new Utils.MyIdServlet("1"), null, null);
+
+		assertThat(httpGET(port, "/visit"), endsWith("S(1)"));
+		String response = unixGET(socket, "/visit");
+		assertThat(response, startsWith("HTTP/1.1 200"));
+		assertThat(response, endsWith("S(1)"));
+
+		stopContainer(sample1);
+	}
+
+	private static String unixGET(File socket, String request) throws IOException {
+		try (UnixSocketChannel channel = UnixSocketChannel.open(new UnixSocketAddress(socket))) {
+			channel.write(ByteBuffer.wrap(("GET " + request + " HTTP/1.1\r\n"
+					+ "Host: localhost\r\n"
+					+ "Connection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1)));
+
+			ByteBuffer buf = ByteBuffer.allocate(64);
+			StringWriter sw = new StringWriter();
+			while (channel.read(buf) > 0) {
+				buf.flip();
+				sw.append(new String(buf.array(), 0, buf.limit(), StandardCharsets.ISO_8859_1));
+				buf.clear();
+			}
+			return sw.toString();
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.itest.server.httpservice;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.ops4j.pax.web.itest.server.MultiContainerTestSupport;
+import org.ops4j.pax.web.itest.server.support.Utils;
+import org.ops4j.pax.web.service.WebContainer;
+import org.ops4j.pax.web.service.internal.HttpServiceEnabled;
+import org.ops4j.pax.web.service.internal.StoppableHttpService;
+import org.osgi.framework.Bundle;
+
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.ops4j.pax.web.itest.server.support.Utils.httpGET;
+
+@RunWith(Parameterized.class)
+public class WebContainerSecurityConstraintsTest extends MultiContainerTestSupport {
+
+	@Test
+	public void constrainedUrlIsRejected() throws Exception {
+		Bundle sample1 = mockBundle("sample1");
+
+		WebContainer wc = new HttpServiceEnabled(sample1, controller, serverModel, null, config);
+
+		wc.registerConstraintMapping("secure", null, "/secure/*", null, true,
+				Collections.singletonList("admin"), null);
+
+		wc.registerServlet(new Utils.MyIdServlet("1"), new String[] { "/secure/*", "/open/*" }, null, null);
+
+		// default HttpContext doesn't authenticate the user, so there's no role to check
+		assertThat(httpGET(port, "/secure/x"), startsWith("HTTP/1.1 403"));
+		assertThat(httpGET(port, "/open/x"), endsWith("S(1)"));
+
+		wc.unregisterConstraintMapping(null);
+
+		assertThat(httpGET(port, "/secure/x"), endsWith("S(1)"));
+
+		((StoppableHttpService) wc).stop();
+
+		ServerModelInternals serverModelInternals = serverModelInternals(serverModel);
+		ServiceModelInternals serviceModelInternals = serviceModelInternals(wc);
+
+		assertTrue(serverModelInternals.isClean(sample1));
+		assertTrue(serviceModelInternals.isEmpty());
+	}
+
+}
@@ -18,6 +18,9 @@ package org.ops4j.pax.web.service.jetty.internal;
 
 import java.lang.management.ManagementFactory;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLParameters;
@@ -26,18 +29,22 @@ import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
 import org.eclipse.jetty.http.HttpScheme;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
 import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
 import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
 import org.eclipse.jetty.jmx.MBeanContainer;
+import org.eclipse.jetty.server.AbstractConnector;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.ForwardedRequestCustomizer;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.MultiPartFormDataCompliance;
+import org.eclipse.jetty.server.ProxyConnectionFactory;
 import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.unixsocket.UnixSocketConnector;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.ops4j.pax.web.service.spi.config.Configuration;
@@ -65,6 +72,7 @@ class JettyFactory {
 
 	private boolean alpnAvailable;
 	private boolean http2Available;
+	private boolean unixSocketAvailable;
 
 	JettyFactory(Bundle paxWebJettyBundle, ClassLoader classLoader) {
 		this.paxWebJettyBundle = paxWebJettyBundle;
@@ -93,6 +101,13 @@ class JettyFactory {
 		} catch (ClassNotFoundException e) {
 			http2Available = false;
 		}
+
+		try {
+			classLoader.loadClass("org.eclipse.jetty.unixsocket.UnixSocketConnector");
+			unixSocketAvailable = true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			unixSocketAvailable = false;
+		}
 	}
 
 	/**
@@ -228,16 +243,66 @@ class JettyFactory {
 		}
 
 		defaultConnector.addConnectionFactory(new HttpConnectionFactory(httpConfig));
-		if (http2Available) {
+		if (http2Available && sc.isHttp2CleartextEnabled()) {
 			LOG.info("HTTP/2 ClearText support available, adding \"h2c\" protocol support to default connector");
-			defaultConnector.addConnectionFactory(new HTTP2CServerConnectionFactory(httpConfig));
+			defaultConnector.addConnectionFactory(configureHttp2(new HTTP2CServerConnectionFactory(httpConfig), sc));
 		}
+		configureProxyProtocol(defaultConnector, sc, "http");
 
 		LOG.info("Default Jetty connector created: {}", defaultConnector);
 
 		return defaultConnector;
 	}
 
+	/**
+	 * Create non secure {@link Connector} bound to Unix domain socket. It uses the same name and connection
+	 * factories as default connector, so it serves the same contexts.
+	 *
+	 * @param server
+	 * @param httpConfigs
+	 * @param path
+	 * @param configuration
+	 * @return the connector or {@code null} if {@code jetty-unixsocket} is not available
+	 */
+	public Connector createUnixSocketConnector(Server server, Map<String, HttpConfiguration> httpConfigs,
+			String path, Configuration configuration) {
+		if (!unixSocketAvailable) {
+			LOG.warn("Can't create Unix domain socket connector for {}: org.eclipse.jetty.unixsocket package"
+					+ " (jetty-unixsocket and jnr-unixsocket) is not available", path);
+			return null;
+		}
+		ServerConfiguration sc = configuration.server();
+
+		HttpConfiguration httpConfig = getOrCreateHttpConfiguration(httpConfigs, sc);
+
+		UnixSocketConnector connector = new UnixSocketConnector(server, new HttpConnectionFactory(httpConfig));
+		connector.setUnixSocket(path);
+		connector.setName(sc.getHttpConnectorName());
+		if (sc.getConnectorIdleTimeout() != null) {
+			connector.setIdleTimeout(sc.getConnectorIdleTimeout());
+		}
+		if (http2Available && sc.isHttp2CleartextEnabled()) {
+			connector.addConnectionFactory(configureHttp2(new HTTP2CServerConnectionFactory(httpConfig), sc));
+		}
+		configureProxyProtocol(connector, sc, "unix");
+
+		LOG.info("Unix domain socket Jetty connector created: {}", connector);
+
+		return connector;
+	}
+
+	/**
+	 * Returns path of Unix domain socket of the connector
+	 * @param connector
+	 * @return the path or {@code null} if it's not a Unix domain socket connector
+	 */
+	public String getUnixSocket(Connector connector) {
+		if (unixSocketAvailable && connector instanceof UnixSocketConnector) {
+			return ((UnixSocketConnector) connector).getUnixSocket();
+		}
+		return null;
+	}
+
 	/**
 	 * Create {@link Connector} that matches <em>secure</em> connector defined in Http Service specification
 	 *
@@ -268,7 +333,8 @@ class JettyFactory {
 			sslContextFactory.setProvider(secc.getSslProvider());
 		}
 
-		if (http2Available) {
+		boolean h2 = http2Available && sc.isHttp2Enabled();
+		if (h2) {
 			sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
 		}
 
@@ -447,7 +513,18 @@ class JettyFactory {
 
 			secureConnector.addConnectionFactory(new SslConnectionFactory(sslContextFactory, "ALPN"));
 
-			ALPNServerConnectionFactory alpnConnectionFactory = new ALPNServerConnectionFactory();
+			// protocols in order of preference, limited to the ones actually supported by this connector
+			List<String> protocols = new ArrayList<>();
+			for (String p : sc.getAlpnProtocols()) {
+				if (HttpVersion.HTTP_1_1.asString().equals(p) || ("h2".equals(p) && h2)) {
+					protocols.add(p);
+				}
+			}
+			if (!protocols.contains(HttpVersion.HTTP_1_1.asString())) {
+				protocols.add(HttpVersion.HTTP_1_1.asString());
+			}
+			ALPNServerConnectionFactory alpnConnectionFactory
+					= new ALPNServerConnectionFactory(protocols.toArray(new String[0]));
 			// if no protocol can be negotiated, we'll force HTTP/1.1
 			alpnConnectionFactory.setDefaultProtocol(HttpVersion.HTTP_1_1.asString());
 			secureConnector.addConnectionFactory(alpnConnectionFactory);
@@ -479,20 +556,67 @@ class JettyFactory {
 					HttpVersion.HTTP_1_1.asString()));
 		}
 
-		if (http2Available) {
+		if (h2) {
 			LOG.info("HTTP/2 support available, adding \"h2\" protocol support to secure connector");
 
-			secureConnector.addConnectionFactory(new HTTP2ServerConnectionFactory(httpsConfig));
+			secureConnector.addConnectionFactory(configureHttp2(new HTTP2ServerConnectionFactory(httpsConfig), sc));
 		}
 
 		// final connection factory
 		secureConnector.addConnectionFactory(new HttpConnectionFactory(httpsConfig));
+		configureProxyProtocol(secureConnector, sc, "https");
 
 		LOG.info("Secure Jetty connector created: {}", secureConnector);
 
 		return secureConnector;
 	}
 
+	/**
+	 * Puts {@link ProxyConnectionFactory} in front of connector's factories, if given kind of connector
+	 * ({@code http}, {@code https} or {@code unix}) should expect PROXY protocol (v1 or v2) header. Original
+	 * client address is then available from {@code org.eclipse.jetty.server.ProxyConnectionFactory.ProxyEndPoint}.
+	 * @param connector
+	 * @param sc
+	 * @param kind
+	 */
+	private void configureProxyProtocol(AbstractConnector connector, ServerConfiguration sc, String kind) {
+		if (!Arrays.asList(sc.getProxyProtocolConnectors()).contains(kind)) {
+			return;
+		}
+		// PROXY header is the first thing read from the connection, then the connection is passed to
+		// previous default protocol (HTTP/1.1 or SSL)
+		ProxyConnectionFactory proxy = new ProxyConnectionFactory(connector.getDefaultProtocol());
+		connector.addFirstConnectionFactory(proxy);
+		connector.setDefaultProtocol(proxy.getProtocol());
+		LOG.info("PROXY protocol support enabled for {} connector", connector.getName());
+	}
+
+	/**
+	 * Applies HTTP/2 settings from {@link ServerConfiguration} to {@code h2} or {@code h2c} connection factory.
+	 * @param factory
+	 * @param sc
+	 * @return
+	 */
+	private AbstractHTTP2ServerConnectionFactory configureHttp2(AbstractHTTP2ServerConnectionFactory factory,
+			ServerConfiguration sc) {
+		if (sc.getHttp2MaxConcurrentStreams() != null) {
+			factory.setMaxConcurrentStreams(sc.getHttp2MaxConcurrentStreams());
+		}
+		if (sc.getHttp2InitialStreamWindowSize() != null) {
+			factory.setInitialStreamRecvWindow(sc.getHttp2InitialStreamWindowSize());
+		}
+		if (sc.getHttp2InitialSessionWindowSize() != null) {
+			factory.setInitialSessionRecvWindow(sc.getHttp2InitialSessionWindowSize());
+		}
+		if (sc.getHttp2HeaderTableSize() != null) {
+			factory.setMaxDynamicTableSize(sc.getHttp2HeaderTableSize());
+		}
+		if (sc.getHttp2MaxFrameSize() != null) {
+			factory.setMaxFrameLength(sc.getHttp2MaxFrameSize());
+		}
+		return factory;
+	}
+
 	/**
 	 * If {@link HttpConfiguration} was created earlier (when parsing {@code jetty*.xml} files) return the first
 	 * one after doing some tweaks. If there was no {@link HttpConfiguration}, create one using {@link Configuration}.
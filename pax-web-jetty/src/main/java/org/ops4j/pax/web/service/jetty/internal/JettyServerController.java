@@ -95,7 +95,7 @@ class JettyServerController implements ServerController {
 		jettyServerWrapper.configure();
 
 		state = ServerState.STOPPED;
-		notifyListeners(new ServerEvent(ServerEvent.State.CONFIGURED, jettyServerWrapper.getAddresses(false)));
+		notifyListeners(new ServerEvent(ServerEvent.State.CONFIGURED, jettyServerWrapper.getAddresses(false), jettyServerWrapper.getUnixDomainSockets()));
 	}
 
 	@Override
@@ -109,7 +109,7 @@ class JettyServerController implements ServerController {
 		jettyServerWrapper.start();
 
 		state = ServerState.STARTED;
-		notifyListeners(new ServerEvent(ServerEvent.State.STARTED, jettyServerWrapper.getAddresses(true)));
+		notifyListeners(new ServerEvent(ServerEvent.State.STARTED, jettyServerWrapper.getAddresses(true), jettyServerWrapper.getUnixDomainSockets()));
 	}
 
 	@Override
@@ -139,9 +139,9 @@ class JettyServerController implements ServerController {
 			throw new IllegalArgumentException("ServerListener is null");
 		}
 		if (state == ServerState.STOPPED) {
-			listener.stateChanged(new ServerEvent(ServerEvent.State.CONFIGURED, jettyServerWrapper.getAddresses(false)));
+			listener.stateChanged(new ServerEvent(ServerEvent.State.CONFIGURED, jettyServerWrapper.getAddresses(false), jettyServerWrapper.getUnixDomainSockets()));
 		} else if (state == ServerState.STARTED) {
-			listener.stateChanged(new ServerEvent(ServerEvent.State.STARTED, jettyServerWrapper.getAddresses(true)));
+			listener.stateChanged(new ServerEvent(ServerEvent.State.STARTED, jettyServerWrapper.getAddresses(true), jettyServerWrapper.getUnixDomainSockets()));
 		}
 		listeners.add(listener);
 	}
@@ -67,9 +67,12 @@ import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.xml.XmlConfiguration;
 import org.ops4j.pax.web.annotations.Review;
 import org.ops4j.pax.web.service.jetty.internal.web.JettyResourceServlet;
+import org.ops4j.pax.web.service.spi.accesslog.AccessLog;
 import org.ops4j.pax.web.service.spi.config.Configuration;
 import org.ops4j.pax.web.service.spi.config.LogConfiguration;
 import org.ops4j.pax.web.service.spi.config.SessionConfiguration;
+import org.ops4j.pax.web.service.spi.metrics.ElementType;
+import org.ops4j.pax.web.service.spi.metrics.WebMetricsRegistry;
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
 import org.ops4j.pax.web.service.spi.model.ServletContextModel;
 import org.ops4j.pax.web.service.spi.model.elements.ContainerInitializerModel;
@@ -132,6 +135,9 @@ class JettyServerWrapper implements BatchVisitor {
 	/** If JMX support is enabled, this will be the Jetty bean for JMX management */
 	private MBeanContainer mbeanContainer;
 
+	/** Pax Web's asynchronous request log, if configured instead of Jetty's own {@link CustomRequestLog} */
+	private AccessLog accessLog;
+
 	/** Main handler collection for Jetty server */
 	private ContextHandlerCollection mainHandler;
 
@@ -392,6 +398,21 @@ class JettyServerWrapper implements BatchVisitor {
 			verifyConnector(address, SslConnectionFactory.class, httpsPort, httpsEnabled, true,
 					() -> jettyFactory.createSecureConnector(server, httpConfigs, address, configuration));
 		}
+
+		// additional connector for local proxies
+		String unixSocket = configuration.server().getUnixDomainSocket();
+		if (unixSocket != null) {
+			for (Connector connector : server.getConnectors()) {
+				if (unixSocket.equals(jettyFactory.getUnixSocket(connector))) {
+					LOG.info("Using configured {} as Unix domain socket connector for {}", connector, unixSocket);
+					return;
+				}
+			}
+			Connector connector = jettyFactory.createUnixSocketConnector(server, httpConfigs, unixSocket, configuration);
+			if (connector != null) {
+				server.addConnector(connector);
+			}
+		}
 	}
 
 	/**
@@ -419,7 +440,8 @@ class JettyServerWrapper implements BatchVisitor {
 		}
 
 		for (Connector connector : currentConnectors) {
-			if (connector.getConnectionFactory(cfClass) != null) {
+			// Unix domain socket connectors are verified separately
+			if (connector instanceof ServerConnector && connector.getConnectionFactory(cfClass) != null) {
 				if (match(address, port, connector)) {
 					if (expectedConnector == null) {
 						expectedConnector = (ServerConnector) connector;
@@ -441,7 +463,7 @@ class JettyServerWrapper implements BatchVisitor {
 						(secure ? "secure" : "non secure"), address, port);
 			} else {
 				for (Connector connector : currentConnectors) {
-					if (connector.getConnectionFactory(cfClass) != null) {
+					if (connector instanceof ServerConnector && connector.getConnectionFactory(cfClass) != null) {
 						LOG.warn("Connector defined in external configuration will be removed, "
 								+ "because it's not enabled: {}", connector);
 						server.removeConnector(connector);
@@ -500,6 +522,13 @@ class JettyServerWrapper implements BatchVisitor {
 			throw new IllegalArgumentException(logDir + " is not a valid directory to store request logs");
 		}
 
+		if (lc.isLogNCSAAsync()) {
+			accessLog = new AccessLog(lc);
+			server.setRequestLog(new PaxWebRequestLog(accessLog));
+			LOG.info("Asynchronous NCSARequestlogging is using directory {}", lc.getLogNCSADirectory());
+			return;
+		}
+
 		RequestLogWriter writer = new RequestLogWriter();
 
 		// org.eclipse.jetty.util.RolloverFileOutputStream._append
@@ -535,6 +564,9 @@ class JettyServerWrapper implements BatchVisitor {
 	public void start() throws Exception {
 		LOG.info("Starting {}", server);
 
+		if (accessLog != null) {
+			accessLog.start();
+		}
 		server.start();
 	}
 
@@ -568,6 +600,11 @@ class JettyServerWrapper implements BatchVisitor {
 
 		LOG.info("Destroying Jetty server {}", server);
 		server.destroy();
+
+		if (accessLog != null) {
+			accessLog.stop();
+			accessLog = null;
+		}
 	}
 
 	/**
@@ -595,6 +632,25 @@ class JettyServerWrapper implements BatchVisitor {
 		return result.toArray(new InetSocketAddress[0]);
 	}
 
+	/**
+	 * If state allows, this methods returns paths of Unix domain sockets of the connectors.
+	 * @return
+	 */
+	public String[] getUnixDomainSockets() {
+		if (server == null || server.getConnectors() == null) {
+			return null;
+		}
+		final List<String> result = new ArrayList<>();
+		for (Connector connector : server.getConnectors()) {
+			String path = jettyFactory.getUnixSocket(connector);
+			if (path != null) {
+				result.add(path);
+			}
+		}
+
+		return result.toArray(new String[0]);
+	}
+
 	// --- connector/handler/customizer methods
 
 	//	@Override
@@ -780,6 +836,12 @@ class JettyServerWrapper implements BatchVisitor {
 			osgiContextModels.get(contextPath).remove(osgiModel);
 
 			removedOsgiServletContext.unregister();
+
+			// metrics are identified by context name and path, so they may still be used by other OSGi context
+			String name = osgiModel.getName();
+			if (osgiContextModels.get(contextPath).stream().noneMatch(ocm -> name.equals(ocm.getName()))) {
+				WebMetricsRegistry.getInstance().unregister(osgiModel);
+			}
 		}
 
 		// there may be a change in what's the "best" (highest ranked) OsgiContextModel for given
@@ -935,6 +997,9 @@ class JettyServerWrapper implements BatchVisitor {
 				}
 				LOG.info("Removing servlet {}", model);
 
+				model.getContextModels().forEach(ocm -> WebMetricsRegistry.getInstance()
+						.unregister(ocm, ElementType.SERVLET, model.getName()));
+
 				Set<String> done = new HashSet<>();
 
 				// proper order ensures that (assuming above scenario), for /c1, ocm2 will be chosen and ocm1 skipped
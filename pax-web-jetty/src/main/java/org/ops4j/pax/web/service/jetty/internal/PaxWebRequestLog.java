@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.jetty.internal;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+import org.ops4j.pax.web.service.spi.accesslog.AccessLog;
+
+/**
+ * {@link RequestLog} that only passes request data to Pax Web's asynchronous {@link AccessLog}.
+ */
+public class PaxWebRequestLog implements RequestLog {
+
+	private final AccessLog accessLog;
+
+	public PaxWebRequestLog(AccessLog accessLog) {
+		this.accessLog = accessLog;
+	}
+
+	@Override
+	public void log(Request request, Response response) {
+		// original URI already contains the query string
+		accessLog.log(request.getTimeStamp(), request.getRemoteAddr(), request.getRemoteUser(),
+				request.getMethod(), request.getOriginalURI(), null, request.getProtocol(),
+				response.getCommittedMetaData().getStatus(), response.getHttpChannel().getBytesWritten(),
+				request.getHeader(HttpHeader.REFERER.asString()), request.getHeader(HttpHeader.USER_AGENT.asString()));
+	}
+
+}
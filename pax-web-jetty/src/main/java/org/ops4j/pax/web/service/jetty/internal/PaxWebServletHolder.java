@@ -15,6 +15,7 @@
  */
 package org.ops4j.pax.web.service.jetty.internal;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import javax.servlet.Servlet;
 import javax.servlet.ServletContext;
@@ -28,6 +29,9 @@ import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.servlet.ServletMapping;
 import org.ops4j.pax.web.service.WebContainerContext;
 import org.ops4j.pax.web.service.jetty.internal.web.JettyResourceServlet;
+import org.ops4j.pax.web.service.spi.metrics.ElementMetrics;
+import org.ops4j.pax.web.service.spi.metrics.ElementType;
+import org.ops4j.pax.web.service.spi.metrics.WebMetricsRegistry;
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
 import org.ops4j.pax.web.service.spi.model.elements.ServletModel;
 import org.ops4j.pax.web.service.spi.servlet.OsgiInitializedServlet;
@@ -70,6 +74,9 @@ public class PaxWebServletHolder extends ServletHolder {
 	 */
 	private boolean is404;
 
+	/** Metrics of this servlet - registered with first request processed when metrics are enabled */
+	private ElementMetrics metrics;
+
 	/**
 	 * Constructor to use when wrapping internal {@link Servlet servlets} which won't use OSGi machinery.
 	 *
@@ -259,6 +266,46 @@ public class PaxWebServletHolder extends ServletHolder {
 		super.prepare(baseRequest, request, response);
 	}
 
+	/**
+	 * Overriden to record the latency of the servlet (filters are timed separately) when metrics are enabled.
+	 *
+	 * @param baseRequest
+	 * @param request
+	 * @param response
+	 * @throws ServletException
+	 * @throws UnavailableException
+	 * @throws IOException
+	 */
+	@Override
+	public void handle(Request baseRequest, ServletRequest request, ServletResponse response)
+			throws ServletException, UnavailableException, IOException {
+		ElementMetrics metrics = metrics();
+		if (metrics == null) {
+			super.handle(baseRequest, request, response);
+			return;
+		}
+		metrics.start();
+		try {
+			super.handle(baseRequest, request, response);
+		} finally {
+			metrics.stop(request);
+		}
+	}
+
+	private ElementMetrics metrics() {
+		WebMetricsRegistry registry = WebMetricsRegistry.getInstance();
+		if (!registry.isEnabled()) {
+			return null;
+		}
+		if (metrics == null) {
+			// benign race - the registry returns the same instance
+			ServletContext context = getServletHandler().getServletContext();
+			metrics = registry.getElementMetrics(osgiContextModel, context == null ? null : context.getContextPath(),
+					ElementType.SERVLET, getName());
+		}
+		return metrics;
+	}
+
 	/**
 	 * Allows keeping {@link ServletMapping} that was used together with this {@link ServletHolder}
 	 * @param mapping
@@ -15,20 +15,19 @@
  */
 package org.ops4j.pax.web.jsp;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.naming.NamingException;
@@ -36,13 +35,32 @@ import javax.servlet.Filter;
 
 import org.apache.jasper.security.SecurityUtil;
 
+/**
+ * <p>{@link org.apache.tomcat.InstanceManager} handling lifecycle methods of JSP servlets and tag handlers.</p>
+ *
+ * <p>Lifecycle methods ({@link PostConstruct}, {@link PreDestroy}) are discovered once per class and kept
+ * as {@link MethodHandle method handles} in a {@link ClassValue}, so there's no locking when creating and
+ * destroying (possibly many - when tag pooling is disabled) instances and the cache doesn't prevent
+ * unloading of the classes (e.g., after JSP recompilation).</p>
+ */
 public class InstanceManager implements org.apache.tomcat.InstanceManager {
 
+	private static final MethodType LIFECYCLE_METHOD_TYPE = MethodType.methodType(void.class, Object.class);
+
 	private final Map<String, Map<String, String>> injectionMap = new HashMap<>();
 
 	private final Properties restrictedFilters = new Properties();
 	private final Properties restrictedListeners = new Properties();
-	private final Map<Class<?>, List<AnnotationCacheEntry>> annotationCache = new WeakHashMap<>();
+
+	private final AtomicInteger annotationCacheSize = new AtomicInteger();
+
+	private final ClassValue<LifecycleMethods> annotationCache = new ClassValue<LifecycleMethods>() {
+		@Override
+		protected LifecycleMethods computeValue(Class<?> type) {
+			annotationCacheSize.incrementAndGet();
+			return LifecycleMethods.of(type);
+		}
+	};
 
 	@Override
 	public Object newInstance(String className) throws IllegalAccessException,
@@ -74,8 +92,8 @@ public class InstanceManager implements org.apache.tomcat.InstanceManager {
 			InvocationTargetException, NamingException, InstantiationException {
 		Object instance;
 		try {
-			instance = newInstance(clazz.getName());
-		} catch (ClassNotFoundException e) {
+			instance = clazz.getDeclaredConstructor().newInstance();
+		} catch (NoSuchMethodException e) {
 			throw new InstantiationException("can't create object for class "
 					+ clazz);
 		}
@@ -86,6 +104,7 @@ public class InstanceManager implements org.apache.tomcat.InstanceManager {
 			throws IllegalAccessException, InvocationTargetException {
 		Map<String, String> injections = injectionMap.get(clazz.getName());
 		populateAnnotationsCache(clazz, injections);
+		postConstruct(instance, clazz);
 		return instance;
 	}
 
@@ -95,6 +114,25 @@ public class InstanceManager implements org.apache.tomcat.InstanceManager {
 		preDestroy(instance, instance.getClass());
 	}
 
+	/**
+	 * Call postConstruct method on the specified instance recursively from deepest
+	 * superclass to actual class.
+	 *
+	 * @param instance object to call postConstruct methods on
+	 * @param clazz    (super) class to examine for postConstruct annotation.
+	 * @throws IllegalAccessException                      if postConstruct method is inaccessible.
+	 * @throws java.lang.reflect.InvocationTargetException if call fails
+	 */
+	protected void postConstruct(Object instance, final Class<?> clazz)
+			throws IllegalAccessException, InvocationTargetException {
+		Class<?> superClass = clazz.getSuperclass();
+		if (superClass != null && superClass != Object.class) {
+			postConstruct(instance, superClass);
+		}
+
+		invoke(annotationCache.get(clazz).postConstruct, instance);
+	}
+
 	/**
 	 * Call preDestroy method on the specified instance recursively from deepest
 	 * superclass to actual class.
@@ -107,31 +145,18 @@ public class InstanceManager implements org.apache.tomcat.InstanceManager {
 	protected void preDestroy(Object instance, final Class<?> clazz)
 			throws IllegalAccessException, InvocationTargetException {
 		Class<?> superClass = clazz.getSuperclass();
-		if (superClass != Object.class) {
+		if (superClass != null && superClass != Object.class) {
 			preDestroy(instance, superClass);
 		}
 
 		// At the end the postconstruct annotated
 		// method is invoked
-		List<AnnotationCacheEntry> annotations = null;
-		synchronized (annotationCache) {
-			annotations = annotationCache.get(clazz);
-		}
-		if (annotations == null) {
+		LifecycleMethods methods = annotationCache.get(clazz);
+		if (!methods.populated) {
 			// instance not created through the instance manager
 			return;
 		}
-		for (AnnotationCacheEntry entry : annotations) {
-			if (entry.getType() == AnnotationCacheEntryType.PRE_DESTROY) {
-				Method preDestroy = getMethod(clazz, entry);
-				synchronized (preDestroy) {
-					boolean accessibility = preDestroy.isAccessible();
-					preDestroy.setAccessible(true);
-					preDestroy.invoke(instance);
-					preDestroy.setAccessible(accessibility);
-				}
-			}
-		}
+		invoke(methods.preDestroy, instance);
 	}
 
 	/**
@@ -149,63 +174,12 @@ public class InstanceManager implements org.apache.tomcat.InstanceManager {
 			InvocationTargetException {
 
 		while (clazz != null) {
-			List<AnnotationCacheEntry> annotations = null;
-			synchronized (annotationCache) {
-				annotations = annotationCache.get(clazz);
+			LifecycleMethods methods = annotationCache.get(clazz);
+			if (methods.invalid != null) {
+				throw new IllegalArgumentException(methods.invalid);
 			}
-			if (annotations == null) {
-				annotations = new ArrayList<>();
-
-				// Initialize methods annotations
-				Method[] methods = null;
-				methods = clazz.getDeclaredMethods();
-
-				Method postConstruct = null;
-				Method preDestroy = null;
-				for (Method method : methods) {
-
-					if (method.isAnnotationPresent(PostConstruct.class)) {
-						if ((postConstruct != null)
-								|| (method.getParameterTypes().length != 0)
-								|| (Modifier.isStatic(method.getModifiers()))
-								|| (method.getExceptionTypes().length > 0)
-								|| (!method.getReturnType().getName()
-								.equals("void"))) {
-							throw new IllegalArgumentException(
-									"Invalid PostConstruct annotation");
-						}
-						postConstruct = method;
-					}
-
-					if (method.isAnnotationPresent(PreDestroy.class)) {
-						if ((preDestroy != null || method.getParameterTypes().length != 0)
-								|| (Modifier.isStatic(method.getModifiers()))
-								|| (method.getExceptionTypes().length > 0)
-								|| (!method.getReturnType().getName()
-								.equals("void"))) {
-							throw new IllegalArgumentException(
-									"Invalid PreDestroy annotation");
-						}
-						preDestroy = method;
-					}
-				}
-				if (postConstruct != null) {
-					annotations.add(new AnnotationCacheEntry(postConstruct
-							.getName(), postConstruct.getParameterTypes(),
-							null, AnnotationCacheEntryType.POST_CONSTRUCT));
-				}
-				if (preDestroy != null) {
-					annotations.add(new AnnotationCacheEntry(preDestroy
-							.getName(), preDestroy.getParameterTypes(), null,
-							AnnotationCacheEntryType.PRE_DESTROY));
-				}
-				if (annotations.size() == 0) {
-					// Use common empty list to save memory
-					annotations = Collections.emptyList();
-				}
-				synchronized (annotationCache) {
-					annotationCache.put(clazz, annotations);
-				}
+			if (!methods.populated) {
+				methods.populated = true;
 			}
 			// CHECKSTYLE:OFF
 			clazz = clazz.getSuperclass();
@@ -214,11 +188,24 @@ public class InstanceManager implements org.apache.tomcat.InstanceManager {
 	}
 
 	/**
-	 * Makes cache size available to unit tests.
+	 * Makes cache size available to unit tests. It's the number of classes for which the lifecycle methods
+	 * were discovered (classes which were unloaded are still counted).
 	 */
 	protected int getAnnotationCacheSize() {
-		synchronized (annotationCache) {
-			return annotationCache.size();
+		return annotationCacheSize.get();
+	}
+
+	private static void invoke(MethodHandle handle, Object instance) throws InvocationTargetException {
+		if (handle == null) {
+			return;
+		}
+		try {
+			handle.invokeExact(instance);
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable t) {
+			// the same as reflective invocation would do
+			throw new InvocationTargetException(t);
 		}
 	}
 
@@ -281,51 +268,63 @@ public class InstanceManager implements org.apache.tomcat.InstanceManager {
 		return name.toString();
 	}
 
-	private static Method getMethod(final Class<?> clazz,
-									final AnnotationCacheEntry entry) {
-		Method result = null;
-
-		try {
-			result = clazz.getDeclaredMethod(entry.getAccessibleObjectName(),
-					entry.getParamTypes());
-		} catch (NoSuchMethodException e) {
-			// Should never happen. On that basis don't log it.
+	/**
+	 * {@link PostConstruct} and {@link PreDestroy} methods declared by single class, resolved to
+	 * {@link MethodHandle method handles} of {@code (Object)void} type.
+	 */
+	private static final class LifecycleMethods {
+		private final MethodHandle postConstruct;
+		private final MethodHandle preDestroy;
+		/** Reason why the annotations are invalid - reported only when creating an instance */
+		private final String invalid;
+		/** Whether an instance of this class was created through the instance manager */
+		private volatile boolean populated;
+
+		private LifecycleMethods(MethodHandle postConstruct, MethodHandle preDestroy, String invalid) {
+			this.postConstruct = postConstruct;
+			this.preDestroy = preDestroy;
+			this.invalid = invalid;
 		}
-		return result;
-	}
 
-	private static final class AnnotationCacheEntry {
-		private final String accessibleObjectName;
-		private final Class<?>[] paramTypes;
-		private final AnnotationCacheEntryType type;
-
-		AnnotationCacheEntry(String accessibleObjectName,
-									Class<?>[] paramTypes, String name,
-									AnnotationCacheEntryType type) {
-			this.accessibleObjectName = accessibleObjectName;
-			if (paramTypes != null) {
-				this.paramTypes = Arrays.copyOf(paramTypes, paramTypes.length);
-			} else {
-				this.paramTypes = null;
+		static LifecycleMethods of(Class<?> clazz) {
+			Method postConstruct = null;
+			Method preDestroy = null;
+			for (Method method : clazz.getDeclaredMethods()) {
+				if (method.isAnnotationPresent(PostConstruct.class)) {
+					if (postConstruct != null || !isLifecycleMethod(method)) {
+						return new LifecycleMethods(null, null, "Invalid PostConstruct annotation");
+					}
+					postConstruct = method;
+				}
+				if (method.isAnnotationPresent(PreDestroy.class)) {
+					if (preDestroy != null || !isLifecycleMethod(method)) {
+						return new LifecycleMethods(null, null, "Invalid PreDestroy annotation");
+					}
+					preDestroy = method;
+				}
+			}
+			try {
+				return new LifecycleMethods(handle(postConstruct), handle(preDestroy), null);
+			} catch (IllegalAccessException | RuntimeException e) {
+				return new LifecycleMethods(null, null, "Can't access lifecycle method of " + clazz.getName()
+						+ ": " + e.getMessage());
 			}
-			this.type = type;
-		}
-
-		public String getAccessibleObjectName() {
-			return accessibleObjectName;
 		}
 
-		public Class<?>[] getParamTypes() {
-			return paramTypes;
+		private static boolean isLifecycleMethod(Method method) {
+			return method.getParameterTypes().length == 0
+					&& !Modifier.isStatic(method.getModifiers())
+					&& method.getExceptionTypes().length == 0
+					&& method.getReturnType() == void.class;
 		}
 
-		public AnnotationCacheEntryType getType() {
-			return type;
+		private static MethodHandle handle(Method method) throws IllegalAccessException {
+			if (method == null) {
+				return null;
+			}
+			method.setAccessible(true);
+			return MethodHandles.lookup().unreflect(method).asType(LIFECYCLE_METHOD_TYPE);
 		}
 	}
 
-	private enum AnnotationCacheEntryType {
-		FIELD, SETTER, POST_CONSTRUCT, PRE_DESTROY
-	}
-
 }
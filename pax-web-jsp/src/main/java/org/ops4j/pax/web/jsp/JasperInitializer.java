@@ -22,10 +22,10 @@ import javax.servlet.ServletException;
 
 import org.apache.jasper.servlet.TldScanner;
 import org.apache.tomcat.JarScanner;
-import org.apache.tomcat.SimpleInstanceManager;
 import org.apache.tomcat.util.scan.StandardJarScanFilter;
 import org.apache.tomcat.util.scan.StandardJarScanner;
 import org.ops4j.pax.web.service.PaxWebConstants;
+import org.ops4j.pax.web.service.spi.servlet.OsgiScopedServletContext;
 import org.ops4j.pax.web.service.spi.servlet.OsgiServletContext;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -95,8 +95,10 @@ public class JasperInitializer extends org.apache.jasper.servlet.JasperInitializ
 			return;
 		}
 
-		// TOCHECK: override the instance manager required by org.apache.jasper.servlet.JspServletWrapper.getServlet()
-		context.setAttribute(InstanceManager.class.getName(), new SimpleInstanceManager());
+		// instance manager required by org.apache.jasper.servlet.JspServletWrapper.getServlet() and
+		// org.apache.jasper.runtime.TagHandlerPool - set before super.onStartup(), which would otherwise
+		// set org.apache.tomcat.SimpleInstanceManager without support for @PostConstruct/@PreDestroy
+		context.setAttribute(org.apache.tomcat.InstanceManager.class.getName(), new InstanceManager());
 
 		// set configured JarScanner into the context
 		// To be honest, we're not calling org.apache.jasper.servlet.TldScanner.scanJars() at all, because
@@ -209,10 +211,13 @@ public class JasperInitializer extends org.apache.jasper.servlet.JasperInitializ
 	 * @param context
 	 * @return
 	 */
-	private Bundle getOwnerBundle(ServletContext context) {
+	static Bundle getOwnerBundle(ServletContext context) {
 		if (context instanceof OsgiServletContext) {
 			return ((OsgiServletContext) context).getOsgiContextModel().getOwnerBundle();
 		}
+		if (context instanceof OsgiScopedServletContext) {
+			return ((OsgiScopedServletContext) context).getOsgiContextModel().getOwnerBundle();
+		}
 		Object attribute = context.getAttribute(PaxWebConstants.CONTEXT_PARAM_BUNDLE_CONTEXT);
 		if (attribute instanceof BundleContext) {
 			return ((BundleContext) attribute).getBundle();
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.jsp;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+
+import org.apache.jasper.EmbeddedServletOptions;
+import org.apache.jasper.JasperException;
+import org.apache.jasper.JspCompilationContext;
+import org.apache.jasper.Options;
+import org.apache.jasper.compiler.JspRuntimeContext;
+import org.apache.jasper.servlet.JspServletWrapper;
+import org.osgi.framework.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Compiles all the JSPs ({@code *.jsp} and {@code *.jspx}) of a context in parallel when {@link JspServlet}
+ * is initialized - so (in case of WABs) before the context is deployed, instead of on first request.</p>
+ *
+ * <p>The classes are generated by Jasper into normal {@code scratchdir}, where Jasper's
+ * {@link org.apache.jasper.servlet.JspServletWrapper} finds them up-to-date on first request. Additionally, when
+ * cache directory is configured, generated classes are kept in a directory specific to the revision of the
+ * {@link Bundle} owning the context together with an index of SHA-256 hashes of the JSPs. After restart, the
+ * classes are restored to (new) {@code scratchdir} and JSPs with unchanged content are not compiled again.</p>
+ */
+class JspPrecompiler {
+
+	public static final Logger LOG = LoggerFactory.getLogger(JspPrecompiler.class);
+
+	private static final String INDEX = "index.properties";
+	private static final String CLASSES = "classes";
+
+	private final ServletConfig config;
+	private final ServletContext context;
+	private final File cacheRoot;
+
+	JspPrecompiler(ServletConfig config, File cacheRoot) {
+		this.config = config;
+		this.context = config.getServletContext();
+		this.cacheRoot = cacheRoot;
+	}
+
+	/**
+	 * Finds and compiles all the JSPs of the context. Blocks until all JSPs are compiled.
+	 * @return number of JSPs actually compiled (not restored from cache)
+	 */
+	public int precompile() {
+		long start = System.currentTimeMillis();
+
+		List<String> jsps = new ArrayList<>();
+		findJsps("/", jsps);
+		if (jsps.isEmpty()) {
+			return 0;
+		}
+
+		Options options = new EmbeddedServletOptions(config, context);
+		File scratchDir = options.getScratchDir();
+
+		File revisionCache = null;
+		Bundle bundle = JasperInitializer.getOwnerBundle(context);
+		if (cacheRoot != null && bundle != null && scratchDir != null) {
+			revisionCache = revisionCacheDir(bundle);
+		}
+
+		Properties index = new Properties();
+		if (revisionCache != null) {
+			loadIndex(revisionCache, index);
+			copyClasses(new File(revisionCache, CLASSES).toPath(), scratchDir.toPath());
+		}
+
+		Map<String, String> hashes = new ConcurrentHashMap<>();
+		int compiled = 0;
+		int failed = 0;
+
+		JspRuntimeContext rctxt = new JspRuntimeContext(context, options);
+		ForkJoinPool pool = JspTaskPool.get();
+		List<ForkJoinTask<Boolean>> tasks = new ArrayList<>(jsps.size());
+		try {
+			for (String jsp : jsps) {
+				tasks.add(pool.submit(() -> {
+					// same TCCL as used by JspServlet.init()
+					ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+					try {
+						Thread.currentThread().setContextClassLoader(JspServlet.class.getClassLoader());
+						return compile(jsp, options, rctxt, index, hashes);
+					} finally {
+						Thread.currentThread().setContextClassLoader(tccl);
+					}
+				}));
+			}
+			for (int i = 0; i < tasks.size(); i++) {
+				try {
+					if (tasks.get(i).get()) {
+						compiled++;
+					}
+				} catch (ExecutionException e) {
+					// it'll be reported again on first request
+					failed++;
+					LOG.warn("Problem precompiling {}: {}", jsps.get(i), e.getCause().getMessage());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			tasks.forEach(t -> t.cancel(true));
+			LOG.warn("JSP precompilation interrupted");
+			return compiled;
+		} finally {
+			rctxt.destroy();
+		}
+
+		// revision with failed JSPs is not cached - the JSPs will be compiled again after restart
+		if (revisionCache != null && compiled > 0 && failed == 0) {
+			copyClasses(scratchDir.toPath(), new File(revisionCache, CLASSES).toPath());
+			storeIndex(revisionCache, hashes);
+		}
+
+		LOG.info("Precompiled {} JSPs ({} restored from cache, {} failed) of {} in {}ms", jsps.size(),
+				jsps.size() - compiled - failed, failed, context.getContextPath(), System.currentTimeMillis() - start);
+
+		return compiled;
+	}
+
+	/**
+	 * Compiles single JSP unless its class is up-to-date
+	 * @param jspUri
+	 * @param options
+	 * @param rctxt
+	 * @param index
+	 * @param hashes
+	 * @return {@code true} if the JSP had to be compiled
+	 * @throws JasperException if the JSP can't be compiled
+	 * @throws FileNotFoundException if the JSP doesn't exist
+	 */
+	private boolean compile(String jspUri, Options options, JspRuntimeContext rctxt, Properties index,
+			Map<String, String> hashes) throws JasperException, FileNotFoundException {
+		String hash = hash(jspUri);
+		String cachedHash = index.getProperty(jspUri);
+
+		JspServletWrapper wrapper = new JspServletWrapper(config, options, jspUri, rctxt);
+		try {
+			JspCompilationContext ctxt = wrapper.getJspEngineContext();
+			File classFile = new File(ctxt.getClassFileName());
+			Long lastModified = ctxt.getLastModified(jspUri);
+
+			if (hash != null && hash.equals(cachedHash) && classFile.isFile()) {
+				// Jasper checks whether lastModified of the class is the same as lastModified of the JSP
+				if (lastModified != null && lastModified >= 0) {
+					classFile.setLastModified(lastModified);
+				}
+				hashes.put(jspUri, hash);
+				return false;
+			}
+			if (cachedHash != null && classFile.isFile()) {
+				// content has changed, the class restored from cache can't be used
+				classFile.delete();
+			}
+
+			LOG.debug("Compiling {}", jspUri);
+			ctxt.compile();
+			if (hash != null) {
+				hashes.put(jspUri, hash);
+			}
+			return true;
+		} finally {
+			wrapper.destroy();
+		}
+	}
+
+	/**
+	 * Recursively collects {@code *.jsp} and {@code *.jspx} resources of the context
+	 * @param path
+	 * @param jsps
+	 */
+	private void findJsps(String path, List<String> jsps) {
+		Set<String> paths = context.getResourcePaths(path);
+		if (paths == null) {
+			return;
+		}
+		for (String p : new TreeSet<>(paths)) {
+			if (p.endsWith("/")) {
+				if (!p.startsWith("/META-INF/") && !p.startsWith("/OSGI-INF/") && !p.startsWith("/OSGI-OPT/")
+						&& !p.startsWith("/WEB-INF/classes/") && !p.startsWith("/WEB-INF/lib/")) {
+					findJsps(p, jsps);
+				}
+			} else if (p.endsWith(".jsp") || p.endsWith(".jspx")) {
+				jsps.add(p);
+			}
+		}
+	}
+
+	/**
+	 * SHA-256 of JSP's URI and content
+	 * @param jspUri
+	 * @return
+	 */
+	private String hash(String jspUri) {
+		try (InputStream is = context.getResourceAsStream(jspUri)) {
+			if (is == null) {
+				return null;
+			}
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(jspUri.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = is.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest.digest()) {
+				sb.append(String.format("%02x", b));
+			}
+			return sb.toString();
+		} catch (IOException | NoSuchAlgorithmException e) {
+			LOG.debug("Can't calculate hash of {}: {}", jspUri, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Returns cache directory for current revision of the bundle, removing directories of previous revisions.
+	 * @param bundle
+	 * @return
+	 */
+	private File revisionCacheDir(Bundle bundle) {
+		String name = String.format("%s_%s", bundle.getSymbolicName(), bundle.getVersion())
+				.replaceAll("[^a-zA-Z0-9._-]", "_");
+		File bundleDir = new File(cacheRoot, name);
+		String revision = Long.toString(bundle.getLastModified());
+		File[] revisions = bundleDir.listFiles();
+		if (revisions != null) {
+			for (File previous : revisions) {
+				if (!previous.getName().equals(revision)) {
+					delete(previous.toPath());
+				}
+			}
+		}
+		return new File(bundleDir, revision);
+	}
+
+	private void loadIndex(File revisionCache, Properties index) {
+		File indexFile = new File(revisionCache, INDEX);
+		if (!indexFile.isFile()) {
+			return;
+		}
+		try (InputStream is = Files.newInputStream(indexFile.toPath())) {
+			index.load(is);
+		} catch (IOException e) {
+			LOG.warn("Can't read JSP cache index {}: {}", indexFile, e.getMessage());
+			index.clear();
+		}
+	}
+
+	private void storeIndex(File revisionCache, Map<String, String> hashes) {
+		Properties index = new Properties();
+		index.putAll(hashes);
+		try {
+			Files.createDirectories(revisionCache.toPath());
+			Path tmp = Files.createTempFile(revisionCache.toPath(), INDEX, ".tmp");
+			try (OutputStream os = Files.newOutputStream(tmp)) {
+				index.store(os, null);
+			}
+			Files.move(tmp, new File(revisionCache, INDEX).toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			LOG.warn("Can't write JSP cache index in {}: {}", revisionCache, e.getMessage());
+		}
+	}
+
+	/**
+	 * Copies all {@code *.class} files (preserving last modification time) between directory trees
+	 * @param from
+	 * @param to
+	 */
+	private void copyClasses(Path from, Path to) {
+		if (!Files.isDirectory(from)) {
+			return;
+		}
+		try (Stream<Path> files = Files.walk(from)) {
+			files.filter(p -> Files.isRegularFile(p) && p.getFileName().toString().endsWith(".class")).forEach(p -> {
+				Path target = to.resolve(from.relativize(p).toString());
+				try {
+					Files.createDirectories(target.getParent());
+					Files.copy(p, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+				} catch (IOException e) {
+					LOG.debug("Can't copy {} to {}: {}", p, target, e.getMessage());
+				}
+			});
+		} catch (IOException e) {
+			LOG.warn("Can't copy JSP classes from {} to {}: {}", from, to, e.getMessage());
+		}
+	}
+
+	private void delete(Path path) {
+		try (Stream<Path> files = Files.walk(path)) {
+			files.sorted(Collections.reverseOrder()).forEach(p -> p.toFile().delete());
+		} catch (IOException e) {
+			LOG.debug("Can't delete {}: {}", path, e.getMessage());
+		}
+	}
+
+}
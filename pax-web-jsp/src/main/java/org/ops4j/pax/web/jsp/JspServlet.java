@@ -15,15 +15,19 @@
  */
 package org.ops4j.pax.web.jsp;
 
+import java.io.File;
 import java.io.IOException;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 
+import org.ops4j.pax.web.service.PaxWebConstants;
+
 /**
  * Pax Web extension of the original {@link org.apache.jasper.servlet.JspServlet} to set proper TCCL, so Jasper
- * can correctly create {@link javax.el.ExpressionFactory}.
+ * can correctly create {@link javax.el.ExpressionFactory}. When {@link PaxWebConstants#INIT_PARAM_JSP_PRECOMPILATION}
+ * init parameter is set, all the JSPs are compiled during initialization using {@link JspPrecompiler}.
  */
 public class JspServlet extends org.apache.jasper.servlet.JspServlet {
 
@@ -33,6 +37,11 @@ public class JspServlet extends org.apache.jasper.servlet.JspServlet {
 		try {
 			Thread.currentThread().setContextClassLoader(JspServlet.class.getClassLoader());
 			super.init(config);
+
+			if (Boolean.parseBoolean(config.getInitParameter(PaxWebConstants.INIT_PARAM_JSP_PRECOMPILATION))) {
+				String cacheDir = config.getInitParameter(PaxWebConstants.INIT_PARAM_JSP_PRECOMPILATION_CACHE_DIR);
+				new JspPrecompiler(config, cacheDir == null ? null : new File(cacheDir)).precompile();
+			}
 		} finally {
 			Thread.currentThread().setContextClassLoader(tccl);
 		}
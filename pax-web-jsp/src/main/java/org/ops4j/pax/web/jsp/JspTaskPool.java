@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.jsp;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * <p>Single {@link ForkJoinPool} shared by all JSP contexts for the parallel parts of their startup (searching
+ * bundles for TLDs, JSP precompilation), so starting many contexts doesn't create new threads for each of them
+ * and doesn't use the common fork-join pool of the application.</p>
+ *
+ * <p>The parallelism is bounded by the number of processors. The pool is created on first use and its
+ * (daemon) threads terminate after being idle, so it doesn't have to be shut down when the bundle is stopped.</p>
+ */
+final class JspTaskPool {
+
+	private JspTaskPool() {
+	}
+
+	static ForkJoinPool get() {
+		return Holder.POOL;
+	}
+
+	private static final class Holder {
+		private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), fjp -> {
+			ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(fjp);
+			t.setName("paxweb-jsp-" + t.getPoolIndex());
+			return t;
+		}, null, false);
+	}
+
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.jsp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.jsp.tagext.FunctionInfo;
+import javax.servlet.jsp.tagext.TagAttributeInfo;
+import javax.servlet.jsp.tagext.TagVariableInfo;
+
+import org.apache.tomcat.util.descriptor.tld.TagFileXml;
+import org.apache.tomcat.util.descriptor.tld.TagXml;
+import org.apache.tomcat.util.descriptor.tld.TaglibXml;
+import org.apache.tomcat.util.descriptor.tld.TldResourcePath;
+import org.apache.tomcat.util.descriptor.tld.ValidatorXml;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Cache of parsed TLDs ({@link TaglibXml}), shared by all {@link PaxWebTldScanner scanners}, so TLDs from
+ * commonly used bundles (JSTL, Spring, Faces, ...) are parsed once per node instead of once per context.</p>
+ *
+ * <p>TLDs are cached per bundle (id and revision, where revision is determined by bundle's last modification
+ * time) and TLD location. When the cache is given a directory, TLDs of each bundle are additionally stored in
+ * a file, so they're not parsed again after restart.</p>
+ *
+ * <p>When the cache {@link #track(BundleContext) tracks} the bundles, TLDs (and their files) of uninstalled or
+ * unresolved bundles are removed, so the cache doesn't grow as bundles come and go.</p>
+ */
+final class PaxWebTldCache implements BundleListener {
+
+	public static final Logger LOG = LoggerFactory.getLogger(PaxWebTldCache.class);
+
+	private static final int MAGIC = 0x50574c54;
+	private static final int FORMAT_VERSION = 1;
+
+	/** Directory for persistent cache - {@code null} if TLDs are cached only in memory */
+	private final File directory;
+
+	/** Bundle id to the TLDs of current revision of the bundle */
+	private final Map<Long, BundleTlds> cache = new ConcurrentHashMap<>();
+
+	/** {@link BundleContext} used to register this cache as {@link BundleListener} */
+	private BundleContext trackingContext;
+
+	PaxWebTldCache(File directory) {
+		this.directory = directory;
+		if (directory != null) {
+			directory.mkdirs();
+		}
+	}
+
+	/**
+	 * Returns cached {@link TaglibXml} for a TLD from given bundle
+	 * @param bundle
+	 * @param path
+	 * @return {@code null} if not cached
+	 */
+	TaglibXml get(Bundle bundle, TldResourcePath path) {
+		if (bundle == null) {
+			return null;
+		}
+		return tlds(bundle).taglibs.get(key(path));
+	}
+
+	/**
+	 * Caches {@link TaglibXml} parsed from given bundle
+	 * @param bundle
+	 * @param path
+	 * @param taglib
+	 */
+	void put(Bundle bundle, TldResourcePath path, TaglibXml taglib) {
+		if (bundle == null) {
+			return;
+		}
+		BundleTlds tlds = tlds(bundle);
+		tlds.taglibs.put(key(path), taglib);
+		tlds.dirty = true;
+	}
+
+	/**
+	 * Writes TLDs of the bundles, which were parsed since the cache was read
+	 */
+	void store() {
+		if (directory == null) {
+			return;
+		}
+		for (BundleTlds tlds : cache.values()) {
+			if (!tlds.dirty) {
+				continue;
+			}
+			synchronized (tlds) {
+				tlds.dirty = false;
+				try {
+					write(tlds);
+				} catch (IOException | RuntimeException e) {
+					LOG.warn("Can't store TLD cache {}: {}", tlds.file(), e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Clears in-memory cache.
+	 */
+	void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * Registers this cache as {@link BundleListener}, unless it's already registered using given context (the
+	 * listener is unregistered by the framework when the bundle of the context is stopped).
+	 * @param context
+	 */
+	synchronized void track(BundleContext context) {
+		if (context == null || context == trackingContext) {
+			return;
+		}
+		try {
+			context.addBundleListener(this);
+			trackingContext = context;
+		} catch (IllegalStateException e) {
+			LOG.debug("Can't track bundles for TLD cache: {}", e.getMessage());
+		}
+	}
+
+	@Override
+	public void bundleChanged(BundleEvent event) {
+		if (event.getType() == BundleEvent.UNINSTALLED || event.getType() == BundleEvent.UNRESOLVED) {
+			evict(event.getBundle());
+		}
+	}
+
+	/**
+	 * Removes TLDs of given bundle from memory and from the cache directory
+	 * @param bundle
+	 */
+	void evict(Bundle bundle) {
+		cache.compute(bundle.getBundleId(), (id, tlds) -> {
+			deleteFiles(id, null);
+			return null;
+		});
+	}
+
+	private BundleTlds tlds(Bundle bundle) {
+		long revision = bundle.getLastModified();
+		return cache.compute(bundle.getBundleId(), (id, tlds) -> {
+			if (tlds != null && tlds.revision == revision) {
+				return tlds;
+			}
+			BundleTlds current = new BundleTlds(id, revision);
+			if (directory != null) {
+				// remove files of previous revisions and read the current one
+				deleteFiles(id, current.file());
+				read(current);
+			}
+			return current;
+		});
+	}
+
+	/**
+	 * Deletes cache files of given bundle
+	 * @param bundleId
+	 * @param keep the file to keep, may be {@code null}
+	 */
+	private void deleteFiles(long bundleId, File keep) {
+		if (directory == null) {
+			return;
+		}
+		File[] files = directory.listFiles((dir, name) -> name.startsWith(bundleId + "-"));
+		if (files != null) {
+			for (File f : files) {
+				if (!f.equals(keep)) {
+					f.delete();
+				}
+			}
+		}
+	}
+
+	private String key(TldResourcePath path) {
+		return path.getEntryName() == null ? path.getUrl().toString()
+				: path.getUrl().toString() + "!/" + path.getEntryName();
+	}
+
+	private void read(BundleTlds tlds) {
+		File file = tlds.file();
+		if (!file.isFile()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				return;
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String key = in.readUTF();
+				tlds.taglibs.put(key, readTaglib(in));
+			}
+			LOG.debug("Read {} cached TLDs from {}", count, file);
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("Can't read TLD cache {}: {}", file, e.getMessage());
+			tlds.taglibs.clear();
+		}
+	}
+
+	private void write(BundleTlds tlds) throws IOException {
+		Path tmp = Files.createTempFile(directory.toPath(), tlds.file().getName(), ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			Map<String, TaglibXml> taglibs = new HashMap<>(tlds.taglibs);
+			out.writeInt(taglibs.size());
+			for (Map.Entry<String, TaglibXml> e : taglibs.entrySet()) {
+				out.writeUTF(e.getKey());
+				writeTaglib(out, e.getValue());
+			}
+		}
+		Files.move(tmp, tlds.file().toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	// --- (de)serialization of TaglibXml, which (and its components) is not Serializable
+
+	private TaglibXml readTaglib(DataInputStream in) throws IOException {
+		TaglibXml taglib = new TaglibXml();
+		taglib.setTlibVersion(readString(in));
+		taglib.setJspVersion(readString(in));
+		taglib.setShortName(readString(in));
+		taglib.setUri(readString(in));
+		taglib.setInfo(readString(in));
+		if (in.readBoolean()) {
+			ValidatorXml validator = new ValidatorXml();
+			validator.setValidatorClass(readString(in));
+			int params = in.readInt();
+			for (int i = 0; i < params; i++) {
+				validator.addInitParam(readString(in), readString(in));
+			}
+			taglib.setValidator(validator);
+		}
+		int tags = in.readInt();
+		for (int i = 0; i < tags; i++) {
+			TagXml tag = new TagXml();
+			tag.setName(readString(in));
+			tag.setTagClass(readString(in));
+			tag.setTeiClass(readString(in));
+			tag.setBodyContent(readString(in));
+			tag.setDisplayName(readString(in));
+			tag.setSmallIcon(readString(in));
+			tag.setLargeIcon(readString(in));
+			tag.setInfo(readString(in));
+			tag.setDynamicAttributes(in.readBoolean());
+			int attributes = in.readInt();
+			for (int a = 0; a < attributes; a++) {
+				tag.getAttributes().add(new TagAttributeInfo(readString(in), in.readBoolean(), readString(in),
+						in.readBoolean(), in.readBoolean(), readString(in), in.readBoolean(), in.readBoolean(),
+						readString(in), readString(in)));
+			}
+			int variables = in.readInt();
+			for (int v = 0; v < variables; v++) {
+				tag.getVariables().add(new TagVariableInfo(readString(in), readString(in), readString(in),
+						in.readBoolean(), in.readInt()));
+			}
+			taglib.addTag(tag);
+		}
+		int tagFiles = in.readInt();
+		for (int i = 0; i < tagFiles; i++) {
+			TagFileXml tagFile = new TagFileXml();
+			tagFile.setName(readString(in));
+			tagFile.setPath(readString(in));
+			tagFile.setDisplayName(readString(in));
+			tagFile.setSmallIcon(readString(in));
+			tagFile.setLargeIcon(readString(in));
+			tagFile.setInfo(readString(in));
+			taglib.addTagFile(tagFile);
+		}
+		int listeners = in.readInt();
+		for (int i = 0; i < listeners; i++) {
+			taglib.addListener(readString(in));
+		}
+		int functions = in.readInt();
+		for (int i = 0; i < functions; i++) {
+			taglib.addFunction(readString(in), readString(in), readString(in));
+		}
+		return taglib;
+	}
+
+	private void writeTaglib(DataOutputStream out, TaglibXml taglib) throws IOException {
+		writeString(out, taglib.getTlibVersion());
+		writeString(out, taglib.getJspVersion());
+		writeString(out, taglib.getShortName());
+		writeString(out, taglib.getUri());
+		writeString(out, taglib.getInfo());
+		ValidatorXml validator = taglib.getValidator();
+		out.writeBoolean(validator != null);
+		if (validator != null) {
+			writeString(out, validator.getValidatorClass());
+			Set<Map.Entry<String, String>> params = validator.getInitParams().entrySet();
+			out.writeInt(params.size());
+			for (Map.Entry<String, String> e : params) {
+				writeString(out, e.getKey());
+				writeString(out, e.getValue());
+			}
+		}
+		List<TagXml> tags = taglib.getTags();
+		out.writeInt(tags.size());
+		for (TagXml tag : tags) {
+			writeString(out, tag.getName());
+			writeString(out, tag.getTagClass());
+			writeString(out, tag.getTeiClass());
+			writeString(out, tag.getBodyContent());
+			writeString(out, tag.getDisplayName());
+			writeString(out, tag.getSmallIcon());
+			writeString(out, tag.getLargeIcon());
+			writeString(out, tag.getInfo());
+			out.writeBoolean(tag.hasDynamicAttributes());
+			out.writeInt(tag.getAttributes().size());
+			for (TagAttributeInfo a : tag.getAttributes()) {
+				writeString(out, a.getName());
+				out.writeBoolean(a.isRequired());
+				writeString(out, a.getTypeName());
+				out.writeBoolean(a.canBeRequestTime());
+				out.writeBoolean(a.isFragment());
+				writeString(out, a.getDescription());
+				out.writeBoolean(a.isDeferredValue());
+				out.writeBoolean(a.isDeferredMethod());
+				writeString(out, a.getExpectedTypeName());
+				writeString(out, a.getMethodSignature());
+			}
+			out.writeInt(tag.getVariables().size());
+			for (TagVariableInfo v : tag.getVariables()) {
+				writeString(out, v.getNameGiven());
+				writeString(out, v.getNameFromAttribute());
+				writeString(out, v.getClassName());
+				out.writeBoolean(v.getDeclare());
+				out.writeInt(v.getScope());
+			}
+		}
+		List<TagFileXml> tagFiles = taglib.getTagFiles();
+		out.writeInt(tagFiles.size());
+		for (TagFileXml tagFile : tagFiles) {
+			writeString(out, tagFile.getName());
+			writeString(out, tagFile.getPath());
+			writeString(out, tagFile.getDisplayName());
+			writeString(out, tagFile.getSmallIcon());
+			writeString(out, tagFile.getLargeIcon());
+			writeString(out, tagFile.getInfo());
+		}
+		List<String> listeners = taglib.getListeners();
+		out.writeInt(listeners.size());
+		for (String listener : listeners) {
+			writeString(out, listener);
+		}
+		List<FunctionInfo> functions = taglib.getFunctions();
+		out.writeInt(functions.size());
+		for (FunctionInfo f : functions) {
+			writeString(out, f.getName());
+			writeString(out, f.getFunctionClass());
+			writeString(out, f.getFunctionSignature());
+		}
+	}
+
+	private String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	/**
+	 * TLDs of single revision of single bundle
+	 */
+	private final class BundleTlds {
+		private final long bundleId;
+		private final long revision;
+		private final Map<String, TaglibXml> taglibs = new ConcurrentHashMap<>();
+		private volatile boolean dirty = false;
+
+		BundleTlds(long bundleId, long revision) {
+			this.bundleId = bundleId;
+			this.revision = revision;
+		}
+
+		File file() {
+			return new File(directory, bundleId + "-" + revision + ".tlds");
+		}
+	}
+
+}
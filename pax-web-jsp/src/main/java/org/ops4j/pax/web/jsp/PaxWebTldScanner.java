@@ -15,6 +15,7 @@
  */
 package org.ops4j.pax.web.jsp;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -22,12 +23,19 @@ import java.util.Collections;
 import java.util.Deque;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import javax.servlet.ServletContext;
 
 import org.apache.jasper.servlet.TldScanner;
+import org.apache.tomcat.util.descriptor.tld.TaglibXml;
 import org.apache.tomcat.util.descriptor.tld.TldResourcePath;
 import org.ops4j.pax.web.service.spi.util.Utils;
 import org.ops4j.pax.web.utils.ClassPathUtil;
@@ -38,7 +46,10 @@ import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
 /**
- * Version of {@link TldScanner} that know a bit more about OSGi.
+ * <p>Version of {@link TldScanner} that know a bit more about OSGi.</p>
+ *
+ * <p>Parsed TLDs are kept in {@link PaxWebTldCache} shared by all the scanners, so TLDs from the same bundle
+ * revision are parsed once, even if they're used by many contexts or after restart.</p>
  */
 public class PaxWebTldScanner extends TldScanner {
 
@@ -49,6 +60,12 @@ public class PaxWebTldScanner extends TldScanner {
 
 	private final Set<URL> scanned = new HashSet<>();
 
+	/** Cache of TLDs shared by all the scanners - persistent if pax-web-jsp bundle has a data area */
+	private static final PaxWebTldCache CACHE = new PaxWebTldCache(cacheDirectory());
+
+	/** The bundle providing TLDs being parsed, {@code null} if TLDs should not be cached */
+	private Bundle tldBundle;
+
 	public PaxWebTldScanner(ServletContext context, Bundle bundle) {
 		super(context, true, true, true);
 		this.bundle = bundle;
@@ -62,6 +79,11 @@ public class PaxWebTldScanner extends TldScanner {
 		//    of the Java EE platform.
 		//    In Pax Web the "platform" will be pax-web-jsp bundle and we'll just get standard tag library TLDs
 		LOG.info("Searching for TlDs in pax-web-jsp bundle");
+		tldBundle = FrameworkUtil.getBundle(this.getClass());
+		if (tldBundle != null) {
+			// TLDs of uninstalled/unresolved bundles should be removed from the cache
+			CACHE.track(tldBundle.getBundleContext());
+		}
 		scanPlatform();
 
 		// 2. Taglib Map in web.xml - these are the ones registered using:
@@ -69,6 +91,7 @@ public class PaxWebTldScanner extends TldScanner {
 		//     - org.ops4j.pax.web.service.WebContainer.registerJspConfigPropertyGroup()
 		//    these match /web-app/jsp-config/taglib/taglib-location elements in web.xml
 		LOG.info("Searching for TlDs in context configuration (web.xml)");
+		tldBundle = bundle;
 		scanJspConfig();
 
 		// 3. TLDs found as resources of ServletContext - that's done entirely by Tomcat, no OSGi here except
@@ -89,6 +112,9 @@ public class PaxWebTldScanner extends TldScanner {
 		//     - (optionally?) this bundle's wires
 		LOG.info("Searching for TlDs in bundle {}", bundle);
 		scanBundle(bundle);
+
+		// TLDs parsed by this scanner are stored for other contexts and for next restart
+		CACHE.store();
 	}
 
 	@Override
@@ -140,13 +166,14 @@ public class PaxWebTldScanner extends TldScanner {
 	 * @param bundle
 	 */
 	private void scanBundle(Bundle bundle) throws IOException {
-		List<URL> tldURLs = new ArrayList<>(16);
+		// TLD URLs with the bundles that provide them
+		Map<URL, Bundle> tldURLs = new LinkedHashMap<>(16);
 
 		// First: entries from Bundle-ClassPath - we'll scan them separately, because we want to use Bundle.findEntries()
 		// methods, which checks the fragments, but doesn't check classpath at all
 		URL[] urls = ClassPathUtil.getClassPathURLs(bundle);
 		List<URL> jarTLDs = ClassPathUtil.findEntries(bundle, urls, "META-INF", "*.tld", true);
-		tldURLs.addAll(jarTLDs);
+		jarTLDs.forEach(url -> tldURLs.put(url, bundle));
 
 		// 2nd: scan the bundle itself and its fragments using org.osgi.framework.wiring.BundleWiring.findEntries() API.
 		// This method doesn't involve classloaders. Just as with WABs, I've decided to treat all reachable bundles
@@ -161,10 +188,11 @@ public class PaxWebTldScanner extends TldScanner {
 
 		// transitive closure of reachable bundles (not fragments, because these are handled together with associated
 		// bundles)
+		Set<Bundle> orderedBundles = new LinkedHashSet<>();
 		Deque<Bundle> bundles = new LinkedList<>(Collections.singletonList(bundle));
 		while (bundles.size() > 0) {
 			Bundle b = bundles.pop();
-			if (processedBundles.contains(b)) {
+			if (!processedBundles.add(b)) {
 				continue;
 			}
 			Set<Bundle> reachable = new HashSet<>();
@@ -174,17 +202,48 @@ public class PaxWebTldScanner extends TldScanner {
 					bundles.add(rb);
 				}
 			}
-			List<URL> bundleTLDs = ClassPathUtil.findEntries(bundles, "META-INF", "*.tld", true, false);
-			tldURLs.addAll(bundleTLDs);
-			processedBundles.add(b);
+			orderedBundles.add(b);
+		}
+
+		// searching the entries is the expensive part, so it's done in parallel (in bounded pool shared by all JSP
+		// contexts, not in common fork-join pool of the application), but the TLDs are collected in the
+		// order of the bundles, so parsing (which isn't thread safe) is deterministic
+		List<Bundle> bundleList = new ArrayList<>(orderedBundles);
+		if (bundleList.size() < 2) {
+			for (Bundle b : bundleList) {
+				ClassPathUtil.findEntries(b, "META-INF", "*.tld", true, false).forEach(url -> tldURLs.putIfAbsent(url, b));
+			}
+		} else {
+			ForkJoinPool pool = JspTaskPool.get();
+			List<ForkJoinTask<List<URL>>> tasks = new ArrayList<>(bundleList.size());
+			try {
+				for (Bundle b : bundleList) {
+					tasks.add(pool.submit(() -> ClassPathUtil.findEntries(b, "META-INF", "*.tld", true, false)));
+				}
+				for (int i = 0; i < bundleList.size(); i++) {
+					Bundle b = bundleList.get(i);
+					tasks.get(i).get().forEach(url -> tldURLs.putIfAbsent(url, b));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				tasks.forEach(t -> t.cancel(true));
+				throw new IOException("TLD scanning interrupted", e);
+			} catch (ExecutionException e) {
+				tasks.forEach(t -> t.cancel(true));
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IOException(e.getCause().getMessage(), e.getCause());
+			}
 		}
 
 		// and finally parse all TLDs - the ones from Bundle-ClassPath are parsed first - just as with JavaEE
-		for (URL tld : tldURLs) {
+		for (Map.Entry<URL, Bundle> tld : tldURLs.entrySet()) {
 			try {
-				parseTld(new TldResourcePath(tld, null));
+				tldBundle = tld.getValue();
+				parseTld(new TldResourcePath(tld.getKey(), null));
 			} catch (SAXException | IOException e) {
-				LOG.warn("Problem parsing TLD at {}", tld);
+				LOG.warn("Problem parsing TLD at {}", tld.getKey());
 			}
 		}
 	}
@@ -196,9 +255,35 @@ public class PaxWebTldScanner extends TldScanner {
 		if (scanned.contains(path.getUrl())) {
 			return;
 		}
-		LOG.info("Parsing TLD {}", path.getUrl());
-		super.parseTld(path);
+		TaglibXml tld = CACHE.get(tldBundle, path);
+		if (tld == null) {
+			LOG.info("Parsing TLD {}", path.getUrl());
+			super.parseTld(path);
+			TaglibXml parsed = getTldResourcePathTaglibXmlMap().get(path);
+			if (parsed != null) {
+				CACHE.put(tldBundle, path, parsed);
+			}
+		} else if (!getTldResourcePathTaglibXmlMap().containsKey(path)) {
+			// the same what super.parseTld() does after parsing
+			LOG.debug("Using cached TLD {}", path.getUrl());
+			if (tld.getUri() != null) {
+				getUriTldResourcePathMap().putIfAbsent(tld.getUri(), path);
+			}
+			getTldResourcePathTaglibXmlMap().put(path, tld);
+			if (tld.getListeners() != null) {
+				getListeners().addAll(tld.getListeners());
+			}
+		}
 		scanned.add(path.getUrl());
 	}
 
+	/**
+	 * Directory for persistent TLD cache is taken from the data area of pax-web-jsp bundle.
+	 * @return
+	 */
+	private static File cacheDirectory() {
+		Bundle paxWebJsp = FrameworkUtil.getBundle(PaxWebTldScanner.class);
+		return paxWebJsp == null ? null : paxWebJsp.getDataFile("tld-cache");
+	}
+
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.jsp;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InstanceManagerTest {
+
+	@Test
+	public void lifecycleMethodsFromSuperclassFirst() throws Exception {
+		InstanceManager manager = new InstanceManager();
+
+		Child child = new Child();
+		manager.newInstance(child);
+		assertThat(child.calls, equalTo(Arrays.asList("parent-init", "child-init")));
+
+		manager.destroyInstance(child);
+		assertThat(child.calls, equalTo(Arrays.asList("parent-init", "child-init", "parent-destroy", "child-destroy")));
+	}
+
+	@Test
+	public void instancesNotCreatedByManagerAreNotDestroyed() throws Exception {
+		Child child = new Child();
+		new InstanceManager().destroyInstance(child);
+		assertTrue(child.calls.isEmpty());
+	}
+
+	@Test
+	public void exceptionsAreWrapped() throws Exception {
+		try {
+			new InstanceManager().newInstance(new Failing());
+			fail("Should throw InvocationTargetException");
+		} catch (InvocationTargetException e) {
+			assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+		}
+	}
+
+	@Test(expected = LinkageError.class)
+	public void errorsAreNotWrapped() throws Exception {
+		new InstanceManager().newInstance(new Erroneous());
+	}
+
+	@Test
+	public void newInstanceOfClass() throws Exception {
+		Object instance = new InstanceManager().newInstance(Child.class);
+		assertThat(((Child) instance).calls, equalTo(Arrays.asList("parent-init", "child-init")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidAnnotations() throws Exception {
+		new InstanceManager().newInstance(new Invalid());
+	}
+
+	public static class Parent {
+		final List<String> calls = new ArrayList<>();
+
+		@PostConstruct
+		private void parentInit() {
+			calls.add("parent-init");
+		}
+
+		@PreDestroy
+		void parentDestroy() {
+			calls.add("parent-destroy");
+		}
+	}
+
+	public static class Child extends Parent {
+		@PostConstruct
+		public void init() {
+			calls.add("child-init");
+		}
+
+		@PreDestroy
+		protected void destroy() {
+			calls.add("child-destroy");
+		}
+	}
+
+	public static class Failing {
+		@PostConstruct
+		public void init() {
+			throw new IllegalStateException("expected");
+		}
+	}
+
+	public static class Erroneous {
+		@PostConstruct
+		public void init() {
+			throw new LinkageError("expected");
+		}
+	}
+
+	public static class Invalid {
+		@PostConstruct
+		public void init(String arg) {
+		}
+	}
+
+}
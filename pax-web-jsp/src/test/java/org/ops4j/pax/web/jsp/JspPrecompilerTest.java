@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.jsp;
+
+import java.io.File;
+import javax.servlet.descriptor.JspConfigDescriptor;
+import javax.servlet.jsp.JspFactory;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.web.service.PaxWebConstants;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Version;
+import org.springframework.core.io.FileSystemResourceLoader;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JspPrecompilerTest {
+
+	private static File baseDir;
+
+	@BeforeClass
+	public static void initStaticDirectly() throws Exception {
+		JspFactory.setDefaultFactory(new org.apache.jasper.runtime.JspFactoryImpl());
+
+		baseDir = new File("target", "jsp-precompilation");
+		FileUtils.deleteDirectory(baseDir);
+		baseDir.mkdirs();
+	}
+
+	@Test
+	public void unchangedJspsAreNotCompiledAfterRestart() throws Exception {
+		File cacheDir = new File(baseDir, "cache");
+
+		JspPrecompiler precompiler = new JspPrecompiler(config("web", new File(baseDir, "scratch1")), cacheDir);
+		int compiled = precompiler.precompile();
+		assertThat(compiled, equalTo(6));
+		assertTrue(new File(cacheDir, "test.wab_1.0.0/42/index.properties").isFile());
+
+		// "restart" - new scratch dir, but the same cache
+		precompiler = new JspPrecompiler(config("web", new File(baseDir, "scratch2")), cacheDir);
+		compiled = precompiler.precompile();
+		assertThat(compiled, equalTo(0));
+		assertTrue(new File(baseDir, "scratch2/org/apache/jsp/simple_jsp.class").isFile());
+	}
+
+	@Test
+	public void revisionWithFailedJspsIsNotCached() throws Exception {
+		File cacheDir = new File(baseDir, "cache-broken");
+
+		JspPrecompiler precompiler = new JspPrecompiler(config("web-broken", new File(baseDir, "scratch3")), cacheDir);
+		int compiled = precompiler.precompile();
+		// broken.jsp is not counted as compiled
+		assertThat(compiled, equalTo(1));
+		assertTrue(new File(baseDir, "scratch3/org/apache/jsp/ok_jsp.class").isFile());
+		assertFalse(new File(cacheDir, "test.wab_1.0.0/42/index.properties").exists());
+		assertFalse(new File(cacheDir, "test.wab_1.0.0/42/classes").exists());
+	}
+
+	private MockServletConfig config(String root, File scratchDir) throws Exception {
+		MockServletContext context = new MockServletContext("src/test/resources/" + root, new FileSystemResourceLoader()) {
+			@Override
+			public JspConfigDescriptor getJspConfigDescriptor() {
+				return null;
+			}
+		};
+
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getSymbolicName()).thenReturn("test.wab");
+		when(bundle.getVersion()).thenReturn(new Version("1.0.0"));
+		when(bundle.getLastModified()).thenReturn(42L);
+		BundleContext bc = mock(BundleContext.class);
+		when(bc.getBundle()).thenReturn(bundle);
+		context.setAttribute(PaxWebConstants.CONTEXT_PARAM_BUNDLE_CONTEXT, bc);
+
+		new JasperInitializer().onStartup(null, context);
+
+		scratchDir.mkdirs();
+		MockServletConfig config = new MockServletConfig(context, "jsp");
+		config.addInitParameter("development", "false");
+		config.addInitParameter("scratchdir", scratchDir.getCanonicalPath());
+		return config;
+	}
+
+}
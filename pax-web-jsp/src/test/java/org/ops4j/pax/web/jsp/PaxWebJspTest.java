@@ -17,13 +17,17 @@
 package org.ops4j.pax.web.jsp;
 
 import java.io.File;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.servlet.Servlet;
 import javax.servlet.ServletContext;
 import javax.servlet.descriptor.JspConfigDescriptor;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.jsp.JspFactory;
+import javax.servlet.jsp.tagext.TagSupport;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.jasper.runtime.TagHandlerPool;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -39,7 +43,10 @@ import org.springframework.mock.web.MockServletConfig;
 import org.springframework.mock.web.MockServletContext;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -184,6 +191,28 @@ public class PaxWebJspTest {
 		assertTrue(response.contains("<span style=\"color: blue;\">Grzegorz&#160;</span>"));
 	}
 
+	@Test
+	public void tagHandlersUsePaxWebInstanceManager() throws Exception {
+		ServletContext servletContext = jspServlet.getServletConfig().getServletContext();
+		assertThat(servletContext.getAttribute(org.apache.tomcat.InstanceManager.class.getName()),
+				instanceOf(InstanceManager.class));
+
+		// the same pool that's used by generated JSP servlets for classic tags
+		TagHandlerPool pool = TagHandlerPool.getTagHandlerPool(new MockServletConfig(servletContext, "tags"));
+
+		LifecycleTag tag = (LifecycleTag) pool.get(LifecycleTag.class);
+		assertTrue(tag.initialized);
+		assertFalse(tag.destroyed);
+
+		pool.reuse(tag);
+		assertThat(pool.get(LifecycleTag.class), sameInstance(tag));
+		pool.reuse(tag);
+		assertFalse(tag.destroyed);
+
+		pool.release();
+		assertTrue(tag.destroyed);
+	}
+
 	private MockHttpServletRequest req(MockHttpServletRequest req, String s, String s1) {
 		req.setServletPath(s);
 		req.setPathInfo(s1);
@@ -212,4 +241,20 @@ public class PaxWebJspTest {
 		}
 	}
 
+	public static class LifecycleTag extends TagSupport {
+
+		private boolean initialized;
+		private boolean destroyed;
+
+		@PostConstruct
+		void init() {
+			initialized = true;
+		}
+
+		@PreDestroy
+		void destroy() {
+			destroyed = true;
+		}
+	}
+
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.jsp;
+
+import java.io.File;
+import java.net.URL;
+import javax.servlet.jsp.tagext.TagAttributeInfo;
+import javax.servlet.jsp.tagext.TagVariableInfo;
+import javax.servlet.jsp.tagext.VariableInfo;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.tomcat.util.descriptor.tld.TagXml;
+import org.apache.tomcat.util.descriptor.tld.TaglibXml;
+import org.apache.tomcat.util.descriptor.tld.TldResourcePath;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PaxWebTldCacheTest {
+
+	@Test
+	public void persistentCache() throws Exception {
+		File dir = new File("target", "tld-cache");
+		FileUtils.deleteDirectory(dir);
+
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getBundleId()).thenReturn(42L);
+		when(bundle.getLastModified()).thenReturn(1L);
+		TldResourcePath path = new TldResourcePath(new URL("file:/tags/c.tld"), null);
+
+		TaglibXml taglib = new TaglibXml();
+		taglib.setUri("http://java.sun.com/jsp/jstl/core");
+		taglib.setShortName("c");
+		taglib.setTlibVersion("1.2");
+		taglib.addListener("org.example.Listener");
+		taglib.addFunction("length", "org.example.Functions", "int length(java.lang.Object)");
+		TagXml tag = new TagXml();
+		tag.setName("out");
+		tag.setTagClass("org.example.OutTag");
+		tag.setBodyContent("JSP");
+		tag.getAttributes().add(new TagAttributeInfo("value", true, "java.lang.Object", true, false, null,
+				false, false, null, null));
+		tag.getVariables().add(new TagVariableInfo("item", null, "java.lang.String", true, VariableInfo.NESTED));
+		taglib.addTag(tag);
+
+		PaxWebTldCache cache = new PaxWebTldCache(dir);
+		assertThat(cache.get(bundle, path), nullValue());
+		cache.put(bundle, path, taglib);
+		cache.store();
+		assertTrue(new File(dir, "42-1.tlds").isFile());
+
+		// new cache (as after restart) reads the TLD from disk
+		TaglibXml read = new PaxWebTldCache(dir).get(bundle, path);
+		assertThat(read.getUri(), equalTo("http://java.sun.com/jsp/jstl/core"));
+		assertThat(read.getShortName(), equalTo("c"));
+		assertThat(read.getListeners().get(0), equalTo("org.example.Listener"));
+		assertThat(read.getFunctions().get(0).getFunctionSignature(), equalTo("int length(java.lang.Object)"));
+		TagXml readTag = read.getTags().get(0);
+		assertThat(readTag.getTagClass(), equalTo("org.example.OutTag"));
+		assertThat(readTag.getAttributes().get(0).getName(), equalTo("value"));
+		assertTrue(readTag.getAttributes().get(0).isRequired());
+		assertThat(readTag.getVariables().get(0).getScope(), equalTo(VariableInfo.NESTED));
+
+		// new revision of the bundle invalidates the cache
+		when(bundle.getLastModified()).thenReturn(2L);
+		assertThat(new PaxWebTldCache(dir).get(bundle, path), nullValue());
+		assertTrue(!new File(dir, "42-1.tlds").exists());
+	}
+
+	@Test
+	public void uninstalledBundleIsEvicted() throws Exception {
+		File dir = new File("target", "tld-cache-evict");
+		FileUtils.deleteDirectory(dir);
+
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getBundleId()).thenReturn(42L);
+		when(bundle.getLastModified()).thenReturn(1L);
+		TldResourcePath path = new TldResourcePath(new URL("file:/tags/c.tld"), null);
+		TaglibXml taglib = new TaglibXml();
+		taglib.setUri("http://java.sun.com/jsp/jstl/core");
+
+		PaxWebTldCache cache = new PaxWebTldCache(dir);
+		cache.put(bundle, path, taglib);
+		cache.store();
+		assertTrue(new File(dir, "42-1.tlds").isFile());
+
+		// other bundles are not affected
+		Bundle other = mock(Bundle.class);
+		when(other.getBundleId()).thenReturn(43L);
+		cache.bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, other));
+		assertThat(cache.get(bundle, path).getUri(), equalTo("http://java.sun.com/jsp/jstl/core"));
+
+		cache.bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, bundle));
+		assertTrue(!new File(dir, "42-1.tlds").exists());
+		assertThat(cache.get(bundle, path), nullValue());
+	}
+
+}
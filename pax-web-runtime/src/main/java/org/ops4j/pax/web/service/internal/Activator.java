@@ -38,18 +38,30 @@ import org.ops4j.pax.web.service.WebContainer;
 import org.ops4j.pax.web.service.internal.util.SupportUtils;
 import org.ops4j.pax.web.service.spi.ServerController;
 import org.ops4j.pax.web.service.spi.ServerControllerFactory;
+import org.ops4j.pax.web.service.spi.admission.AdaptiveLimitSettings;
+import org.ops4j.pax.web.service.spi.admission.AdmissionControl;
+import org.ops4j.pax.web.service.spi.admission.BulkheadSettings;
+import org.ops4j.pax.web.service.spi.compression.CompressionSettings;
+import org.ops4j.pax.web.service.spi.compression.ResponseCompression;
 import org.ops4j.pax.web.service.spi.config.Configuration;
+import org.ops4j.pax.web.service.spi.metrics.WebMetrics;
+import org.ops4j.pax.web.service.spi.metrics.WebMetricsRegistry;
 import org.ops4j.pax.web.service.spi.model.ServerModel;
 import org.ops4j.pax.web.service.spi.model.events.ServerListener;
 import org.ops4j.pax.web.service.spi.model.events.WebElementEventListener;
 import org.ops4j.pax.web.service.spi.util.NamedThreadFactory;
 import org.ops4j.pax.web.service.spi.util.Utils;
+import org.ops4j.pax.web.utils.ClassPathUtil;
 import org.ops4j.util.property.DictionaryPropertyResolver;
 import org.ops4j.util.property.PropertyResolver;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
 import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
 import org.osgi.framework.ServiceFactory;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
@@ -115,6 +127,15 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 	/** Registration of default {@link ServletContextHelper} */
 	private ServiceRegistration<ServletContextHelper> servletContextHelperReg;
 
+	/** Registration of {@link WebMetrics} - only when metrics are enabled in current configuration */
+	private ServiceRegistration<WebMetrics> webMetricsReg;
+
+	/** JMX view of {@link WebMetrics} - only when metrics are enabled in current configuration */
+	private WebMetricsJmx webMetricsJmx;
+
+	/** JMX view of bulkheads and adaptive limiters - registered while the runtime is started */
+	private AdmissionControlJmx admissionControlJmx;
+
 //	/**
 //	 * Registration of MSF for {@code org.ops4j.pax.web.context} factory PID for current
 //	 * {@link ServerControllerFactory}. When {@link ServerControllerFactory} changes, this MSF is re-registered.
@@ -142,6 +163,27 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 	private ScheduledExecutorService runtimeExecutor;
 	private long registrationThreadId;
 
+	/**
+	 * {@link FrameworkListener} that drops no longer valid entries from framework-wide cache of bundle class spaces
+	 * and cached JAR indexes after bundles are refreshed.
+	 */
+	private final FrameworkListener refreshListener = event -> {
+		if (event.getType() == FrameworkEvent.PACKAGES_REFRESHED) {
+			ClassPathUtil.purgeClassSpaceCache();
+			ClassPathUtil.clearJarIndexCache();
+		}
+	};
+
+	/**
+	 * {@link BundleListener} that drops cached class spaces of uninstalled/unresolved bundles (and the class spaces
+	 * containing such bundles) without waiting for refresh.
+	 */
+	private final BundleListener uninstallListener = event -> {
+		if (event.getType() == BundleEvent.UNINSTALLED || event.getType() == BundleEvent.UNRESOLVED) {
+			ClassPathUtil.evictClassSpaceCache(event.getBundle());
+		}
+	};
+
 	@Override
 	public void start(final BundleContext context) throws Exception {
 		LOG.debug("Starting Pax Web Runtime");
@@ -151,6 +193,9 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 
 		bundleContext = context;
 
+		bundleContext.addFrameworkListener(refreshListener);
+		bundleContext.addBundleListener(uninstallListener);
+
 //		if (SupportUtils.isEventAdminAvailable()) {
 //			// Do use the filters this way the eventadmin packages can be resolved optional!
 //			Filter filterEvent = context.createFilter("(objectClass=org.osgi.service.event.EventAdmin)");
@@ -202,6 +247,11 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 	public void stop(final BundleContext context) {
 		LOG.debug("Stopping Pax Web Runtime");
 
+		context.removeFrameworkListener(refreshListener);
+		context.removeBundleListener(uninstallListener);
+		ClassPathUtil.clearClassSpaceCache();
+		ClassPathUtil.clearJarIndexCache();
+
 		if (serverListenerTracker != null) {
 			serverListenerTracker.close();
 			serverListenerTracker = null;
@@ -221,6 +271,13 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 			managedServiceReg.unregister();
 			managedServiceReg = null;
 		}
+		configureMetrics(false);
+		ResponseCompression.getInstance().configure(CompressionSettings.DISABLED, 0);
+		AdmissionControl.getInstance().configure(BulkheadSettings.DISABLED, AdaptiveLimitSettings.DISABLED);
+		if (admissionControlJmx != null) {
+			admissionControlJmx.unregister();
+			admissionControlJmx = null;
+		}
 //		if (eventServiceTracker != null) {
 //			eventServiceTracker.close();
 //		}
@@ -430,6 +487,16 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 
 			webElementEventDispatcher = new WebElementEventDispatcher(bundleContext, configuration);
 
+			configureMetrics(configuration.server().isMetricsEnabled());
+			ResponseCompression.getInstance().configure(CompressionSettings.from(configuration.server()),
+					configuration.server().getCompressionDeflaterPoolSize());
+			AdmissionControl.getInstance().configure(BulkheadSettings.from(configuration.server()),
+					AdaptiveLimitSettings.from(configuration.server()));
+			if (admissionControlJmx == null) {
+				admissionControlJmx = new AdmissionControlJmx(AdmissionControl.getInstance());
+				admissionControlJmx.register();
+			}
+
 			// global, single representation of web server state. It's used
 			//  - in all bundle-scoped instances of HttpServiceEnabled
 			//  - also to reflect Whiteboard registrations (through pax-web-extender-whiteboard)
@@ -478,6 +545,27 @@ public class Activator implements BundleActivator, PaxWebManagedService.Configur
 		}
 	}
 
+	/**
+	 * Enables or disables collection of {@link WebMetrics} together with registration of the OSGi service
+	 * and the MBean.
+	 * @param enabled
+	 */
+	private void configureMetrics(boolean enabled) {
+		WebMetricsRegistry registry = WebMetricsRegistry.getInstance();
+		registry.setEnabled(enabled);
+		if (enabled && webMetricsReg == null) {
+			LOG.info("Registering WebMetrics service and {} MBean", WebMetricsJmx.OBJECT_NAME);
+			webMetricsReg = bundleContext.registerService(WebMetrics.class, registry, null);
+			webMetricsJmx = new WebMetricsJmx(registry);
+			webMetricsJmx.register();
+		} else if (!enabled && webMetricsReg != null) {
+			webMetricsReg.unregister();
+			webMetricsReg = null;
+			webMetricsJmx.unregister();
+			webMetricsJmx = null;
+		}
+	}
+
 	/**
 	 * Pass properties used to configure {@link HttpService} to service registration.
 	 *
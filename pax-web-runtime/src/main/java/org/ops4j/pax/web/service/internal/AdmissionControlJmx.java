@@ -0,0 +1,172 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.ops4j.pax.web.service.spi.admission.AdaptiveLimiter;
+import org.ops4j.pax.web.service.spi.admission.AdmissionControl;
+import org.ops4j.pax.web.service.spi.admission.Bulkhead;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link AdmissionControlMBean} that presents {@link AdmissionControl} as {@link TabularData}.
+ */
+class AdmissionControlJmx implements AdmissionControlMBean {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AdmissionControlJmx.class);
+
+	static final String OBJECT_NAME = "org.ops4j.pax.web:type=AdmissionControl";
+
+	private static final String[] BULKHEAD_ITEMS = new String[] {
+			"contextPath", "maxConcurrentRequests", "maxQueuedRequests", "asyncQueue", "dedicatedExecutor",
+			"activeRequests", "queuedRequests", "accepted", "rejected", "timedOut"
+	};
+	private static final String[] BULKHEAD_DESCRIPTIONS = new String[] {
+			"Context path", "Concurrency limit", "Queue limit", "Requests may wait asynchronously",
+			"Requests processed in dedicated executor", "Requests being processed", "Requests waiting for processing",
+			"Number of accepted requests",
+			"Number of requests rejected because of full queue", "Number of requests rejected after queue timeout"
+	};
+
+	private static final String[] LIMITER_ITEMS = new String[] {
+			"contextPath", "priority", "limit", "inFlight", "shortLatency", "longLatency",
+			"accepted", "rejected", "shed"
+	};
+	private static final String[] LIMITER_DESCRIPTIONS = new String[] {
+			"Context path", "Priority of the context", "Current concurrency limit", "Requests being processed",
+			"Short-term average latency (ms)", "Long-term average latency (ms)", "Number of accepted requests",
+			"Number of requests rejected because of the limit",
+			"Number of requests rejected because of low priority"
+	};
+
+	private static final CompositeType BULKHEAD_TYPE;
+	private static final TabularType BULKHEADS_TYPE;
+	private static final CompositeType LIMITER_TYPE;
+	private static final TabularType LIMITERS_TYPE;
+
+	static {
+		try {
+			BULKHEAD_TYPE = new CompositeType("Bulkhead", "Concurrency limit of single context path",
+					BULKHEAD_ITEMS, BULKHEAD_DESCRIPTIONS, new OpenType<?>[] {
+							SimpleType.STRING, SimpleType.INTEGER, SimpleType.INTEGER, SimpleType.BOOLEAN,
+							SimpleType.BOOLEAN, SimpleType.INTEGER, SimpleType.INTEGER, SimpleType.LONG, SimpleType.LONG,
+							SimpleType.LONG
+					});
+			BULKHEADS_TYPE = new TabularType("Bulkheads", "Concurrency limits of context paths", BULKHEAD_TYPE,
+					new String[] { "contextPath" });
+			LIMITER_TYPE = new CompositeType("AdaptiveLimiter", "Adaptive concurrency limit of single context path",
+					LIMITER_ITEMS, LIMITER_DESCRIPTIONS, new OpenType<?>[] {
+							SimpleType.STRING, SimpleType.STRING, SimpleType.INTEGER, SimpleType.INTEGER,
+							SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG
+					});
+			LIMITERS_TYPE = new TabularType("AdaptiveLimiters", "Adaptive concurrency limits of context paths",
+					LIMITER_TYPE, new String[] { "contextPath" });
+		} catch (OpenDataException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	private final AdmissionControl admissionControl;
+
+	private ObjectName objectName;
+
+	AdmissionControlJmx(AdmissionControl admissionControl) {
+		this.admissionControl = admissionControl;
+	}
+
+	/**
+	 * Registers this MBean in platform {@link MBeanServer}
+	 */
+	public void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(new StandardMBean(this, AdmissionControlMBean.class), name);
+			objectName = name;
+		} catch (JMException | RuntimeException e) {
+			LOG.warn("Can't register {} MBean: {}", OBJECT_NAME, e.getMessage());
+		}
+	}
+
+	/**
+	 * Unregisters this MBean from platform {@link MBeanServer}
+	 */
+	public void unregister() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException | RuntimeException e) {
+			LOG.debug("Can't unregister {} MBean: {}", OBJECT_NAME, e.getMessage());
+		}
+		objectName = null;
+	}
+
+	@Override
+	public TabularData getBulkheads() {
+		TabularDataSupport table = new TabularDataSupport(BULKHEADS_TYPE);
+		for (Bulkhead b : admissionControl.getBulkheads()) {
+			try {
+				table.put(new CompositeDataSupport(BULKHEAD_TYPE, BULKHEAD_ITEMS, new Object[] {
+						b.getContextPath(), b.getSettings().getMaxConcurrentRequests(),
+						b.getSettings().getMaxQueuedRequests(), b.isAsyncQueue(), b.hasExecutor(),
+						b.getActiveRequests(), b.getQueuedRequests(),
+						b.getAcceptedCount(), b.getRejectedCount(), b.getTimedOutCount()
+				}));
+			} catch (OpenDataException e) {
+				LOG.debug("Can't present bulkhead {}: {}", b, e.getMessage());
+			}
+		}
+		return table;
+	}
+
+	@Override
+	public TabularData getLimiters() {
+		TabularDataSupport table = new TabularDataSupport(LIMITERS_TYPE);
+		for (AdaptiveLimiter l : admissionControl.getLimiters()) {
+			try {
+				table.put(new CompositeDataSupport(LIMITER_TYPE, LIMITER_ITEMS, new Object[] {
+						l.getContextPath(), l.getSettings().getPriority().name().toLowerCase(Locale.ENGLISH),
+						l.getLimit(), l.getInFlight(), l.getShortLatency(), l.getLongLatency(),
+						l.getAcceptedCount(), l.getRejectedCount(), l.getShedCount()
+				}));
+			} catch (OpenDataException e) {
+				LOG.debug("Can't present limiter {}: {}", l, e.getMessage());
+			}
+		}
+		return table;
+	}
+
+}
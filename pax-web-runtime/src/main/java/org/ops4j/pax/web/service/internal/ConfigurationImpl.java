@@ -496,6 +496,19 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 		return super.get(property);
 	}
 
+	private Long resolveLongProperty(String property) {
+		if (!contains(property)) {
+			ensurePropertyResolver(property);
+			try {
+				String resolvedProperty = propertyResolver.get(property);
+				return set(property, resolvedProperty == null ? null : Long.valueOf(resolvedProperty.trim()));
+			} catch (Exception e) {
+				LOG.debug("Reading configuration property " + property + " has failed: {}", e.getMessage());
+			}
+		}
+		return super.get(property);
+	}
+
 	private Boolean eagerBooleanProperty(String property) {
 		return super.get(property);
 	}
@@ -541,6 +554,20 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 		private final int eventDispatcherThreadCount;
 
 		private final boolean showStacks;
+		private final boolean metricsEnabled;
+
+		private final boolean http2Enabled;
+		private final boolean http2CleartextEnabled;
+		private String[] alpnProtocols = new String[] { "h2", "http/1.1" };
+
+		private final boolean compressionEnabled;
+		private String[] compressionMimeTypes = new String[] {
+				"text/html", "text/plain", "text/css", "text/xml", "text/javascript", "application/javascript",
+				"application/json", "application/xml", "image/svg+xml"
+		};
+		private String[] compressionExcludedMimeTypes = new String[0];
+
+		private String[] proxyProtocolConnectors = new String[0];
 
 		@SuppressWarnings("deprecation")
 		private ServerConfigurationImpl() {
@@ -605,6 +632,34 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 
 			Boolean stacks = resolveBooleanProperty(PaxWebConfig.PID_CFG_SHOW_STACKS);
 			showStacks = stacks != null && stacks;
+
+			Boolean metrics = resolveBooleanProperty(PaxWebConfig.PID_CFG_METRICS_ENABLED);
+			metricsEnabled = metrics != null && metrics;
+
+			Boolean http2 = resolveBooleanProperty(PaxWebConfig.PID_CFG_HTTP2_ENABLED);
+			http2Enabled = http2 == null || http2;
+			Boolean h2c = resolveBooleanProperty(PaxWebConfig.PID_CFG_HTTP2_CLEARTEXT_ENABLED);
+			http2CleartextEnabled = h2c == null || h2c;
+			String alpn = resolveStringProperty(PaxWebConfig.PID_CFG_HTTP2_ALPN_PROTOCOLS);
+			if (alpn != null && !"".equals(alpn.trim())) {
+				alpnProtocols = alpn.trim().split("\\s*,\\s*");
+			}
+
+			Boolean compression = resolveBooleanProperty(PaxWebConfig.PID_CFG_COMPRESSION_ENABLED);
+			compressionEnabled = compression != null && compression;
+			String mimeTypes = resolveStringProperty(PaxWebConfig.PID_CFG_COMPRESSION_MIME_TYPES);
+			if (mimeTypes != null && !"".equals(mimeTypes.trim())) {
+				compressionMimeTypes = mimeTypes.trim().split("\\s*,\\s*");
+			}
+			String excludedMimeTypes = resolveStringProperty(PaxWebConfig.PID_CFG_COMPRESSION_EXCLUDED_MIME_TYPES);
+			if (excludedMimeTypes != null && !"".equals(excludedMimeTypes.trim())) {
+				compressionExcludedMimeTypes = excludedMimeTypes.trim().split("\\s*,\\s*");
+			}
+
+			String proxyProtocol = resolveStringProperty(PaxWebConfig.PID_CFG_PROXY_PROTOCOL);
+			if (proxyProtocol != null && !"".equals(proxyProtocol.trim())) {
+				proxyProtocolConnectors = proxyProtocol.trim().split("\\s*,\\s*");
+			}
 		}
 
 		@Override
@@ -642,6 +697,17 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 			return listeningAddresses;
 		}
 
+		@Override
+		public String getUnixDomainSocket() {
+			String path = resolveStringProperty(PaxWebConfig.PID_CFG_UNIX_DOMAIN_SOCKET);
+			return path == null || "".equals(path.trim()) ? null : Utils.resolve(path.trim());
+		}
+
+		@Override
+		public String[] getProxyProtocolConnectors() {
+			return proxyProtocolConnectors;
+		}
+
 		@Override
 		public Integer getConnectorIdleTimeout() {
 			return resolveIntegerProperty(PaxWebConfig.PID_CFG_CONNECTOR_IDLE_TIMEOUT);
@@ -692,6 +758,200 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 			return showStacks;
 		}
 
+		@Override
+		public Boolean isMetricsEnabled() {
+			return metricsEnabled;
+		}
+
+		@Override
+		public Boolean isHttp2Enabled() {
+			return http2Enabled;
+		}
+
+		@Override
+		public Boolean isHttp2CleartextEnabled() {
+			return http2CleartextEnabled;
+		}
+
+		@Override
+		public Integer getHttp2MaxConcurrentStreams() {
+			return resolveIntegerProperty(PaxWebConfig.PID_CFG_HTTP2_MAX_CONCURRENT_STREAMS);
+		}
+
+		@Override
+		public Integer getHttp2InitialStreamWindowSize() {
+			return resolveIntegerProperty(PaxWebConfig.PID_CFG_HTTP2_INITIAL_STREAM_WINDOW_SIZE);
+		}
+
+		@Override
+		public Integer getHttp2InitialSessionWindowSize() {
+			return resolveIntegerProperty(PaxWebConfig.PID_CFG_HTTP2_INITIAL_SESSION_WINDOW_SIZE);
+		}
+
+		@Override
+		public Integer getHttp2HeaderTableSize() {
+			return resolveIntegerProperty(PaxWebConfig.PID_CFG_HTTP2_HEADER_TABLE_SIZE);
+		}
+
+		@Override
+		public Integer getHttp2MaxFrameSize() {
+			return resolveIntegerProperty(PaxWebConfig.PID_CFG_HTTP2_MAX_FRAME_SIZE);
+		}
+
+		@Override
+		public String[] getAlpnProtocols() {
+			return alpnProtocols;
+		}
+
+		@Override
+		public Boolean isCompressionEnabled() {
+			return compressionEnabled;
+		}
+
+		@Override
+		public String[] getCompressionMimeTypes() {
+			return compressionMimeTypes;
+		}
+
+		@Override
+		public String[] getCompressionExcludedMimeTypes() {
+			return compressionExcludedMimeTypes;
+		}
+
+		@Override
+		public Integer getCompressionMinSize() {
+			Integer minSize = resolveIntegerProperty(PaxWebConfig.PID_CFG_COMPRESSION_MIN_SIZE);
+			return minSize == null ? 2048 : minSize;
+		}
+
+		@Override
+		public Integer getCompressionLevel() {
+			Integer level = resolveIntegerProperty(PaxWebConfig.PID_CFG_COMPRESSION_LEVEL);
+			return level == null ? -1 : level;
+		}
+
+		@Override
+		public Integer getCompressionDeflaterPoolSize() {
+			Integer size = resolveIntegerProperty(PaxWebConfig.PID_CFG_COMPRESSION_DEFLATER_POOL_SIZE);
+			return size == null ? 64 : size;
+		}
+
+		@Override
+		public Boolean isBulkheadEnabled() {
+			Boolean enabled = resolveBooleanProperty(PaxWebConfig.PID_CFG_BULKHEAD_ENABLED);
+			return enabled != null && enabled;
+		}
+
+		@Override
+		public Integer getBulkheadMaxConcurrentRequests() {
+			Integer max = resolveIntegerProperty(PaxWebConfig.PID_CFG_BULKHEAD_MAX_CONCURRENT_REQUESTS);
+			return max == null ? 32 : max;
+		}
+
+		@Override
+		public Integer getBulkheadMaxQueuedRequests() {
+			Integer max = resolveIntegerProperty(PaxWebConfig.PID_CFG_BULKHEAD_MAX_QUEUED_REQUESTS);
+			return max == null ? 0 : max;
+		}
+
+		@Override
+		public Integer getBulkheadMaxQueueTime() {
+			Integer time = resolveIntegerProperty(PaxWebConfig.PID_CFG_BULKHEAD_MAX_QUEUE_TIME);
+			return time == null ? 1000 : time;
+		}
+
+		@Override
+		public Boolean isBulkheadAsyncQueue() {
+			Boolean asyncQueue = resolveBooleanProperty(PaxWebConfig.PID_CFG_BULKHEAD_ASYNC_QUEUE);
+			return asyncQueue != null && asyncQueue;
+		}
+
+		@Override
+		public Boolean isBulkheadDedicatedExecutor() {
+			Boolean dedicated = resolveBooleanProperty(PaxWebConfig.PID_CFG_BULKHEAD_DEDICATED_EXECUTOR);
+			return dedicated != null && dedicated;
+		}
+
+		@Override
+		public Integer getBulkheadRetryAfter() {
+			Integer retryAfter = resolveIntegerProperty(PaxWebConfig.PID_CFG_BULKHEAD_RETRY_AFTER);
+			return retryAfter == null ? 1 : retryAfter;
+		}
+
+		@Override
+		public Boolean isAdmissionEnabled() {
+			Boolean enabled = resolveBooleanProperty(PaxWebConfig.PID_CFG_ADMISSION_ENABLED);
+			return enabled != null && enabled;
+		}
+
+		@Override
+		public Integer getAdmissionInitialLimit() {
+			Integer limit = resolveIntegerProperty(PaxWebConfig.PID_CFG_ADMISSION_INITIAL_LIMIT);
+			return limit == null ? 20 : limit;
+		}
+
+		@Override
+		public Integer getAdmissionMinLimit() {
+			Integer limit = resolveIntegerProperty(PaxWebConfig.PID_CFG_ADMISSION_MIN_LIMIT);
+			return limit == null ? 4 : limit;
+		}
+
+		@Override
+		public Integer getAdmissionMaxLimit() {
+			Integer limit = resolveIntegerProperty(PaxWebConfig.PID_CFG_ADMISSION_MAX_LIMIT);
+			return limit == null ? 1000 : limit;
+		}
+
+		@Override
+		public Double getAdmissionTolerance() {
+			String tolerance = resolveStringProperty(PaxWebConfig.PID_CFG_ADMISSION_TOLERANCE);
+			if (tolerance == null || "".equals(tolerance.trim())) {
+				return 2.0d;
+			}
+			try {
+				return Double.parseDouble(tolerance.trim());
+			} catch (NumberFormatException e) {
+				LOG.warn("Incorrect value of {}: {}", PaxWebConfig.PID_CFG_ADMISSION_TOLERANCE, tolerance);
+				return 2.0d;
+			}
+		}
+
+		@Override
+		public Integer getAdmissionRetryAfter() {
+			Integer retryAfter = resolveIntegerProperty(PaxWebConfig.PID_CFG_ADMISSION_RETRY_AFTER);
+			return retryAfter == null ? 1 : retryAfter;
+		}
+
+		@Override
+		public String getAdmissionPriority() {
+			String priority = resolveStringProperty(PaxWebConfig.PID_CFG_ADMISSION_PRIORITY);
+			return priority == null ? "normal" : priority;
+		}
+
+		@Override
+		public String getMultipartLocation() {
+			String location = resolveStringProperty(PaxWebConfig.PID_CFG_MULTIPART_LOCATION);
+			return location == null || "".equals(location.trim()) ? null : Utils.resolve(location.trim());
+		}
+
+		@Override
+		public Integer getMultipartFileSizeThreshold() {
+			Integer threshold = resolveIntegerProperty(PaxWebConfig.PID_CFG_MULTIPART_FILE_SIZE_THRESHOLD);
+			return threshold == null ? 0 : threshold;
+		}
+
+		@Override
+		public Long getMultipartMaxFileSize() {
+			Long maxFileSize = resolveLongProperty(PaxWebConfig.PID_CFG_MULTIPART_MAX_FILE_SIZE);
+			return maxFileSize == null ? -1L : maxFileSize;
+		}
+
+		@Override
+		public Long getMultipartMaxRequestSize() {
+			Long maxRequestSize = resolveLongProperty(PaxWebConfig.PID_CFG_MULTIPART_MAX_REQUEST_SIZE);
+			return maxRequestSize == null ? -1L : maxRequestSize;
+		}
+
 		@Override
 		public List<String> getVirtualHosts() {
 			return Collections.emptyList();
@@ -952,6 +1212,12 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 		public Integer maxCacheTTL() {
 			return resolveIntegerProperty(PaxWebConfig.PID_CFG_DEFAULT_SERVLET_CACHE_TTL);
 		}
+
+		@Override
+		public Integer nonBlockingThreshold() {
+			Integer threshold = resolveIntegerProperty(PaxWebConfig.PID_CFG_DEFAULT_SERVLET_NON_BLOCKING_THRESHOLD);
+			return threshold == null ? 64 : threshold;
+		}
 	}
 
 	private class SessionConfigurationImpl implements SessionConfiguration {
@@ -1144,6 +1410,24 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 		public Boolean getLogNCSABuffered() {
 			return ncsaBuffered;
 		}
+
+		@Override
+		public Boolean isLogNCSAAsync() {
+			Boolean async = resolveBooleanProperty(PaxWebConfig.PID_CFG_LOG_NCSA_ASYNC);
+			return async != null && async;
+		}
+
+		@Override
+		public Integer getLogNCSABufferSize() {
+			Integer size = resolveIntegerProperty(PaxWebConfig.PID_CFG_LOG_NCSA_BUFFER_SIZE);
+			return size == null ? 8192 : size;
+		}
+
+		@Override
+		public Boolean isLogNCSABinary() {
+			Boolean binary = resolveBooleanProperty(PaxWebConfig.PID_CFG_LOG_NCSA_BINARY);
+			return binary != null && binary;
+		}
 	}
 
 	private class JspConfigurationImpl implements JspConfiguration {
@@ -1197,6 +1481,23 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 				return dir.getAbsolutePath();
 			}
 		}
+
+		@Override
+		public Boolean getJspPrecompilation() {
+			return resolveBooleanProperty(PaxWebConfig.PID_CFG_JSP_PRECOMPILATION);
+		}
+
+		@Override
+		public String getJspPrecompilationCacheDir() {
+			String location = resolveStringProperty(PaxWebConfig.PID_CFG_JSP_PRECOMPILATION_CACHE_DIR);
+			File dir = location != null ? new File(location) : new File(serverConfig.getTemporaryDirectory(), "jsp-cache");
+			try {
+				return dir.getCanonicalPath();
+			} catch (IOException e) {
+				LOG.warn("Unexpected problem when checking JSP precompilation cache dir {}", dir, e);
+				return dir.getAbsolutePath();
+			}
+		}
 	}
 
 }
@@ -63,6 +63,8 @@ public class HttpContextProcessing implements ManagedServiceFactory {
 	private static final String PREFIX_CONTEXT_PARAM = "context.param.";
 	private static final String PREFIX_LOGIN_CONFIG = "login.config.";
 	private static final String PREFIX_SECURITY = "security.";
+	private static final String PREFIX_COMPRESSION = "compression.";
+	private static final String PREFIX_COMPRESSION_CONTEXT_PARAM = "org.ops4j.pax.web.server.compression.";
 
 	private final ExecutorService configExecutor = new ThreadPoolExecutor(0, 1,
 			20, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory("paxweb-context"));
@@ -244,13 +246,21 @@ public class HttpContextProcessing implements ManagedServiceFactory {
 //						httpContext);
 //			}
 
+			// compression.* keys are passed as context init parameters overriding global
+			// org.ops4j.pax.web.server.compression.* properties
+			Dictionary<String, Object> compressionParams = collectCompressionParams(properties);
+			if (!compressionParams.isEmpty()) {
+				LOG.info("Setting compression parameters in WebContainer for bundle \"" + symbolicName + "\": {}", compressionParams);
+				wc.setContextParams(compressionParams, httpContext);
+			}
+
 			securityMappings = collectSecurityMappings(properties);
-//			if (securityMappings != null && !securityMappings.isEmpty()) {
-//				for (SecurityConstraintsMapping scm: securityMappings) {
-//					LOG.info("Registering security mappings in WebContainer for bundle \"" + symbolicName + "\": " + scm);
-//					wc.registerConstraintMapping(scm.name, scm.method, scm.url, null, true, scm.roles, httpContext);
-//				}
-//			}
+			if (securityMappings != null && !securityMappings.isEmpty()) {
+				for (SecurityConstraintsMapping scm: securityMappings) {
+					LOG.info("Registering security mappings in WebContainer for bundle \"" + symbolicName + "\": " + scm);
+					wc.registerConstraintMapping(scm.name, scm.method, scm.url, null, true, scm.roles, httpContext);
+				}
+			}
 
 			// altering the context required stopping it - let's (knowing the details) start it again
 			wc.end(httpContext);
@@ -269,10 +279,10 @@ public class HttpContextProcessing implements ManagedServiceFactory {
 
 			// we have to revert previous configuration - but current WebContainer interface doesn't allow
 			// us to clean everything correctly
-//			if (securityMappings.size() > 0) {
-//				wc.unregisterConstraintMapping(httpContext);
-//				securityMappings.clear();
-//			}
+			if (securityMappings.size() > 0) {
+				wc.unregisterConstraintMapping(httpContext);
+				securityMappings.clear();
+			}
 //			if (loginConfiguration != null) {
 //				// even if before processing there could be another login configuration applied...
 //				wc.unregisterLoginConfig(httpContext);
@@ -322,6 +332,20 @@ public class HttpContextProcessing implements ManagedServiceFactory {
 			return result;
 		}
 
+		private Dictionary<String, Object> collectCompressionParams(Dictionary<String,?> properties) {
+			Hashtable<String, Object> result = new Hashtable<>();
+			if (properties != null) {
+				for (Enumeration<String> e = properties.keys(); e.hasMoreElements(); ) {
+					String k = e.nextElement();
+					if (k != null && k.startsWith(PREFIX_COMPRESSION) && properties.get(k) != null) {
+						String paramName = k.substring(PREFIX_COMPRESSION.length());
+						result.put(PREFIX_COMPRESSION_CONTEXT_PARAM + paramName, properties.get(k).toString());
+					}
+				}
+			}
+			return result;
+		}
+
 		private List<SecurityConstraintsMapping> collectSecurityMappings(Dictionary<String,?> properties) {
 			List<SecurityConstraintsMapping> result = new LinkedList<>();
 			if (properties != null) {
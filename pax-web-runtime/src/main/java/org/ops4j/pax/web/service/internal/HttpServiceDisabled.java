@@ -371,6 +371,19 @@ class HttpServiceDisabled implements WebContainer {
 		LOG.warn("Http service has already been stopped");
 	}
 
+	// methods used to alter security constraints
+
+	@Override
+	public void registerConstraintMapping(String constraintName, String mapping, String url, String dataConstraint,
+			boolean authentication, List<String> roles, HttpContext httpContext) {
+		LOG.warn("Http service has already been stopped");
+	}
+
+	@Override
+	public void unregisterConstraintMapping(HttpContext httpContext) {
+		LOG.warn("Http service has already been stopped");
+	}
+
 
 
 
@@ -394,26 +407,6 @@ class HttpServiceDisabled implements WebContainer {
 //		LOG.warn("Http service has already been stopped");
 //	}
 //
-//	/**
-//	 * @see WebContainer#registerConstraintMapping(java.lang.String,
-//	 * java.lang.String, java.lang.String, java.lang.String, boolean,
-//	 * java.util.List, org.osgi.service.http.HttpContext)
-//	 */
-//	@Override
-//	public void registerConstraintMapping(String constraintName,
-//										  String mapping, String url, String dataConstraint,
-//										  boolean authentication, List<String> roles, HttpContext httpContext) {
-//		LOG.warn("Http service has already been stopped");
-//	}
-//
-//	/**
-//	 * @see WebContainer#unregisterConstraintMapping(HttpContext)
-//	 */
-//	@Override
-//	public void unregisterConstraintMapping(HttpContext httpContext) {
-//		LOG.warn("Http service has already been stopped");
-//	}
-//
 //	@Override
 //	public void registerJettyWebXml(URL jettyWebXmlURL, HttpContext httpContext) {
 //		LOG.warn("Http service has already been stopped");
@@ -48,11 +48,13 @@ import org.ops4j.pax.web.service.WebContainer;
 import org.ops4j.pax.web.service.WebContainerContext;
 import org.ops4j.pax.web.service.internal.views.DirectWebContainerView;
 import org.ops4j.pax.web.service.spi.ServerController;
+import org.ops4j.pax.web.service.spi.admission.AdmissionControl;
 import org.ops4j.pax.web.service.spi.config.Configuration;
 import org.ops4j.pax.web.service.spi.context.UniqueMultiBundleWebContainerContextWrapper;
 import org.ops4j.pax.web.service.spi.context.UniqueWebContainerContextWrapper;
 import org.ops4j.pax.web.service.spi.context.WebContainerContextWrapper;
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+import org.ops4j.pax.web.service.spi.model.RuntimeSnapshot;
 import org.ops4j.pax.web.service.spi.model.ServerModel;
 import org.ops4j.pax.web.service.spi.model.ServiceModel;
 import org.ops4j.pax.web.service.spi.model.elements.ContainerInitializerModel;
@@ -61,6 +63,7 @@ import org.ops4j.pax.web.service.spi.model.elements.ErrorPageModel;
 import org.ops4j.pax.web.service.spi.model.elements.EventListenerModel;
 import org.ops4j.pax.web.service.spi.model.elements.FilterModel;
 import org.ops4j.pax.web.service.spi.model.elements.JspModel;
+import org.ops4j.pax.web.service.spi.model.elements.SecurityConstraintMappingModel;
 import org.ops4j.pax.web.service.spi.model.elements.ServletModel;
 import org.ops4j.pax.web.service.spi.model.elements.WelcomeFileModel;
 import org.ops4j.pax.web.service.spi.model.events.WebElementEvent;
@@ -362,6 +365,7 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 				if (model.isJspServlet()) {
 					model.configureJspServlet(configuration.jsp());
 				}
+				model.configureMultipart(configuration.server());
 
 				try {
 					// ... that's why the validation is moved to the task
@@ -1569,6 +1573,8 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 
 			// we're in configuration thread, so no harm can be done
 			contextModel.getContextParams().putAll(Utils.toMap(params));
+			contextModel.setCompressionSettings(null);
+			AdmissionControl.getInstance().reset(contextModel.getContextPath());
 
 			// if there's a need to actually create the context
 			serverController.sendBatch(batch);
@@ -1578,6 +1584,55 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 		});
 	}
 
+	// methods used to alter security constraints
+
+	@Override
+	public void registerConstraintMapping(String constraintName, String mapping, String url, String dataConstraint,
+			boolean authentication, List<String> roles, HttpContext httpContext) {
+		serverModel.runSilently(() -> {
+			final Batch batch = new Batch("Security constraint registration");
+
+			WebContainerContext ctx = unify(httpContext);
+
+			OsgiContextModel contextModel = serverModel.getOrCreateOsgiContextModel(ctx, serviceBundle,
+					PaxWebConstants.DEFAULT_CONTEXT_PATH, batch);
+
+			LOG.info("Registering security constraint \"{}\" for {} in {}", constraintName, url, contextModel);
+
+			// the constraints are compiled (lazily) into a matcher checked for each request of the context
+			contextModel.addSecurityConstraint(new SecurityConstraintMappingModel(contextModel, constraintName,
+					mapping, url, dataConstraint, authentication, roles));
+
+			// if there's a need to actually create the context
+			serverController.sendBatch(batch);
+
+			return null;
+		});
+	}
+
+	@Override
+	public void unregisterConstraintMapping(HttpContext httpContext) {
+		serverModel.runSilently(() -> {
+			final Batch batch = new Batch("Security constraints unregistration");
+
+			WebContainerContext ctx = unify(httpContext);
+
+			OsgiContextModel contextModel = serverModel.getOrCreateOsgiContextModel(ctx, serviceBundle,
+					PaxWebConstants.DEFAULT_CONTEXT_PATH, batch);
+
+			LOG.info("Unregistering security constraints in {}", contextModel);
+
+			// without changing WebContainer interface, we can't remove individual constraints
+			for (SecurityConstraintMappingModel model : contextModel.getSecurityConstraints()) {
+				contextModel.removeSecurityConstraint(model);
+			}
+
+			serverController.sendBatch(batch);
+
+			return null;
+		});
+	}
+
 	// --- private support methods
 
 	private void event(WebElementEvent.State type, ElementModel<?, ?> model) {
@@ -1720,6 +1775,11 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 			return serverModel.getOsgiContextModels(bundle);
 		}
 
+		@Override
+		public RuntimeSnapshot getRuntimeSnapshot() {
+			return serverModel.getRuntimeSnapshot();
+		}
+
 		@Override
 		public void registerErrorPages(ErrorPageModel model) {
 			doRegisterErrorPages(Collections.emptyList(), model);
@@ -2070,43 +2130,6 @@ public class HttpServiceEnabled implements WebContainer, StoppableHttpService {
 //	}
 //
 //	@Override
-//	public void registerConstraintMapping(String constraintName, String mapping,
-//										  String url, String dataConstraint, boolean authentication,
-//										  List<String> roles, HttpContext httpContext) {
-//		final ContextModel contextModel = getOrCreateContext(httpContext);
-//		LOG.debug("Register constraint mapping (name={}). Using context [{}]", constraintName, contextModel);
-//		SecurityConstraintMappingModel secConstraintMapModel = new SecurityConstraintMappingModel(
-//				contextModel, constraintName, mapping, url, dataConstraint,
-//				authentication, roles);
-//		serviceModel.addSecurityConstraintMappingModel(secConstraintMapModel);
-//		serverController.addSecurityConstraintMapping(secConstraintMapModel);
-//	}
-//
-//	@Override
-//	public void unregisterConstraintMapping(final HttpContext httpContext) {
-//		NullArgumentException.validateNotNull(httpContext, "Http context");
-//		final ContextModel contextModel = serviceModel.getContextModel(httpContext);
-//
-//		try {
-//			LOG.debug("Stopping context model {} to unregister constraint mapping", contextModel);
-//			serverController.getContext(contextModel).stop();
-//		} catch (Exception e) {
-//			LOG.error(e.getMessage(), e);
-//		}
-//
-//		// Without changing WebContainer interface, we can't remove individual constraints...
-//		SecurityConstraintMappingModel[] mappings = serviceModel.getSecurityConstraintMappings();
-//		if (mappings != null) {
-//			for (SecurityConstraintMappingModel model: mappings) {
-//				if (model != null) {
-//					serviceModel.removeSecurityConstraintMappingModel(model);
-//					serverController.removeSecurityConstraintMapping(model);
-//				}
-//			}
-//		}
-//	}
-//
-//	@Override
 //	public void registerJettyWebXml(URL jettyWebXmlURL, HttpContext httpContext) {
 //		NullArgumentException.validateNotNull(httpContext, "Http context");
 //		final ContextModel contextModel = getOrCreateContext(httpContext);
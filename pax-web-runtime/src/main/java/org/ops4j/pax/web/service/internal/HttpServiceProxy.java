@@ -406,6 +406,20 @@ class HttpServiceProxy implements WebContainer, StoppableHttpService {
 		delegate.setContextParams(params, httpContext);
 	}
 
+	// methods used to alter security constraints
+
+	@Override
+	public void registerConstraintMapping(String constraintName, String mapping, String url, String dataConstraint,
+			boolean authentication, List<String> roles, HttpContext httpContext) {
+		delegate.registerConstraintMapping(constraintName, mapping, url, dataConstraint, authentication, roles,
+				httpContext);
+	}
+
+	@Override
+	public void unregisterConstraintMapping(HttpContext httpContext) {
+		delegate.unregisterConstraintMapping(httpContext);
+	}
+
 //	/**
 //	 * @see WebContainer#setContextParam(Dictionary, HttpContext)
 //	 */
@@ -431,23 +445,6 @@ class HttpServiceProxy implements WebContainer, StoppableHttpService {
 //		delegate.unregisterLoginConfig(httpContext);
 //	}
 //
-//	@Override
-//	public void registerConstraintMapping(String constraintName, String mapping,
-//			String url, String dataConstraint, boolean authentication,
-//			List<String> roles, HttpContext httpContext) {
-//		LOG.debug("Registering constraint mapping for [ " + constraintName
-//				+ " ] ");
-//		delegate.registerConstraintMapping(constraintName, mapping, url,
-//				dataConstraint, authentication, roles, httpContext);
-//
-//	}
-//
-//	@Override
-//	public void unregisterConstraintMapping(final HttpContext httpContext) {
-//		LOG.debug("Unregister constraint mapping");
-//		delegate.unregisterConstraintMapping(httpContext);
-//	}
-//
 ////	@Override
 ////	public SharedWebContainerContext getDefaultSharedHttpContext() {
 ////		return delegate.getDefaultSharedHttpContext();
@@ -15,16 +15,16 @@
  */
 package org.ops4j.pax.web.service.internal;
 
-import java.util.Collections;
-import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.ExecutionException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.ops4j.pax.web.service.spi.config.Configuration;
 import org.ops4j.pax.web.service.spi.model.events.WebElementEvent;
@@ -47,6 +47,12 @@ import org.slf4j.LoggerFactory;
  * <p>It's activated using a method from {@link WebElementEventListener} that called to <em>send</em> the event and the
  * event is passed to other registered {@link WebElementEventListener}s.</p>
  *
+ * <p>Sending an event never blocks and never takes a lock - the event is added to a queue of each listener
+ * (taken from copy-on-write array). Each queue is drained by at most one task of the dispatcher's pool at
+ * a time, so a listener receives the events in order and all the events queued in the meantime (e.g., during
+ * deployment of a WAB with hundreds of elements) are delivered together using
+ * {@link WebElementEventListener#registrationEvents(List)}.</p>
+ *
  * @author Achim Nierbeck
  */
 public class WebElementEventDispatcher implements WebElementEventListener,
@@ -54,14 +60,20 @@ public class WebElementEventDispatcher implements WebElementEventListener,
 
 	private static final Logger LOG = LoggerFactory.getLogger(WebElementEventDispatcher.class);
 
+	/** Maximal number of events passed to single {@link WebElementEventListener#registrationEvents(List)} call */
+	static final int MAX_BATCH_SIZE = 256;
+
 	private final BundleContext bundleContext;
 	private final ExecutorService executor;
 
 	/** {@link ServiceTracker} for {@link WebElementEventListener web element listeners} */
 	private final ServiceTracker<WebElementEventListener, WebElementEventListener> webElementListenerTracker;
 
-	/** All tracked {@link WebElementEventListener web element listeners} */
-	private final Set<WebElementEventListener> listeners = new CopyOnWriteArraySet<>();
+	/**
+	 * Queues of all tracked {@link WebElementEventListener web element listeners}. Replaced (under
+	 * {@code synchronized (this)}) when listeners are added/removed, read without locking when sending events.
+	 */
+	private volatile ListenerQueue[] queues = new ListenerQueue[0];
 
 //	private final Map<Long, Map<String, ElementEvent>> states = new ConcurrentHashMap<>();
 
@@ -89,11 +101,9 @@ public class WebElementEventDispatcher implements WebElementEventListener,
 		WebElementEventListener listener = bundleContext.getService(reference);
 		if (listener != null) {
 			LOG.debug("New WebElementEventListener added: {}", listener.getClass().getName());
-			synchronized (listeners) {
-				// TOCHECK: should we really send (and keep!) initial events?
-//				sendInitialEvents(listener);
-				listeners.add(listener);
-			}
+			// TOCHECK: should we really send (and keep!) initial events?
+//			sendInitialEvents(listener);
+			addListener(listener);
 		}
 		return listener;
 	}
@@ -104,7 +114,7 @@ public class WebElementEventDispatcher implements WebElementEventListener,
 
 	@Override
 	public void removedService(ServiceReference<WebElementEventListener> reference, WebElementEventListener service) {
-		listeners.remove(service);
+		removeListener(service);
 		bundleContext.ungetService(reference);
 		LOG.debug("WebElementEventListener is removed: {}", service.getClass().getName());
 	}
@@ -114,12 +124,12 @@ public class WebElementEventDispatcher implements WebElementEventListener,
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("Sending web element event " + event + " for bundle " + event.getBundleName());
 		}
-		synchronized (listeners) {
-			callListeners(event);
-//			Map<String, ElementEvent> events
-//					= states.computeIfAbsent(event.getBundleId(), k -> new LinkedHashMap<>());
-//			events.put(event.getAlias(), event);
+		for (ListenerQueue queue : queues) {
+			queue.offer(event);
 		}
+//		Map<String, ElementEvent> events
+//				= states.computeIfAbsent(event.getBundleId(), k -> new LinkedHashMap<>());
+//		events.put(event.getAlias(), event);
 	}
 
 	void destroy() {
@@ -133,6 +143,27 @@ public class WebElementEventDispatcher implements WebElementEventListener,
 		}
 	}
 
+	private synchronized void addListener(WebElementEventListener listener) {
+		ListenerQueue[] current = queues;
+		ListenerQueue[] newQueues = Arrays.copyOf(current, current.length + 1);
+		newQueues[current.length] = new ListenerQueue(listener);
+		queues = newQueues;
+	}
+
+	private synchronized void removeListener(WebElementEventListener listener) {
+		ListenerQueue[] current = queues;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i].listener == listener) {
+				current[i].active = false;
+				ListenerQueue[] newQueues = new ListenerQueue[current.length - 1];
+				System.arraycopy(current, 0, newQueues, 0, i);
+				System.arraycopy(current, i + 1, newQueues, i, current.length - i - 1);
+				queues = newQueues;
+				return;
+			}
+		}
+	}
+
 //	/**
 //	 * When a {@link WebElementListener} is added after some web elements/contexts were already added, we'll
 //	 * send those initial events to newly registered {@link WebElementListener}.
@@ -153,32 +184,72 @@ public class WebElementEventDispatcher implements WebElementEventListener,
 //		}
 //	}
 
-	private void callListeners(WebElementEvent event) {
-		for (WebElementEventListener listener : listeners) {
-			try {
-				callListener(listener, event);
-			} catch (RejectedExecutionException ree) {
-				LOG.warn("Executor shut down", ree);
-				break;
+	/**
+	 * Queue of events for single {@link WebElementEventListener} with ordered, single-consumer delivery. The queue
+	 * is scheduled in the dispatcher's pool only when it changes from empty/idle state, so a burst of events
+	 * results in single task instead of one task per event.
+	 */
+	private final class ListenerQueue implements Runnable {
+
+		private final WebElementEventListener listener;
+		private final Queue<WebElementEvent> events = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+		private volatile boolean active = true;
+
+		ListenerQueue(WebElementEventListener listener) {
+			this.listener = listener;
+		}
+
+		void offer(WebElementEvent event) {
+			if (!active) {
+				return;
 			}
+			events.add(event);
+			schedule(false);
 		}
-	}
 
-	private void callListener(final WebElementEventListener listener, final WebElementEvent event) {
-		try {
-			executor.invokeAny(Collections.<Callable<Void>>singleton(() -> {
-				listener.registrationEvent(event);
-				return null;
-			}), 60L, TimeUnit.SECONDS);
-		} catch (InterruptedException ie) {
-			LOG.warn("Thread interrupted", ie);
-			Thread.currentThread().interrupt();
-		} catch (TimeoutException te) {
-			LOG.warn("Listener timed out, will be ignored", te);
-			listeners.remove(listener);
-		} catch (ExecutionException ee) {
-			LOG.warn("Listener caused an exception, will be ignored", ee);
-			listeners.remove(listener);
+		/**
+		 * Schedules delivery in dispatcher's pool if not already scheduled
+		 * @param fromWorker {@code true} when called by the worker itself - after the pool is shut down, it
+		 *        continues with the delivery instead of losing remaining events
+		 */
+		private void schedule(boolean fromWorker) {
+			if (scheduled.compareAndSet(false, true)) {
+				try {
+					executor.execute(this);
+				} catch (RejectedExecutionException ree) {
+					if (fromWorker) {
+						run();
+						return;
+					}
+					LOG.warn("Executor shut down", ree);
+					scheduled.set(false);
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			List<WebElementEvent> batch = new ArrayList<>();
+			WebElementEvent event;
+			while (batch.size() < MAX_BATCH_SIZE && (event = events.poll()) != null) {
+				batch.add(event);
+			}
+			if (!batch.isEmpty() && active) {
+				try {
+					listener.registrationEvents(batch);
+				} catch (Exception e) {
+					LOG.warn("Listener caused an exception, will be ignored", e);
+					removeListener(listener);
+					events.clear();
+				}
+			}
+			scheduled.set(false);
+			// events added after last poll() (or not fitting into the batch) are delivered by next task, so
+			// other listeners' queues get their turn in the pool
+			if (!events.isEmpty()) {
+				schedule(true);
+			}
 		}
 	}
 
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.internal;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.ops4j.pax.web.service.spi.metrics.ElementMetrics;
+import org.ops4j.pax.web.service.spi.metrics.LatencyHistogram;
+import org.ops4j.pax.web.service.spi.metrics.WebMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link WebMetricsMBean} that presents {@link WebMetrics} as {@link TabularData}.
+ */
+class WebMetricsJmx implements WebMetricsMBean {
+
+	private static final Logger LOG = LoggerFactory.getLogger(WebMetricsJmx.class);
+
+	static final String OBJECT_NAME = "org.ops4j.pax.web:type=WebMetrics";
+
+	private static final String[] ITEMS = new String[] {
+			"contextPath", "contextName", "type", "name", "count", "mean", "p50", "p90", "p99", "p999", "max"
+	};
+	private static final String[] DESCRIPTIONS = new String[] {
+			"Context path", "Name of OSGi context", "Element type", "Element name", "Number of invocations",
+			"Mean latency (us)", "Median latency (us)", "90th percentile latency (us)",
+			"99th percentile latency (us)", "99.9th percentile latency (us)", "Max latency (us)"
+	};
+
+	private static final CompositeType ROW_TYPE;
+	private static final TabularType TABLE_TYPE;
+
+	static {
+		try {
+			ROW_TYPE = new CompositeType("ElementMetrics", "Latency of single web element", ITEMS, DESCRIPTIONS,
+					new OpenType<?>[] {
+							SimpleType.STRING, SimpleType.STRING, SimpleType.STRING, SimpleType.STRING,
+							SimpleType.LONG, SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE,
+							SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE
+					});
+			TABLE_TYPE = new TabularType("WebMetrics", "Latency of web elements", ROW_TYPE,
+					new String[] { "contextPath", "contextName", "type", "name" });
+		} catch (OpenDataException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	private final WebMetrics metrics;
+
+	private ObjectName objectName;
+
+	WebMetricsJmx(WebMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Registers this MBean in platform {@link MBeanServer}
+	 */
+	public void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(new StandardMBean(this, WebMetricsMBean.class), name);
+			objectName = name;
+		} catch (JMException | RuntimeException e) {
+			LOG.warn("Can't register {} MBean: {}", OBJECT_NAME, e.getMessage());
+		}
+	}
+
+	/**
+	 * Unregisters this MBean from platform {@link MBeanServer}
+	 */
+	public void unregister() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException | RuntimeException e) {
+			LOG.debug("Can't unregister {} MBean: {}", OBJECT_NAME, e.getMessage());
+		}
+		objectName = null;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return metrics.isEnabled();
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		metrics.setEnabled(enabled);
+	}
+
+	@Override
+	public TabularData getElements() {
+		TabularDataSupport table = new TabularDataSupport(TABLE_TYPE);
+		for (ElementMetrics em : metrics.getElementMetrics()) {
+			LatencyHistogram h = em.getHistogram();
+			try {
+				table.put(new CompositeDataSupport(ROW_TYPE, ITEMS, new Object[] {
+						em.getContextPath(), em.getContextName(), em.getType().name(), em.getName(),
+						h.getCount(), h.getMean() / 1000d,
+						micros(h.getValueAtPercentile(50d)), micros(h.getValueAtPercentile(90d)),
+						micros(h.getValueAtPercentile(99d)), micros(h.getValueAtPercentile(99.9d)),
+						micros(h.getMax())
+				}));
+			} catch (OpenDataException e) {
+				LOG.debug("Can't present metrics of {}: {}", em, e.getMessage());
+			}
+		}
+		return table;
+	}
+
+	@Override
+	public void reset() {
+		metrics.reset();
+	}
+
+	private static double micros(long nanos) {
+		return nanos / 1000d;
+	}
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.internal;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * JMX view of {@link org.ops4j.pax.web.service.spi.metrics.WebMetrics} registered as
+ * {@code org.ops4j.pax.web:type=WebMetrics}.
+ */
+public interface WebMetricsMBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	/**
+	 * One row per element with invocation count and latencies (in microseconds).
+	 * @return
+	 */
+	TabularData getElements();
+
+	void reset();
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.spi.config.Configuration;
+import org.ops4j.pax.web.service.spi.model.events.ServletEventData;
+import org.ops4j.pax.web.service.spi.model.events.WebElementEvent;
+import org.ops4j.pax.web.service.spi.model.events.WebElementEventListener;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WebElementEventDispatcherTest {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void eventsAreDeliveredInOrderAndInBatches() throws Exception {
+		BundleContext context = mock(BundleContext.class);
+		Configuration configuration = mock(Configuration.class, RETURNS_DEEP_STUBS);
+		when(configuration.server().getEventDispatcherThreadCount()).thenReturn(2);
+
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch received = new CountDownLatch(1);
+		List<List<String>> batches = new ArrayList<>();
+		WebElementEventListener listener = new WebElementEventListener() {
+			@Override
+			public void registrationEvent(WebElementEvent event) {
+			}
+
+			@Override
+			public void registrationEvents(List<WebElementEvent> events) {
+				try {
+					blocked.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException ignored) {
+				}
+				List<String> names = new ArrayList<>();
+				events.forEach(e -> names.add(((ServletEventData) e.getData()).getServletName()));
+				synchronized (batches) {
+					batches.add(names);
+					if (batches.stream().mapToInt(List::size).sum() == 100) {
+						received.countDown();
+					}
+				}
+			}
+		};
+		ServiceReference<WebElementEventListener> ref = mock(ServiceReference.class);
+		when(context.getService(ref)).thenReturn(listener);
+
+		WebElementEventDispatcher dispatcher = new WebElementEventDispatcher(context, configuration);
+		dispatcher.addingService(ref);
+
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getSymbolicName()).thenReturn("b1");
+		for (int i = 0; i < 100; i++) {
+			ServletEventData data = new ServletEventData("/s" + i, "s" + i, null, null);
+			data.setOriginBundle(bundle);
+			// first event is delivered alone and blocks the listener, but sending never blocks
+			dispatcher.registrationEvent(new WebElementEvent(WebElementEvent.State.DEPLOYED, data));
+		}
+		blocked.countDown();
+
+		assertTrue(received.await(5, TimeUnit.SECONDS));
+		dispatcher.destroy();
+
+		List<String> all = new ArrayList<>();
+		batches.forEach(all::addAll);
+		for (int i = 0; i < 100; i++) {
+			assertThat(all.get(i), equalTo("s" + i));
+		}
+		assertTrue("Events should be coalesced", batches.size() < 100);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void failingListenerIsRemoved() throws Exception {
+		BundleContext context = mock(BundleContext.class);
+		Configuration configuration = mock(Configuration.class, RETURNS_DEEP_STUBS);
+		when(configuration.server().getEventDispatcherThreadCount()).thenReturn(1);
+
+		List<WebElementEvent> received = new ArrayList<>();
+		WebElementEventListener failing = event -> {
+			throw new IllegalStateException("expected");
+		};
+		WebElementEventListener working = event -> {
+			synchronized (received) {
+				received.add(event);
+			}
+		};
+		ServiceReference<WebElementEventListener> ref1 = mock(ServiceReference.class);
+		ServiceReference<WebElementEventListener> ref2 = mock(ServiceReference.class);
+		when(context.getService(ref1)).thenReturn(failing);
+		when(context.getService(ref2)).thenReturn(working);
+
+		WebElementEventDispatcher dispatcher = new WebElementEventDispatcher(context, configuration);
+		dispatcher.addingService(ref1);
+		dispatcher.addingService(ref2);
+
+		Bundle bundle = mock(Bundle.class);
+		ServletEventData data = new ServletEventData("/s", "s", null, null);
+		data.setOriginBundle(bundle);
+		dispatcher.registrationEvent(new WebElementEvent(WebElementEvent.State.DEPLOYING, data));
+		dispatcher.registrationEvent(new WebElementEvent(WebElementEvent.State.DEPLOYED, data));
+		dispatcher.destroy();
+
+		assertThat(received.size(), equalTo(2));
+		assertThat(received.get(0).getType(), equalTo(WebElementEvent.State.DEPLOYING));
+	}
+
+}
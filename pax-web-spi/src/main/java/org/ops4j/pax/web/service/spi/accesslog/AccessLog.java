@@ -0,0 +1,405 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.accesslog;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.ops4j.pax.web.service.spi.config.LogConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Asynchronous request log (AKA <em>NCSA log</em>) used by all the runtimes when
+ * {@link org.ops4j.pax.web.service.PaxWebConfig#PID_CFG_LOG_NCSA_ASYNC} is set.</p>
+ *
+ * <p>Request threads only copy references to request/response data into preallocated slot of lock-free ring
+ * buffer ({@link #log}). Single writer thread formats the records, writes them in batches (flushing when there's
+ * nothing more to write), rotates the files daily and removes files older than
+ * {@link LogConfiguration#getLogNCSARetainDays()}. When the writer can't keep up and the buffer is full, records
+ * are dropped (and counted) instead of blocking request threads. When there's nothing to write, the writer thread
+ * parks until a request thread publishes a record and unparks it, so idle server doesn't wake it up
+ * periodically.</p>
+ *
+ * <p>The file name is taken from {@link LogConfiguration#getLogNCSAFile()}. If it contains {@code yyyy_mm_dd},
+ * this token is replaced by current date formatted with {@link LogConfiguration#getLogNCSAFilenameDateFormat()}
+ * (like in Jetty), otherwise the date is appended after a dot. Binary logs get additional {@code .bin}
+ * extension.</p>
+ */
+public class AccessLog {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AccessLog.class);
+
+	static final String DATE_TOKEN = "yyyy_mm_dd";
+
+	private static final int BATCH_SIZE = 1024;
+	private static final int IO_BUFFER_SIZE = 64 * 1024;
+	private static final long DROP_REPORT_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+	private final RecordRingBuffer buffer;
+	private final LongAdder dropped = new LongAdder();
+
+	private final File directory;
+	private final String filePrefix;
+	private final String fileSuffix;
+	private final DateTimeFormatter fileDateFormat;
+	private final boolean append;
+	private final int retainDays;
+	private final boolean binary;
+	private final ZoneId zone;
+	private final AccessLogFormatter formatter;
+
+	private volatile boolean running;
+	private volatile Thread writerThread;
+
+	/** Set by the writer thread before parking, cleared by the producer which unparks it */
+	private final AtomicBoolean sleeping = new AtomicBoolean();
+
+	// state of the writer thread
+
+	private final StringBuilder line = new StringBuilder(256);
+	private LocalDate currentDay;
+	private long nextRollover;
+	private File currentFile;
+	private BufferedWriter textOut;
+	private DataOutputStream binaryOut;
+	private boolean dirty;
+	private long reportedDropped;
+	private long lastDropReport;
+
+	public AccessLog(LogConfiguration lc) {
+		this(new File(lc.getLogNCSADirectory()), lc.getLogNCSAFile(), lc.getLogNCSAFilenameDateFormat(),
+				lc.isLogNCSAAppend() == null || lc.isLogNCSAAppend(),
+				lc.getLogNCSARetainDays() == null ? 0 : lc.getLogNCSARetainDays(),
+				lc.isLogNCSAExtended() != null && lc.isLogNCSAExtended(), lc.getLogNCSATimeZone(),
+				lc.getLogNCSABufferSize() == null ? 8192 : lc.getLogNCSABufferSize(),
+				lc.isLogNCSABinary() != null && lc.isLogNCSABinary());
+	}
+
+	AccessLog(File directory, String fileName, String fileDateFormat, boolean append, int retainDays,
+			boolean extended, String timeZone, int bufferSize, boolean binary) {
+		this.directory = directory;
+		String name = fileName == null || "".equals(fileName.trim()) ? DATE_TOKEN + ".request.log" : fileName;
+		int idx = name.indexOf(DATE_TOKEN);
+		if (idx >= 0) {
+			filePrefix = name.substring(0, idx);
+			fileSuffix = name.substring(idx + DATE_TOKEN.length()) + (binary ? ".bin" : "");
+		} else {
+			filePrefix = name + ".";
+			fileSuffix = binary ? ".bin" : "";
+		}
+		this.fileDateFormat = DateTimeFormatter.ofPattern(fileDateFormat == null || "".equals(fileDateFormat.trim())
+				? "yyyy_MM_dd" : fileDateFormat);
+		this.append = append;
+		this.retainDays = retainDays;
+		this.binary = binary;
+		this.zone = TimeZone.getTimeZone(timeZone == null ? "GMT" : timeZone).toZoneId();
+		this.formatter = new AccessLogFormatter(extended, zone);
+		this.buffer = new RecordRingBuffer(bufferSize);
+	}
+
+	/**
+	 * Starts the writer thread
+	 */
+	public synchronized void start() {
+		if (writerThread != null) {
+			return;
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			LOG.warn("Can't create request log directory {}", directory);
+		}
+		running = true;
+		writerThread = new Thread(this::writeLoop, "paxweb-access-log");
+		writerThread.setDaemon(true);
+		writerThread.start();
+		LOG.info("Asynchronous request log started in {} (buffer size: {}, binary: {})", directory,
+				buffer.getCapacity(), binary);
+	}
+
+	/**
+	 * Stops the writer thread after writing all already published records
+	 */
+	public synchronized void stop() {
+		if (writerThread == null) {
+			return;
+		}
+		running = false;
+		LockSupport.unpark(writerThread);
+		try {
+			writerThread.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		writerThread = null;
+	}
+
+	/**
+	 * Publishes single record to be written. Never blocks - when the buffer is full, the record is dropped.
+	 * @param timestamp start of the request (milliseconds since epoch)
+	 * @param remoteAddr
+	 * @param remoteUser may be {@code null}
+	 * @param method
+	 * @param uri request URI without query string
+	 * @param query may be {@code null}
+	 * @param protocol
+	 * @param status
+	 * @param bytes number of bytes of response body
+	 * @param referer may be {@code null}
+	 * @param userAgent may be {@code null}
+	 * @return {@code false} if the record was dropped
+	 */
+	public boolean log(long timestamp, String remoteAddr, String remoteUser, String method, String uri, String query,
+			String protocol, int status, long bytes, String referer, String userAgent) {
+		AccessLogRecord record = buffer.claim();
+		if (record == null) {
+			dropped.increment();
+			return false;
+		}
+		try {
+			record.set(timestamp, remoteAddr, remoteUser, method, uri, query, protocol, status, bytes,
+					referer, userAgent);
+		} finally {
+			// always publish claimed slot, otherwise the writer would stop at this position
+			buffer.publish(record);
+		}
+		// only the producer publishing to a buffer drained by the writer has to wake it up
+		if (sleeping.get() && sleeping.compareAndSet(true, false)) {
+			Thread writer = writerThread;
+			if (writer != null) {
+				LockSupport.unpark(writer);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Number of records dropped because the buffer was full
+	 * @return
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	public int getBufferSize() {
+		return buffer.getCapacity();
+	}
+
+	private void writeLoop() {
+		try {
+			while (true) {
+				boolean stopping = !running;
+				int written = drain();
+				if (written == 0) {
+					if (stopping) {
+						break;
+					}
+					flush();
+					reportDropped(false);
+					park();
+				}
+			}
+		} finally {
+			flush();
+			reportDropped(true);
+			closeFile();
+		}
+	}
+
+	/**
+	 * Parks the writer thread until a record is published or the log is stopped. The records are checked again
+	 * after announcing the parking, so a record published in the meantime is not missed (either it's visible
+	 * here, or its producer sees the flag and unparks the writer).
+	 */
+	private void park() {
+		sleeping.set(true);
+		if (running && buffer.peek() == null) {
+			LockSupport.park(this);
+		}
+		sleeping.set(false);
+	}
+
+	/**
+	 * Writes single batch of published records
+	 * @return number of records taken from the buffer
+	 */
+	int drain() {
+		AccessLogRecord record = buffer.peek();
+		if (record == null) {
+			return 0;
+		}
+		rollover(System.currentTimeMillis());
+		int count = 0;
+		while (record != null && count < BATCH_SIZE) {
+			write(record);
+			buffer.release();
+			count++;
+			record = buffer.peek();
+		}
+		return count;
+	}
+
+	private void write(AccessLogRecord record) {
+		if (textOut == null && binaryOut == null) {
+			return;
+		}
+		try {
+			if (binary) {
+				formatter.write(record, binaryOut);
+			} else {
+				line.setLength(0);
+				formatter.format(record, line);
+				line.append('\n');
+				textOut.append(line);
+			}
+			dirty = true;
+		} catch (IOException e) {
+			LOG.warn("Problem writing request log {}: {}", currentFile, e.getMessage(), e);
+			closeFile();
+			// next batch will try to open the file again
+			currentDay = null;
+		}
+	}
+
+	private void flush() {
+		if (!dirty) {
+			return;
+		}
+		dirty = false;
+		try {
+			if (binaryOut != null) {
+				binaryOut.flush();
+			}
+			if (textOut != null) {
+				textOut.flush();
+			}
+		} catch (IOException e) {
+			LOG.warn("Problem flushing request log {}: {}", currentFile, e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Opens new file when the day changes
+	 * @param now
+	 */
+	private void rollover(long now) {
+		if (currentDay != null && now < nextRollover) {
+			return;
+		}
+		LocalDate day = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+		nextRollover = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+		if (day.equals(currentDay)) {
+			return;
+		}
+		flush();
+		closeFile();
+		currentDay = day;
+		currentFile = new File(directory, fileName(day));
+		try {
+			boolean exists = currentFile.length() > 0L;
+			FileOutputStream fos = new FileOutputStream(currentFile, append);
+			if (binary) {
+				binaryOut = new DataOutputStream(new BufferedOutputStream(fos, IO_BUFFER_SIZE));
+				if (!exists || !append) {
+					binaryOut.write(AccessLogFormatter.BINARY_MAGIC);
+					binaryOut.writeByte(AccessLogFormatter.BINARY_VERSION);
+					dirty = true;
+				}
+			} else {
+				textOut = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+			}
+		} catch (IOException e) {
+			LOG.warn("Can't open request log {}: {}", currentFile, e.getMessage(), e);
+			closeFile();
+			// next batch will try to open the file again
+			currentDay = null;
+			return;
+		}
+		removeOldFiles(now);
+	}
+
+	String fileName(LocalDate day) {
+		return filePrefix + fileDateFormat.format(day) + fileSuffix;
+	}
+
+	private void removeOldFiles(long now) {
+		if (retainDays <= 0) {
+			return;
+		}
+		File[] files = directory.listFiles((dir, name) -> name.startsWith(filePrefix) && name.endsWith(fileSuffix));
+		if (files == null) {
+			return;
+		}
+		long threshold = now - TimeUnit.DAYS.toMillis(retainDays);
+		for (File f : files) {
+			if (!f.equals(currentFile) && f.lastModified() < threshold) {
+				LOG.debug("Removing old request log {}", f);
+				if (!f.delete()) {
+					LOG.warn("Can't remove old request log {}", f);
+				}
+			}
+		}
+	}
+
+	private void closeFile() {
+		close(textOut);
+		close(binaryOut);
+		textOut = null;
+		binaryOut = null;
+		dirty = false;
+	}
+
+	private void close(Closeable closeable) {
+		if (closeable == null) {
+			return;
+		}
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			LOG.debug("Problem closing request log {}: {}", currentFile, e.getMessage());
+		}
+	}
+
+	private void reportDropped(boolean force) {
+		long total = dropped.sum();
+		if (total == reportedDropped) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (force || now - lastDropReport >= DROP_REPORT_INTERVAL) {
+			LOG.warn("{} request log records were dropped because the buffer (size: {}) was full",
+					total - reportedDropped, buffer.getCapacity());
+			reportedDropped = total;
+			lastDropReport = now;
+		}
+	}
+
+}
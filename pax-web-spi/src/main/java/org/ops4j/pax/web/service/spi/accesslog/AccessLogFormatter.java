@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.accesslog;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * <p>Formats {@link AccessLogRecord records} of the {@link AccessLog}. Used only by the writer thread, so
+ * there's no synchronization and formatted timestamp is cached per second.</p>
+ *
+ * <p>Text format is NCSA <em>common</em> or <em>combined</em> (with {@code Referer} and {@code User-Agent}).
+ * Binary format is a sequence of records after {@link #BINARY_MAGIC} and {@link #BINARY_VERSION} header:
+ * timestamp ({@code long}), status ({@code short}), bytes ({@code long}) and 8 strings (remote address,
+ * remote user, method, URI, query, protocol, referer, user agent), each as {@code int} length of UTF-8
+ * representation ({@code -1} for {@code null}) followed by the bytes.</p>
+ */
+class AccessLogFormatter {
+
+	static final byte[] BINARY_MAGIC = "PAXWEBAL".getBytes(StandardCharsets.US_ASCII);
+	static final byte BINARY_VERSION = 1;
+
+	private final boolean extended;
+	private final DateTimeFormatter dateFormat;
+
+	private long cachedSecond = Long.MIN_VALUE;
+	private String cachedDate;
+
+	AccessLogFormatter(boolean extended, ZoneId zone) {
+		this.extended = extended;
+		this.dateFormat = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US).withZone(zone);
+	}
+
+	/**
+	 * Appends NCSA representation of the record (without line separator)
+	 * @param record
+	 * @param sb
+	 */
+	void format(AccessLogRecord record, StringBuilder sb) {
+		sb.append(orDash(record.remoteAddr)).append(" - ").append(orDash(record.remoteUser));
+		sb.append(" [").append(date(record.timestamp)).append("] \"");
+		sb.append(record.method).append(' ');
+		escape(record.uri, sb);
+		if (record.query != null) {
+			sb.append('?');
+			escape(record.query, sb);
+		}
+		sb.append(' ').append(record.protocol).append("\" ").append(record.status).append(' ');
+		if (record.bytes > 0L) {
+			sb.append(record.bytes);
+		} else {
+			sb.append('-');
+		}
+		if (extended) {
+			sb.append(" \"");
+			if (record.referer == null) {
+				sb.append('-');
+			} else {
+				escape(record.referer, sb);
+			}
+			sb.append("\" \"");
+			if (record.userAgent == null) {
+				sb.append('-');
+			} else {
+				escape(record.userAgent, sb);
+			}
+			sb.append('"');
+		}
+	}
+
+	/**
+	 * Writes binary representation of the record
+	 * @param record
+	 * @param out
+	 * @throws IOException
+	 */
+	void write(AccessLogRecord record, DataOutput out) throws IOException {
+		out.writeLong(record.timestamp);
+		out.writeShort(record.status);
+		out.writeLong(record.bytes);
+		writeString(record.remoteAddr, out);
+		writeString(record.remoteUser, out);
+		writeString(record.method, out);
+		writeString(record.uri, out);
+		writeString(record.query, out);
+		writeString(record.protocol, out);
+		writeString(record.referer, out);
+		writeString(record.userAgent, out);
+	}
+
+	/**
+	 * Reads single binary record written by {@link #write(AccessLogRecord, DataOutput)}
+	 * @param in
+	 * @param record
+	 * @throws IOException
+	 */
+	static void read(DataInput in, AccessLogRecord record) throws IOException {
+		long timestamp = in.readLong();
+		int status = in.readUnsignedShort();
+		long bytes = in.readLong();
+		record.set(timestamp, readString(in), readString(in), readString(in), readString(in), readString(in),
+				readString(in), status, bytes, readString(in), readString(in));
+	}
+
+	private String date(long timestamp) {
+		long second = timestamp / 1000L;
+		if (second != cachedSecond) {
+			cachedDate = dateFormat.format(Instant.ofEpochSecond(second));
+			cachedSecond = second;
+		}
+		return cachedDate;
+	}
+
+	private static String orDash(String value) {
+		return value == null || value.isEmpty() ? "-" : value;
+	}
+
+	/**
+	 * Escapes quotes, backslashes and control characters, so single record is always single, parseable line
+	 * @param value
+	 * @param sb
+	 */
+	private static void escape(String value, StringBuilder sb) {
+		if (value == null) {
+			return;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20 || c == 0x7f) {
+				sb.append("\\x").append(Character.forDigit((c >> 4) & 0xf, 16)).append(Character.forDigit(c & 0xf, 16));
+			} else {
+				sb.append(c);
+			}
+		}
+	}
+
+	private static void writeString(String value, DataOutput out) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.accesslog;
+
+/**
+ * <p>Single, preallocated slot of {@link AccessLog} ring buffer. Request thread obtains it with
+ * {@link RecordRingBuffer#claim()}, fills it with {@link #set} and hands it over to the writer thread with
+ * {@link RecordRingBuffer#publish(AccessLogRecord)}. Records are reused, so nothing should keep a reference to
+ * the record after it's published.</p>
+ */
+public final class AccessLogRecord {
+
+	/** Position in the ring buffer at which this record was claimed */
+	long position;
+
+	long timestamp;
+	String remoteAddr;
+	String remoteUser;
+	String method;
+	String uri;
+	String query;
+	String protocol;
+	int status;
+	long bytes;
+	String referer;
+	String userAgent;
+
+	AccessLogRecord() {
+	}
+
+	/**
+	 * Fills the record with request/response data
+	 * @param timestamp start of the request (milliseconds since epoch)
+	 * @param remoteAddr
+	 * @param remoteUser may be {@code null}
+	 * @param method
+	 * @param uri request URI without query string
+	 * @param query may be {@code null}
+	 * @param protocol
+	 * @param status
+	 * @param bytes number of bytes of response body
+	 * @param referer may be {@code null}
+	 * @param userAgent may be {@code null}
+	 */
+	public void set(long timestamp, String remoteAddr, String remoteUser, String method, String uri, String query,
+			String protocol, int status, long bytes, String referer, String userAgent) {
+		this.timestamp = timestamp;
+		this.remoteAddr = remoteAddr;
+		this.remoteUser = remoteUser;
+		this.method = method;
+		this.uri = uri;
+		this.query = query;
+		this.protocol = protocol;
+		this.status = status;
+		this.bytes = bytes;
+		this.referer = referer;
+		this.userAgent = userAgent;
+	}
+
+	/**
+	 * Clears references, so request data is not kept in the buffer longer than needed
+	 */
+	void clear() {
+		set(0L, null, null, null, null, null, null, 0, 0L, null, null);
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public String getRemoteAddr() {
+		return remoteAddr;
+	}
+
+	public String getRemoteUser() {
+		return remoteUser;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	public String getQuery() {
+		return query;
+	}
+
+	public String getProtocol() {
+		return protocol;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public String getReferer() {
+		return referer;
+	}
+
+	public String getUserAgent() {
+		return userAgent;
+	}
+
+}
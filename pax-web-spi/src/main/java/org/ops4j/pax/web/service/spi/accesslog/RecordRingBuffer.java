@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Bounded, lock-free, multi producer - single consumer ring buffer of preallocated {@link AccessLogRecord}s
+ * (after Dmitry Vyukov's bounded MPMC queue). Each slot has a sequence number which tells whether the slot is
+ * free for producer at given position ({@code sequence == position}), published for the consumer
+ * ({@code sequence == position + 1}) or not yet released by the consumer.</p>
+ *
+ * <p>Producers never wait - when the buffer is full, {@link #claim()} returns {@code null}.</p>
+ */
+class RecordRingBuffer {
+
+	private final int mask;
+	private final AccessLogRecord[] slots;
+	private final AtomicLongArray sequences;
+
+	/** Next position to claim by producers */
+	private final AtomicLong tail = new AtomicLong();
+
+	/** Next position to consume - accessed only by the consumer thread */
+	private long head = 0L;
+
+	RecordRingBuffer(int requestedCapacity) {
+		int capacity = capacity(requestedCapacity);
+		mask = capacity - 1;
+		slots = new AccessLogRecord[capacity];
+		sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			slots[i] = new AccessLogRecord();
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Rounds requested capacity up to power of 2 within {@code [2, 2^30]}
+	 * @param requested
+	 * @return
+	 */
+	static int capacity(int requested) {
+		if (requested <= 2) {
+			return 2;
+		}
+		if (requested >= 1 << 30) {
+			return 1 << 30;
+		}
+		return Integer.highestOneBit(requested - 1) << 1;
+	}
+
+	int getCapacity() {
+		return slots.length;
+	}
+
+	/**
+	 * Claims next free slot. Has to be followed by {@link #publish(AccessLogRecord)}.
+	 * @return {@code null} if the buffer is full
+	 */
+	AccessLogRecord claim() {
+		long pos = tail.get();
+		while (true) {
+			int index = (int) (pos & mask);
+			long diff = sequences.get(index) - pos;
+			if (diff == 0L) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					AccessLogRecord record = slots[index];
+					record.position = pos;
+					return record;
+				}
+				pos = tail.get();
+			} else if (diff < 0L) {
+				// slot still not released by the consumer
+				return null;
+			} else {
+				// other producer was faster
+				pos = tail.get();
+			}
+		}
+	}
+
+	/**
+	 * Makes claimed record visible to the consumer. This is a volatile write (not lazy), so a producer checking
+	 * whether the consumer is parked (after publishing) and the consumer checking for records (after announcing
+	 * it's going to park) can't both miss each other.
+	 * @param record
+	 */
+	void publish(AccessLogRecord record) {
+		sequences.set((int) (record.position & mask), record.position + 1);
+	}
+
+	/**
+	 * Returns next published record (without removing it) or {@code null}. Consumer thread only.
+	 * @return
+	 */
+	AccessLogRecord peek() {
+		int index = (int) (head & mask);
+		if (sequences.get(index) != head + 1) {
+			return null;
+		}
+		return slots[index];
+	}
+
+	/**
+	 * Releases the record returned from {@link #peek()}, so it can be claimed again. Consumer thread only.
+	 */
+	void release() {
+		int index = (int) (head & mask);
+		slots[index].clear();
+		sequences.lazySet(index, head + slots.length);
+		head++;
+	}
+
+}
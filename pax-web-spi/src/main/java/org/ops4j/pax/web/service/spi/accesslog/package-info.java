@@ -0,0 +1,22 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Pax Web's own request log (AKA <em>NCSA log</em>) which works the same way for Jetty, Tomcat and Undertow.
+ * Request threads publish records into bounded, lock-free ring buffer and single writer thread formats and
+ * writes them.
+ */
+package org.ops4j.pax.web.service.spi.accesslog;
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.admission;
+
+import java.util.Map;
+
+import org.ops4j.pax.web.service.PaxWebConfig;
+import org.ops4j.pax.web.service.spi.config.ServerConfiguration;
+
+/**
+ * Immutable {@link AdaptiveLimiter} settings. Global defaults come from {@link ServerConfiguration} and may be
+ * overriden per context using context init parameters with the same names as
+ * {@code org.ops4j.pax.web.server.admission.*} PID properties.
+ */
+public final class AdaptiveLimitSettings {
+
+	public static final AdaptiveLimitSettings DISABLED = new AdaptiveLimitSettings(false, 20, 4, 1000, 2.0d, 1,
+			AdmissionPriority.NORMAL);
+
+	private final boolean enabled;
+	private final int initialLimit;
+	private final int minLimit;
+	private final int maxLimit;
+	private final double tolerance;
+	private final int retryAfter;
+	private final AdmissionPriority priority;
+
+	public AdaptiveLimitSettings(boolean enabled, int initialLimit, int minLimit, int maxLimit, double tolerance,
+			int retryAfter, AdmissionPriority priority) {
+		this.enabled = enabled;
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.initialLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+		this.tolerance = tolerance < 1.0d ? 1.0d : tolerance;
+		this.retryAfter = Math.max(0, retryAfter);
+		this.priority = priority == null ? AdmissionPriority.NORMAL : priority;
+	}
+
+	/**
+	 * Creates global default settings.
+	 * @param sc
+	 * @return
+	 */
+	public static AdaptiveLimitSettings from(ServerConfiguration sc) {
+		return new AdaptiveLimitSettings(sc.isAdmissionEnabled(), sc.getAdmissionInitialLimit(),
+				sc.getAdmissionMinLimit(), sc.getAdmissionMaxLimit(), sc.getAdmissionTolerance(),
+				sc.getAdmissionRetryAfter(), AdmissionPriority.parse(sc.getAdmissionPriority(), AdmissionPriority.NORMAL));
+	}
+
+	/**
+	 * Returns settings of a context with given init parameters.
+	 * @param contextParams
+	 * @return
+	 */
+	public AdaptiveLimitSettings withContextParams(Map<String, String> contextParams) {
+		if (contextParams == null || contextParams.isEmpty()) {
+			return this;
+		}
+		String enabled = contextParams.get(PaxWebConfig.PID_CFG_ADMISSION_ENABLED);
+		String initial = contextParams.get(PaxWebConfig.PID_CFG_ADMISSION_INITIAL_LIMIT);
+		String min = contextParams.get(PaxWebConfig.PID_CFG_ADMISSION_MIN_LIMIT);
+		String max = contextParams.get(PaxWebConfig.PID_CFG_ADMISSION_MAX_LIMIT);
+		String tolerance = contextParams.get(PaxWebConfig.PID_CFG_ADMISSION_TOLERANCE);
+		String retryAfter = contextParams.get(PaxWebConfig.PID_CFG_ADMISSION_RETRY_AFTER);
+		String priority = contextParams.get(PaxWebConfig.PID_CFG_ADMISSION_PRIORITY);
+		if (enabled == null && initial == null && min == null && max == null && tolerance == null
+				&& retryAfter == null && priority == null) {
+			return this;
+		}
+		double t = this.tolerance;
+		if (tolerance != null) {
+			try {
+				t = Double.parseDouble(tolerance.trim());
+			} catch (NumberFormatException ignored) {
+			}
+		}
+		return new AdaptiveLimitSettings(
+				enabled == null ? this.enabled : Boolean.parseBoolean(enabled.trim()),
+				parse(initial, initialLimit), parse(min, minLimit), parse(max, maxLimit), t,
+				parse(retryAfter, this.retryAfter), AdmissionPriority.parse(priority, this.priority));
+	}
+
+	private static int parse(String value, int defaultValue) {
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public int getInitialLimit() {
+		return initialLimit;
+	}
+
+	public int getMinLimit() {
+		return minLimit;
+	}
+
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	/**
+	 * Accepted ratio of short-term to long-term latency before the limit is decreased
+	 * @return
+	 */
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * Value of {@code Retry-After} header in seconds
+	 * @return
+	 */
+	public int getRetryAfter() {
+		return retryAfter;
+	}
+
+	public AdmissionPriority getPriority() {
+		return priority;
+	}
+
+	@Override
+	public String toString() {
+		return "AdaptiveLimitSettings{enabled=" + enabled + ", initialLimit=" + initialLimit
+				+ ", minLimit=" + minLimit + ", maxLimit=" + maxLimit + ", tolerance=" + tolerance
+				+ ", retryAfter=" + retryAfter + ", priority=" + priority + "}";
+	}
+
+}
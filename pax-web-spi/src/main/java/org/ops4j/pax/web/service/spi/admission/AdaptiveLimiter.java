@@ -0,0 +1,252 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Adaptive concurrency limit of single context path. The limit is not configured - it's estimated from
+ * observed latency of the requests using gradient algorithm: short-term (exponentially weighted) average of
+ * request latency is compared with long-term average and when the ratio exceeds configured tolerance (the
+ * requests start to wait for shared resources), the limit is decreased proportionally. Otherwise it grows by
+ * square root of current limit, which is the number of requests allowed to queue in the application.</p>
+ *
+ * <p>Requests over the limit are rejected immediately - there's no queue, because under overload, queued
+ * requests would only increase latency of all the requests. Additionally, requests of contexts with lower
+ * {@link AdmissionPriority} are rejected when all the limiters together are close to their limits.</p>
+ *
+ * <p>The estimate is updated without blocking request threads - when a sample arrives while another thread
+ * is updating the estimate, the sample is skipped. Under load this simply means the latency is sampled.</p>
+ */
+public final class AdaptiveLimiter {
+
+	/** Weight of new sample in short-term latency average */
+	private static final double SHORT_WEIGHT = 0.1d;
+	/** Weight of new sample in long-term latency average */
+	private static final double LONG_WEIGHT = 1.0d / 600.0d;
+	/** Weight of newly computed limit (smoothing of limit changes) */
+	private static final double LIMIT_WEIGHT = 0.2d;
+
+	private final String contextPath;
+	private final AdaptiveLimitSettings settings;
+	private final Utilization utilization;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	/** Guards the estimate - only the thread which sets it may change the fields below */
+	private final AtomicBoolean updating = new AtomicBoolean();
+
+	/** Estimated limit - updated in {@link #release(long)} by single thread at a time, read without guard */
+	private volatile double limit;
+	private volatile double shortRtt;
+	private volatile double longRtt;
+	private boolean discarded;
+
+	private final LongAdder accepted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder shed = new LongAdder();
+
+	public AdaptiveLimiter(String contextPath, AdaptiveLimitSettings settings) {
+		this(contextPath, settings, new Utilization());
+	}
+
+	AdaptiveLimiter(String contextPath, AdaptiveLimitSettings settings, Utilization utilization) {
+		this.contextPath = contextPath;
+		this.settings = settings;
+		this.utilization = utilization;
+		this.limit = settings.getInitialLimit();
+		utilization.totalLimit.addAndGet(settings.getInitialLimit());
+	}
+
+	/**
+	 * Tries to admit new request. When {@code true} is returned, either {@link #release(long)} or
+	 * {@link #drop()} has to be called after the request is processed.
+	 * @return {@code false} if the request should be rejected
+	 */
+	public boolean tryAcquire() {
+		AdmissionPriority priority = settings.getPriority();
+		while (true) {
+			int current = inFlight.get();
+			if (current >= (int) limit) {
+				rejected.increment();
+				return false;
+			}
+			if (priority != AdmissionPriority.CRITICAL && utilization.exceeds(priority.getMaxUtilization())) {
+				shed.increment();
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				utilization.inFlight.incrementAndGet();
+				accepted.increment();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Finishes a request admitted by {@link #tryAcquire()} and uses its latency to update the limit.
+	 * @param startNanos {@link System#nanoTime()} at the time the request was admitted
+	 */
+	public void release(long startNanos) {
+		int current = inFlight.getAndDecrement();
+		utilization.inFlight.decrementAndGet();
+		update(System.nanoTime() - startNanos, current);
+	}
+
+	/**
+	 * Finishes a request admitted by {@link #tryAcquire()} without using it as latency sample (for example
+	 * when it was rejected later or when it was processed asynchronously - latency of long-polling or
+	 * streaming requests says nothing about the load of the application).
+	 */
+	public void drop() {
+		inFlight.decrementAndGet();
+		utilization.inFlight.decrementAndGet();
+	}
+
+	private void update(long rtt, int current) {
+		if (rtt <= 0L || !updating.compareAndSet(false, true)) {
+			// another thread is updating the estimate - skip this sample
+			return;
+		}
+		try {
+			update0(rtt, current);
+		} finally {
+			updating.set(false);
+		}
+	}
+
+	private void update0(long rtt, int current) {
+		if (discarded) {
+			return;
+		}
+		if (longRtt == 0.0d) {
+			shortRtt = rtt;
+			longRtt = rtt;
+			return;
+		}
+		shortRtt += (rtt - shortRtt) * SHORT_WEIGHT;
+		longRtt += (rtt - longRtt) * LONG_WEIGHT;
+		if (longRtt > shortRtt * 2.0d) {
+			// latency dropped permanently (e.g., after warm-up) - let long-term average catch up faster
+			longRtt *= 0.95d;
+		}
+
+		double previous = limit;
+		double gradient = Math.max(0.5d, Math.min(1.0d, settings.getTolerance() * longRtt / shortRtt));
+		if (gradient == 1.0d && current < previous / 2.0d) {
+			// the application is not using the limit, so there's no evidence that higher limit is fine
+			return;
+		}
+		double estimated = previous * gradient + Math.sqrt(previous);
+		double next = previous * (1.0d - LIMIT_WEIGHT) + estimated * LIMIT_WEIGHT;
+		next = Math.max(settings.getMinLimit(), Math.min(settings.getMaxLimit(), next));
+		limit = next;
+		if ((int) next != (int) previous) {
+			utilization.totalLimit.addAndGet((int) next - (int) previous);
+		}
+	}
+
+	/**
+	 * Stops contributing to the sum of limits of all the limiters. Requests in flight are still released.
+	 */
+	void discard() {
+		while (!updating.compareAndSet(false, true)) {
+			Thread.yield();
+		}
+		try {
+			if (!discarded) {
+				discarded = true;
+				utilization.totalLimit.addAndGet(-(int) limit);
+			}
+		} finally {
+			updating.set(false);
+		}
+	}
+
+	public String getContextPath() {
+		return contextPath;
+	}
+
+	public AdaptiveLimitSettings getSettings() {
+		return settings;
+	}
+
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Short-term average latency in milliseconds
+	 * @return
+	 */
+	public double getShortLatency() {
+		return shortRtt / TimeUnit.MILLISECONDS.toNanos(1L);
+	}
+
+	/**
+	 * Long-term average latency in milliseconds
+	 * @return
+	 */
+	public double getLongLatency() {
+		return longRtt / TimeUnit.MILLISECONDS.toNanos(1L);
+	}
+
+	public long getAcceptedCount() {
+		return accepted.sum();
+	}
+
+	/**
+	 * Number of requests rejected, because the limit of this limiter was reached
+	 * @return
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Number of requests rejected because of low priority, when all the limiters were close to their limits
+	 * @return
+	 */
+	public long getShedCount() {
+		return shed.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "AdaptiveLimiter{contextPath=" + contextPath + ", limit=" + getLimit() + ", " + settings + "}";
+	}
+
+	/**
+	 * Requests in flight and sum of limits of all the limiters sharing the same container.
+	 */
+	static final class Utilization {
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger totalLimit = new AtomicInteger();
+
+		boolean exceeds(double maxUtilization) {
+			int total = totalLimit.get();
+			return total > 0 && inFlight.get() >= total * maxUtilization;
+		}
+	}
+
+}
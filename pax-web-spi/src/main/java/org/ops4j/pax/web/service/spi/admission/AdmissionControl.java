@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.admission;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+
+/**
+ * <p>Single (per pax-web-spi bundle) registry of {@link Bulkhead bulkheads} and
+ * {@link AdaptiveLimiter adaptive limiters}. Just as with
+ * {@link org.ops4j.pax.web.service.spi.metrics.WebMetricsRegistry}, runtimes access it directly in request
+ * processing path (through {@link org.ops4j.pax.web.service.spi.servlet.OsgiFilterChain}) and pax-web-runtime
+ * configures global defaults.</p>
+ *
+ * <p>There's one bulkhead and one limiter per context path. Their settings are derived from global defaults and context init
+ * parameters of the {@link OsgiContextModel} which handles the first request for the context path.</p>
+ */
+public final class AdmissionControl {
+
+	private static final AdmissionControl INSTANCE = new AdmissionControl();
+
+	/** Marker for context paths without bulkhead, so the settings are not checked for each request */
+	private static final Bulkhead NONE = new Bulkhead("", BulkheadSettings.DISABLED);
+
+	/** Marker for context paths without adaptive limit */
+	private static final AdaptiveLimiter NO_LIMITER = new AdaptiveLimiter("", AdaptiveLimitSettings.DISABLED);
+
+	private volatile BulkheadSettings bulkheadDefaults = BulkheadSettings.DISABLED;
+	private volatile AdaptiveLimitSettings limitDefaults = AdaptiveLimitSettings.DISABLED;
+
+	private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+	private final Map<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+
+	/** Shared by all the limiters to apply {@link AdmissionPriority} */
+	private final AdaptiveLimiter.Utilization utilization = new AdaptiveLimiter.Utilization();
+
+	private AdmissionControl() {
+	}
+
+	public static AdmissionControl getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Sets global defaults for bulkheads and adaptive limiters. Existing bulkheads and limiters are discarded
+	 * (requests queued in discarded bulkheads are resumed when their running requests complete).
+	 * @param bulkheadDefaults
+	 * @param limitDefaults
+	 */
+	public void configure(BulkheadSettings bulkheadDefaults, AdaptiveLimitSettings limitDefaults) {
+		this.bulkheadDefaults = bulkheadDefaults == null ? BulkheadSettings.DISABLED : bulkheadDefaults;
+		this.limitDefaults = limitDefaults == null ? AdaptiveLimitSettings.DISABLED : limitDefaults;
+		bulkheads.values().forEach(Bulkhead::shutdown);
+		bulkheads.clear();
+		limiters.values().forEach(AdaptiveLimiter::discard);
+		limiters.clear();
+	}
+
+	/**
+	 * Gets {@link Bulkhead} for given context path.
+	 * @param osgiContextModel
+	 * @param contextPath
+	 * @return {@code null} if there's no bulkhead for the context path
+	 */
+	public Bulkhead getBulkhead(OsgiContextModel osgiContextModel, String contextPath) {
+		Bulkhead bulkhead = bulkheads.get(contextPath);
+		if (bulkhead == null) {
+			bulkhead = bulkheads.computeIfAbsent(contextPath, path -> {
+				BulkheadSettings settings = bulkheadDefaults.withContextParams(osgiContextModel == null
+						? null : osgiContextModel.getContextParams());
+				return settings.isEnabled() ? new Bulkhead(path, settings) : NONE;
+			});
+		}
+		return bulkhead == NONE ? null : bulkhead;
+	}
+
+	/**
+	 * Gets {@link AdaptiveLimiter} for given context path.
+	 * @param osgiContextModel
+	 * @param contextPath
+	 * @return {@code null} if adaptive limit is not enabled for the context path
+	 */
+	public AdaptiveLimiter getLimiter(OsgiContextModel osgiContextModel, String contextPath) {
+		AdaptiveLimiter limiter = limiters.get(contextPath);
+		if (limiter == null) {
+			limiter = limiters.computeIfAbsent(contextPath, path -> {
+				AdaptiveLimitSettings settings = limitDefaults.withContextParams(osgiContextModel == null
+						? null : osgiContextModel.getContextParams());
+				return settings.isEnabled() ? new AdaptiveLimiter(path, settings, utilization) : NO_LIMITER;
+			});
+		}
+		return limiter == NO_LIMITER ? null : limiter;
+	}
+
+	/**
+	 * Discards the bulkhead and the limiter of given context path, so they're created again using current
+	 * context params.
+	 * @param contextPath
+	 */
+	public void reset(String contextPath) {
+		Bulkhead bulkhead = bulkheads.remove(contextPath);
+		if (bulkhead != null) {
+			bulkhead.shutdown();
+		}
+		AdaptiveLimiter limiter = limiters.remove(contextPath);
+		if (limiter != null) {
+			limiter.discard();
+		}
+	}
+
+	/**
+	 * Returns all active bulkheads.
+	 * @return
+	 */
+	public Collection<Bulkhead> getBulkheads() {
+		Collection<Bulkhead> result = new ArrayList<>();
+		for (Bulkhead bulkhead : bulkheads.values()) {
+			if (bulkhead != NONE) {
+				result.add(bulkhead);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns all active adaptive limiters.
+	 * @return
+	 */
+	public Collection<AdaptiveLimiter> getLimiters() {
+		Collection<AdaptiveLimiter> result = new ArrayList<>();
+		for (AdaptiveLimiter limiter : limiters.values()) {
+			if (limiter != NO_LIMITER) {
+				result.add(limiter);
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.admission;
+
+import java.util.Locale;
+
+/**
+ * Priority of a context. It specifies the share of the sum of all adaptive limits that may be in use before
+ * requests of the context are rejected, even when its own limit is not reached yet.
+ */
+public enum AdmissionPriority {
+
+	/** Requests are limited only by the adaptive limit of the context */
+	CRITICAL(Double.MAX_VALUE),
+	/** Requests are rejected when 90% of all limits is used */
+	NORMAL(0.9d),
+	/** Requests are rejected when 70% of all limits is used */
+	LOW(0.7d);
+
+	private final double maxUtilization;
+
+	AdmissionPriority(double maxUtilization) {
+		this.maxUtilization = maxUtilization;
+	}
+
+	/**
+	 * Maximal utilization of all limits (ratio of all in-flight requests to sum of all limits) at which
+	 * requests with this priority are still admitted.
+	 * @return
+	 */
+	public double getMaxUtilization() {
+		return maxUtilization;
+	}
+
+	/**
+	 * Parses the priority in case-insensitive way.
+	 * @param value
+	 * @param defaultValue returned for {@code null} or unknown value
+	 * @return
+	 */
+	public static AdmissionPriority parse(String value, AdmissionPriority defaultValue) {
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			return defaultValue;
+		}
+	}
+
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.admission;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.ops4j.pax.web.service.spi.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Bounded concurrency limit of single context path, so slow application can't occupy all the threads of
+ * the container. Requests over the limit are rejected immediately - container threads never wait for a
+ * permit.</p>
+ *
+ * <p>Optionally ({@link BulkheadSettings#isAsyncQueue()}), requests supporting asynchronous processing may wait
+ * in bounded queue. Such requests are suspended by the caller and their {@link Ticket} is granted a permit
+ * (which means the request is resumed) when a permit is released.</p>
+ *
+ * <p>Optionally ({@link BulkheadSettings#isDedicatedExecutor()}), the bulkhead has its own executor - requests
+ * holding a permit are then handed over to it (using asynchronous processing), so slow application doesn't
+ * occupy container threads even within the concurrency limit.</p>
+ */
+public final class Bulkhead {
+
+	private static final Logger LOG = LoggerFactory.getLogger(Bulkhead.class);
+
+	private final String contextPath;
+	private final BulkheadSettings settings;
+
+	private final Semaphore permits;
+
+	/** Suspended requests waiting for a permit - may contain already cancelled tickets */
+	private final Queue<Ticket> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	private final LongAdder accepted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder timedOut = new LongAdder();
+
+	/** Dedicated executor or {@code null} if requests are processed in container threads */
+	private final ThreadPoolExecutor executor;
+
+	public Bulkhead(String contextPath, BulkheadSettings settings) {
+		this.contextPath = contextPath;
+		this.settings = settings;
+		this.permits = new Semaphore(settings.getMaxConcurrentRequests());
+
+		if (settings.isDedicatedExecutor()) {
+			// only tasks holding a permit are executed, so the queue never grows over the concurrency limit
+			int threads = settings.getMaxConcurrentRequests();
+			executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+					new NamedThreadFactory("paxweb-bulkhead"));
+			executor.allowCoreThreadTimeOut(true);
+		} else {
+			executor = null;
+		}
+	}
+
+	/**
+	 * Acquires a permit to process a request in current thread without waiting for it.
+	 * @return {@code false} if the request should be rejected (or queued using {@link #enqueue(Ticket)})
+	 */
+	public boolean acquire() {
+		if (permits.tryAcquire()) {
+			accepted.increment();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Records the rejection of a request that couldn't {@link #acquire()} a permit and wasn't queued.
+	 */
+	public void reject() {
+		rejected.increment();
+	}
+
+	/**
+	 * Releases a permit acquired with {@link #acquire()} or granted to a {@link Ticket}. If there are waiting
+	 * requests, the permit is passed to the first of them.
+	 */
+	public void release() {
+		permits.release();
+		drain();
+	}
+
+	/**
+	 * Whether requests over the limit may wait in the queue of this bulkhead.
+	 * @return
+	 */
+	public boolean isAsyncQueue() {
+		return settings.isAsyncQueue() && settings.getMaxQueuedRequests() > 0 && settings.getMaxQueueTime() > 0L;
+	}
+
+	/**
+	 * Puts a suspended request into the queue. {@link Ticket}'s action may be invoked immediately (in current
+	 * thread) if a permit was released in the meantime, so the caller should be ready for it.
+	 * @param ticket
+	 * @return {@code false} if the queue is full and the request should be rejected (the ticket is then
+	 *         cancelled)
+	 */
+	public boolean enqueue(Ticket ticket) {
+		if (!isAsyncQueue() || waiting.incrementAndGet() > settings.getMaxQueuedRequests()) {
+			if (isAsyncQueue()) {
+				waiting.decrementAndGet();
+			}
+			ticket.state.set(Ticket.CANCELLED);
+			rejected.increment();
+			return false;
+		}
+		queue.add(ticket);
+		drain();
+		return true;
+	}
+
+	/**
+	 * Removes the ticket from the queue if it wasn't granted a permit yet.
+	 * @param ticket
+	 * @param timeout whether the request waited too long (otherwise it was completed by other means)
+	 * @return {@code true} if the ticket was cancelled and will never be granted a permit
+	 */
+	public boolean cancel(Ticket ticket, boolean timeout) {
+		if (!ticket.state.compareAndSet(Ticket.WAITING, Ticket.CANCELLED)) {
+			return false;
+		}
+		waiting.decrementAndGet();
+		queue.remove(ticket);
+		if (timeout) {
+			timedOut.increment();
+		}
+		return true;
+	}
+
+	/**
+	 * Whether requests holding a permit of this bulkhead are processed in dedicated executor.
+	 * @return
+	 */
+	public boolean hasExecutor() {
+		return executor != null;
+	}
+
+	/**
+	 * Runs the processing of a request holding a permit in dedicated executor. The caller is responsible for
+	 * releasing the permit when the task finishes.
+	 * @param task
+	 * @return {@code false} if there's no executor or it was already {@link #shutdown() shut down}
+	 */
+	public boolean execute(Runnable task) {
+		if (executor == null) {
+			return false;
+		}
+		try {
+			executor.execute(task);
+			return true;
+		} catch (RejectedExecutionException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Stops the dedicated executor of discarded bulkhead (already running requests are finished).
+	 */
+	public void shutdown() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Passes available permits to waiting tickets. Both {@link #release()} and {@link #enqueue} change one side
+	 * and then check the other, so a permit can't be left unused while there's a waiting ticket.
+	 */
+	private void drain() {
+		while (!queue.isEmpty() && permits.tryAcquire()) {
+			Ticket ticket;
+			do {
+				ticket = queue.poll();
+			} while (ticket != null && !ticket.state.compareAndSet(Ticket.WAITING, Ticket.GRANTED));
+			if (ticket == null) {
+				permits.release();
+				continue;
+			}
+			waiting.decrementAndGet();
+			accepted.increment();
+			try {
+				ticket.onPermit.run();
+			} catch (RuntimeException e) {
+				LOG.warn("Can't resume queued request of \"{}\" context: {}", contextPath, e.getMessage(), e);
+			}
+		}
+	}
+
+	public String getContextPath() {
+		return contextPath;
+	}
+
+	public BulkheadSettings getSettings() {
+		return settings;
+	}
+
+	public int getActiveRequests() {
+		return settings.getMaxConcurrentRequests() - permits.availablePermits();
+	}
+
+	public int getQueuedRequests() {
+		return waiting.get();
+	}
+
+	public long getAcceptedCount() {
+		return accepted.sum();
+	}
+
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	public long getTimedOutCount() {
+		return timedOut.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "Bulkhead{contextPath=" + contextPath + ", " + settings + "}";
+	}
+
+	/**
+	 * A place of suspended request in the queue of {@link Bulkhead}.
+	 */
+	public static final class Ticket {
+
+		private static final int WAITING = 0;
+		private static final int GRANTED = 1;
+		private static final int CANCELLED = 2;
+
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+		private final Runnable onPermit;
+
+		/**
+		 * Creates a ticket with an action to resume the request when it's granted a permit.
+		 * @param onPermit
+		 */
+		public Ticket(Runnable onPermit) {
+			this.onPermit = onPermit;
+		}
+
+		/**
+		 * Whether the ticket was granted a permit (which has to be {@link Bulkhead#release() released}).
+		 * @return
+		 */
+		public boolean isGranted() {
+			return state.get() == GRANTED;
+		}
+	}
+
+}
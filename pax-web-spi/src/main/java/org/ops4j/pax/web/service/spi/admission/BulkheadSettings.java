@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.admission;
+
+import java.util.Map;
+
+import org.ops4j.pax.web.service.PaxWebConfig;
+import org.ops4j.pax.web.service.spi.config.ServerConfiguration;
+
+/**
+ * Immutable {@link Bulkhead} settings. Global defaults come from {@link ServerConfiguration} and may be
+ * overriden per context using context init parameters with the same names as
+ * {@code org.ops4j.pax.web.server.bulkhead.*} PID properties.
+ */
+public final class BulkheadSettings {
+
+	public static final BulkheadSettings DISABLED = new BulkheadSettings(false, 32, 0, 1000, false, false, 1);
+
+	private final boolean enabled;
+	private final int maxConcurrentRequests;
+	private final int maxQueuedRequests;
+	private final long maxQueueTime;
+	private final boolean asyncQueue;
+	private final boolean dedicatedExecutor;
+	private final int retryAfter;
+
+	public BulkheadSettings(boolean enabled, int maxConcurrentRequests, int maxQueuedRequests, long maxQueueTime,
+			boolean asyncQueue, boolean dedicatedExecutor, int retryAfter) {
+		this.enabled = enabled;
+		this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+		this.maxQueuedRequests = Math.max(0, maxQueuedRequests);
+		this.maxQueueTime = Math.max(0L, maxQueueTime);
+		this.asyncQueue = asyncQueue;
+		this.dedicatedExecutor = dedicatedExecutor;
+		this.retryAfter = Math.max(0, retryAfter);
+	}
+
+	/**
+	 * Creates global default settings.
+	 * @param sc
+	 * @return
+	 */
+	public static BulkheadSettings from(ServerConfiguration sc) {
+		return new BulkheadSettings(sc.isBulkheadEnabled(), sc.getBulkheadMaxConcurrentRequests(),
+				sc.getBulkheadMaxQueuedRequests(), sc.getBulkheadMaxQueueTime(), sc.isBulkheadAsyncQueue(),
+				sc.isBulkheadDedicatedExecutor(), sc.getBulkheadRetryAfter());
+	}
+
+	/**
+	 * Returns settings of a context with given init parameters.
+	 * @param contextParams
+	 * @return
+	 */
+	public BulkheadSettings withContextParams(Map<String, String> contextParams) {
+		if (contextParams == null || contextParams.isEmpty()) {
+			return this;
+		}
+		String enabled = contextParams.get(PaxWebConfig.PID_CFG_BULKHEAD_ENABLED);
+		String maxConcurrent = contextParams.get(PaxWebConfig.PID_CFG_BULKHEAD_MAX_CONCURRENT_REQUESTS);
+		String maxQueued = contextParams.get(PaxWebConfig.PID_CFG_BULKHEAD_MAX_QUEUED_REQUESTS);
+		String maxQueueTime = contextParams.get(PaxWebConfig.PID_CFG_BULKHEAD_MAX_QUEUE_TIME);
+		String asyncQueue = contextParams.get(PaxWebConfig.PID_CFG_BULKHEAD_ASYNC_QUEUE);
+		String dedicated = contextParams.get(PaxWebConfig.PID_CFG_BULKHEAD_DEDICATED_EXECUTOR);
+		String retryAfter = contextParams.get(PaxWebConfig.PID_CFG_BULKHEAD_RETRY_AFTER);
+		if (enabled == null && maxConcurrent == null && maxQueued == null && maxQueueTime == null
+				&& asyncQueue == null && dedicated == null && retryAfter == null) {
+			return this;
+		}
+		return new BulkheadSettings(
+				enabled == null ? this.enabled : Boolean.parseBoolean(enabled.trim()),
+				parse(maxConcurrent, maxConcurrentRequests), parse(maxQueued, maxQueuedRequests),
+				parse(maxQueueTime, (int) this.maxQueueTime),
+				asyncQueue == null ? this.asyncQueue : Boolean.parseBoolean(asyncQueue.trim()),
+				dedicated == null ? dedicatedExecutor : Boolean.parseBoolean(dedicated.trim()),
+				parse(retryAfter, this.retryAfter));
+	}
+
+	private static int parse(String value, int defaultValue) {
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public int getMaxConcurrentRequests() {
+		return maxConcurrentRequests;
+	}
+
+	public int getMaxQueuedRequests() {
+		return maxQueuedRequests;
+	}
+
+	/**
+	 * Maximum queue time in milliseconds
+	 * @return
+	 */
+	public long getMaxQueueTime() {
+		return maxQueueTime;
+	}
+
+	public boolean isAsyncQueue() {
+		return asyncQueue;
+	}
+
+	public boolean isDedicatedExecutor() {
+		return dedicatedExecutor;
+	}
+
+	/**
+	 * Value of {@code Retry-After} header in seconds
+	 * @return
+	 */
+	public int getRetryAfter() {
+		return retryAfter;
+	}
+
+	@Override
+	public String toString() {
+		return "BulkheadSettings{enabled=" + enabled + ", maxConcurrentRequests=" + maxConcurrentRequests
+				+ ", maxQueuedRequests=" + maxQueuedRequests + ", maxQueueTime=" + maxQueueTime
+				+ ", asyncQueue=" + asyncQueue + ", dedicatedExecutor=" + dedicatedExecutor
+				+ ", retryAfter=" + retryAfter + "}";
+	}
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.compression;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+import org.ops4j.pax.web.service.PaxWebConfig;
+import org.ops4j.pax.web.service.spi.config.ServerConfiguration;
+
+/**
+ * <p>Immutable compression settings of single context. Global defaults come from
+ * {@link ServerConfiguration} and may be overriden per context using context init parameters with the same
+ * names as {@code org.ops4j.pax.web.server.compression.*} PID properties.</p>
+ */
+public final class CompressionSettings {
+
+	public static final CompressionSettings DISABLED = new CompressionSettings(false,
+			Collections.emptySet(), Collections.emptySet(), 2048, Deflater.DEFAULT_COMPRESSION);
+
+	private final boolean enabled;
+	private final Set<String> mimeTypes;
+	private final Set<String> excludedMimeTypes;
+	private final int minSize;
+	private final int level;
+
+	/** Global settings these settings were derived from (or {@code this} for global settings) */
+	private final CompressionSettings defaults;
+
+	public CompressionSettings(boolean enabled, Set<String> mimeTypes, Set<String> excludedMimeTypes,
+			int minSize, int level) {
+		this(null, enabled, mimeTypes, excludedMimeTypes, minSize, level);
+	}
+
+	private CompressionSettings(CompressionSettings defaults, boolean enabled, Set<String> mimeTypes,
+			Set<String> excludedMimeTypes, int minSize, int level) {
+		this.defaults = defaults == null ? this : defaults;
+		this.enabled = enabled;
+		this.mimeTypes = mimeTypes;
+		this.excludedMimeTypes = excludedMimeTypes;
+		this.minSize = Math.max(0, minSize);
+		this.level = level < 1 || level > 9 ? Deflater.DEFAULT_COMPRESSION : level;
+	}
+
+	/**
+	 * Creates global default settings.
+	 * @param sc
+	 * @return
+	 */
+	public static CompressionSettings from(ServerConfiguration sc) {
+		return new CompressionSettings(sc.isCompressionEnabled(),
+				mimeTypes(sc.getCompressionMimeTypes()), mimeTypes(sc.getCompressionExcludedMimeTypes()),
+				sc.getCompressionMinSize(), sc.getCompressionLevel());
+	}
+
+	/**
+	 * Returns settings of a context with given init parameters. If there are no compression parameters,
+	 * {@code this} is returned.
+	 * @param contextParams
+	 * @return
+	 */
+	public CompressionSettings withContextParams(Map<String, String> contextParams) {
+		if (contextParams == null || contextParams.isEmpty()) {
+			return this;
+		}
+		String enabled = contextParams.get(PaxWebConfig.PID_CFG_COMPRESSION_ENABLED);
+		String mimeTypes = contextParams.get(PaxWebConfig.PID_CFG_COMPRESSION_MIME_TYPES);
+		String excludedMimeTypes = contextParams.get(PaxWebConfig.PID_CFG_COMPRESSION_EXCLUDED_MIME_TYPES);
+		String minSize = contextParams.get(PaxWebConfig.PID_CFG_COMPRESSION_MIN_SIZE);
+		String level = contextParams.get(PaxWebConfig.PID_CFG_COMPRESSION_LEVEL);
+		if (enabled == null && mimeTypes == null && excludedMimeTypes == null && minSize == null && level == null) {
+			return this;
+		}
+		return new CompressionSettings(this,
+				enabled == null ? this.enabled : Boolean.parseBoolean(enabled.trim()),
+				mimeTypes == null ? this.mimeTypes : mimeTypes(mimeTypes.trim().split("\\s*,\\s*")),
+				excludedMimeTypes == null ? this.excludedMimeTypes : mimeTypes(excludedMimeTypes.trim().split("\\s*,\\s*")),
+				parse(minSize, this.minSize), parse(level, this.level));
+	}
+
+	private static int parse(String value, int defaultValue) {
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private static Set<String> mimeTypes(String[] types) {
+		if (types == null || types.length == 0) {
+			return Collections.emptySet();
+		}
+		Set<String> result = new HashSet<>();
+		Arrays.stream(types).filter(t -> !"".equals(t.trim()))
+				.forEach(t -> result.add(t.trim().toLowerCase(Locale.ENGLISH)));
+		return Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * Returns global settings used to derive these settings.
+	 * @return
+	 */
+	public CompressionSettings getDefaults() {
+		return defaults;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Checks whether response with given {@code Content-Type} may be compressed.
+	 * @param contentType full content type, possibly with parameters
+	 * @return
+	 */
+	public boolean isCompressible(String contentType) {
+		if (contentType == null) {
+			return false;
+		}
+		int semicolon = contentType.indexOf(';');
+		String mimeType = (semicolon >= 0 ? contentType.substring(0, semicolon) : contentType)
+				.trim().toLowerCase(Locale.ENGLISH);
+		if (matches(excludedMimeTypes, mimeType)) {
+			return false;
+		}
+		return matches(mimeTypes, mimeType);
+	}
+
+	private static boolean matches(Set<String> types, String mimeType) {
+		if (types.isEmpty()) {
+			return false;
+		}
+		if (types.contains(mimeType)) {
+			return true;
+		}
+		int slash = mimeType.indexOf('/');
+		return slash > 0 && types.contains(mimeType.substring(0, slash) + "/*");
+	}
+
+	@Override
+	public String toString() {
+		return "CompressionSettings{enabled=" + enabled + ", mimeTypes=" + mimeTypes
+				+ ", excludedMimeTypes=" + excludedMimeTypes + ", minSize=" + minSize + ", level=" + level + "}";
+	}
+
+}
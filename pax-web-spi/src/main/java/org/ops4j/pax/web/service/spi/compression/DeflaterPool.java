@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.compression;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Bounded pool of raw ({@code nowrap}) {@link Deflater deflaters} of single compression level. Creating
+ * a {@link Deflater} allocates native memory, so reusing them is much cheaper than creating new one per response.
+ */
+class DeflaterPool {
+
+	private final int level;
+	private final BlockingQueue<Deflater> idle;
+
+	DeflaterPool(int level, int capacity) {
+		this.level = level;
+		this.idle = capacity > 0 ? new ArrayBlockingQueue<>(capacity) : null;
+	}
+
+	/**
+	 * Gets idle {@link Deflater} or creates new one.
+	 * @return
+	 */
+	Deflater acquire() {
+		Deflater deflater = idle == null ? null : idle.poll();
+		return deflater != null ? deflater : new Deflater(level, true);
+	}
+
+	/**
+	 * Returns the {@link Deflater} to the pool or releases its native resources if the pool is full.
+	 * @param deflater
+	 */
+	void release(Deflater deflater) {
+		deflater.reset();
+		if (idle == null || !idle.offer(deflater)) {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Releases native resources of all idle deflaters.
+	 */
+	void clear() {
+		if (idle == null) {
+			return;
+		}
+		Deflater deflater;
+		while ((deflater = idle.poll()) != null) {
+			deflater.end();
+		}
+	}
+
+}
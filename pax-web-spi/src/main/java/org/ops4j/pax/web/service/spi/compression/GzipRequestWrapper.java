@@ -0,0 +1,204 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.compression;
+
+import java.io.IOException;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>{@link HttpServletRequestWrapper} which tracks asynchronous processing of a request with compressed
+ * response. Containers may close the output before notifying {@link AsyncListener#onComplete}, so remaining
+ * compressed data (and gzip trailer) is written before {@link AsyncContext#complete()} or
+ * {@link AsyncContext#dispatch()} is passed to the container.</p>
+ *
+ * <p>When there's no decision about compression when {@link #startAsync()} is called, the response is sent
+ * uncompressed.</p>
+ */
+class GzipRequestWrapper extends HttpServletRequestWrapper {
+
+	private static final Logger LOG = LoggerFactory.getLogger(GzipRequestWrapper.class);
+
+	private final GzipResponseWrapper response;
+
+	/** {@link AsyncContext} returned to the application when the response is compressed */
+	private FinishingAsyncContext asyncContext;
+
+	GzipRequestWrapper(HttpServletRequest request, GzipResponseWrapper response) {
+		super(request);
+		this.response = response;
+	}
+
+	@Override
+	public AsyncContext startAsync() throws IllegalStateException {
+		return track(super.startAsync());
+	}
+
+	@Override
+	public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse)
+			throws IllegalStateException {
+		return track(super.startAsync(servletRequest, servletResponse));
+	}
+
+	@Override
+	public AsyncContext getAsyncContext() {
+		AsyncContext context = super.getAsyncContext();
+		FinishingAsyncContext finishing = asyncContext;
+		return finishing != null && finishing.delegate == context ? finishing : context;
+	}
+
+	private AsyncContext track(AsyncContext context) {
+		boolean compressed;
+		try {
+			compressed = response.continueAsync();
+		} catch (IOException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+		if (!compressed) {
+			return context;
+		}
+		FinishingAsyncContext finishing = new FinishingAsyncContext(context, response);
+		// registered before any listener of the application, which may complete the request in onTimeout()
+		context.addListener(finishing);
+		asyncContext = finishing;
+		return finishing;
+	}
+
+	/**
+	 * {@link AsyncContext} which finishes the compressed response before the request is completed or
+	 * dispatched. It's also a listener handling timeouts and errors.
+	 */
+	private static class FinishingAsyncContext implements AsyncContext, AsyncListener {
+
+		private final AsyncContext delegate;
+		private final GzipResponseWrapper response;
+
+		FinishingAsyncContext(AsyncContext delegate, GzipResponseWrapper response) {
+			this.delegate = delegate;
+			this.response = response;
+		}
+
+		@Override
+		public ServletRequest getRequest() {
+			return delegate.getRequest();
+		}
+
+		@Override
+		public ServletResponse getResponse() {
+			return delegate.getResponse();
+		}
+
+		@Override
+		public boolean hasOriginalRequestAndResponse() {
+			return delegate.hasOriginalRequestAndResponse();
+		}
+
+		@Override
+		public void dispatch() {
+			finish();
+			delegate.dispatch();
+		}
+
+		@Override
+		public void dispatch(String path) {
+			finish();
+			delegate.dispatch(path);
+		}
+
+		@Override
+		public void dispatch(ServletContext context, String path) {
+			finish();
+			delegate.dispatch(context, path);
+		}
+
+		@Override
+		public void complete() {
+			finish();
+			delegate.complete();
+		}
+
+		@Override
+		public void start(Runnable run) {
+			delegate.start(run);
+		}
+
+		@Override
+		public void addListener(AsyncListener listener) {
+			delegate.addListener(listener);
+		}
+
+		@Override
+		public void addListener(AsyncListener listener, ServletRequest servletRequest,
+				ServletResponse servletResponse) {
+			delegate.addListener(listener, servletRequest, servletResponse);
+		}
+
+		@Override
+		public <T extends AsyncListener> T createListener(Class<T> clazz) throws ServletException {
+			return delegate.createListener(clazz);
+		}
+
+		@Override
+		public void setTimeout(long timeout) {
+			delegate.setTimeout(timeout);
+		}
+
+		@Override
+		public long getTimeout() {
+			return delegate.getTimeout();
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			// too late to write anything, but pooled resources have to be returned
+			response.discard();
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			finish();
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			response.discard();
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+		}
+
+		private void finish() {
+			try {
+				response.finish();
+			} catch (IOException e) {
+				LOG.debug("Can't finish compressed response: {}", e.getMessage());
+				response.discard();
+			}
+		}
+	}
+
+}
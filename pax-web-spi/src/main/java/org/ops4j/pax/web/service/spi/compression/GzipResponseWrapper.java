@@ -0,0 +1,332 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.compression;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.Locale;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * <p>{@link HttpServletResponseWrapper} that compresses the response body using {@link GzipServletOutputStream}.
+ * {@code Content-Length} set by the application is held back until the stream decides whether the response is
+ * compressed (and then it's dropped). Strong {@code ETag} of compressed response is changed to weak one, because
+ * the compressed representation is not byte-for-byte equal to the original one.</p>
+ *
+ * <p>{@link #finish()} has to be called after the request processing completes. Requests processed with this
+ * wrapper should be {@link #wrapRequest wrapped} too, so asynchronous processing finishes the response before
+ * the request is completed.</p>
+ */
+public class GzipResponseWrapper extends HttpServletResponseWrapper {
+
+	private static final String CONTENT_LENGTH = "Content-Length";
+	private static final String CONTENT_ENCODING = "Content-Encoding";
+	private static final String ETAG = "ETag";
+	private static final String VARY = "Vary";
+	private static final String ACCEPT_ENCODING = "Accept-Encoding";
+
+	private final CompressionSettings settings;
+	private final DeflaterPool pool;
+
+	private GzipServletOutputStream stream;
+	private PrintWriter writer;
+
+	/** {@code Content-Length} declared by the application and not yet passed to wrapped response */
+	private long contentLength = -1L;
+
+	/** Whether the decision about compression was already made */
+	private boolean decided;
+	private boolean compressing;
+
+	GzipResponseWrapper(HttpServletResponse response, CompressionSettings settings, DeflaterPool pool) {
+		super(response);
+		this.settings = settings;
+		this.pool = pool;
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		if (writer != null) {
+			throw new IllegalStateException("getWriter() has already been called");
+		}
+		return stream();
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if (writer == null) {
+			if (stream != null) {
+				throw new IllegalStateException("getOutputStream() has already been called");
+			}
+			writer = new PrintWriter(new OutputStreamWriter(stream(), getCharacterEncoding()));
+		}
+		return writer;
+	}
+
+	@Override
+	public void setContentLength(int len) {
+		setContentLengthLong(len);
+	}
+
+	@Override
+	public void setContentLengthLong(long len) {
+		if (!decided) {
+			contentLength = len;
+		} else if (!compressing) {
+			super.setContentLengthLong(len);
+		}
+	}
+
+	@Override
+	public void setHeader(String name, String value) {
+		if (CONTENT_LENGTH.equalsIgnoreCase(name) && value != null) {
+			setContentLengthLong(Long.parseLong(value.trim()));
+		} else if (compressing && ETAG.equalsIgnoreCase(name)) {
+			super.setHeader(name, weak(value));
+		} else {
+			super.setHeader(name, value);
+		}
+	}
+
+	@Override
+	public void addHeader(String name, String value) {
+		if (CONTENT_LENGTH.equalsIgnoreCase(name) && value != null) {
+			setContentLengthLong(Long.parseLong(value.trim()));
+		} else if (compressing && ETAG.equalsIgnoreCase(name)) {
+			super.addHeader(name, weak(value));
+		} else {
+			super.addHeader(name, value);
+		}
+	}
+
+	@Override
+	public void setIntHeader(String name, int value) {
+		if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			setContentLengthLong(value);
+		} else {
+			super.setIntHeader(name, value);
+		}
+	}
+
+	@Override
+	public void addIntHeader(String name, int value) {
+		if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			setContentLengthLong(value);
+		} else {
+			super.addIntHeader(name, value);
+		}
+	}
+
+	@Override
+	public void flushBuffer() throws IOException {
+		if (writer != null) {
+			writer.flush();
+		}
+		if (stream != null) {
+			stream.flush();
+		}
+		super.flushBuffer();
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		contentLength = -1L;
+		decided = false;
+		compressing = false;
+		if (stream != null) {
+			stream.reset(true);
+		}
+		addVary((HttpServletResponse) getResponse());
+	}
+
+	@Override
+	public void resetBuffer() {
+		super.resetBuffer();
+		if (stream != null) {
+			stream.reset(false);
+		}
+	}
+
+	@Override
+	public void sendError(int sc, String msg) throws IOException {
+		abandon();
+		super.sendError(sc, msg);
+	}
+
+	@Override
+	public void sendError(int sc) throws IOException {
+		abandon();
+		super.sendError(sc);
+	}
+
+	@Override
+	public void sendRedirect(String location) throws IOException {
+		abandon();
+		super.sendRedirect(location);
+	}
+
+	/**
+	 * Wraps the request processed with this response, so remaining compressed data is written before
+	 * asynchronous processing of the request is completed.
+	 * @param request
+	 * @return
+	 */
+	public HttpServletRequest wrapRequest(HttpServletRequest request) {
+		return new GzipRequestWrapper(request, this);
+	}
+
+	/**
+	 * Writes remaining (buffered or compressed) data to wrapped response.
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		try {
+			if (writer != null) {
+				writer.flush();
+			}
+		} finally {
+			if (stream != null) {
+				stream.finish();
+			} else if (!decided) {
+				startIdentity();
+			}
+		}
+	}
+
+	/**
+	 * Returns pooled resources without writing remaining data - when the processing of the request failed.
+	 */
+	public void discard() {
+		if (stream != null) {
+			stream.abandon();
+		}
+	}
+
+	/**
+	 * Called when the request was switched to asynchronous mode. If there's no decision about compression
+	 * yet, buffered data is written uncompressed and further data is passed as is.
+	 * @return {@code true} if the response is compressed and {@link #finish()} is still needed
+	 * @throws IOException
+	 */
+	public boolean continueAsync() throws IOException {
+		if (writer != null) {
+			writer.flush();
+		}
+		if (stream != null) {
+			return stream.continueAsync();
+		}
+		if (!decided) {
+			startIdentity();
+		}
+		return false;
+	}
+
+	long getDeclaredContentLength() {
+		return contentLength;
+	}
+
+	/**
+	 * Called by the stream when the response is large enough - checks the response status and headers and
+	 * switches the response to compressed mode if possible.
+	 * @return {@code true} if the response should be compressed
+	 */
+	boolean startCompression() {
+		HttpServletResponse response = (HttpServletResponse) getResponse();
+		boolean compress = !response.isCommitted()
+				&& (contentLength < 0 || contentLength >= settings.getMinSize())
+				&& isCompressibleStatus(response.getStatus())
+				&& response.getHeader(CONTENT_ENCODING) == null
+				&& response.getHeader("Content-Range") == null
+				&& settings.isCompressible(response.getContentType());
+		if (!compress) {
+			startIdentity();
+			return false;
+		}
+		decided = true;
+		compressing = true;
+		contentLength = -1L;
+		response.setHeader(CONTENT_ENCODING, "gzip");
+		// the application could have replaced the header added by ResponseCompression
+		addVary(response);
+		String etag = response.getHeader(ETAG);
+		if (etag != null) {
+			response.setHeader(ETAG, weak(etag));
+		}
+		return true;
+	}
+
+	/**
+	 * Switches the response to uncompressed mode, passing held {@code Content-Length}.
+	 */
+	void startIdentity() {
+		decided = true;
+		compressing = false;
+		if (contentLength >= 0 && !isCommitted()) {
+			super.setContentLengthLong(contentLength);
+		}
+		contentLength = -1L;
+	}
+
+	private void abandon() {
+		decided = true;
+		compressing = false;
+		contentLength = -1L;
+		if (stream != null) {
+			stream.abandon();
+		}
+	}
+
+	private GzipServletOutputStream stream() {
+		if (stream == null) {
+			stream = new GzipServletOutputStream(this, pool, settings.getMinSize());
+		}
+		return stream;
+	}
+
+	/**
+	 * Adds {@code Vary: Accept-Encoding} header unless the response already varies by {@code Accept-Encoding}.
+	 * @param response
+	 */
+	static void addVary(HttpServletResponse response) {
+		Collection<String> vary = response.getHeaders(VARY);
+		if (vary != null) {
+			for (String value : vary) {
+				String v = value == null ? "" : value.toLowerCase(Locale.ROOT);
+				if (v.contains("*") || v.contains("accept-encoding")) {
+					return;
+				}
+			}
+		}
+		response.addHeader(VARY, ACCEPT_ENCODING);
+	}
+
+	private static String weak(String etag) {
+		return etag != null && etag.startsWith("\"") ? "W/" + etag : etag;
+	}
+
+	private static boolean isCompressibleStatus(int status) {
+		return status >= 200 && status != HttpServletResponse.SC_NO_CONTENT
+				&& status != HttpServletResponse.SC_PARTIAL_CONTENT
+				&& status != HttpServletResponse.SC_NOT_MODIFIED;
+	}
+
+}
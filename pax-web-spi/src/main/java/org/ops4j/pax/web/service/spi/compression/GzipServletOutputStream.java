@@ -0,0 +1,296 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+/**
+ * <p>{@link ServletOutputStream} that buffers first {@code minSize} bytes of the response and then decides
+ * whether to compress it. After the decision, the data is streamed - either as is, or through pooled
+ * {@link Deflater} with gzip header and trailer written by this stream.</p>
+ */
+class GzipServletOutputStream extends ServletOutputStream {
+
+	private static final byte[] GZIP_HEADER = new byte[] {
+			0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+	};
+
+	private enum State {
+		/** Data is buffered until there's enough of it to decide about compression */
+		UNDECIDED,
+		/** Data is passed without compression */
+		IDENTITY,
+		/** Data is compressed */
+		GZIP,
+		/** Stream is finished */
+		FINISHED
+	}
+
+	private final GzipResponseWrapper response;
+	private final DeflaterPool pool;
+	private final int minSize;
+
+	private State state = State.UNDECIDED;
+	private ServletOutputStream out;
+
+	private byte[] buffer;
+	private int count;
+
+	private Deflater deflater;
+	private final CRC32 crc = new CRC32();
+	private byte[] deflated;
+	private boolean headerWritten;
+
+	GzipServletOutputStream(GzipResponseWrapper response, DeflaterPool pool, int minSize) {
+		this.response = response;
+		this.pool = pool;
+		this.minSize = minSize;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		switch (state) {
+			case UNDECIDED:
+				if (count + len <= minSize) {
+					buffer(b, off, len);
+					return;
+				}
+				decide(true);
+				write(b, off, len);
+				return;
+			case IDENTITY:
+				out().write(b, off, len);
+				return;
+			case GZIP:
+				deflate(b, off, len);
+				return;
+			default:
+				throw new IOException("Response stream is already closed");
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (state == State.UNDECIDED) {
+			// size is still unknown, but user wants the data to be sent
+			decide(true);
+		}
+		if (state == State.GZIP) {
+			int n;
+			do {
+				n = deflater.deflate(deflated, 0, deflated.length, Deflater.SYNC_FLUSH);
+				out().write(deflated, 0, n);
+			} while (n == deflated.length);
+		}
+		if (state != State.FINISHED) {
+			out().flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (state != State.FINISHED) {
+			finish();
+			out().close();
+		}
+	}
+
+	@Override
+	public boolean isReady() {
+		try {
+			return out().isReady();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public void setWriteListener(WriteListener writeListener) {
+		try {
+			out().setWriteListener(writeListener);
+		} catch (IOException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Writes all remaining data. Response that didn't reach {@code minSize} is sent uncompressed with
+	 * {@code Content-Length}.
+	 * @throws IOException
+	 */
+	void finish() throws IOException {
+		if (state == State.UNDECIDED) {
+			if (!response.isCommitted() && response.getDeclaredContentLength() < 0) {
+				response.getResponse().setContentLength(count);
+			}
+			decide(false);
+		}
+		if (state == State.GZIP) {
+			try {
+				ensureHeader();
+				deflater.finish();
+				while (!deflater.finished()) {
+					int n = deflater.deflate(deflated, 0, deflated.length);
+					out().write(deflated, 0, n);
+				}
+				byte[] trailer = new byte[8];
+				writeInt(trailer, 0, (int) crc.getValue());
+				writeInt(trailer, 4, (int) deflater.getBytesRead());
+				out().write(trailer);
+			} finally {
+				releaseDeflater();
+				state = State.FINISHED;
+			}
+		}
+		state = State.FINISHED;
+	}
+
+	/**
+	 * Makes the decision about compression if not made yet - without compression, as the response will be
+	 * produced asynchronously.
+	 * @return {@code true} if the response is being compressed
+	 * @throws IOException
+	 */
+	boolean continueAsync() throws IOException {
+		if (state == State.UNDECIDED) {
+			decide(false);
+		}
+		return state == State.GZIP;
+	}
+
+	/**
+	 * Clears the data written so far after the response buffer was reset.
+	 * @param headersReset whether the headers (including {@code Content-Encoding}) were reset too
+	 */
+	void reset(boolean headersReset) {
+		count = 0;
+		if (state == State.GZIP) {
+			if (headersReset) {
+				releaseDeflater();
+				state = State.UNDECIDED;
+			} else {
+				// the same compressed stream, but from the beginning
+				deflater.reset();
+				crc.reset();
+				headerWritten = false;
+			}
+		} else if (state == State.IDENTITY && headersReset) {
+			state = State.UNDECIDED;
+		}
+	}
+
+	/**
+	 * Stops buffering, because the response is no longer produced by the application (for example after
+	 * {@code sendError()}).
+	 */
+	void abandon() {
+		count = 0;
+		buffer = null;
+		if (deflater != null) {
+			releaseDeflater();
+		}
+		state = State.FINISHED;
+	}
+
+	/**
+	 * Decides whether to compress the response and writes buffered data.
+	 * @param large whether the response is (or is going to be) larger than {@code minSize}
+	 * @throws IOException
+	 */
+	private void decide(boolean large) throws IOException {
+		if (large && response.startCompression()) {
+			state = State.GZIP;
+			deflater = pool.acquire();
+			crc.reset();
+			if (deflated == null) {
+				deflated = new byte[8192];
+			}
+			if (count > 0) {
+				deflate(buffer, 0, count);
+			} else {
+				ensureHeader();
+			}
+		} else {
+			response.startIdentity();
+			state = State.IDENTITY;
+			if (count > 0) {
+				out().write(buffer, 0, count);
+			}
+		}
+		buffer = null;
+		count = 0;
+	}
+
+	private void buffer(byte[] b, int off, int len) {
+		if (buffer == null) {
+			buffer = new byte[Math.max(len, Math.min(minSize, 1024))];
+		} else if (count + len > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.min(minSize, Math.max(count + len, buffer.length * 2)));
+		}
+		System.arraycopy(b, off, buffer, count, len);
+		count += len;
+	}
+
+	private void deflate(byte[] b, int off, int len) throws IOException {
+		ensureHeader();
+		crc.update(b, off, len);
+		deflater.setInput(b, off, len);
+		while (!deflater.needsInput()) {
+			int n = deflater.deflate(deflated, 0, deflated.length, Deflater.NO_FLUSH);
+			if (n > 0) {
+				out().write(deflated, 0, n);
+			}
+		}
+	}
+
+	private void ensureHeader() throws IOException {
+		if (!headerWritten) {
+			out().write(GZIP_HEADER);
+			headerWritten = true;
+		}
+	}
+
+	private void releaseDeflater() {
+		pool.release(deflater);
+		deflater = null;
+		headerWritten = false;
+	}
+
+	private ServletOutputStream out() throws IOException {
+		if (out == null) {
+			out = response.getResponse().getOutputStream();
+		}
+		return out;
+	}
+
+	private static void writeInt(byte[] b, int off, int v) {
+		b[off] = (byte) v;
+		b[off + 1] = (byte) (v >> 8);
+		b[off + 2] = (byte) (v >> 16);
+		b[off + 3] = (byte) (v >> 24);
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.compression;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+
+/**
+ * <p>Single (per pax-web-spi bundle) entry point of response compression stage. Just as with
+ * {@link org.ops4j.pax.web.service.spi.metrics.WebMetricsRegistry}, runtimes access it directly in request
+ * processing path (through {@link org.ops4j.pax.web.service.spi.servlet.OsgiFilterChain}) and pax-web-runtime
+ * configures global defaults.</p>
+ *
+ * <p>Settings of each {@link OsgiContextModel} are derived from the defaults and context init parameters once
+ * and cached in the model.</p>
+ */
+public final class ResponseCompression {
+
+	private static final ResponseCompression INSTANCE = new ResponseCompression();
+
+	private volatile CompressionSettings defaults = CompressionSettings.DISABLED;
+	private volatile int deflaterPoolSize = 64;
+
+	/** {@link DeflaterPool} per compression level */
+	private final Map<Integer, DeflaterPool> pools = new ConcurrentHashMap<>();
+
+	private ResponseCompression() {
+	}
+
+	public static ResponseCompression getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Sets global defaults and releases pooled deflaters.
+	 * @param defaults
+	 * @param deflaterPoolSize
+	 */
+	public void configure(CompressionSettings defaults, int deflaterPoolSize) {
+		this.defaults = defaults == null ? CompressionSettings.DISABLED : defaults;
+		this.deflaterPoolSize = deflaterPoolSize;
+		pools.values().forEach(DeflaterPool::clear);
+		pools.clear();
+	}
+
+	public CompressionSettings getDefaults() {
+		return defaults;
+	}
+
+	/**
+	 * Gets effective settings for given context.
+	 * @param osgiContextModel
+	 * @return
+	 */
+	public CompressionSettings getSettings(OsgiContextModel osgiContextModel) {
+		CompressionSettings current = defaults;
+		if (osgiContextModel == null) {
+			return current;
+		}
+		CompressionSettings settings = osgiContextModel.getCompressionSettings();
+		if (settings == null || settings.getDefaults() != current) {
+			settings = current.withContextParams(osgiContextModel.getContextParams());
+			osgiContextModel.setCompressionSettings(settings);
+		}
+		return settings;
+	}
+
+	/**
+	 * Returns a compressing wrapper of the response if compression is enabled for the context and the request
+	 * accepts gzip encoding. When compression is enabled, {@code Vary: Accept-Encoding} is added to every
+	 * response (the content type is not known yet), so caches don't serve compressed response to clients which
+	 * don't accept it (and vice versa).
+	 * @param osgiContextModel
+	 * @param request
+	 * @param response
+	 * @return {@code null} if the response should not be compressed
+	 */
+	public GzipResponseWrapper compressingResponse(OsgiContextModel osgiContextModel,
+			HttpServletRequest request, HttpServletResponse response) {
+		CompressionSettings settings = getSettings(osgiContextModel);
+		if (!settings.isEnabled() || request.getDispatcherType() != DispatcherType.REQUEST) {
+			return null;
+		}
+		GzipResponseWrapper.addVary(response);
+		if ("HEAD".equals(request.getMethod()) || !acceptsGzip(request.getHeader("Accept-Encoding"))) {
+			return null;
+		}
+		DeflaterPool pool = pools.computeIfAbsent(settings.getLevel(), l -> new DeflaterPool(l, deflaterPoolSize));
+		return new GzipResponseWrapper(response, settings, pool);
+	}
+
+	/**
+	 * Checks {@code Accept-Encoding} header for {@code gzip} (or {@code *}) coding with non-zero quality.
+	 * @param acceptEncoding
+	 * @return
+	 */
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		for (String coding : acceptEncoding.split(",")) {
+			String name = coding;
+			String q = null;
+			int semicolon = coding.indexOf(';');
+			if (semicolon >= 0) {
+				name = coding.substring(0, semicolon);
+				String param = coding.substring(semicolon + 1).trim();
+				if (param.startsWith("q=")) {
+					q = param.substring(2).trim();
+				}
+			}
+			name = name.trim();
+			if ("gzip".equalsIgnoreCase(name) || "*".equals(name)) {
+				try {
+					return q == null || Double.parseDouble(q) > 0d;
+				} catch (NumberFormatException e) {
+					return false;
+				}
+			}
+		}
+		return false;
+	}
+
+}
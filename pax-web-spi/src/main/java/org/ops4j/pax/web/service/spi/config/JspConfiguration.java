@@ -27,6 +27,19 @@ public interface JspConfiguration {
 	 */
 	String getJspScratchDir(OsgiContextModel model);
 
+	/**
+	 * Should all the JSPs of a context be compiled when JSP servlet is initialized (instead of on first request)?
+	 * @return
+	 */
+	Boolean getJspPrecompilation();
+
+	/**
+	 * Directory where classes of precompiled JSPs are cached, so unchanged JSPs are not compiled again after
+	 * restart.
+	 * @return
+	 */
+	String getJspPrecompilationCacheDir();
+
 //	Integer getJspCheckInterval();
 //
 //	Boolean getJspClassDebugInfo();
@@ -46,7 +59,5 @@ public interface JspConfiguration {
 //	Boolean getJspMappedfile();
 //
 //	Integer getJspTagpoolMaxSize();
-//
-//	Boolean getJspPrecompilation();
 
 }
@@ -71,4 +71,23 @@ public interface LogConfiguration {
 	 */
 	Boolean getLogNCSABuffered();
 
+	/**
+	 * Whether Pax Web's asynchronous request log should be used instead of container-specific one.
+	 * Defaults to {@code false}.
+	 * @return
+	 */
+	Boolean isLogNCSAAsync();
+
+	/**
+	 * Capacity of asynchronous request log ring buffer. Defaults to {@code 8192}.
+	 * @return
+	 */
+	Integer getLogNCSABufferSize();
+
+	/**
+	 * Whether asynchronous request log should use compact binary format. Defaults to {@code false}.
+	 * @return
+	 */
+	Boolean isLogNCSABinary();
+
 }
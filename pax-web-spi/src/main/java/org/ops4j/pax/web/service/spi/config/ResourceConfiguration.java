@@ -58,4 +58,11 @@ public interface ResourceConfiguration {
 	 */
 	Integer maxCacheTTL();
 
+	/**
+	 * Integer property to specify minimal size (kB) of non-file resources written using non-blocking I/O
+	 * (negative value disables non-blocking writes)
+	 * @return
+	 */
+	Integer nonBlockingThreshold();
+
 }
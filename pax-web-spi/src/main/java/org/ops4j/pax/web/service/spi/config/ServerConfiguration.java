@@ -73,6 +73,20 @@ public interface ServerConfiguration {
 	 */
 	String[] getListeningAddresses();
 
+	/**
+	 * Returns the path of Unix domain socket for additional non-secure connector. {@code null} by default.
+	 * Supported only by Jetty runtime.
+	 * @return
+	 */
+	String getUnixDomainSocket();
+
+	/**
+	 * Returns kinds of connectors ({@code http}, {@code https}, {@code unix}) that expect PROXY protocol
+	 * header. Empty by default.
+	 * @return
+	 */
+	String[] getProxyProtocolConnectors();
+
 	/**
 	 * Gets the name to use for <em>default</em> connector/listener.
 	 * @return
@@ -157,6 +171,209 @@ public interface ServerConfiguration {
 	 */
 	Boolean isShowStacks();
 
+	/**
+	 * Flag that specifies whether latency histograms of web elements should be collected.
+	 * @return
+	 */
+	Boolean isMetricsEnabled();
+
+	/**
+	 * Whether {@code h2} (HTTP/2 over TLS with ALPN) should be available on secure connector.
+	 * @return
+	 */
+	Boolean isHttp2Enabled();
+
+	/**
+	 * Whether {@code h2c} (HTTP/2 cleartext upgrade) should be available on default connector.
+	 * @return
+	 */
+	Boolean isHttp2CleartextEnabled();
+
+	/**
+	 * <p>Maximum number of concurrent HTTP/2 streams per connection. {@code null} means container default.<ul>
+	 *     <li>Jetty: {@code org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory#setMaxConcurrentStreams(int)}</li>
+	 *     <li>Tomcat: {@code org.apache.coyote.http2.Http2Protocol#setMaxConcurrentStreams(long)}</li>
+	 *     <li>Undertow: {@code io.undertow.UndertowOptions#HTTP2_SETTINGS_MAX_CONCURRENT_STREAMS}</li>
+	 * </ul></p>
+	 * @return
+	 */
+	Integer getHttp2MaxConcurrentStreams();
+
+	/**
+	 * Initial flow control window of HTTP/2 stream. {@code null} means container default.
+	 * @return
+	 */
+	Integer getHttp2InitialStreamWindowSize();
+
+	/**
+	 * Initial flow control window of HTTP/2 connection. {@code null} means container default. Not configurable
+	 * in Undertow.
+	 * @return
+	 */
+	Integer getHttp2InitialSessionWindowSize();
+
+	/**
+	 * Size of HPACK dynamic table. {@code null} means container default.
+	 * @return
+	 */
+	Integer getHttp2HeaderTableSize();
+
+	/**
+	 * Maximum size of received HTTP/2 frame. {@code null} means container default.
+	 * @return
+	 */
+	Integer getHttp2MaxFrameSize();
+
+	/**
+	 * Protocols offered during ALPN negotiation in order of preference (like {@code h2} and {@code http/1.1}).
+	 * @return
+	 */
+	String[] getAlpnProtocols();
+
+	/**
+	 * Whether responses should be compressed by default (contexts may override it).
+	 * @return
+	 */
+	Boolean isCompressionEnabled();
+
+	/**
+	 * MIME types that may be compressed ({@code type/*} entries match all subtypes).
+	 * @return
+	 */
+	String[] getCompressionMimeTypes();
+
+	/**
+	 * MIME types that are never compressed.
+	 * @return
+	 */
+	String[] getCompressionExcludedMimeTypes();
+
+	/**
+	 * Minimum size (in bytes) of compressed responses.
+	 * @return
+	 */
+	Integer getCompressionMinSize();
+
+	/**
+	 * Compression level of {@link java.util.zip.Deflater}.
+	 * @return
+	 */
+	Integer getCompressionLevel();
+
+	/**
+	 * Maximum number of idle {@link java.util.zip.Deflater deflaters} kept for reuse.
+	 * @return
+	 */
+	Integer getCompressionDeflaterPoolSize();
+
+	/**
+	 * Whether concurrency of each context path should be limited by default (contexts may override it).
+	 * @return
+	 */
+	Boolean isBulkheadEnabled();
+
+	/**
+	 * Maximum number of concurrently processed requests of single context path.
+	 * @return
+	 */
+	Integer getBulkheadMaxConcurrentRequests();
+
+	/**
+	 * Maximum number of requests waiting for processing within single context path.
+	 * @return
+	 */
+	Integer getBulkheadMaxQueuedRequests();
+
+	/**
+	 * Maximum time (ms) a request may wait for processing.
+	 * @return
+	 */
+	Integer getBulkheadMaxQueueTime();
+
+	/**
+	 * Whether requests over the concurrency limit may wait (suspended asynchronously) for processing.
+	 * @return
+	 */
+	Boolean isBulkheadAsyncQueue();
+
+	/**
+	 * Whether requests are processed in dedicated executor of the context path instead of container threads.
+	 * @return
+	 */
+	Boolean isBulkheadDedicatedExecutor();
+
+	/**
+	 * Value of {@code Retry-After} header (seconds) sent with requests rejected by bulkhead.
+	 * @return
+	 */
+	Integer getBulkheadRetryAfter();
+
+	/**
+	 * Whether adaptive concurrency limits are enabled by default (contexts may override it).
+	 * @return
+	 */
+	Boolean isAdmissionEnabled();
+
+	/**
+	 * Initial adaptive concurrency limit of a context path.
+	 * @return
+	 */
+	Integer getAdmissionInitialLimit();
+
+	/**
+	 * Minimal adaptive concurrency limit of a context path.
+	 * @return
+	 */
+	Integer getAdmissionMinLimit();
+
+	/**
+	 * Maximal adaptive concurrency limit of a context path.
+	 * @return
+	 */
+	Integer getAdmissionMaxLimit();
+
+	/**
+	 * Accepted ratio of current to long-term latency.
+	 * @return
+	 */
+	Double getAdmissionTolerance();
+
+	/**
+	 * {@code Retry-After} value (seconds) of rejected requests.
+	 * @return
+	 */
+	Integer getAdmissionRetryAfter();
+
+	/**
+	 * Default priority of contexts ({@code critical}, {@code normal} or {@code low}).
+	 * @return
+	 */
+	String getAdmissionPriority();
+
+	/**
+	 * Default location of uploaded parts (absolute or relative to context's multipart directory).
+	 * @return
+	 */
+	String getMultipartLocation();
+
+	/**
+	 * Default size (bytes) after which uploaded parts are written to disk.
+	 * @return
+	 */
+	Integer getMultipartFileSizeThreshold();
+
+	/**
+	 * Default maximum size (bytes) of uploaded part.
+	 * @return
+	 */
+	Long getMultipartMaxFileSize();
+
+	/**
+	 * Default maximum size (bytes) of multipart request.
+	 * @return
+	 */
+	Long getMultipartMaxRequestSize();
+
 
 
 
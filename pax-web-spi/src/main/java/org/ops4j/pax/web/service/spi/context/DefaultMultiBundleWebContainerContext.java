@@ -20,6 +20,7 @@ import java.net.URL;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -61,6 +62,11 @@ public final class DefaultMultiBundleWebContainerContext implements MultiBundleW
 		return delegate.handleSecurity(request, response);
 	}
 
+	@Override
+	public CompletionStage<Boolean> handleSecurityAsync(HttpServletRequest request, HttpServletResponse response) {
+		return delegate.handleSecurityAsync(request, response);
+	}
+
 	@Override
 	public void finishSecurity(HttpServletRequest request, HttpServletResponse response) {
 		delegate.finishSecurity(request, response);
@@ -18,6 +18,7 @@ package org.ops4j.pax.web.service.spi.context;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -67,6 +68,11 @@ public class UniqueWebContainerContextWrapper implements WebContainerContext {
 		return delegate.handleSecurity(request, response);
 	}
 
+	@Override
+	public CompletionStage<Boolean> handleSecurityAsync(HttpServletRequest request, HttpServletResponse response) {
+		return delegate.handleSecurityAsync(request, response);
+	}
+
 	@Override
 	public URL getResource(String name) {
 		return delegate.getResource(name);
@@ -18,9 +18,11 @@ package org.ops4j.pax.web.service.spi.context;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.ops4j.pax.web.service.AsyncSecurityHandler;
 import org.ops4j.pax.web.service.WebContainerContext;
 import org.osgi.framework.Bundle;
 import org.osgi.service.http.HttpContext;
@@ -86,6 +88,20 @@ public class WebContainerContextWrapper extends DefaultHttpContext {
 		return true;
 	}
 
+	@Override
+	public CompletionStage<Boolean> handleSecurityAsync(HttpServletRequest request, HttpServletResponse response) {
+		if (servletContextHelper instanceof AsyncSecurityHandler) {
+			return ((AsyncSecurityHandler) servletContextHelper).handleSecurityAsync(request, response);
+		}
+		if (httpContext instanceof AsyncSecurityHandler) {
+			return ((AsyncSecurityHandler) httpContext).handleSecurityAsync(request, response);
+		}
+		if (httpContext instanceof WebContainerContext) {
+			return ((WebContainerContext) httpContext).handleSecurityAsync(request, response);
+		}
+		return null;
+	}
+
 	@Override
 	public void finishSecurity(HttpServletRequest request, HttpServletResponse response) {
 		if (servletContextHelper != null) {
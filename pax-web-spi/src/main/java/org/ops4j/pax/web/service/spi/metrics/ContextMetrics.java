@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+
+/**
+ * {@link ElementMetrics} of single {@link OsgiContextModel} cached by element type and name, so elements
+ * without their own long-lived runtime object (preprocessors, {@code handleSecurity()}) are resolved in request
+ * processing path without allocating a lookup key.
+ */
+public final class ContextMetrics {
+
+	private final Map<ElementType, ConcurrentMap<String, ElementMetrics>> metrics = new EnumMap<>(ElementType.class);
+
+	public ContextMetrics() {
+		for (ElementType type : ElementType.values()) {
+			metrics.put(type, new ConcurrentHashMap<>());
+		}
+	}
+
+	ElementMetrics get(WebMetricsRegistry registry, OsgiContextModel osgiContextModel, ElementType type, String name) {
+		ConcurrentMap<String, ElementMetrics> byName = metrics.get(type);
+		ElementMetrics result = byName.get(name);
+		if (result == null) {
+			// the registry always returns the same instance for given context, type and name
+			result = registry.register(osgiContextModel.getContextPath(), osgiContextModel.getName(), type, name);
+			byName.putIfAbsent(name, result);
+		}
+		return result;
+	}
+
+	void remove(ElementType type, String name) {
+		metrics.get(type).remove(name);
+	}
+
+}
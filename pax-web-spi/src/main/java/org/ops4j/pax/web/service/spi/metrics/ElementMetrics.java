@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.metrics;
+
+import java.util.Arrays;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletRequest;
+
+/**
+ * <p>Latency histogram of single web element (servlet, filter, preprocessor or {@code handleSecurity()}) in
+ * single context.</p>
+ *
+ * <p>Elements of the request processing chain are nested (a filter calls the rest of the chain), so
+ * {@link #start()}/{@link #stop()} pairs maintain per-thread stack of timings and each element records only
+ * its <em>own</em> time - time spent in nested elements is subtracted. This way p99 of a filter is not
+ * polluted by the latency of the target servlet.</p>
+ *
+ * <p>{@link #start()} and {@link #stop()} have to be called in the same thread, in {@code try/finally}.</p>
+ *
+ * <p>For servlets, {@link #stop(ServletRequest)} records the time of asynchronous requests when they complete -
+ * from the start of the first dispatch, including the time when no thread was processing the request.</p>
+ */
+public class ElementMetrics {
+
+	private static final ThreadLocal<Clock> CLOCK = ThreadLocal.withInitial(Clock::new);
+
+	/** Request attribute with {@link AsyncTimer} of asynchronous request */
+	private static final String ASYNC_TIMER = ElementMetrics.class.getName() + ".asyncTimer";
+
+	private final String contextPath;
+	private final String contextName;
+	private final ElementType type;
+	private final String name;
+
+	private final LatencyHistogram histogram = new LatencyHistogram();
+
+	ElementMetrics(String contextPath, String contextName, ElementType type, String name) {
+		this.contextPath = contextPath;
+		this.contextName = contextName;
+		this.type = type;
+		this.name = name;
+	}
+
+	/**
+	 * Marks the start of element invocation in current thread.
+	 */
+	public void start() {
+		CLOCK.get().push(System.nanoTime());
+	}
+
+	/**
+	 * Marks the end of element invocation in current thread and records the time spent in this element only.
+	 */
+	public void stop() {
+		long own = CLOCK.get().pop(System.nanoTime());
+		if (own >= 0L) {
+			histogram.record(own);
+		}
+	}
+
+	/**
+	 * Marks the end of element invocation in current thread. If the request was put into asynchronous mode,
+	 * the time is recorded when the request completes.
+	 * @param request
+	 */
+	public void stop(ServletRequest request) {
+		Clock clock = CLOCK.get();
+		long start = clock.start();
+		long own = clock.pop(System.nanoTime());
+		if (own < 0L) {
+			return;
+		}
+		Object timer = request.getAttribute(ASYNC_TIMER);
+		if (timer instanceof AsyncTimer && ((AsyncTimer) timer).metrics == this) {
+			// ASYNC dispatch of a request which is already timed
+			return;
+		}
+		if (timer == null && request.isAsyncStarted()) {
+			try {
+				AsyncTimer asyncTimer = new AsyncTimer(this, start);
+				request.getAsyncContext().addListener(asyncTimer);
+				request.setAttribute(ASYNC_TIMER, asyncTimer);
+				return;
+			} catch (IllegalStateException e) {
+				// already completed - recorded as synchronous invocation
+			}
+		}
+		histogram.record(own);
+	}
+
+	public String getContextPath() {
+		return contextPath;
+	}
+
+	public String getContextName() {
+		return contextName;
+	}
+
+	public ElementType getType() {
+		return type;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public LatencyHistogram getHistogram() {
+		return histogram;
+	}
+
+	@Override
+	public String toString() {
+		return type + " " + name + " in " + contextName + " (" + contextPath + ")";
+	}
+
+	/**
+	 * Per-thread stack of start times and nested times of currently invoked elements.
+	 */
+	private static final class Clock {
+		private long[] starts = new long[8];
+		private long[] nested = new long[8];
+		private int depth = 0;
+
+		void push(long now) {
+			if (depth == starts.length) {
+				starts = Arrays.copyOf(starts, depth * 2);
+				nested = Arrays.copyOf(nested, depth * 2);
+			}
+			starts[depth] = now;
+			nested[depth] = 0L;
+			depth++;
+		}
+
+		/**
+		 * Returns start time of the element at the top of the stack.
+		 * @return
+		 */
+		long start() {
+			return depth == 0 ? 0L : starts[depth - 1];
+		}
+
+		/**
+		 * Returns own time of the element at the top of the stack and adds its entire time to the parent.
+		 * @param now
+		 * @return own time or {@code -1} for unbalanced call
+		 */
+		long pop(long now) {
+			if (depth == 0) {
+				// unbalanced call - nothing sensible to record
+				return -1L;
+			}
+			depth--;
+			long elapsed = now - starts[depth];
+			if (depth > 0) {
+				nested[depth - 1] += elapsed;
+			}
+			return Math.max(elapsed - nested[depth], 0L);
+		}
+	}
+
+	/**
+	 * {@link AsyncListener} recording the time of asynchronous request when it completes. It registers itself
+	 * again when asynchronous processing is started in subsequent dispatch.
+	 */
+	private static final class AsyncTimer implements AsyncListener {
+		private final ElementMetrics metrics;
+		private final long start;
+
+		AsyncTimer(ElementMetrics metrics, long start) {
+			this.metrics = metrics;
+			this.start = start;
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			metrics.histogram.record(System.nanoTime() - start);
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			event.getAsyncContext().addListener(this);
+		}
+	}
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.metrics;
+
+/**
+ * Kinds of web elements for which {@link ElementMetrics} are collected.
+ */
+public enum ElementType {
+
+	/** Target servlet (without the filters mapped to it) */
+	SERVLET,
+
+	/** Servlet filter (without the rest of the chain) */
+	FILTER,
+
+	/** Whiteboard {@link org.osgi.service.http.whiteboard.Preprocessor} (without the rest of the chain) */
+	PREPROCESSOR,
+
+	/**
+	 * {@link org.osgi.service.http.HttpContext#handleSecurity} /
+	 * {@link org.osgi.service.http.context.ServletContextHelper#handleSecurity}
+	 */
+	SECURITY
+
+}
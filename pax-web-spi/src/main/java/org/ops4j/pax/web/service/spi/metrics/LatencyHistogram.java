@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Lock-free histogram of latencies (in nanoseconds) with log-linear buckets (similar to HdrHistogram
+ * with {@code 2^4} sub-buckets per power of two). Each recorded value lands in a bucket whose width is at most
+ * {@code 1/16} of the value, so the relative error of reported percentiles is below 6.25%, while the memory
+ * footprint is constant (960 counters) for the entire {@code long} range.</p>
+ *
+ * <p>Recording is a single {@link AtomicLongArray#incrementAndGet(int)} plus {@link LongAdder} updates - there are
+ * no locks and no allocation. Reading is not atomic with respect to concurrent recording, which is fine for
+ * monitoring purposes.</p>
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Long::max, 0L);
+
+	/**
+	 * Records single value (negative values are treated as {@code 0}).
+	 * @param nanos
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0L);
+		counts.incrementAndGet(index(value));
+		count.increment();
+		total.add(value);
+		max.accumulate(value);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long c = count.sum();
+		return c == 0L ? 0d : (double) total.sum() / c;
+	}
+
+	/**
+	 * Returns (highest equivalent) value below which given percentage of recorded values fall.
+	 * @param percentile value between {@code 0} and {@code 100}
+	 * @return
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long c = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			c += snapshot[i];
+		}
+		if (c == 0L) {
+			return 0L;
+		}
+		long rank = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100d) / 100d * c));
+		long seen = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(highestEquivalentValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Clears all the recorded values.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0L);
+		}
+		count.reset();
+		total.reset();
+		max.reset();
+	}
+
+	static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int msb = 63 - Long.numberOfLeadingZeros(value);
+		int shift = msb - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	static long highestEquivalentValue(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index >>> SUB_BUCKET_BITS) - 1;
+		long lowest = ((long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1)))) << shift;
+		return lowest + (1L << shift) - 1L;
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.metrics;
+
+import java.util.Collection;
+
+/**
+ * <p>OSGi service that gives access to per-element latency histograms and request counters collected in the
+ * request processing path of all supported runtimes. Each {@link ElementMetrics} is tagged with context path,
+ * name of the {@link org.ops4j.pax.web.service.spi.model.OsgiContextModel}, {@link ElementType} and element
+ * name.</p>
+ *
+ * <p>The service is registered by pax-web-runtime when
+ * {@link org.ops4j.pax.web.service.PaxWebConfig#PID_CFG_METRICS_ENABLED} is set. The same data is available
+ * through JMX as {@code org.ops4j.pax.web:type=WebMetrics} MBean.</p>
+ */
+public interface WebMetrics {
+
+	/**
+	 * Whether the metrics are currently being collected.
+	 * @return
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Enables or disables the collection. Already collected data is preserved.
+	 * @param enabled
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Returns metrics of all the elements which were invoked at least once since the collection was enabled.
+	 * @return
+	 */
+	Collection<ElementMetrics> getElementMetrics();
+
+	/**
+	 * Clears all the collected data.
+	 */
+	void reset();
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+
+/**
+ * <p>Single (per pax-web-spi bundle) registry of {@link ElementMetrics}. Runtimes (Jetty, Tomcat and Undertow)
+ * don't have access to OSGi registry in the request processing path, so they access the registry directly and
+ * pax-web-runtime only registers it as {@link WebMetrics} OSGi service.</p>
+ *
+ * <p>When disabled (the default), {@code getElementMetrics()} methods return {@code null} after single
+ * {@code volatile} read, so the overhead in request processing path is negligible. {@link ElementMetrics} are
+ * created only when an element is invoked with enabled metrics and runtimes remove them when the element or its
+ * context is unregistered.</p>
+ */
+public final class WebMetricsRegistry implements WebMetrics {
+
+	private static final WebMetricsRegistry INSTANCE = new WebMetricsRegistry();
+
+	private final Map<Key, ElementMetrics> metrics = new ConcurrentHashMap<>();
+
+	private volatile boolean enabled = false;
+
+	private WebMetricsRegistry() {
+	}
+
+	public static WebMetricsRegistry getInstance() {
+		return INSTANCE;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public Collection<ElementMetrics> getElementMetrics() {
+		// metrics may be registered just before the collection was disabled, so return only the ones with samples
+		List<ElementMetrics> result = new ArrayList<>();
+		for (ElementMetrics m : metrics.values()) {
+			if (m.getHistogram().getCount() > 0L) {
+				result.add(m);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void reset() {
+		// histograms are reset instead of being removed, because runtimes may keep references to ElementMetrics
+		metrics.values().forEach(m -> m.getHistogram().reset());
+	}
+
+	/**
+	 * Gets (or creates) {@link ElementMetrics} for an element within given {@link OsgiContextModel}. For non-null
+	 * {@link OsgiContextModel} there's no allocation after the first call.
+	 * @param osgiContextModel may be {@code null} for elements of default (404) contexts
+	 * @param contextPath used when {@code osgiContextModel} is {@code null}
+	 * @param type
+	 * @param name
+	 * @return {@code null} if collection is disabled
+	 */
+	public ElementMetrics getElementMetrics(OsgiContextModel osgiContextModel, String contextPath,
+			ElementType type, String name) {
+		if (!enabled) {
+			return null;
+		}
+		if (osgiContextModel != null) {
+			return osgiContextModel.getMetrics().get(this, osgiContextModel, type, name);
+		}
+		return getElementMetrics(contextPath == null || "/".equals(contextPath) ? "" : contextPath,
+				"(none)", type, name);
+	}
+
+	/**
+	 * Gets (or creates) {@link ElementMetrics} for an element identified by context path, context name,
+	 * type and name.
+	 * @param contextPath
+	 * @param contextName
+	 * @param type
+	 * @param name
+	 * @return {@code null} if collection is disabled
+	 */
+	public ElementMetrics getElementMetrics(String contextPath, String contextName, ElementType type, String name) {
+		if (!enabled) {
+			return null;
+		}
+		return register(contextPath, contextName, type, name);
+	}
+
+	/**
+	 * Removes {@link ElementMetrics} of an element unregistered from given {@link OsgiContextModel}.
+	 * @param osgiContextModel
+	 * @param type
+	 * @param name
+	 */
+	public void unregister(OsgiContextModel osgiContextModel, ElementType type, String name) {
+		osgiContextModel.getMetrics().remove(type, name);
+		metrics.remove(new Key(osgiContextModel.getContextPath(), osgiContextModel.getName(), type, name));
+	}
+
+	/**
+	 * Removes all {@link ElementMetrics} of given {@link OsgiContextModel}. Metrics are identified by context path
+	 * and context name, so the caller should do it only when there's no other {@link OsgiContextModel} with
+	 * the same name and path.
+	 * @param osgiContextModel
+	 */
+	public void unregister(OsgiContextModel osgiContextModel) {
+		String contextPath = osgiContextModel.getContextPath();
+		String contextName = osgiContextModel.getName();
+		metrics.keySet().removeIf(k -> Objects.equals(contextPath, k.contextPath)
+				&& Objects.equals(contextName, k.contextName));
+	}
+
+	ElementMetrics register(String contextPath, String contextName, ElementType type, String name) {
+		return metrics.computeIfAbsent(new Key(contextPath, contextName, type, name),
+				k -> new ElementMetrics(k.contextPath, k.contextName, k.type, k.name));
+	}
+
+	private static final class Key {
+		private final String contextPath;
+		private final String contextName;
+		private final ElementType type;
+		private final String name;
+		private final int hash;
+
+		Key(String contextPath, String contextName, ElementType type, String name) {
+			this.contextPath = contextPath;
+			this.contextName = contextName;
+			this.type = type;
+			this.name = name;
+			this.hash = Objects.hash(contextPath, contextName, type, name);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			Key key = (Key) o;
+			return type == key.type && Objects.equals(name, key.name)
+					&& Objects.equals(contextName, key.contextName)
+					&& Objects.equals(contextPath, key.contextPath);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+}
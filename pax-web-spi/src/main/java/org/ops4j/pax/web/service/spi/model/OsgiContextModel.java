@@ -20,6 +20,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -34,10 +35,15 @@ import javax.servlet.descriptor.TaglibDescriptor;
 
 import org.ops4j.pax.web.service.PaxWebConstants;
 import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.spi.compression.CompressionSettings;
+import org.ops4j.pax.web.service.spi.compression.ResponseCompression;
 import org.ops4j.pax.web.service.spi.context.DefaultServletContextHelper;
 import org.ops4j.pax.web.service.spi.context.WebContainerContextWrapper;
+import org.ops4j.pax.web.service.spi.metrics.ContextMetrics;
 import org.ops4j.pax.web.service.spi.model.elements.JspConfigurationModel;
+import org.ops4j.pax.web.service.spi.model.elements.SecurityConstraintMappingModel;
 import org.ops4j.pax.web.service.spi.model.elements.SessionConfigurationModel;
+import org.ops4j.pax.web.service.spi.security.SecurityConstraintMatcher;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
@@ -303,6 +309,27 @@ public final class OsgiContextModel extends Identity implements Comparable<OsgiC
 	/** Per OSGi context configuration of sessions - standard config from Servlet spec + Server specific config */
 	private final SessionConfigurationModel sessionConfiguration = new SessionConfigurationModel();
 
+	/** Security constraints ({@code <security-constraint>} from {@code web.xml} or {@code security.*} PID keys) */
+	private final List<SecurityConstraintMappingModel> securityConstraints = new ArrayList<>();
+
+	/** Declared security roles ({@code <security-role>}) - needed to resolve {@code *} and {@code **} roles */
+	private final Set<String> securityRoles = new LinkedHashSet<>();
+
+	/**
+	 * {@link #securityConstraints} compiled into single lookup structure. Recompiled lazily after the constraints
+	 * change, so there's no lookup over the list of constraints for each request.
+	 */
+	private volatile SecurityConstraintMatcher securityConstraintMatcher = SecurityConstraintMatcher.EMPTY;
+
+	/**
+	 * Response compression settings derived from global defaults and {@link #contextParams}. Cached here by
+	 * {@link ResponseCompression}, so context params are not checked for each request.
+	 */
+	private volatile CompressionSettings compressionSettings;
+
+	/** Cached {@link org.ops4j.pax.web.service.spi.metrics.ElementMetrics} of preprocessors and security handling */
+	private final ContextMetrics metrics = new ContextMetrics();
+
 	/**
 	 * Flag indicating whether this {@link OsgiContextModel} comes from Whiteboard or HttpService.
 	 */
@@ -606,6 +633,78 @@ public final class OsgiContextModel extends Identity implements Comparable<OsgiC
 		return sessionConfiguration;
 	}
 
+	// --- methods invoked during web.xml (or fragment) parsing and from HttpContextProcessing
+
+	public void addSecurityConstraint(SecurityConstraintMappingModel constraint) {
+		synchronized (securityConstraints) {
+			securityConstraints.add(constraint);
+			securityConstraintMatcher = null;
+		}
+	}
+
+	public void removeSecurityConstraint(SecurityConstraintMappingModel constraint) {
+		synchronized (securityConstraints) {
+			if (securityConstraints.remove(constraint)) {
+				securityConstraintMatcher = null;
+			}
+		}
+	}
+
+	public List<SecurityConstraintMappingModel> getSecurityConstraints() {
+		synchronized (securityConstraints) {
+			return new ArrayList<>(securityConstraints);
+		}
+	}
+
+	public void addSecurityRole(String role) {
+		synchronized (securityConstraints) {
+			if (securityRoles.add(role)) {
+				securityConstraintMatcher = null;
+			}
+		}
+	}
+
+	public Set<String> getSecurityRoles() {
+		synchronized (securityConstraints) {
+			return new LinkedHashSet<>(securityRoles);
+		}
+	}
+
+	/**
+	 * Returns {@link SecurityConstraintMatcher} compiled from current set of security constraints. It's meant to
+	 * be called for each request, so the compilation is done once after the constraints change.
+	 * @return
+	 */
+	public SecurityConstraintMatcher getSecurityConstraintMatcher() {
+		SecurityConstraintMatcher matcher = securityConstraintMatcher;
+		if (matcher == null) {
+			synchronized (securityConstraints) {
+				matcher = securityConstraintMatcher;
+				if (matcher == null) {
+					matcher = SecurityConstraintMatcher.compile(securityConstraints, securityRoles);
+					securityConstraintMatcher = matcher;
+				}
+			}
+		}
+		return matcher;
+	}
+
+	public CompressionSettings getCompressionSettings() {
+		return compressionSettings;
+	}
+
+	public ContextMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets cached compression settings - should be set to {@code null} after changing context params.
+	 * @param compressionSettings
+	 */
+	public void setCompressionSettings(CompressionSettings compressionSettings) {
+		this.compressionSettings = compressionSettings;
+	}
+
 	public boolean isWhiteboard() {
 		return whiteboard;
 	}
@@ -0,0 +1,522 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EventListener;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import javax.servlet.ServletContextAttributeListener;
+import javax.servlet.ServletContextListener;
+import javax.servlet.ServletRequestAttributeListener;
+import javax.servlet.ServletRequestListener;
+import javax.servlet.http.HttpSessionAttributeListener;
+import javax.servlet.http.HttpSessionIdListener;
+import javax.servlet.http.HttpSessionListener;
+
+import org.ops4j.pax.web.service.spi.model.elements.ElementModel;
+import org.ops4j.pax.web.service.spi.model.elements.ErrorPageModel;
+import org.ops4j.pax.web.service.spi.model.elements.EventListenerModel;
+import org.ops4j.pax.web.service.spi.model.elements.FilterModel;
+import org.ops4j.pax.web.service.spi.model.elements.ServletModel;
+import org.osgi.framework.Constants;
+import org.osgi.service.http.runtime.dto.DTOConstants;
+import org.osgi.service.http.runtime.dto.ErrorPageDTO;
+import org.osgi.service.http.runtime.dto.FailedErrorPageDTO;
+import org.osgi.service.http.runtime.dto.FailedFilterDTO;
+import org.osgi.service.http.runtime.dto.FailedListenerDTO;
+import org.osgi.service.http.runtime.dto.FailedResourceDTO;
+import org.osgi.service.http.runtime.dto.FailedServletContextDTO;
+import org.osgi.service.http.runtime.dto.FailedServletDTO;
+import org.osgi.service.http.runtime.dto.FilterDTO;
+import org.osgi.service.http.runtime.dto.ListenerDTO;
+import org.osgi.service.http.runtime.dto.ResourceDTO;
+import org.osgi.service.http.runtime.dto.RuntimeDTO;
+import org.osgi.service.http.runtime.dto.ServletContextDTO;
+import org.osgi.service.http.runtime.dto.ServletDTO;
+
+/**
+ * <p>Incrementally maintained {@link RuntimeDTO} of the entire {@link ServerModel}.</p>
+ *
+ * <p>All the {@code *Added()}, {@code *Removed()} and {@code *Enabled()} methods and {@link #publish()} are
+ * called by {@link ServerModel} in the registration thread only, while {@link #getRuntimeDTO()} and
+ * {@link #getChangeCount()} may be called by any thread with single {@code volatile} read.</p>
+ *
+ * <p>Each element gets its DTO created once, when it's added (or enabled/disabled). {@link #publish()} rebuilds
+ * only the {@link ServletContextDTO ServletContextDTOs} of the contexts which were changed since previous
+ * publication - unchanged contexts are shared between consecutive {@link RuntimeDTO RuntimeDTOs}. Published
+ * DTOs are never changed, so callers must not modify them either.</p>
+ */
+public class RuntimeSnapshot {
+
+	private static final ServletContextDTO[] NO_CONTEXTS = new ServletContextDTO[0];
+
+	private static final Class<?>[] LISTENER_TYPES = new Class<?>[] {
+			ServletContextListener.class, ServletContextAttributeListener.class,
+			ServletRequestListener.class, ServletRequestAttributeListener.class,
+			HttpSessionListener.class, HttpSessionAttributeListener.class, HttpSessionIdListener.class
+	};
+
+	/** State of the contexts in the order of their registration */
+	private final Map<OsgiContextModel, ContextState> contexts = new LinkedHashMap<>();
+
+	private boolean dirty = false;
+
+	private volatile Published published = new Published(emptyRuntimeDTO(), 0L);
+
+	/**
+	 * Returns current {@link RuntimeDTO}. Never blocks.
+	 * @return
+	 */
+	public RuntimeDTO getRuntimeDTO() {
+		return published.runtimeDTO;
+	}
+
+	/**
+	 * Returns a number that's incremented with every published change, so pollers may skip unchanged
+	 * snapshots without comparing the DTOs.
+	 * @return
+	 */
+	public long getChangeCount() {
+		return published.changeCount;
+	}
+
+	/**
+	 * Creates an empty {@link RuntimeDTO}, which is also the initial snapshot.
+	 * @return
+	 */
+	public static RuntimeDTO emptyRuntimeDTO() {
+		RuntimeDTO dto = new RuntimeDTO();
+		dto.servletContextDTOs = NO_CONTEXTS;
+		dto.failedServletContextDTOs = new FailedServletContextDTO[0];
+		dto.failedServletDTOs = new FailedServletDTO[0];
+		dto.failedResourceDTOs = new FailedResourceDTO[0];
+		dto.failedFilterDTOs = new FailedFilterDTO[0];
+		dto.failedErrorPageDTOs = new FailedErrorPageDTO[0];
+		dto.failedListenerDTOs = new FailedListenerDTO[0];
+		return dto;
+	}
+
+	// --- changes, called in registration thread only
+
+	public void contextAdded(OsgiContextModel model) {
+		state(model);
+	}
+
+	public void contextRemoved(OsgiContextModel model) {
+		if (contexts.remove(model) != null) {
+			dirty = true;
+		}
+	}
+
+	public void servletAdded(ServletModel model, boolean disabled) {
+		for (OsgiContextModel ocm : model.getContextModels()) {
+			ContextState cs = state(ocm);
+			if (disabled) {
+				cs.disabledServlets.add(model);
+			} else {
+				cs.disabledServlets.remove(model);
+				cs.servlets.add(model);
+			}
+			cs.changed();
+		}
+	}
+
+	public void servletRemoved(ServletModel model) {
+		forEachContext(model, cs -> cs.servlets.remove(model) | cs.disabledServlets.remove(model));
+	}
+
+	public void servletEnabled(ServletModel model, boolean enabled) {
+		forEachContext(model, cs -> enabled ? move(model, cs.disabledServlets, cs.servlets)
+				: move(model, cs.servlets, cs.disabledServlets));
+	}
+
+	public void filterAdded(FilterModel model, boolean disabled) {
+		for (OsgiContextModel ocm : model.getContextModels()) {
+			ContextState cs = state(ocm);
+			if (disabled) {
+				cs.disabledFilters.add(model);
+			} else {
+				cs.disabledFilters.remove(model);
+				cs.filters.add(model);
+			}
+			cs.changed();
+		}
+	}
+
+	public void filterRemoved(FilterModel model) {
+		forEachContext(model, cs -> cs.filters.remove(model) | cs.disabledFilters.remove(model));
+	}
+
+	public void filterEnabled(FilterModel model, boolean enabled) {
+		forEachContext(model, cs -> enabled ? move(model, cs.disabledFilters, cs.filters)
+				: move(model, cs.filters, cs.disabledFilters));
+	}
+
+	public void errorPageAdded(ErrorPageModel model, boolean disabled) {
+		for (OsgiContextModel ocm : model.getContextModels()) {
+			ContextState cs = state(ocm);
+			if (disabled) {
+				cs.disabledErrorPages.add(model);
+			} else {
+				cs.disabledErrorPages.remove(model);
+				cs.errorPages.add(model);
+			}
+			cs.changed();
+		}
+	}
+
+	public void errorPageRemoved(ErrorPageModel model) {
+		forEachContext(model, cs -> cs.errorPages.remove(model) | cs.disabledErrorPages.remove(model));
+	}
+
+	public void errorPageEnabled(ErrorPageModel model, boolean enabled) {
+		forEachContext(model, cs -> enabled ? move(model, cs.disabledErrorPages, cs.errorPages)
+				: move(model, cs.errorPages, cs.disabledErrorPages));
+	}
+
+	public void eventListenerAdded(EventListenerModel model) {
+		for (OsgiContextModel ocm : model.getContextModels()) {
+			ContextState cs = state(ocm);
+			cs.listeners.add(model);
+			cs.changed();
+		}
+	}
+
+	public void eventListenerRemoved(EventListenerModel model) {
+		forEachContext(model, cs -> cs.listeners.remove(model));
+	}
+
+	/**
+	 * Publishes new {@link RuntimeDTO} if anything has changed since last publication. Only the
+	 * {@link ServletContextDTO ServletContextDTOs} of changed contexts are rebuilt.
+	 * @return {@code true} if new snapshot was published
+	 */
+	public boolean publish() {
+		if (!dirty) {
+			return false;
+		}
+		dirty = false;
+
+		List<ServletContextDTO> servletContextDTOs = new ArrayList<>(contexts.size());
+		List<FailedServletDTO> failedServletDTOs = new ArrayList<>();
+		List<FailedResourceDTO> failedResourceDTOs = new ArrayList<>();
+		List<FailedFilterDTO> failedFilterDTOs = new ArrayList<>();
+		List<FailedErrorPageDTO> failedErrorPageDTOs = new ArrayList<>();
+
+		for (ContextState cs : contexts.values()) {
+			cs.rebuildIfChanged();
+			servletContextDTOs.add(cs.servletContextDTO);
+			failedServletDTOs.addAll(Arrays.asList(cs.failedServletDTOs));
+			failedResourceDTOs.addAll(Arrays.asList(cs.failedResourceDTOs));
+			failedFilterDTOs.addAll(Arrays.asList(cs.failedFilterDTOs));
+			failedErrorPageDTOs.addAll(Arrays.asList(cs.failedErrorPageDTOs));
+		}
+
+		RuntimeDTO dto = new RuntimeDTO();
+		dto.servletContextDTOs = servletContextDTOs.toArray(NO_CONTEXTS);
+		dto.failedServletContextDTOs = new FailedServletContextDTO[0];
+		dto.failedServletDTOs = failedServletDTOs.toArray(new FailedServletDTO[0]);
+		dto.failedResourceDTOs = failedResourceDTOs.toArray(new FailedResourceDTO[0]);
+		dto.failedFilterDTOs = failedFilterDTOs.toArray(new FailedFilterDTO[0]);
+		dto.failedErrorPageDTOs = failedErrorPageDTOs.toArray(new FailedErrorPageDTO[0]);
+		dto.failedListenerDTOs = new FailedListenerDTO[0];
+
+		published = new Published(dto, published.changeCount + 1L);
+		return true;
+	}
+
+	private ContextState state(OsgiContextModel model) {
+		ContextState cs = contexts.get(model);
+		if (cs == null) {
+			cs = new ContextState(model);
+			contexts.put(model, cs);
+			dirty = true;
+		}
+		return cs;
+	}
+
+	private void forEachContext(ElementModel<?, ?> model, Function<ContextState, Boolean> change) {
+		for (OsgiContextModel ocm : model.getContextModels()) {
+			ContextState cs = contexts.get(ocm);
+			if (cs != null && change.apply(cs)) {
+				cs.changed();
+			}
+		}
+	}
+
+	private static <T> boolean move(T model, Set<T> from, Set<T> to) {
+		from.remove(model);
+		return to.add(model);
+	}
+
+	/**
+	 * Current models of single {@link OsgiContextModel} together with DTOs published for them.
+	 */
+	private final class ContextState {
+
+		private final OsgiContextModel model;
+
+		private final Set<ServletModel> servlets = new LinkedHashSet<>();
+		private final Set<ServletModel> disabledServlets = new LinkedHashSet<>();
+		private final Set<FilterModel> filters = new LinkedHashSet<>();
+		private final Set<FilterModel> disabledFilters = new LinkedHashSet<>();
+		private final Set<ErrorPageModel> errorPages = new LinkedHashSet<>();
+		private final Set<ErrorPageModel> disabledErrorPages = new LinkedHashSet<>();
+		private final Set<EventListenerModel> listeners = new LinkedHashSet<>();
+
+		/** DTOs of elements are created once and reused in subsequent snapshots */
+		private final Map<Object, Object> dtoCache = new HashMap<>();
+
+		private boolean changed = true;
+
+		private ServletContextDTO servletContextDTO;
+		private FailedServletDTO[] failedServletDTOs;
+		private FailedResourceDTO[] failedResourceDTOs;
+		private FailedFilterDTO[] failedFilterDTOs;
+		private FailedErrorPageDTO[] failedErrorPageDTOs;
+
+		ContextState(OsgiContextModel model) {
+			this.model = model;
+		}
+
+		void changed() {
+			changed = true;
+			dirty = true;
+		}
+
+		void rebuildIfChanged() {
+			if (!changed) {
+				return;
+			}
+			changed = false;
+
+			long contextId = model.getServiceId();
+			Set<Object> used = new LinkedHashSet<>();
+
+			ServletContextDTO dto = new ServletContextDTO();
+			dto.name = model.getName();
+			dto.contextPath = model.getContextPath();
+			dto.initParams = Collections.unmodifiableMap(new LinkedHashMap<>(model.getContextParams()));
+			dto.attributes = Collections.emptyMap();
+			dto.serviceId = contextId;
+
+			List<ServletDTO> servletDTOs = new ArrayList<>();
+			List<ResourceDTO> resourceDTOs = new ArrayList<>();
+			List<ErrorPageDTO> errorPageDTOs = new ArrayList<>();
+			for (ServletModel sm : servlets) {
+				if (sm.isResourceServlet()) {
+					resourceDTOs.add(cached(sm, used, m -> resourceDTO(new ResourceDTO(), m, contextId)));
+				} else {
+					servletDTOs.add(cached(sm, used, m -> servletDTO(new ServletDTO(), m, contextId)));
+				}
+				if (sm.getErrorPageModel() != null) {
+					errorPageDTOs.add(cached(sm.getErrorPageModel(), used,
+							m -> errorPageDTO(new ErrorPageDTO(), m, sm, contextId)));
+				}
+			}
+			for (ErrorPageModel epm : errorPages) {
+				errorPageDTOs.add(cached(epm, used, m -> errorPageDTO(new ErrorPageDTO(), m, null, contextId)));
+			}
+			dto.servletDTOs = servletDTOs.toArray(new ServletDTO[0]);
+			dto.resourceDTOs = resourceDTOs.toArray(new ResourceDTO[0]);
+			dto.errorPageDTOs = errorPageDTOs.toArray(new ErrorPageDTO[0]);
+			dto.filterDTOs = collect(filters, used, m -> filterDTO(new FilterDTO(), m, contextId), FilterDTO[]::new);
+			dto.listenerDTOs = collect(listeners, used, m -> listenerDTO(m, contextId), ListenerDTO[]::new);
+
+			List<FailedServletDTO> fs = new ArrayList<>();
+			List<FailedResourceDTO> fr = new ArrayList<>();
+			for (ServletModel sm : disabledServlets) {
+				if (sm.isResourceServlet()) {
+					fr.add(cached(new Failed(sm), used, f -> {
+						FailedResourceDTO d = resourceDTO(new FailedResourceDTO(), sm, contextId);
+						d.failureReason = DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE;
+						return d;
+					}));
+				} else {
+					fs.add(cached(new Failed(sm), used, f -> {
+						FailedServletDTO d = servletDTO(new FailedServletDTO(), sm, contextId);
+						d.failureReason = DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE;
+						return d;
+					}));
+				}
+			}
+			failedServletDTOs = fs.toArray(new FailedServletDTO[0]);
+			failedResourceDTOs = fr.toArray(new FailedResourceDTO[0]);
+			failedFilterDTOs = collect(disabledFilters, used, m -> {
+				FailedFilterDTO d = filterDTO(new FailedFilterDTO(), m, contextId);
+				d.failureReason = DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE;
+				return d;
+			}, FailedFilterDTO[]::new, Failed::new);
+			failedErrorPageDTOs = collect(disabledErrorPages, used, m -> {
+				FailedErrorPageDTO d = errorPageDTO(new FailedErrorPageDTO(), m, null, contextId);
+				d.failureReason = DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE;
+				return d;
+			}, FailedErrorPageDTO[]::new, Failed::new);
+
+			// forget DTOs of elements which are no longer part of this context
+			dtoCache.keySet().retainAll(used);
+			servletContextDTO = dto;
+		}
+
+		@SuppressWarnings("unchecked")
+		private <M, D> D cached(M key, Set<Object> used, Function<M, D> factory) {
+			used.add(key);
+			return (D) dtoCache.computeIfAbsent(key, k -> factory.apply((M) k));
+		}
+
+		private <M, D> D[] collect(Collection<M> models, Set<Object> used, Function<M, D> factory,
+				IntFunction<D[]> array) {
+			return collect(models, used, factory, array, m -> m);
+		}
+
+		private <M, D> D[] collect(Collection<M> models, Set<Object> used, Function<M, D> factory,
+				IntFunction<D[]> array, Function<M, Object> key) {
+			List<D> result = new ArrayList<>(models.size());
+			for (M m : models) {
+				result.add(cached(key.apply(m), used, k -> factory.apply(m)));
+			}
+			return result.toArray(array.apply(result.size()));
+		}
+	}
+
+	// --- creation of element DTOs
+
+	private static <D extends ServletDTO> D servletDTO(D dto, ServletModel model, long contextId) {
+		dto.name = model.getName();
+		dto.patterns = model.getUrlPatterns() == null ? new String[0] : model.getUrlPatterns().clone();
+		dto.initParams = model.getInitParams() == null ? Collections.emptyMap()
+				: Collections.unmodifiableMap(new LinkedHashMap<>(model.getInitParams()));
+		dto.asyncSupported = model.getAsyncSupported() != null && model.getAsyncSupported();
+		dto.servletInfo = model.getServlet() == null ? null : model.getServlet().getServletInfo();
+		dto.serviceId = model.getServiceId();
+		dto.servletContextId = contextId;
+		return dto;
+	}
+
+	private static <D extends ResourceDTO> D resourceDTO(D dto, ServletModel model, long contextId) {
+		dto.patterns = model.getUrlPatterns() == null ? new String[0] : model.getUrlPatterns().clone();
+		dto.prefix = model.getRawPath();
+		dto.serviceId = model.getServiceId();
+		dto.servletContextId = contextId;
+		return dto;
+	}
+
+	private static <D extends FilterDTO> D filterDTO(D dto, FilterModel model, long contextId) {
+		dto.name = model.getName();
+		dto.patterns = model.getUrlPatterns() == null ? new String[0] : model.getUrlPatterns().clone();
+		dto.servletNames = model.getServletNames() == null ? new String[0] : model.getServletNames().clone();
+		dto.regexs = model.getRegexMapping() == null ? new String[0] : model.getRegexMapping().clone();
+		dto.dispatcher = model.getDispatcherTypes() == null ? new String[0] : model.getDispatcherTypes().clone();
+		dto.initParams = model.getInitParams() == null ? Collections.emptyMap()
+				: Collections.unmodifiableMap(new LinkedHashMap<>(model.getInitParams()));
+		dto.asyncSupported = model.getAsyncSupported() != null && model.getAsyncSupported();
+		dto.serviceId = model.getServiceId();
+		dto.servletContextId = contextId;
+		return dto;
+	}
+
+	/**
+	 * Creates {@link ErrorPageDTO} for standalone {@link ErrorPageModel} or for error page declarations of
+	 * a Whiteboard servlet.
+	 */
+	private static <D extends ErrorPageDTO> D errorPageDTO(D dto, ErrorPageModel model, ServletModel servlet,
+			long contextId) {
+		dto.errorCodes = model.getErrorCodes().stream().mapToLong(Integer::longValue).toArray();
+		dto.exceptions = model.getExceptionClassNames().toArray(new String[0]);
+		if (servlet != null) {
+			dto.name = servlet.getName();
+			dto.initParams = servlet.getInitParams() == null ? Collections.emptyMap()
+					: Collections.unmodifiableMap(new LinkedHashMap<>(servlet.getInitParams()));
+			dto.asyncSupported = servlet.getAsyncSupported() != null && servlet.getAsyncSupported();
+			dto.serviceId = servlet.getServiceId();
+		} else {
+			dto.name = model.getLocation();
+			dto.initParams = Collections.emptyMap();
+			dto.serviceId = model.getServiceId();
+		}
+		dto.servletContextId = contextId;
+		return dto;
+	}
+
+	private static ListenerDTO listenerDTO(EventListenerModel model, long contextId) {
+		ListenerDTO dto = new ListenerDTO();
+		EventListener listener = model.getEventListener();
+		List<String> types = new ArrayList<>();
+		if (listener != null) {
+			for (Class<?> type : LISTENER_TYPES) {
+				if (type.isInstance(listener)) {
+					types.add(type.getName());
+				}
+			}
+		} else if (model.getElementReference() != null) {
+			// don't get the service just to check its types - use registration's objectClass
+			Object objectClass = model.getElementReference().getProperty(Constants.OBJECTCLASS);
+			if (objectClass instanceof String[]) {
+				for (Class<?> type : LISTENER_TYPES) {
+					if (Arrays.asList((String[]) objectClass).contains(type.getName())) {
+						types.add(type.getName());
+					}
+				}
+			}
+		}
+		dto.types = types.toArray(new String[0]);
+		dto.serviceId = model.getServiceId();
+		dto.servletContextId = contextId;
+		return dto;
+	}
+
+	/**
+	 * Cache key for failure DTO of a model, so it doesn't clash with the "successful" DTO of the same model.
+	 */
+	private static final class Failed {
+		private final Object model;
+
+		Failed(Object model) {
+			this.model = model;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Failed && ((Failed) o).model.equals(model);
+		}
+
+		@Override
+		public int hashCode() {
+			return ~model.hashCode();
+		}
+	}
+
+	private static final class Published {
+		private final RuntimeDTO runtimeDTO;
+		private final long changeCount;
+
+		Published(RuntimeDTO runtimeDTO, long changeCount) {
+			this.runtimeDTO = runtimeDTO;
+			this.changeCount = changeCount;
+		}
+	}
+
+}
@@ -342,6 +342,12 @@ public class ServerModel implements BatchVisitor {
 	 */
 	private final Map<ServletContainerInitializer, ContainerInitializerModel> containerInitializers = new IdentityHashMap<>();
 
+	/**
+	 * {@link org.osgi.service.http.runtime.dto.RuntimeDTO} maintained together with this model, so it never
+	 * has to be built from scratch when requested.
+	 */
+	private final RuntimeSnapshot runtimeSnapshot = new RuntimeSnapshot();
+
 	/**
 	 * Creates new global model of all web applications with {@link Executor} to be used for configuration and
 	 * registration tasks.
@@ -383,6 +389,15 @@ public class ServerModel implements BatchVisitor {
 		return executor;
 	}
 
+	/**
+	 * Returns {@link RuntimeSnapshot} updated after each change applied to this model. Its
+	 * {@link RuntimeSnapshot#getRuntimeDTO()} may be called from any thread.
+	 * @return
+	 */
+	public RuntimeSnapshot getRuntimeSnapshot() {
+		return runtimeSnapshot;
+	}
+
 	/**
 	 * Creates named {@link OsgiContextModel} as shared {@link OsgiContextModel}.
 	 * @param contextId
@@ -2077,12 +2092,16 @@ public class ServerModel implements BatchVisitor {
 				break;
 			}
 			case ADD:
+				// actuall it's NOOP at ServerModel level, but the context should be visible in RuntimeDTO
+				runtimeSnapshot.contextAdded(change.getOsgiContextModel());
+				break;
 			case DELETE:
-				// actuall it's NOOP at ServerModel level
+				runtimeSnapshot.contextRemoved(change.getOsgiContextModel());
 				break;
 			default:
 				break;
 		}
+		runtimeSnapshot.publish();
 	}
 
 	@Override
@@ -2115,6 +2134,7 @@ public class ServerModel implements BatchVisitor {
 				if (model.getServlet() != null) {
 					servlets.put(model.getServlet(), model);
 				}
+				runtimeSnapshot.servletAdded(model, change.isDisabled());
 				break;
 			}
 			case DELETE: {
@@ -2126,6 +2146,7 @@ public class ServerModel implements BatchVisitor {
 					}
 					// could be among disabled ones
 					boolean wasDisabled = disabledServletModels.remove(model);
+					runtimeSnapshot.servletRemoved(model);
 
 					if (!wasDisabled) {
 						// remove ServletModel from all target contexts. disabled model was not available there
@@ -2154,6 +2175,7 @@ public class ServerModel implements BatchVisitor {
 				Set<ServletContextModel> servletContexts = getServletContextModels(model);
 				servletContexts.forEach(sc -> sc.enableServletModel(model));
 				disabledServletModels.remove(model);
+				runtimeSnapshot.servletEnabled(model, true);
 				if (model.getErrorPageModel() != null) {
 					servletContexts.forEach(sc -> sc.enableErrorPageModel(model.getErrorPageModel()));
 					disabledErrorPageModels.remove(model.getErrorPageModel());
@@ -2163,6 +2185,7 @@ public class ServerModel implements BatchVisitor {
 			case DISABLE: {
 				ServletModel model = change.getServletModel();
 				disabledServletModels.add(model);
+				runtimeSnapshot.servletEnabled(model, false);
 				// disable a servlet in all associated contexts
 				Set<ServletContextModel> servletContexts = getServletContextModels(model);
 				servletContexts.forEach(sc -> sc.disableServletModel(model));
@@ -2176,6 +2199,7 @@ public class ServerModel implements BatchVisitor {
 			default:
 				break;
 		}
+		runtimeSnapshot.publish();
 	}
 
 	@Override
@@ -2198,6 +2222,7 @@ public class ServerModel implements BatchVisitor {
 				if (model.getFilter() != null) {
 					filters.put(model.getFilter(), model);
 				}
+				runtimeSnapshot.filterAdded(model, change.isDisabled());
 				break;
 			}
 			case MODIFY:
@@ -2211,6 +2236,7 @@ public class ServerModel implements BatchVisitor {
 					}
 					// could be among disabled ones
 					boolean wasDisabled = disabledFilterModels.remove(model);
+					runtimeSnapshot.filterRemoved(model);
 
 					if (!wasDisabled) {
 						// remove FilterModel from all target contexts. disabled model was not available there
@@ -2229,11 +2255,13 @@ public class ServerModel implements BatchVisitor {
 				Set<ServletContextModel> servletContexts = getServletContextModels(model);
 				servletContexts.forEach(sc -> sc.enableFilterModel(model));
 				disabledFilterModels.remove(model);
+				runtimeSnapshot.filterEnabled(model, true);
 				break;
 			}
 			case DISABLE: {
 				FilterModel model = change.getFilterModel();
 				disabledFilterModels.add(model);
+				runtimeSnapshot.filterEnabled(model, false);
 				// disable a filter in all associated contexts
 				Set<ServletContextModel> servletContexts = getServletContextModels(model);
 				servletContexts.forEach(sc -> sc.disableFilterModel(model));
@@ -2242,6 +2270,7 @@ public class ServerModel implements BatchVisitor {
 			default:
 				break;
 		}
+		runtimeSnapshot.publish();
 	}
 
 	@Override
@@ -2258,6 +2287,7 @@ public class ServerModel implements BatchVisitor {
 				if (model.getEventListener() != null) {
 					eventListeners.put(model.getEventListener(), model);
 				}
+				runtimeSnapshot.eventListenerAdded(model);
 				break;
 			}
 			case DELETE: {
@@ -2267,12 +2297,14 @@ public class ServerModel implements BatchVisitor {
 					if (model.getEventListener() != null) {
 						eventListeners.remove(model.getEventListener(), model);
 					}
+					runtimeSnapshot.eventListenerRemoved(model);
 				});
 				break;
 			}
 			default:
 				break;
 		}
+		runtimeSnapshot.publish();
 	}
 
 	@Override
@@ -2298,6 +2330,7 @@ public class ServerModel implements BatchVisitor {
 						}
 					}
 				});
+				runtimeSnapshot.errorPageAdded(model, change.isDisabled());
 
 				break;
 			}
@@ -2309,6 +2342,7 @@ public class ServerModel implements BatchVisitor {
 				models.forEach(model -> {
 					// could be among disabled ones
 					boolean wasDisabled = disabledErrorPageModels.remove(model);
+					runtimeSnapshot.errorPageRemoved(model);
 
 					if (!wasDisabled) {
 						// remove from all target contexts. disabled model was not available there
@@ -2329,11 +2363,13 @@ public class ServerModel implements BatchVisitor {
 				Set<ServletContextModel> servletContexts = getServletContextModels(model);
 				servletContexts.forEach(sc -> sc.enableErrorPageModel(model));
 				disabledErrorPageModels.remove(model);
+				runtimeSnapshot.errorPageEnabled(model, true);
 				break;
 			}
 			case DISABLE: {
 				ErrorPageModel model = change.getErrorPageModel();
 				disabledErrorPageModels.add(model);
+				runtimeSnapshot.errorPageEnabled(model, false);
 				// disable in all associated contexts
 				Set<ServletContextModel> servletContexts = getServletContextModels(model);
 				servletContexts.forEach(sc -> sc.disableErrorPageModel(model));
@@ -2342,6 +2378,7 @@ public class ServerModel implements BatchVisitor {
 			default:
 				break;
 		}
+		runtimeSnapshot.publish();
 	}
 
 	@Override
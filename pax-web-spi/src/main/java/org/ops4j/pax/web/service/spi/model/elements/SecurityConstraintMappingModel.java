@@ -32,6 +32,7 @@ public class SecurityConstraintMappingModel extends ElementModel {
 	private List<String> roles;
 	private boolean authentication;
 	private String dataConstraint;
+	private List<String> httpMethodOmissions;
 
 	public SecurityConstraintMappingModel(OsgiContextModel contextModel,
 										  String constraintName, String mapping, String url,
@@ -123,6 +124,19 @@ public class SecurityConstraintMappingModel extends ElementModel {
 	public void setDataConstraint(String dataConstraint) {
 		this.dataConstraint = dataConstraint;
 	}
+
+	/**
+	 * HTTP methods ({@code <http-method-omission>}) to which the constraint doesn't apply. When not empty, the
+	 * constraint applies to all other methods and {@link #getMapping()} is ignored.
+	 * @return
+	 */
+	public List<String> getHttpMethodOmissions() {
+		return httpMethodOmissions;
+	}
+
+	public void setHttpMethodOmissions(List<String> httpMethodOmissions) {
+		this.httpMethodOmissions = httpMethodOmissions;
+	}
 	@Override
 	public Boolean performValidation() {
 		return Boolean.TRUE;
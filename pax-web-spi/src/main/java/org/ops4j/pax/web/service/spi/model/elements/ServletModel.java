@@ -34,6 +34,7 @@ import javax.servlet.ServletConfig;
 
 import org.ops4j.pax.web.service.PaxWebConstants;
 import org.ops4j.pax.web.service.spi.config.JspConfiguration;
+import org.ops4j.pax.web.service.spi.config.ServerConfiguration;
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
 import org.ops4j.pax.web.service.spi.model.events.ServletEventData;
 import org.ops4j.pax.web.service.spi.util.Path;
@@ -640,7 +641,61 @@ public class ServletModel extends ElementModel<Servlet, ServletEventData> {
 			initParams.putIfAbsent("development", "false"); // to prevent checking for lastModified on bundle resources
 			initParams.putIfAbsent("suppressSmap", "true");
 			initParams.putIfAbsent("classdebuginfo", "false");
+
+			// Pax Web specific parameters - not handled by Jasper itself, but by org.ops4j.pax.web.jsp.JspServlet
+			if (Boolean.TRUE.equals(config.getJspPrecompilation())) {
+				initParams.putIfAbsent(PaxWebConstants.INIT_PARAM_JSP_PRECOMPILATION, "true");
+				String cacheDir = config.getJspPrecompilationCacheDir();
+				if (cacheDir != null) {
+					initParams.putIfAbsent(PaxWebConstants.INIT_PARAM_JSP_PRECOMPILATION_CACHE_DIR, cacheDir);
+				}
+			}
+		}
+	}
+
+	/**
+	 * <p>Special configuration just before registration of the {@link ServletModel} with multipart configuration.
+	 * Values not specified by the servlet itself are taken from global configuration and the location of uploaded
+	 * parts is turned into absolute directory under server's temporary directory, so each container spools
+	 * the parts to the same place instead of using its own defaults.</p>
+	 * @param config
+	 */
+	public void configureMultipart(ServerConfiguration config) {
+		if (multipartConfigElement == null || config == null) {
+			return;
 		}
+
+		long maxFileSize = multipartConfigElement.getMaxFileSize();
+		if (maxFileSize < 0L && config.getMultipartMaxFileSize() != null) {
+			maxFileSize = config.getMultipartMaxFileSize();
+		}
+		long maxRequestSize = multipartConfigElement.getMaxRequestSize();
+		if (maxRequestSize < 0L && config.getMultipartMaxRequestSize() != null) {
+			maxRequestSize = config.getMultipartMaxRequestSize();
+		}
+		int fileSizeThreshold = multipartConfigElement.getFileSizeThreshold();
+		if (fileSizeThreshold <= 0 && config.getMultipartFileSizeThreshold() != null) {
+			fileSizeThreshold = config.getMultipartFileSizeThreshold();
+		}
+
+		// the same as with JSP scratch dir - first context is used
+		OsgiContextModel ocm = getContextModels().get(0);
+		File base = new File(config.getTemporaryDirectory(), "multipart/" + ocm.getTemporaryLocation());
+		String location = multipartConfigElement.getLocation();
+		if (location == null || "".equals(location)) {
+			location = config.getMultipartLocation();
+		}
+		File dir = base;
+		if (location != null && !"".equals(location)) {
+			dir = new File(location);
+			if (!dir.isAbsolute()) {
+				dir = new File(base, location);
+			}
+		}
+		dir.mkdirs();
+
+		multipartConfigElement = new MultipartConfigElement(dir.getAbsolutePath(), maxFileSize, maxRequestSize,
+				fileSizeThreshold);
 	}
 
 	@Override
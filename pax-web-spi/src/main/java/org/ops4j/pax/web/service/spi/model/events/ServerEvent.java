@@ -28,11 +28,17 @@ public class ServerEvent {
 	}
 
 	private final InetSocketAddress[] addresses;
+	private final String[] unixDomainSockets;
 	private final State state;
 
 	public ServerEvent(State state, InetSocketAddress[] addresses) {
+		this(state, addresses, null);
+	}
+
+	public ServerEvent(State state, InetSocketAddress[] addresses, String[] unixDomainSockets) {
 		this.state = state;
 		this.addresses = addresses;
+		this.unixDomainSockets = unixDomainSockets;
 	}
 
 	public State getState() {
@@ -43,4 +49,12 @@ public class ServerEvent {
 		return addresses;
 	}
 
+	/**
+	 * Paths of Unix domain sockets the server listens on (in addition to {@link #getAddresses() TCP addresses}).
+	 * @return
+	 */
+	public String[] getUnixDomainSockets() {
+		return unixDomainSockets;
+	}
+
 }
@@ -15,6 +15,8 @@
  */
 package org.ops4j.pax.web.service.spi.model.events;
 
+import java.util.List;
+
 /**
  * <p>Listener interface to observe events related to {@link org.ops4j.pax.web.service.spi.model.elements.ElementModel}
  * registration.</p>
@@ -30,4 +32,20 @@ public interface WebElementEventListener {
 	 */
 	void registrationEvent(WebElementEvent event);
 
+	/**
+	 * <p>Notification about a group of events, in the order in which they were sent. The dispatcher delivers
+	 * to each listener from single thread at a time, and all the events that were queued while the listener
+	 * was busy (for example during deployment of a WAB with many elements) are passed in single call.</p>
+	 *
+	 * <p>By default each event is passed to {@link #registrationEvent(WebElementEvent)}. Listeners that forward
+	 * the events elsewhere (like to {@code EventAdmin}) may override it to send single, aggregated
+	 * notification.</p>
+	 * @param events
+	 */
+	default void registrationEvents(List<WebElementEvent> events) {
+		for (WebElementEvent event : events) {
+			registrationEvent(event);
+		}
+	}
+
 }
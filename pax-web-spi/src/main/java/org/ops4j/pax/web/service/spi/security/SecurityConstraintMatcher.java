@@ -0,0 +1,483 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.security;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+
+import org.ops4j.pax.web.service.spi.model.elements.SecurityConstraintMappingModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Compiled, immutable representation of all {@link SecurityConstraintMappingModel security constraints} of
+ * single {@link org.ops4j.pax.web.service.spi.model.OsgiContextModel}.</p>
+ *
+ * <p>Instead of iterating over all the constraints for each request (and resolving the precedence rules from
+ * "13.8 Specifying Security Constraints" of Servlet specification each time), the constraints are compiled once
+ * into:<ul>
+ *     <li>a map of exact patterns</li>
+ *     <li>a trie of path prefix patterns ({@code /path/*}), keyed by path segments</li>
+ *     <li>a map of extension patterns ({@code *.ext})</li>
+ *     <li>optional default ({@code /}) pattern</li>
+ * </ul>
+ * Each pattern points to a map of HTTP method to already combined {@link Decision}, so checking a request is a
+ * single lookup of best matching pattern (using the same precedence as servlet mapping) followed by a single map
+ * lookup.</p>
+ *
+ * <p>Role names are interpreted as in "13.8 Specifying Security Constraints": {@code *} means all the roles
+ * defined in the application (declared roles and roles used in the constraints) and {@code **} means any
+ * authenticated user - unless the application declares a role with such name.</p>
+ */
+public final class SecurityConstraintMatcher {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SecurityConstraintMatcher.class);
+
+	private static final String ALL_ROLES = "*";
+	private static final String ANY_AUTHENTICATED_USER = "**";
+
+	/** Matcher without any constraints - every request is unconstrained */
+	public static final SecurityConstraintMatcher EMPTY = new SecurityConstraintMatcher();
+
+	private final Map<String, MethodDecisions> exactPatterns = new HashMap<>();
+	private final PrefixNode prefixPatterns = new PrefixNode();
+	private final Map<String, MethodDecisions> extensionPatterns = new HashMap<>();
+	private MethodDecisions defaultPattern;
+
+	private boolean empty = true;
+
+	private SecurityConstraintMatcher() {
+	}
+
+	/**
+	 * Compiles a collection of {@link SecurityConstraintMappingModel constraints} into a {@link SecurityConstraintMatcher}.
+	 *
+	 * @param constraints
+	 * @return
+	 */
+	public static SecurityConstraintMatcher compile(Collection<SecurityConstraintMappingModel> constraints) {
+		return compile(constraints, Collections.emptySet());
+	}
+
+	/**
+	 * Compiles a collection of {@link SecurityConstraintMappingModel constraints} into a {@link SecurityConstraintMatcher}.
+	 *
+	 * @param constraints
+	 * @param declaredRoles roles declared by the application ({@code <security-role>})
+	 * @return
+	 */
+	public static SecurityConstraintMatcher compile(Collection<SecurityConstraintMappingModel> constraints,
+			Collection<String> declaredRoles) {
+		if (constraints == null || constraints.isEmpty()) {
+			return EMPTY;
+		}
+
+		// roles defined in the application - like Tomcat, roles used in constraints are treated as declared
+		Roles roles = new Roles(declaredRoles);
+		for (SecurityConstraintMappingModel model : constraints) {
+			if (model.getRoles() != null) {
+				for (String role : model.getRoles()) {
+					if (!ALL_ROLES.equals(role) && !ANY_AUTHENTICATED_USER.equals(role)) {
+						roles.defined.add(role);
+					}
+				}
+			}
+		}
+
+		// first - group the constraints by URL pattern. Constraints without URL pattern are ignored
+		Map<String, List<SecurityConstraintMappingModel>> byPattern = new HashMap<>();
+		for (SecurityConstraintMappingModel model : constraints) {
+			if (model.getUrl() == null) {
+				LOG.warn("Skipping security constraint {} without URL pattern", model.getConstraintName());
+				continue;
+			}
+			byPattern.computeIfAbsent(model.getUrl().trim(), p -> new ArrayList<>()).add(model);
+		}
+
+		SecurityConstraintMatcher matcher = new SecurityConstraintMatcher();
+		for (Map.Entry<String, List<SecurityConstraintMappingModel>> e : byPattern.entrySet()) {
+			String pattern = e.getKey();
+			MethodDecisions decisions = MethodDecisions.compile(e.getValue(), roles);
+
+			if ("".equals(pattern)) {
+				// 12.2: The empty string ("") is a special URL pattern that exactly maps to the application's
+				// context root
+				matcher.exactPatterns.put("/", decisions);
+			} else if ("/".equals(pattern)) {
+				matcher.defaultPattern = decisions;
+			} else if (pattern.startsWith("*.")) {
+				matcher.extensionPatterns.put(pattern.substring(2), decisions);
+			} else if (pattern.startsWith("/") && pattern.endsWith("/*")) {
+				PrefixNode node = matcher.prefixPatterns;
+				for (String segment : pattern.substring(0, pattern.length() - 2).split("/")) {
+					if (!"".equals(segment)) {
+						node = node.children.computeIfAbsent(segment, s -> new PrefixNode());
+					}
+				}
+				node.decisions = decisions;
+			} else {
+				matcher.exactPatterns.put(pattern, decisions);
+			}
+		}
+		matcher.empty = false;
+
+		return matcher;
+	}
+
+	/**
+	 * Whether there are no constraints at all, so there's no need to even calculate path within context.
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return empty;
+	}
+
+	/**
+	 * Finds the {@link Decision} for given request.
+	 *
+	 * @param request
+	 * @return
+	 */
+	public Decision match(HttpServletRequest request) {
+		if (empty) {
+			return Decision.UNCONSTRAINED;
+		}
+		String servletPath = request.getServletPath();
+		String pathInfo = request.getPathInfo();
+		String path = servletPath == null ? (pathInfo == null ? "/" : pathInfo)
+				: (pathInfo == null ? servletPath : servletPath + pathInfo);
+		if ("".equals(path)) {
+			path = "/";
+		}
+		return match(path, request.getMethod());
+	}
+
+	/**
+	 * Finds the {@link Decision} for given path within context and HTTP method.
+	 *
+	 * @param pathInContext
+	 * @param method
+	 * @return
+	 */
+	public Decision match(String pathInContext, String method) {
+		if (empty) {
+			return Decision.UNCONSTRAINED;
+		}
+		MethodDecisions decisions = findBestPattern(pathInContext);
+		return decisions == null ? Decision.UNCONSTRAINED : decisions.forMethod(method);
+	}
+
+	/**
+	 * Servlet specification 12.1 rules - exact match, then longest path prefix, then extension, then default.
+	 *
+	 * @param path
+	 * @return
+	 */
+	private MethodDecisions findBestPattern(String path) {
+		MethodDecisions decisions = exactPatterns.get(path);
+		if (decisions != null) {
+			return decisions;
+		}
+
+		PrefixNode node = prefixPatterns;
+		decisions = node.decisions;
+		int start = 1;
+		int len = path.length();
+		while (start <= len) {
+			int end = path.indexOf('/', start);
+			if (end == -1) {
+				end = len;
+			}
+			if (end > start) {
+				node = node.children.get(path.substring(start, end));
+				if (node == null) {
+					break;
+				}
+				if (node.decisions != null) {
+					decisions = node.decisions;
+				}
+			}
+			start = end + 1;
+		}
+		if (decisions != null) {
+			return decisions;
+		}
+
+		int slash = path.lastIndexOf('/');
+		int dot = path.lastIndexOf('.');
+		if (dot > slash && !extensionPatterns.isEmpty()) {
+			decisions = extensionPatterns.get(path.substring(dot + 1));
+			if (decisions != null) {
+				return decisions;
+			}
+		}
+
+		return defaultPattern;
+	}
+
+	/**
+	 * Transport guarantee required by {@code <user-data-constraint>}, ordered from least to most strict.
+	 */
+	public enum DataConstraint {
+		NONE, INTEGRAL, CONFIDENTIAL;
+
+		static DataConstraint parse(String value) {
+			if (value == null || "NONE".equalsIgnoreCase(value.trim())) {
+				return NONE;
+			}
+			if ("INTEGRAL".equalsIgnoreCase(value.trim())) {
+				return INTEGRAL;
+			}
+			if (!"CONFIDENTIAL".equalsIgnoreCase(value.trim())) {
+				LOG.warn("Unknown user-data-constraint: {}, assuming CONFIDENTIAL", value);
+			}
+			return CONFIDENTIAL;
+		}
+	}
+
+	/**
+	 * Result of already combined constraints for given URL pattern and HTTP method.
+	 */
+	public static final class Decision {
+
+		/** No constraint applies to the request */
+		public static final Decision UNCONSTRAINED = new Decision(false, false, Collections.emptySet(), false,
+				DataConstraint.NONE);
+
+		private final boolean excluded;
+		private final boolean authenticationRequired;
+		private final Set<String> roles;
+		private final boolean anyAuthenticatedUser;
+		private final DataConstraint dataConstraint;
+
+		Decision(boolean excluded, boolean authenticationRequired, Set<String> roles, boolean anyAuthenticatedUser,
+				DataConstraint dataConstraint) {
+			this.excluded = excluded;
+			this.authenticationRequired = authenticationRequired;
+			this.roles = roles;
+			this.anyAuthenticatedUser = anyAuthenticatedUser;
+			this.dataConstraint = dataConstraint;
+		}
+
+		/**
+		 * Combines the constraints according to "13.8.1 Combining Constraints"
+		 * @param constraints
+		 * @param definedRoles
+		 * @return
+		 */
+		static Decision combine(List<SecurityConstraintMappingModel> constraints, Roles definedRoles) {
+			if (constraints.isEmpty()) {
+				return UNCONSTRAINED;
+			}
+			boolean excluded = false;
+			boolean unauthenticatedAllowed = false;
+			boolean anyAuthenticatedUser = false;
+			Set<String> roles = new LinkedHashSet<>();
+			DataConstraint dc = DataConstraint.CONFIDENTIAL;
+
+			for (SecurityConstraintMappingModel model : constraints) {
+				if (!model.isAuthentication()) {
+					// no <auth-constraint> - allows unauthenticated access
+					unauthenticatedAllowed = true;
+				} else if (model.getRoles() == null || model.getRoles().isEmpty()) {
+					// <auth-constraint> without roles - access is precluded, whatever other constraints say
+					excluded = true;
+				} else {
+					for (String role : model.getRoles()) {
+						if (ALL_ROLES.equals(role) && !definedRoles.declared.contains(ALL_ROLES)) {
+							roles.addAll(definedRoles.defined);
+						} else if (ANY_AUTHENTICATED_USER.equals(role)
+								&& !definedRoles.declared.contains(ANY_AUTHENTICATED_USER)) {
+							anyAuthenticatedUser = true;
+						} else {
+							roles.add(role);
+						}
+					}
+				}
+				DataConstraint modelDc = DataConstraint.parse(model.getDataConstraint());
+				if (modelDc.compareTo(dc) < 0) {
+					// union of accepted connection types == the least strict one
+					dc = modelDc;
+				}
+			}
+
+			if (excluded) {
+				return new Decision(true, false, Collections.emptySet(), false, dc);
+			}
+			if (unauthenticatedAllowed) {
+				return new Decision(false, false, Collections.emptySet(), false, dc);
+			}
+			return new Decision(false, true, Collections.unmodifiableSet(roles), anyAuthenticatedUser, dc);
+		}
+
+		public boolean isExcluded() {
+			return excluded;
+		}
+
+		public boolean isAuthenticationRequired() {
+			return authenticationRequired;
+		}
+
+		public Set<String> getRoles() {
+			return roles;
+		}
+
+		public boolean isAnyAuthenticatedUser() {
+			return anyAuthenticatedUser;
+		}
+
+		public DataConstraint getDataConstraint() {
+			return dataConstraint;
+		}
+
+		/**
+		 * Checks whether the request (after {@code handleSecurity()} was called) fulfills this decision.
+		 *
+		 * @param request
+		 * @return
+		 */
+		public boolean permits(HttpServletRequest request) {
+			if (this == UNCONSTRAINED) {
+				return true;
+			}
+			if (excluded) {
+				return false;
+			}
+			if (dataConstraint != DataConstraint.NONE && !request.isSecure()) {
+				return false;
+			}
+			if (!authenticationRequired) {
+				return true;
+			}
+			if (request.getUserPrincipal() == null && request.getRemoteUser() == null) {
+				return false;
+			}
+			if (anyAuthenticatedUser) {
+				return true;
+			}
+			for (String role : roles) {
+				if (request.isUserInRole(role)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return "Decision{excluded=" + excluded
+					+ ",authenticationRequired=" + authenticationRequired
+					+ ",roles=" + roles
+					+ ",anyAuthenticatedUser=" + anyAuthenticatedUser
+					+ ",dataConstraint=" + dataConstraint + "}";
+		}
+	}
+
+	/**
+	 * Per-pattern map of HTTP method to precomputed {@link Decision}.
+	 */
+	private static final class MethodDecisions {
+		private final Map<String, Decision> byMethod = new HashMap<>();
+		private Decision allMethods = Decision.UNCONSTRAINED;
+
+		static MethodDecisions compile(List<SecurityConstraintMappingModel> constraints, Roles roles) {
+			MethodDecisions result = new MethodDecisions();
+
+			List<SecurityConstraintMappingModel> forAllMethods = new ArrayList<>();
+			Map<String, List<SecurityConstraintMappingModel>> forMethod = new HashMap<>();
+			// constraints with <http-method-omission> and their omitted methods
+			Map<SecurityConstraintMappingModel, Set<String>> omitting = new LinkedHashMap<>();
+			for (SecurityConstraintMappingModel model : constraints) {
+				String method = model.getMapping();
+				if (model.getHttpMethodOmissions() != null && !model.getHttpMethodOmissions().isEmpty()) {
+					Set<String> omitted = new HashSet<>();
+					for (String m : model.getHttpMethodOmissions()) {
+						omitted.add(m.trim().toUpperCase());
+					}
+					omitting.put(model, omitted);
+				} else if (method == null || "".equals(method.trim()) || "*".equals(method.trim())) {
+					forAllMethods.add(model);
+				} else {
+					forMethod.computeIfAbsent(method.trim().toUpperCase(), m -> new ArrayList<>()).add(model);
+				}
+			}
+
+			// methods not named by any constraint are covered by constraints without http-method and by all
+			// constraints with http-method-omission
+			List<SecurityConstraintMappingModel> other = new ArrayList<>(forAllMethods);
+			other.addAll(omitting.keySet());
+			result.allMethods = Decision.combine(other, roles);
+
+			Set<String> namedMethods = new HashSet<>(forMethod.keySet());
+			omitting.values().forEach(namedMethods::addAll);
+			for (String method : namedMethods) {
+				List<SecurityConstraintMappingModel> all = new ArrayList<>(forMethod.getOrDefault(method,
+						Collections.emptyList()));
+				// constraints without http-method apply to this particular method as well
+				all.addAll(forAllMethods);
+				omitting.forEach((model, omitted) -> {
+					if (!omitted.contains(method)) {
+						all.add(model);
+					}
+				});
+				result.byMethod.put(method, Decision.combine(all, roles));
+			}
+
+			return result;
+		}
+
+		Decision forMethod(String method) {
+			if (method == null || byMethod.isEmpty()) {
+				return allMethods;
+			}
+			Decision d = byMethod.get(method);
+			return d == null ? allMethods : d;
+		}
+	}
+
+	/**
+	 * Roles declared by the application and all the roles it defines (declared and used in constraints).
+	 */
+	private static final class Roles {
+		private final Set<String> declared;
+		private final Set<String> defined;
+
+		Roles(Collection<String> declared) {
+			this.declared = declared == null ? Collections.emptySet() : new HashSet<>(declared);
+			this.defined = new LinkedHashSet<>(this.declared);
+			this.defined.remove(ALL_ROLES);
+			this.defined.remove(ANY_AUTHENTICATED_USER);
+		}
+	}
+
+	/**
+	 * A node of prefix trie.
+	 */
+	private static final class PrefixNode {
+		private final Map<String, PrefixNode> children = new HashMap<>();
+		private MethodDecisions decisions;
+	}
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.ops4j.pax.web.service.AsyncSecurityHandler;
+import org.ops4j.pax.web.service.PaxWebConstants;
+import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Support for {@link AsyncSecurityHandler} shared by all the runtimes. When the context provides
+ * asynchronous security check, the request is suspended (using {@link HttpServletRequest#startAsync()}), so no
+ * container thread waits for the check. When the check passes, the request is
+ * {@link AsyncContext#dispatch() dispatched} again and the second pass (with {@link DispatcherType#ASYNC})
+ * continues to filters and target servlet without calling {@code handleSecurity()} again.</p>
+ *
+ * <p>The second pass is recognized by a private {@link Grant} object stored as request attribute. It can't be
+ * created outside of this class, it's bound to the context which performed the check and it's accepted only
+ * once.</p>
+ *
+ * <p>{@link WebContainerContext#finishSecurity} is called once - after the second pass or after the request is
+ * rejected.</p>
+ */
+public final class AsyncSecurity {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AsyncSecurity.class);
+
+	/** Request attribute with a {@link Grant} of the request which passed the security check */
+	static final String GRANTED_ATTRIBUTE = AsyncSecurity.class.getName() + ".granted";
+
+	private AsyncSecurity() {
+	}
+
+	/**
+	 * Checks whether the request is a dispatch of a request that passed asynchronous security check of given
+	 * context. The grant is removed, so it's not visible in further dispatches.
+	 * @param webContext
+	 * @param osgiContextModel
+	 * @param req
+	 * @return
+	 */
+	public static boolean isGranted(WebContainerContext webContext, OsgiContextModel osgiContextModel,
+			HttpServletRequest req) {
+		if (req.getDispatcherType() != DispatcherType.ASYNC) {
+			return false;
+		}
+		Object grant = req.getAttribute(GRANTED_ATTRIBUTE);
+		if (!(grant instanceof Grant)) {
+			return false;
+		}
+		req.removeAttribute(GRANTED_ATTRIBUTE);
+		return ((Grant) grant).consume(webContext, osgiContextModel);
+	}
+
+	/**
+	 * Starts asynchronous security check if the context provides it and the request may be suspended.
+	 * @param webContext
+	 * @param osgiContextModel used to get {@link PaxWebConstants#CONTEXT_PARAM_ASYNC_SECURITY_TIMEOUT}
+	 * @param req
+	 * @param res
+	 * @return {@code false} if synchronous {@code handleSecurity()} should be used
+	 */
+	public static boolean suspend(WebContainerContext webContext, OsgiContextModel osgiContextModel,
+			HttpServletRequest req, HttpServletResponse res) {
+		if (req.getDispatcherType() != DispatcherType.REQUEST || !req.isAsyncSupported() || req.isAsyncStarted()) {
+			return false;
+		}
+		CompletionStage<Boolean> stage = webContext.handleSecurityAsync(req, res);
+		if (stage == null) {
+			return false;
+		}
+
+		AsyncContext asyncContext = req.startAsync();
+		asyncContext.setTimeout(timeout(osgiContextModel));
+		AtomicBoolean resolved = new AtomicBoolean();
+		asyncContext.addListener(new AsyncListener() {
+			@Override
+			public void onComplete(AsyncEvent event) {
+			}
+
+			@Override
+			public void onTimeout(AsyncEvent event) {
+				if (resolved.compareAndSet(false, true)) {
+					LOG.debug("Asynchronous security check of {} timed out", req.getRequestURI());
+					reject(webContext, asyncContext, req, res, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+				}
+			}
+
+			@Override
+			public void onError(AsyncEvent event) {
+				if (resolved.compareAndSet(false, true)) {
+					webContext.finishSecurity(req, res);
+				}
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) {
+			}
+		});
+
+		stage.whenComplete((granted, error) -> {
+			if (!resolved.compareAndSet(false, true)) {
+				return;
+			}
+			if (error == null && Boolean.TRUE.equals(granted)) {
+				req.setAttribute(GRANTED_ATTRIBUTE, new Grant(webContext, osgiContextModel));
+				asyncContext.dispatch();
+				return;
+			}
+			if (error != null) {
+				LOG.warn("Asynchronous security check of {} failed: {}", req.getRequestURI(), error.getMessage(), error);
+			}
+			reject(webContext, asyncContext, req, res, error != null
+					? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : HttpServletResponse.SC_FORBIDDEN);
+		});
+		return true;
+	}
+
+	private static void reject(WebContainerContext webContext, AsyncContext asyncContext,
+			HttpServletRequest req, HttpServletResponse res, int status) {
+		try {
+			if (!res.isCommitted()) {
+				// as with synchronous handleSecurity(), committed response was already handled by the context
+				res.sendError(status);
+			}
+		} catch (IOException | IllegalStateException e) {
+			LOG.debug("Can't send {} response: {}", status, e.getMessage());
+		} finally {
+			try {
+				webContext.finishSecurity(req, res);
+			} finally {
+				asyncContext.complete();
+			}
+		}
+	}
+
+	private static long timeout(OsgiContextModel osgiContextModel) {
+		String timeout = osgiContextModel == null ? null
+				: osgiContextModel.getContextParams().get(PaxWebConstants.CONTEXT_PARAM_ASYNC_SECURITY_TIMEOUT);
+		if (timeout != null) {
+			try {
+				return Long.parseLong(timeout.trim());
+			} catch (NumberFormatException e) {
+				LOG.warn("Incorrect value of {}: {}", PaxWebConstants.CONTEXT_PARAM_ASYNC_SECURITY_TIMEOUT, timeout);
+			}
+		}
+		return PaxWebConstants.DEFAULT_ASYNC_SECURITY_TIMEOUT;
+	}
+
+	/**
+	 * Proof of passed asynchronous security check. Only this class creates the grants and they're compared by
+	 * identity of the context which granted the access.
+	 */
+	private static final class Grant {
+
+		private final WebContainerContext webContext;
+		private final OsgiContextModel osgiContextModel;
+		private final AtomicBoolean used = new AtomicBoolean();
+
+		private Grant(WebContainerContext webContext, OsgiContextModel osgiContextModel) {
+			this.webContext = webContext;
+			this.osgiContextModel = osgiContextModel;
+		}
+
+		private boolean consume(WebContainerContext webContext, OsgiContextModel osgiContextModel) {
+			return this.webContext == webContext && this.osgiContextModel == osgiContextModel
+					&& used.compareAndSet(false, true);
+		}
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>{@link WriteListener} that copies resource content to the response using Servlet 3.1 non-blocking I/O.
+ * Resource servlets use it for large resources which are not files (e.g., bundle entries), so a slow client
+ * doesn't occupy container thread for the whole download - the thread is released whenever the output can't
+ * accept more data.</p>
+ *
+ * <p>Reading from the resource stream is still blocking, but it's a local read of limited chunk.</p>
+ */
+public final class NonBlockingResourceWriter implements WriteListener {
+
+	private static final Logger LOG = LoggerFactory.getLogger(NonBlockingResourceWriter.class);
+
+	private static final int CHUNK_SIZE = 16 * 1024;
+
+	private final InputStream in;
+	private final AsyncContext asyncContext;
+	private final ServletOutputStream out;
+	private final byte[] buffer = new byte[CHUNK_SIZE];
+
+	private NonBlockingResourceWriter(InputStream in, AsyncContext asyncContext, ServletOutputStream out) {
+		this.in = in;
+		this.asyncContext = asyncContext;
+		this.out = out;
+	}
+
+	/**
+	 * Checks whether content of given length may be written without blocking.
+	 * @param request
+	 * @param response
+	 * @param contentLength length of the content or {@code -1} if unknown
+	 * @param threshold minimal length (in bytes) of content written without blocking. Negative value disables
+	 *        non-blocking writes
+	 * @return
+	 */
+	public static boolean isApplicable(HttpServletRequest request, HttpServletResponse response,
+			long contentLength, long threshold) {
+		if (threshold < 0L || contentLength < threshold) {
+			return false;
+		}
+		DispatcherType type = request.getDispatcherType();
+		// wrapped response (e.g., compressed one) may write more than the output accepts after isReady()
+		return (type == DispatcherType.REQUEST || type == DispatcherType.FORWARD)
+				&& request.isAsyncSupported() && !request.isAsyncStarted()
+				&& !(response instanceof ServletResponseWrapper);
+	}
+
+	/**
+	 * Switches the request to asynchronous mode and starts writing the content. The stream is closed after
+	 * everything is written or when the write fails.
+	 * @param request
+	 * @param response
+	 * @param in
+	 * @throws IOException
+	 */
+	public static void write(HttpServletRequest request, HttpServletResponse response, InputStream in)
+			throws IOException {
+		AsyncContext asyncContext = request.startAsync(request, response);
+		// the download may take long for slow clients - the output will fail if the client disappears
+		asyncContext.setTimeout(0L);
+		ServletOutputStream out = response.getOutputStream();
+		out.setWriteListener(new NonBlockingResourceWriter(in, asyncContext, out));
+	}
+
+	@Override
+	public void onWritePossible() throws IOException {
+		while (out.isReady()) {
+			int read = in.read(buffer);
+			if (read < 0) {
+				finish();
+				return;
+			}
+			if (read > 0) {
+				out.write(buffer, 0, read);
+			}
+		}
+	}
+
+	@Override
+	public void onError(Throwable t) {
+		LOG.debug("Error writing resource: {}", t.getMessage());
+		finish();
+	}
+
+	private void finish() {
+		try {
+			in.close();
+		} catch (IOException ignored) {
+		}
+		asyncContext.complete();
+	}
+
+}
@@ -18,6 +18,10 @@ package org.ops4j.pax.web.service.spi.servlet;
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
@@ -27,8 +31,20 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.spi.admission.AdaptiveLimiter;
+import org.ops4j.pax.web.service.spi.admission.AdmissionControl;
+import org.ops4j.pax.web.service.spi.admission.Bulkhead;
+import org.ops4j.pax.web.service.spi.compression.GzipResponseWrapper;
+import org.ops4j.pax.web.service.spi.compression.ResponseCompression;
+import org.ops4j.pax.web.service.spi.metrics.ElementMetrics;
+import org.ops4j.pax.web.service.spi.metrics.ElementType;
+import org.ops4j.pax.web.service.spi.metrics.WebMetricsRegistry;
+import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+import org.ops4j.pax.web.service.spi.security.SecurityConstraintMatcher;
 import org.osgi.framework.Bundle;
 import org.osgi.service.http.whiteboard.Preprocessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A {@link FilterChain} that can be configured in any runtime to correctly handle two concepts defined in
@@ -38,16 +54,35 @@ import org.osgi.service.http.whiteboard.Preprocessor;
  *     {@link org.osgi.service.http.context.ServletContextHelper#handleSecurity} +
  *     {@link org.osgi.service.http.context.ServletContextHelper#finishSecurity}</li>
  * </ul>
+ * It's also the place where Pax Web sheds excess requests using {@link AdaptiveLimiter}, limits concurrency of
+ * the context path using {@link Bulkhead} and where
+ * the response is wrapped by Pax Web response compression stage.
+ *
+ * For requests switched to asynchronous mode, {@link WebContainerContext#finishSecurity} is called only after
+ * the asynchronous processing ends (see {@link RequestCompletion}). Contexts implementing
+ * {@link org.ops4j.pax.web.service.AsyncSecurityHandler} are checked without blocking container threads
+ * (see {@link AsyncSecurity}).
  *
  * TODO: ensure proper behavior in REQUEST, INCLUDE, FORWARD dispatches
  */
 public class OsgiFilterChain implements FilterChain {
 
+	private static final Logger LOG = LoggerFactory.getLogger(OsgiFilterChain.class);
+
+	/**
+	 * Request attribute marking a queued request that should be handed over to bulkhead's dedicated executor
+	 * when it's resumed
+	 */
+	private static final String HAND_OVER_ATTRIBUTE = OsgiFilterChain.class.getName() + ".handOver";
+
 	private final List<Preprocessor> preprocessors = new LinkedList<>();
 
 	private final ServletContext servletContext;
 	private final WebContainerContext webContext;
 
+	/** {@link OsgiContextModel} of the target context - source of precompiled security constraints */
+	private final OsgiContextModel osgiContextModel;
+
 	private FilterChain chain;
 
 	private int index = 0;
@@ -67,6 +102,22 @@ public class OsgiFilterChain implements FilterChain {
 		this.webContext = context;
 		this.servletContext = servletContext;
 		this.chain = originalChain;
+
+		this.osgiContextModel = osgiContextModel(servletContext);
+	}
+
+	/**
+	 * Gets {@link OsgiContextModel} associated with {@link ServletContext} if it's one of Pax Web wrappers.
+	 * @param servletContext
+	 * @return
+	 */
+	static OsgiContextModel osgiContextModel(ServletContext servletContext) {
+		if (servletContext instanceof OsgiScopedServletContext) {
+			return ((OsgiScopedServletContext) servletContext).getOsgiContextModel();
+		} else if (servletContext instanceof OsgiServletContext) {
+			return ((OsgiServletContext) servletContext).getOsgiContextModel();
+		}
+		return null;
 	}
 
 	public void setChain(FilterChain chain) {
@@ -81,19 +132,308 @@ public class OsgiFilterChain implements FilterChain {
 		// Here's the best place to wrap a request - but only when called for the first time!
 		if (index == 0) {
 			req = new OsgiHttpServletRequestWrapper(req, servletContext);
+
+			if (servletContext == null || req.getDispatcherType() != DispatcherType.REQUEST) {
+				Object bulkhead = req.getAttribute(HAND_OVER_ATTRIBUTE);
+				if (bulkhead instanceof Bulkhead && req.getDispatcherType() == DispatcherType.ASYNC) {
+					// queued request resumed with a permit - it's released by the listener added in suspend()
+					req.removeAttribute(HAND_OVER_ATTRIBUTE);
+					handOver((Bulkhead) bulkhead, req, res, null);
+					return;
+				}
+				start(req, res);
+				return;
+			}
+
+			// admission control runs before any preprocessor, so shed requests cost as little as possible
+			String contextPath = servletContext.getContextPath();
+			AdmissionControl admissionControl = AdmissionControl.getInstance();
+			AdaptiveLimiter limiter = admissionControl.getLimiter(osgiContextModel, contextPath);
+			long admitted = 0L;
+			if (limiter != null) {
+				if (!limiter.tryAcquire()) {
+					LOG.trace("Rejecting {}, adaptive limit of \"{}\" context reached", req.getRequestURI(),
+							contextPath);
+					reject(res, limiter.getSettings().getRetryAfter());
+					return;
+				}
+				admitted = System.nanoTime();
+			}
+			admit(admissionControl.getBulkhead(osgiContextModel, contextPath), limiter, admitted, req, res);
+			return;
+		}
+
+		proceed(req, res);
+	}
+
+	/**
+	 * Starts the processing of the chain wrapping the response if compression is enabled for the context.
+	 * @param req
+	 * @param res
+	 * @throws IOException
+	 * @throws ServletException
+	 */
+	private void start(HttpServletRequest req, HttpServletResponse res) throws IOException, ServletException {
+		start(req, res, false);
+	}
+
+	/**
+	 * Starts the processing of the chain wrapping the response if compression is enabled for the context.
+	 * @param req
+	 * @param res
+	 * @param handedOver whether the request was switched to asynchronous mode by {@link #handOver} - the
+	 *        compressed response is then finished here and not when the asynchronous processing completes
+	 * @throws IOException
+	 * @throws ServletException
+	 */
+	private void start(HttpServletRequest req, HttpServletResponse res, boolean handedOver)
+			throws IOException, ServletException {
+		GzipResponseWrapper compressing = ResponseCompression.getInstance()
+				.compressingResponse(osgiContextModel, req, res);
+		if (compressing == null) {
+			proceed(req, res);
+			return;
+		}
+		HttpServletRequest request = compressing.wrapRequest(req);
+		boolean processed = false;
+		try {
+			proceed(request, compressing);
+			processed = true;
+		} finally {
+			if (!processed) {
+				compressing.discard();
+			}
+		}
+		if (handedOver || !request.isAsyncStarted()) {
+			compressing.finish();
+		}
+	}
+
+	/**
+	 * Processes the request within the limits of {@link Bulkhead} (if there's one) in current (container) thread
+	 * or in bulkhead's dedicated executor. When the limit is reached, requests supporting asynchronous processing
+	 * may be suspended in bulkhead's queue, other requests are rejected immediately. When {@code limiter} is given, the request was already
+	 * admitted by it and it's released when the processing completes.
+	 * @param bulkhead
+	 * @param limiter
+	 * @param admitted {@link System#nanoTime()} when the request was admitted by {@code limiter}
+	 * @param req
+	 * @param res
+	 * @throws IOException
+	 * @throws ServletException
+	 */
+	private void admit(Bulkhead bulkhead, AdaptiveLimiter limiter, long admitted,
+			HttpServletRequest req, HttpServletResponse res) throws IOException, ServletException {
+		if (bulkhead != null && !bulkhead.acquire()) {
+			if (bulkhead.isAsyncQueue() && req.isAsyncSupported()) {
+				suspend(bulkhead, limiter, req, res);
+				return;
+			}
+			bulkhead.reject();
+			if (limiter != null) {
+				limiter.drop();
+			}
+			reject(res, bulkhead.getSettings().getRetryAfter());
+			return;
+		}
+		if (bulkhead != null && bulkhead.hasExecutor() && req.isAsyncSupported()) {
+			handOver(bulkhead, req, res, () -> {
+				bulkhead.release();
+				if (limiter != null) {
+					limiter.release(admitted);
+				}
+			});
+			return;
+		}
+		if (bulkhead == null && limiter == null) {
+			start(req, res);
+			return;
+		}
+		try {
+			start(req, res);
+		} finally {
+			// the request still occupies the bulkhead/limiter until the asynchronous processing completes, but
+			// latency of asynchronous (e.g., long-polling) requests is not used to estimate the limit
+			boolean async = req.isAsyncStarted();
+			RequestCompletion.whenComplete(req, () -> {
+				if (bulkhead != null) {
+					bulkhead.release();
+				}
+				if (limiter != null) {
+					if (async) {
+						limiter.drop();
+					} else {
+						limiter.release(admitted);
+					}
+				}
+			});
 		}
+	}
 
+	/**
+	 * Suspends the request until {@link Bulkhead} grants it a permit. The request is then resumed with
+	 * {@link AsyncContext#dispatch()}, so the whole chain is processed in container thread (within
+	 * {@link DispatcherType#ASYNC} dispatch) and the application may use asynchronous processing, forwards or
+	 * includes as usual. The permit is released when the resumed request completes. If the bulkhead has dedicated
+	 * executor, the resumed request is {@link #handOver handed over} to it.
+	 * @param bulkhead
+	 * @param limiter
+	 * @param req
+	 * @param res
+	 */
+	private void suspend(Bulkhead bulkhead, AdaptiveLimiter limiter,
+			HttpServletRequest req, HttpServletResponse res) {
+		AsyncContext asyncContext = req.startAsync();
+		asyncContext.setTimeout(bulkhead.getSettings().getMaxQueueTime());
+		if (bulkhead.hasExecutor()) {
+			// async timeout can't be changed after the dispatch returns, so the request is handed over
+			// from the ASYNC dispatch where it can be started again without a timeout
+			req.setAttribute(HAND_OVER_ATTRIBUTE, bulkhead);
+		}
+		Bulkhead.Ticket ticket = new Bulkhead.Ticket(() -> {
+			try {
+				asyncContext.dispatch();
+			} catch (IllegalStateException e) {
+				LOG.debug("Queued request {} completed before it was resumed: {}", req.getRequestURI(),
+						e.getMessage());
+			}
+		});
+		asyncContext.addListener(new AsyncListener() {
+			@Override
+			public void onComplete(AsyncEvent event) {
+				if (bulkhead.cancel(ticket, false)) {
+					// completed (e.g., by the container after an error) before getting a permit
+					if (limiter != null) {
+						limiter.drop();
+					}
+				} else if (ticket.isGranted()) {
+					bulkhead.release();
+					if (limiter != null) {
+						// time spent in the queue is not a latency sample of the application
+						limiter.drop();
+					}
+				}
+			}
+
+			@Override
+			public void onTimeout(AsyncEvent event) {
+				if (bulkhead.cancel(ticket, true)) {
+					if (limiter != null) {
+						limiter.drop();
+					}
+					reject(res, bulkhead.getSettings().getRetryAfter());
+					event.getAsyncContext().complete();
+				}
+			}
+
+			@Override
+			public void onError(AsyncEvent event) {
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) {
+				// the resumed request was switched to asynchronous mode again
+				event.getAsyncContext().addListener(this);
+			}
+		});
+		if (!bulkhead.enqueue(ticket)) {
+			if (limiter != null) {
+				limiter.drop();
+			}
+			reject(res, bulkhead.getSettings().getRetryAfter());
+			asyncContext.complete();
+		}
+	}
+
+	/**
+	 * Hands the processing of a request holding a permit of {@link Bulkhead} over to its dedicated executor, so
+	 * the container thread returns to the container right after routing. The request is switched to asynchronous
+	 * mode (without a timeout) and completed after the chain is processed in the executor, so the application
+	 * can't start asynchronous processing on its own, but it may use forwards and includes. If the executor was
+	 * already shut down (the bulkhead was discarded), the request is processed in current thread.
+	 * @param bulkhead
+	 * @param req
+	 * @param res
+	 * @param release action releasing the permit after the processing or {@code null} if it's released by other
+	 *        means
+	 */
+	private void handOver(Bulkhead bulkhead, HttpServletRequest req, HttpServletResponse res, Runnable release) {
+		AsyncContext asyncContext = req.startAsync();
+		asyncContext.setTimeout(0L);
+		Runnable task = () -> {
+			try {
+				start(req, res, true);
+			} catch (IOException | ServletException | RuntimeException e) {
+				LOG.warn("Problem processing {} in bulkhead executor: {}", req.getRequestURI(), e.getMessage(), e);
+				if (!res.isCommitted()) {
+					try {
+						res.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+					} catch (IOException ignored) {
+					}
+				}
+			} finally {
+				if (release != null) {
+					release.run();
+				}
+				asyncContext.complete();
+			}
+		};
+		if (!bulkhead.execute(task)) {
+			task.run();
+		}
+	}
+
+	/**
+	 * Rejects the request with {@code 503 Service Unavailable}.
+	 * @param res
+	 * @param retryAfter value of {@code Retry-After} header in seconds
+	 */
+	private static void reject(HttpServletResponse res, int retryAfter) {
+		if (res.isCommitted()) {
+			return;
+		}
+		try {
+			res.setHeader("Retry-After", Integer.toString(retryAfter));
+			res.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		} catch (IOException e) {
+			LOG.debug("Can't reject the request: {}", e.getMessage());
+		}
+	}
+
+	private void proceed(HttpServletRequest req, HttpServletResponse res) throws IOException, ServletException {
 		if (index < preprocessors.size()) {
 			// still something left
 			Preprocessor filter = preprocessors.get(index++);
-			filter.doFilter(req, res, this);
+			ElementMetrics metrics = metrics(ElementType.PREPROCESSOR, filter.getClass().getName());
+			if (metrics == null) {
+				filter.doFilter(req, res, this);
+				return;
+			}
+			metrics.start();
+			try {
+				filter.doFilter(req, res, this);
+			} finally {
+				metrics.stop();
+			}
 			return;
 		}
 
 		// nothing left - time to call security and if it passes - call the rest of the chain (normal filters
 		// and target servlet)
+		boolean granted = webContext == null || AsyncSecurity.isGranted(webContext, osgiContextModel, req);
+		if (!granted && AsyncSecurity.suspend(webContext, osgiContextModel, req, res)) {
+			// the chain continues in asynchronous dispatch after the security check completes
+			return;
+		}
 		try {
-			if (webContext == null || webContext.handleSecurity(req, res)) {
+			if (granted || handleSecurity(req, res)) {
+				if (!checkSecurityConstraints(osgiContextModel, req)) {
+					// security constraints of the context are not fulfilled after handleSecurity()
+					if (!res.isCommitted()) {
+						res.sendError(HttpServletResponse.SC_FORBIDDEN);
+					}
+					return;
+				}
 				// continue normally with normal filters and target servlet
 				chain.doFilter(req, res);
 			} else {
@@ -109,9 +449,60 @@ public class OsgiFilterChain implements FilterChain {
 			}
 		} finally {
 			if (webContext != null) {
-				webContext.finishSecurity(req, res);
+				// for asynchronous requests (started by the servlet, a filter or a preprocessor), security
+				// context has to be available until the asynchronous processing ends
+				RequestCompletion.whenComplete(req, () -> webContext.finishSecurity(req, res));
 			}
 		}
 	}
 
+	/**
+	 * Calls {@link WebContainerContext#handleSecurity} recording its latency if metrics are enabled.
+	 * @param req
+	 * @param res
+	 * @return
+	 * @throws IOException
+	 */
+	private boolean handleSecurity(HttpServletRequest req, HttpServletResponse res) throws IOException {
+		ElementMetrics metrics = metrics(ElementType.SECURITY, "handleSecurity");
+		if (metrics == null) {
+			return webContext.handleSecurity(req, res);
+		}
+		metrics.start();
+		try {
+			return webContext.handleSecurity(req, res);
+		} finally {
+			metrics.stop();
+		}
+	}
+
+	/**
+	 * Resolves {@link ElementMetrics} of a preprocessor or {@code handleSecurity()}. The chain is created for each
+	 * request, so there's nothing to keep between requests here - for OSGi contexts it's a lookup without
+	 * allocation in {@link OsgiContextModel#getMetrics()}.
+	 * @param type
+	 * @param name
+	 * @return
+	 */
+	private ElementMetrics metrics(ElementType type, String name) {
+		return WebMetricsRegistry.getInstance().getElementMetrics(osgiContextModel,
+				servletContext == null ? null : servletContext.getContextPath(), type, name);
+	}
+
+	/**
+	 * Checks the request against precompiled security constraints of given {@link OsgiContextModel} - it's a single
+	 * lookup, so it's cheap even for contexts with hundreds of {@code <security-constraint>} URL patterns.
+	 *
+	 * @param osgiContextModel
+	 * @param request
+	 * @return
+	 */
+	public static boolean checkSecurityConstraints(OsgiContextModel osgiContextModel, HttpServletRequest request) {
+		if (osgiContextModel == null) {
+			return true;
+		}
+		SecurityConstraintMatcher matcher = osgiContextModel.getSecurityConstraintMatcher();
+		return matcher.isEmpty() || matcher.match(request).permits(request);
+	}
+
 }
@@ -25,6 +25,10 @@ import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 
+import org.ops4j.pax.web.service.spi.metrics.ElementMetrics;
+import org.ops4j.pax.web.service.spi.metrics.ElementType;
+import org.ops4j.pax.web.service.spi.metrics.WebMetricsRegistry;
+
 /**
  * {@link Filter} wrapper that uses correct {@link FilterConfig} wrapper that returns correct wrapper
  * for {@link javax.servlet.ServletContext}
@@ -34,6 +38,9 @@ public class OsgiInitializedFilter implements Filter {
 	private final Filter filter;
 	private final ServletContext servletContext;
 
+	private String filterName;
+	private ElementMetrics metrics;
+
 	public OsgiInitializedFilter(Filter filter, ServletContext servletSpecificContext) {
 		this.filter = filter;
 		this.servletContext = servletSpecificContext;
@@ -41,6 +48,7 @@ public class OsgiInitializedFilter implements Filter {
 
 	@Override
 	public void init(final FilterConfig config) throws ServletException {
+		filterName = config.getFilterName();
 		filter.init(new FilterConfig() {
 			@Override
 			public String getFilterName() {
@@ -66,7 +74,31 @@ public class OsgiInitializedFilter implements Filter {
 
 	@Override
 	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
-		filter.doFilter(request, response, chain);
+		ElementMetrics metrics = metrics();
+		if (metrics == null) {
+			filter.doFilter(request, response, chain);
+			return;
+		}
+		metrics.start();
+		try {
+			filter.doFilter(request, response, chain);
+		} finally {
+			metrics.stop();
+		}
+	}
+
+	private ElementMetrics metrics() {
+		WebMetricsRegistry registry = WebMetricsRegistry.getInstance();
+		if (!registry.isEnabled()) {
+			return null;
+		}
+		if (metrics == null) {
+			// benign race - the registry returns the same instance
+			metrics = registry.getElementMetrics(OsgiFilterChain.osgiContextModel(servletContext),
+					servletContext == null ? null : servletContext.getContextPath(), ElementType.FILTER,
+					filterName == null ? filter.getClass().getName() : filterName);
+		}
+		return metrics;
 	}
 
 	@Override
@@ -18,12 +18,27 @@ package org.ops4j.pax.web.service.spi.servlet;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.servlet.ServletContext;
 
 import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.namespace.BundleNamespace;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRequirement;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
 
 /**
  * <p>A {@link ClassLoader} added in Pax Web to replace all pax-swissbox/xbean <em>bundle classloaders</em> and to be used
@@ -57,11 +72,35 @@ import org.osgi.framework.Bundle;
  *     <li>Nothing particular in plain Undertow, but it's set to {@code org.jboss.as.web.host.WebDeploymentBuilder#getClassLoader()}
  *         in Wildfly/EAP.</li>
  * </ul></p>
+ *
+ * <p>To avoid trying (and failing with {@link ClassNotFoundException}) every bundle for every class, this
+ * {@link ClassLoader} builds a <em>package index</em> from {@link BundleWiring} of each bundle: local packages
+ * (directories of bundle's own class path, including attached fragments), imported packages and packages of
+ * required bundles. Classes and resources from indexed packages are looked up only in bundles that can actually
+ * provide them (preserving the order in which bundles were added). Bundles without wiring or with dynamic imports
+ * are always checked. Packages unknown to the index (e.g., boot delegated ones) are looked up in all the bundles.
+ * Resources from directories which are not Java packages (like {@code META-INF/services} or
+ * {@code META-INF/resources}) are not indexed and are always looked up in all the bundles - the same way as
+ * before the index was introduced.</p>
+ *
+ * <p>Classes that can't be loaded at all are remembered in bounded negative cache, unless any of the bundles
+ * has dynamic imports or is not resolved - such bundles may be able to load the class later. Both the index and
+ * the negative cache are dropped when any of the wirings is no longer current (after bundle refresh) or when
+ * any of the bundles, which were not resolved when the index was built, gets resolved.</p>
  */
 public class OsgiServletContextClassLoader extends ClassLoader {
 
+	/** Maximum number of class names remembered as not found, before the negative cache is cleared */
+	private static final int MAX_NEGATIVE_CACHE_SIZE = 2048;
+
 	private List<Bundle> bundles = new ArrayList<>();
 
+	/** Current package index - replaced entirely when it's no longer valid */
+	private volatile PackageIndex index;
+
+	/** Names of classes which were not found in any of the bundles */
+	private final Set<String> negativeCache = ConcurrentHashMap.newKeySet();
+
 	/**
 	 * Adds a {@link Bundle} to be reachable from this {@link ClassLoader}
 	 * @param bundle
@@ -69,6 +108,7 @@ public class OsgiServletContextClassLoader extends ClassLoader {
 	public void addBundle(Bundle bundle) {
 		if (bundle != null) {
 			bundles.add(bundle);
+			invalidate();
 		}
 	}
 
@@ -79,27 +119,53 @@ public class OsgiServletContextClassLoader extends ClassLoader {
 		bundles = Collections.unmodifiableList(bundles);
 	}
 
+	/**
+	 * Drops the package index and negative cache - they'll be recalculated during next class/resource lookup.
+	 * This is done automatically when bundles in this {@link ClassLoader} are refreshed.
+	 */
+	public void invalidate() {
+		index = null;
+		negativeCache.clear();
+	}
+
 	@Override
 	public Class<?> loadClass(String name) throws ClassNotFoundException {
-		List<Exception> suppressed = new ArrayList<>(bundles.size());
-		for (Bundle b : bundles) {
+		PackageIndex idx = getIndex();
+		if (negativeCache.contains(name)) {
+			throw new ClassNotFoundException(name);
+		}
+
+		int dot = name.lastIndexOf('.');
+		Bundle[] candidates = idx.candidates(dot == -1 ? "" : name.substring(0, dot));
+
+		ClassNotFoundException cnfe = null;
+		for (Bundle b : candidates) {
 			if (b.getState() != Bundle.UNINSTALLED) {
 				try {
 					return b.loadClass(name);
 				} catch (Exception e) {
-					suppressed.add(e);
+					if (cnfe == null) {
+						cnfe = new ClassNotFoundException(name);
+					}
+					cnfe.addSuppressed(e);
 				}
 			}
 		}
 
-		ClassNotFoundException cnfe = new ClassNotFoundException(name);
-		suppressed.forEach(cnfe::addSuppressed);
-		throw cnfe;
+		if (!idx.hasWildcards()) {
+			// with dynamic imports or unresolved bundles, the class may be loadable later
+			if (negativeCache.size() >= MAX_NEGATIVE_CACHE_SIZE) {
+				negativeCache.clear();
+			}
+			negativeCache.add(name);
+		}
+
+		throw cnfe == null ? new ClassNotFoundException(name) : cnfe;
 	}
 
 	@Override
 	protected URL findResource(String name) {
-		for (Bundle b : bundles) {
+		for (Bundle b : getIndex().candidates(resourcePackage(name))) {
 			if (b.getState() != Bundle.UNINSTALLED) {
 				URL res = b.getResource(name);
 				if (res != null) {
@@ -114,7 +180,7 @@ public class OsgiServletContextClassLoader extends ClassLoader {
 	@Override
 	protected Enumeration<URL> findResources(String name) throws IOException {
 		List<URL> urls = new ArrayList<>(32);
-		for (Bundle b : bundles) {
+		for (Bundle b : getIndex().candidates(resourcePackage(name))) {
 			if (b.getState() != Bundle.UNINSTALLED) {
 				Enumeration<URL> e = b.getResources(name);
 				if (e != null) {
@@ -134,4 +200,175 @@ public class OsgiServletContextClassLoader extends ClassLoader {
 		throw new ClassNotFoundException(name);
 	}
 
+	/**
+	 * Returns current, valid {@link PackageIndex}, building new one if needed.
+	 * @return
+	 */
+	private PackageIndex getIndex() {
+		PackageIndex idx = index;
+		if (idx == null || !idx.isCurrent()) {
+			synchronized (this) {
+				idx = index;
+				if (idx == null || !idx.isCurrent()) {
+					negativeCache.clear();
+					idx = new PackageIndex(new ArrayList<>(bundles));
+					index = idx;
+				}
+			}
+		}
+		return idx;
+	}
+
+	/**
+	 * Converts resource name (like {@code org/ops4j/pax/web/file.properties}) to a package name
+	 * ({@code org.ops4j.pax.web}).
+	 * @param name
+	 * @return {@code null} if the resource is not in a Java package (like {@code META-INF/services/...})
+	 */
+	private static String resourcePackage(String name) {
+		String n = name.startsWith("/") ? name.substring(1) : name;
+		int slash = n.lastIndexOf('/');
+		if (slash == -1) {
+			return "";
+		}
+		String dir = n.substring(0, slash);
+		if (dir.indexOf('-') != -1) {
+			// META-INF, WEB-INF, OSGI-INF, ... - not packages and can't be imported
+			return null;
+		}
+		return dir.replace('/', '.');
+	}
+
+	/**
+	 * Immutable index of packages to bundles, which can provide classes/resources from these packages.
+	 */
+	private static final class PackageIndex {
+
+		private final Bundle[] allBundles;
+
+		/** Wirings used to build the index - when any is not current, the index is no longer valid */
+		private final List<BundleWiring> wirings = new ArrayList<>();
+
+		/** Bundles not resolved when building the index - when any gets resolved, the index is no longer valid */
+		private final List<Bundle> unresolved = new ArrayList<>();
+
+		/** Whether there are bundles which are always checked, because we can't tell which packages they reach */
+		private final boolean anyWildcard;
+
+		/** Package name to bundles (in original order) that can load classes/resources from given package */
+		private final Map<String, Bundle[]> packages = new HashMap<>();
+
+		PackageIndex(List<Bundle> bundles) {
+			this.allBundles = bundles.toArray(new Bundle[0]);
+
+			// bundles for which we can't tell which packages are reachable are always checked
+			Set<Bundle> wildcards = new HashSet<>();
+			Map<String, Set<Bundle>> index = new HashMap<>();
+
+			for (Bundle b : bundles) {
+				BundleWiring wiring = b.getState() == Bundle.UNINSTALLED ? null : b.adapt(BundleWiring.class);
+				if (wiring == null || hasDynamicImports(wiring)) {
+					wildcards.add(b);
+					if (wiring != null) {
+						wirings.add(wiring);
+					} else if (b.getState() == Bundle.INSTALLED) {
+						unresolved.add(b);
+					}
+					continue;
+				}
+				wirings.add(wiring);
+
+				// local packages (own Bundle-ClassPath + fragments)
+				Collection<String> local = wiring.listResources("/", "*",
+						BundleWiring.LISTRESOURCES_LOCAL | BundleWiring.LISTRESOURCES_RECURSE);
+				if (local != null) {
+					for (String resource : local) {
+						String pkg = resource.endsWith("/") ? null : resourcePackage(resource);
+						if (pkg != null) {
+							index.computeIfAbsent(pkg, p -> new HashSet<>()).add(b);
+						}
+					}
+				}
+
+				// imported packages and packages of required bundles
+				for (BundleWire wire : wiring.getRequiredWires(null)) {
+					String namespace = wire.getRequirement().getNamespace();
+					if (PackageNamespace.PACKAGE_NAMESPACE.equals(namespace)) {
+						Object pkg = wire.getCapability().getAttributes().get(PackageNamespace.PACKAGE_NAMESPACE);
+						if (pkg != null) {
+							index.computeIfAbsent(pkg.toString(), p -> new HashSet<>()).add(b);
+						}
+					} else if (BundleNamespace.BUNDLE_NAMESPACE.equals(namespace)) {
+						BundleWiring provider = wire.getProviderWiring();
+						if (provider != null) {
+							for (BundleCapability c : provider.getCapabilities(PackageNamespace.PACKAGE_NAMESPACE)) {
+								Object pkg = c.getAttributes().get(PackageNamespace.PACKAGE_NAMESPACE);
+								if (pkg != null) {
+									index.computeIfAbsent(pkg.toString(), p -> new HashSet<>()).add(b);
+								}
+							}
+						}
+					}
+				}
+			}
+
+			// finally keep the original order of bundles and include "wildcard" bundles for each package
+			for (Map.Entry<String, Set<Bundle>> e : index.entrySet()) {
+				Set<Bundle> candidates = new LinkedHashSet<>();
+				for (Bundle b : bundles) {
+					if (e.getValue().contains(b) || wildcards.contains(b)) {
+						candidates.add(b);
+					}
+				}
+				packages.put(e.getKey(), candidates.toArray(new Bundle[0]));
+			}
+			this.anyWildcard = !wildcards.isEmpty();
+		}
+
+		/**
+		 * Returns bundles which should be checked for classes/resources from given package.
+		 * @param pkg
+		 * @return
+		 */
+		Bundle[] candidates(String pkg) {
+			if (pkg == null) {
+				return allBundles;
+			}
+			Bundle[] result = packages.get(pkg);
+			// unknown package (for example boot delegated one) - check all the bundles
+			return result == null ? allBundles : result;
+		}
+
+		boolean hasWildcards() {
+			return anyWildcard;
+		}
+
+		boolean isCurrent() {
+			for (BundleWiring wiring : wirings) {
+				if (!wiring.isCurrent()) {
+					return false;
+				}
+			}
+			for (Bundle b : unresolved) {
+				if (b.getState() != Bundle.INSTALLED) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static boolean hasDynamicImports(BundleWiring wiring) {
+			BundleRevision revision = wiring.getRevision();
+			if (revision == null) {
+				return false;
+			}
+			for (BundleRequirement req : revision.getDeclaredRequirements(PackageNamespace.PACKAGE_NAMESPACE)) {
+				if (PackageNamespace.RESOLUTION_DYNAMIC.equals(req.getDirectives().get(Constants.RESOLUTION_DIRECTIVE))) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
 }
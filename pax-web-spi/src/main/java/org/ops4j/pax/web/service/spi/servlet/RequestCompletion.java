@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Helper to run an action when the processing of a request really ends. For synchronous requests it's
+ * when the filter chain returns, but for requests switched to asynchronous mode it's when the asynchronous
+ * processing completes, fails or times out.</p>
+ *
+ * <p>{@link OsgiFilterChain} uses it for {@link org.ops4j.pax.web.service.WebContainerContext#finishSecurity}
+ * and {@link org.osgi.service.http.whiteboard.Preprocessor preprocessors} may use it for their own cleanup.</p>
+ */
+public final class RequestCompletion {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RequestCompletion.class);
+
+	private RequestCompletion() {
+	}
+
+	/**
+	 * Runs the action immediately if the request is not in asynchronous mode. Otherwise the action is run
+	 * (only once) after the first of {@link AsyncListener#onComplete}, {@link AsyncListener#onError} or
+	 * {@link AsyncListener#onTimeout}.
+	 * @param request
+	 * @param action
+	 * @return {@code true} if the action was deferred
+	 */
+	public static boolean whenComplete(ServletRequest request, Runnable action) {
+		if (!request.isAsyncStarted()) {
+			action.run();
+			return false;
+		}
+		request.getAsyncContext().addListener(new CompletionListener(action));
+		return true;
+	}
+
+	private static final class CompletionListener implements AsyncListener {
+
+		private final Runnable action;
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		CompletionListener(Runnable action) {
+			this.action = action;
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			run();
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			run();
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			run();
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			// asynchronous processing was started again (e.g., after AsyncContext.dispatch())
+			event.getAsyncContext().addListener(this);
+		}
+
+		private void run() {
+			if (done.compareAndSet(false, true)) {
+				try {
+					action.run();
+				} catch (RuntimeException e) {
+					LOG.warn("Error finishing asynchronous request: {}", e.getMessage(), e);
+				}
+			}
+		}
+	}
+
+}
@@ -18,6 +18,7 @@ package org.ops4j.pax.web.service.spi.whiteboard;
 import java.util.List;
 
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+import org.ops4j.pax.web.service.spi.model.RuntimeSnapshot;
 import org.ops4j.pax.web.service.spi.model.elements.ElementModel;
 import org.ops4j.pax.web.service.spi.model.elements.ErrorPageModel;
 import org.ops4j.pax.web.service.spi.model.elements.EventListenerModel;
@@ -156,4 +157,12 @@ public interface WhiteboardWebContainerView extends PaxWebContainerView {
 	 */
 	void unregisterJsp(JspModel model);
 
+	/**
+	 * Returns incrementally maintained {@link org.osgi.service.http.runtime.dto.RuntimeDTO} of all the contexts
+	 * and elements registered in the underlying {@link org.ops4j.pax.web.service.WebContainer}. Can be called from
+	 * any thread and never blocks.
+	 * @return
+	 */
+	RuntimeSnapshot getRuntimeSnapshot();
+
 }
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.accesslog;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AccessLogTest {
+
+	// 2020-12-01 10:15:30 GMT
+	private static final long TIMESTAMP = 1606817730000L;
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void capacityIsPowerOfTwo() {
+		assertThat(RecordRingBuffer.capacity(0), equalTo(2));
+		assertThat(RecordRingBuffer.capacity(8), equalTo(8));
+		assertThat(RecordRingBuffer.capacity(1000), equalTo(1024));
+		assertThat(RecordRingBuffer.capacity(Integer.MAX_VALUE), equalTo(1 << 30));
+	}
+
+	@Test
+	public void fullBufferDoesNotBlock() {
+		RecordRingBuffer buffer = new RecordRingBuffer(4);
+		for (int i = 0; i < 4; i++) {
+			AccessLogRecord r = buffer.claim();
+			assertNotNull(r);
+			r.set(i, null, null, "GET", "/" + i, null, "HTTP/1.1", 200, 0L, null, null);
+			buffer.publish(r);
+		}
+		assertNull(buffer.claim());
+
+		AccessLogRecord first = buffer.peek();
+		assertThat(first.getUri(), equalTo("/0"));
+		buffer.release();
+		assertThat(first.getUri(), nullValue());
+
+		// one slot is free again and it's reused
+		AccessLogRecord r = buffer.claim();
+		assertTrue(r == first);
+		buffer.publish(r);
+		assertNull(buffer.claim());
+		for (int i = 1; i < 4; i++) {
+			assertThat(buffer.peek().getUri(), equalTo("/" + i));
+			buffer.release();
+		}
+		assertTrue(buffer.peek() == first);
+	}
+
+	@Test
+	public void unpublishedRecordIsNotVisible() {
+		RecordRingBuffer buffer = new RecordRingBuffer(4);
+		AccessLogRecord r = buffer.claim();
+		assertNull(buffer.peek());
+		buffer.publish(r);
+		assertTrue(buffer.peek() == r);
+	}
+
+	@Test
+	public void ncsaFormats() {
+		AccessLogRecord r = new AccessLogRecord();
+		r.set(TIMESTAMP, "127.0.0.1", null, "GET", "/app/index.html", "a=b", "HTTP/1.1", 200, 1234L,
+				null, "curl/7.68 \"test\"");
+
+		StringBuilder sb = new StringBuilder();
+		new AccessLogFormatter(false, ZoneId.of("GMT")).format(r, sb);
+		assertThat(sb.toString(),
+				equalTo("127.0.0.1 - - [01/Dec/2020:10:15:30 +0000] \"GET /app/index.html?a=b HTTP/1.1\" 200 1234"));
+
+		sb.setLength(0);
+		new AccessLogFormatter(true, ZoneId.of("GMT")).format(r, sb);
+		assertThat(sb.toString(),
+				equalTo("127.0.0.1 - - [01/Dec/2020:10:15:30 +0000] \"GET /app/index.html?a=b HTTP/1.1\" 200 1234"
+						+ " \"-\" \"curl/7.68 \\\"test\\\"\""));
+	}
+
+	@Test
+	public void binaryRoundTrip() throws Exception {
+		AccessLogRecord r = new AccessLogRecord();
+		r.set(TIMESTAMP, "::1", "admin", "POST", "/\u017c\u00f3\u0142w", null, "HTTP/2.0", 404, 0L, "http://localhost/", null);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		new AccessLogFormatter(false, ZoneId.of("GMT")).write(r, new DataOutputStream(baos));
+
+		AccessLogRecord copy = new AccessLogRecord();
+		AccessLogFormatter.read(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())), copy);
+		assertThat(copy.getTimestamp(), equalTo(TIMESTAMP));
+		assertThat(copy.getRemoteAddr(), equalTo("::1"));
+		assertThat(copy.getRemoteUser(), equalTo("admin"));
+		assertThat(copy.getMethod(), equalTo("POST"));
+		assertThat(copy.getUri(), equalTo("/\u017c\u00f3\u0142w"));
+		assertThat(copy.getQuery(), nullValue());
+		assertThat(copy.getProtocol(), equalTo("HTTP/2.0"));
+		assertThat(copy.getStatus(), equalTo(404));
+		assertThat(copy.getBytes(), equalTo(0L));
+		assertThat(copy.getReferer(), equalTo("http://localhost/"));
+		assertThat(copy.getUserAgent(), nullValue());
+	}
+
+	@Test
+	public void fileNames() {
+		File dir = tmp.getRoot();
+		LocalDate day = LocalDate.of(2020, 12, 1);
+		assertThat(new AccessLog(dir, null, null, true, 0, false, "GMT", 16, false).fileName(day),
+				equalTo("2020_12_01.request.log"));
+		assertThat(new AccessLog(dir, "access_log", "yyyy-MM-dd", true, 0, false, "GMT", 16, false).fileName(day),
+				equalTo("access_log.2020-12-01"));
+		assertThat(new AccessLog(dir, "yyyy_mm_dd.request.log", null, true, 0, false, "GMT", 16, true).fileName(day),
+				equalTo("2020_12_01.request.log.bin"));
+	}
+
+	@Test
+	public void recordsAreWrittenAndDroppedWhenFull() throws Exception {
+		File dir = tmp.newFolder("logs");
+		AccessLog log = new AccessLog(dir, "access.yyyy_mm_dd.log", null, true, 0, false, "GMT", 4, false);
+
+		// writer is not running, so only 4 records fit
+		for (int i = 0; i < 6; i++) {
+			boolean published = log.log(TIMESTAMP, "127.0.0.1", null, "GET", "/" + i, null, "HTTP/1.1", 200, 10L,
+					null, null);
+			assertThat(published, equalTo(i < 4));
+		}
+		assertThat(log.getDroppedCount(), equalTo(2L));
+
+		log.start();
+		log.stop();
+
+		File[] files = dir.listFiles();
+		assertNotNull(files);
+		assertThat(files.length, equalTo(1));
+		List<String> lines = Files.readAllLines(files[0].toPath(), StandardCharsets.UTF_8);
+		assertThat(lines.size(), equalTo(4));
+		assertThat(lines.get(3), equalTo("127.0.0.1 - - [01/Dec/2020:10:15:30 +0000] \"GET /3 HTTP/1.1\" 200 10"));
+
+		// buffer is empty again after the writer consumed all the records
+		assertTrue(log.log(TIMESTAMP, "127.0.0.1", null, "GET", "/", null, "HTTP/1.1", 200, 10L, null, null));
+		assertFalse(log.getDroppedCount() > 2L);
+	}
+
+	@Test
+	public void idleWriterIsUnparkedByProducer() throws Exception {
+		File dir = tmp.newFolder("logs");
+		AccessLog log = new AccessLog(dir, "access.log", null, true, 0, false, "GMT", 4, false);
+		log.start();
+		try {
+			Thread writer = null;
+			for (Thread t : Thread.getAllStackTraces().keySet()) {
+				if ("paxweb-access-log".equals(t.getName())) {
+					writer = t;
+				}
+			}
+			assertNotNull(writer);
+
+			// idle writer is parked without timeout
+			long end = System.currentTimeMillis() + 5000L;
+			while (writer.getState() != Thread.State.WAITING && System.currentTimeMillis() < end) {
+				Thread.sleep(10L);
+			}
+			assertThat(writer.getState(), equalTo(Thread.State.WAITING));
+
+			for (int i = 0; i < 10; i++) {
+				log.log(TIMESTAMP, "127.0.0.1", null, "GET", "/" + i, null, "HTTP/1.1", 200, 10L, null, null);
+				File file = new File(dir, log.fileName(LocalDate.now(ZoneId.of("GMT"))));
+				end = System.currentTimeMillis() + 5000L;
+				while ((!file.isFile() || Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size() <= i)
+						&& System.currentTimeMillis() < end) {
+					Thread.sleep(1L);
+				}
+				assertThat(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size(), equalTo(i + 1));
+			}
+		} finally {
+			log.stop();
+		}
+	}
+
+	@Test
+	public void fileIsOpenedAgainAfterFailure() throws Exception {
+		File dir = tmp.newFolder("logs");
+		AccessLog log = new AccessLog(dir, "access.yyyy_mm_dd.log", null, true, 0, false, "GMT", 4, false);
+
+		// a directory with the name of the log file can't be opened for writing
+		File blocker = new File(dir, log.fileName(LocalDate.now(ZoneId.of("GMT"))));
+		assertTrue(blocker.mkdir());
+		log.log(TIMESTAMP, "127.0.0.1", null, "GET", "/lost", null, "HTTP/1.1", 200, 10L, null, null);
+		assertThat(log.drain(), equalTo(1));
+
+		assertTrue(blocker.delete());
+		log.log(TIMESTAMP, "127.0.0.1", null, "GET", "/kept", null, "HTTP/1.1", 200, 10L, null, null);
+		log.start();
+		log.stop();
+
+		assertTrue(blocker.isFile());
+		List<String> lines = Files.readAllLines(blocker.toPath(), StandardCharsets.UTF_8);
+		assertThat(lines.size(), equalTo(1));
+		assertThat(lines.get(0), equalTo("127.0.0.1 - - [01/Dec/2020:10:15:30 +0000] \"GET /kept HTTP/1.1\" 200 10"));
+	}
+
+}
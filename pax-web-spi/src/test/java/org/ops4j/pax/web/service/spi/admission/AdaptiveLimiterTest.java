@@ -0,0 +1,172 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.admission;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.PaxWebConfig;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveLimiterTest {
+
+	@Test
+	public void rejectOverLimit() {
+		AdaptiveLimiter limiter = new AdaptiveLimiter("/c1",
+				new AdaptiveLimitSettings(true, 2, 1, 10, 2.0d, 1, AdmissionPriority.CRITICAL));
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+		limiter.drop();
+		assertTrue(limiter.tryAcquire());
+		assertThat(limiter.getInFlight(), equalTo(2));
+		assertThat(limiter.getAcceptedCount(), equalTo(3L));
+		assertThat(limiter.getRejectedCount(), equalTo(1L));
+	}
+
+	@Test
+	public void limitGrowsWithStableLatency() {
+		AdaptiveLimiter limiter = new AdaptiveLimiter("/c1",
+				new AdaptiveLimitSettings(true, 10, 1, 100, 2.0d, 1, AdmissionPriority.CRITICAL));
+		for (int i = 0; i < 200; i++) {
+			fillAndRelease(limiter, TimeUnit.MILLISECONDS.toNanos(10));
+		}
+		assertThat(limiter.getLimit(), equalTo(100));
+	}
+
+	@Test
+	public void limitDecreasesWhenLatencyGrows() {
+		AdaptiveLimiter limiter = new AdaptiveLimiter("/c1",
+				new AdaptiveLimitSettings(true, 50, 5, 100, 2.0d, 1, AdmissionPriority.CRITICAL));
+		for (int i = 0; i < 50; i++) {
+			fillAndRelease(limiter, TimeUnit.MILLISECONDS.toNanos(10));
+		}
+		int before = limiter.getLimit();
+		// sudden latency increase - long-term average adapts only slowly
+		for (int i = 0; i < 3; i++) {
+			fillAndRelease(limiter, TimeUnit.MILLISECONDS.toNanos(100));
+		}
+		assertTrue(limiter.getLimit() < before / 2);
+	}
+
+	@Test
+	public void droppedRequestsAreNotSampled() {
+		AdaptiveLimiter limiter = new AdaptiveLimiter("/c1",
+				new AdaptiveLimitSettings(true, 10, 1, 100, 2.0d, 1, AdmissionPriority.CRITICAL));
+		for (int i = 0; i < 50; i++) {
+			fillAndRelease(limiter, TimeUnit.MILLISECONDS.toNanos(10));
+		}
+		int before = limiter.getLimit();
+		double latency = limiter.getShortLatency();
+		// e.g., long-polling requests
+		for (int i = 0; i < 50; i++) {
+			int n = 0;
+			while (limiter.tryAcquire()) {
+				n++;
+			}
+			for (int j = 0; j < n; j++) {
+				limiter.drop();
+			}
+		}
+		assertThat(limiter.getLimit(), equalTo(before));
+		assertThat(limiter.getShortLatency(), equalTo(latency));
+		assertThat(limiter.getInFlight(), equalTo(0));
+	}
+
+	@Test
+	public void concurrentReleasesDoNotBreakTheLimit() throws Exception {
+		AdaptiveLimiter.Utilization utilization = new AdaptiveLimiter.Utilization();
+		AdaptiveLimiter limiter = new AdaptiveLimiter("/c1",
+				new AdaptiveLimitSettings(true, 10, 5, 100, 2.0d, 1, AdmissionPriority.CRITICAL), utilization);
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 10000; i++) {
+					if (limiter.tryAcquire()) {
+						limiter.release(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(10));
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		assertThat(limiter.getInFlight(), equalTo(0));
+		assertTrue(limiter.getLimit() >= 5 && limiter.getLimit() <= 100);
+		assertThat(utilization.totalLimit.get(), equalTo(limiter.getLimit()));
+		limiter.discard();
+		assertThat(utilization.totalLimit.get(), equalTo(0));
+		assertThat(utilization.inFlight.get(), equalTo(0));
+	}
+
+	@Test
+	public void lowPriorityShedFirst() {
+		AdmissionControl control = AdmissionControl.getInstance();
+		try {
+			control.configure(BulkheadSettings.DISABLED,
+					new AdaptiveLimitSettings(true, 10, 1, 100, 2.0d, 1, AdmissionPriority.NORMAL));
+			AdaptiveLimiter critical = control.getLimiter(null, "/critical");
+			AdaptiveLimiter low = control.getLimiter(null, "/low");
+			assertTrue(critical != null && low != null);
+
+			// sum of limits is 20, normal priority admits requests while 18 of them are in flight
+			for (int i = 0; i < 10; i++) {
+				assertTrue(critical.tryAcquire());
+			}
+			for (int i = 0; i < 8; i++) {
+				assertTrue(low.tryAcquire());
+			}
+			assertFalse(low.tryAcquire());
+			assertThat(low.getShedCount(), equalTo(1L));
+			assertThat(low.getRejectedCount(), equalTo(0L));
+		} finally {
+			control.configure(BulkheadSettings.DISABLED, AdaptiveLimitSettings.DISABLED);
+		}
+	}
+
+	@Test
+	public void contextParams() {
+		AdaptiveLimitSettings defaults = new AdaptiveLimitSettings(true, 20, 4, 1000, 2.0d, 1,
+				AdmissionPriority.NORMAL);
+		AdaptiveLimitSettings settings = defaults.withContextParams(Collections.singletonMap(
+				PaxWebConfig.PID_CFG_ADMISSION_PRIORITY, "Low"));
+		assertThat(settings.getPriority(), equalTo(AdmissionPriority.LOW));
+		assertThat(settings.getInitialLimit(), equalTo(20));
+		assertThat(defaults.withContextParams(Collections.singletonMap(
+				PaxWebConfig.PID_CFG_ADMISSION_PRIORITY, "unknown")).getPriority(), equalTo(AdmissionPriority.NORMAL));
+	}
+
+	/**
+	 * Admits as many requests as possible and releases them with given latency.
+	 */
+	private static void fillAndRelease(AdaptiveLimiter limiter, long latency) {
+		int n = 0;
+		while (limiter.tryAcquire()) {
+			n++;
+		}
+		long start = System.nanoTime() - latency;
+		for (int i = 0; i < n; i++) {
+			limiter.release(start);
+		}
+	}
+
+}
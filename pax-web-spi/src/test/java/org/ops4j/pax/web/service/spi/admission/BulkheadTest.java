@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.admission;
+
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.PaxWebConfig;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BulkheadTest {
+
+	@Test
+	public void rejectWhenFull() {
+		Bulkhead bulkhead = new Bulkhead("/c1", new BulkheadSettings(true, 2, 0, 1000, false, false, 1));
+		assertTrue(bulkhead.acquire());
+		assertTrue(bulkhead.acquire());
+		assertFalse(bulkhead.acquire());
+		bulkhead.reject();
+		assertThat(bulkhead.getActiveRequests(), equalTo(2));
+		bulkhead.release();
+		assertTrue(bulkhead.acquire());
+		assertThat(bulkhead.getAcceptedCount(), equalTo(3L));
+		assertThat(bulkhead.getRejectedCount(), equalTo(1L));
+	}
+
+	@Test
+	public void noWaitingInCurrentThread() {
+		// even with a queue, synchronous acquisition never blocks
+		Bulkhead bulkhead = new Bulkhead("/c1", new BulkheadSettings(true, 1, 10, 60000, false, false, 1));
+		assertTrue(bulkhead.acquire());
+		long start = System.nanoTime();
+		assertFalse(bulkhead.acquire());
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		assertFalse(bulkhead.isAsyncQueue());
+		assertFalse(bulkhead.enqueue(new Bulkhead.Ticket(() -> { })));
+	}
+
+	@Test
+	public void asyncQueue() {
+		Bulkhead bulkhead = new Bulkhead("/c1", new BulkheadSettings(true, 1, 2, 1000, true, false, 1));
+		AtomicInteger resumed = new AtomicInteger();
+		assertTrue(bulkhead.acquire());
+
+		Bulkhead.Ticket t1 = new Bulkhead.Ticket(resumed::incrementAndGet);
+		Bulkhead.Ticket t2 = new Bulkhead.Ticket(resumed::incrementAndGet);
+		Bulkhead.Ticket t3 = new Bulkhead.Ticket(resumed::incrementAndGet);
+		assertTrue(bulkhead.enqueue(t1));
+		assertTrue(bulkhead.enqueue(t2));
+		assertFalse("Queue is full", bulkhead.enqueue(t3));
+		assertFalse(bulkhead.cancel(t3, false));
+		assertThat(bulkhead.getQueuedRequests(), equalTo(2));
+		assertThat(resumed.get(), equalTo(0));
+
+		// permit is passed directly to first waiting request
+		bulkhead.release();
+		assertTrue(t1.isGranted());
+		assertThat(resumed.get(), equalTo(1));
+		assertThat(bulkhead.getActiveRequests(), equalTo(1));
+
+		// second one times out
+		assertTrue(bulkhead.cancel(t2, true));
+		assertFalse(bulkhead.cancel(t2, true));
+		assertThat(bulkhead.getQueuedRequests(), equalTo(0));
+		bulkhead.release();
+		assertFalse(t2.isGranted());
+		assertThat(resumed.get(), equalTo(1));
+		assertThat(bulkhead.getActiveRequests(), equalTo(0));
+
+		// free permit is granted while enqueuing
+		Bulkhead.Ticket t4 = new Bulkhead.Ticket(resumed::incrementAndGet);
+		assertTrue(bulkhead.enqueue(t4));
+		assertTrue(t4.isGranted());
+		assertFalse(bulkhead.cancel(t4, false));
+
+		assertThat(bulkhead.getAcceptedCount(), equalTo(3L));
+		assertThat(bulkhead.getRejectedCount(), equalTo(1L));
+		assertThat(bulkhead.getTimedOutCount(), equalTo(1L));
+	}
+
+	@Test
+	public void concurrentReleaseAndEnqueue() throws Exception {
+		Bulkhead bulkhead = new Bulkhead("/c1", new BulkheadSettings(true, 2, 10000, 1000, true, false, 1));
+		AtomicInteger resumed = new AtomicInteger();
+		Queue<Bulkhead.Ticket> granted = new ConcurrentLinkedQueue<>();
+		int count = 2000;
+		CountDownLatch done = new CountDownLatch(2);
+		Runnable worker = () -> {
+			for (int i = 0; i < count / 2; i++) {
+				if (bulkhead.acquire()) {
+					resumed.incrementAndGet();
+					bulkhead.release();
+				} else {
+					Bulkhead.Ticket[] ticket = new Bulkhead.Ticket[1];
+					ticket[0] = new Bulkhead.Ticket(() -> {
+						resumed.incrementAndGet();
+						granted.add(ticket[0]);
+					});
+					assertTrue(bulkhead.enqueue(ticket[0]));
+				}
+				// resumed requests complete
+				while (granted.poll() != null) {
+					bulkhead.release();
+				}
+			}
+			done.countDown();
+		};
+		new Thread(worker).start();
+		new Thread(worker).start();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		while (granted.poll() != null) {
+			bulkhead.release();
+		}
+		assertThat("No ticket is left waiting", resumed.get(), equalTo(count));
+		assertThat(bulkhead.getQueuedRequests(), equalTo(0));
+		assertThat(bulkhead.getActiveRequests(), equalTo(0));
+	}
+
+	@Test
+	public void dedicatedExecutor() throws Exception {
+		Bulkhead bulkhead = new Bulkhead("/c1", new BulkheadSettings(true, 2, 0, 1000, false, true, 1));
+		assertTrue(bulkhead.hasExecutor());
+		CountDownLatch done = new CountDownLatch(1);
+		String[] thread = new String[1];
+		assertTrue(bulkhead.execute(() -> {
+			thread[0] = Thread.currentThread().getName();
+			done.countDown();
+		}));
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertTrue(thread[0].startsWith("paxweb-bulkhead"));
+
+		bulkhead.shutdown();
+		assertFalse("Discarded bulkhead doesn't accept tasks", bulkhead.execute(() -> { }));
+		Bulkhead noExecutor = new Bulkhead("/c2", new BulkheadSettings(true, 2, 0, 1000, false, false, 1));
+		assertFalse(noExecutor.execute(() -> { }));
+	}
+
+	@Test
+	public void contextOverrides() {
+		BulkheadSettings defaults = new BulkheadSettings(false, 32, 0, 1000, false, false, 1);
+		BulkheadSettings settings = defaults.withContextParams(
+				Collections.singletonMap(PaxWebConfig.PID_CFG_BULKHEAD_ENABLED, "true"));
+		assertTrue(settings.isEnabled());
+		assertThat(settings.getMaxConcurrentRequests(), equalTo(32));
+		assertThat(settings.getRetryAfter(), equalTo(1));
+		settings = defaults.withContextParams(
+				Collections.singletonMap(PaxWebConfig.PID_CFG_BULKHEAD_RETRY_AFTER, "5"));
+		assertThat(settings.getRetryAfter(), equalTo(5));
+		assertFalse(settings.isDedicatedExecutor());
+
+		AdmissionControl ac = AdmissionControl.getInstance();
+		ac.configure(defaults, null);
+		try {
+			assertTrue(ac.getBulkhead(null, "/c1") == null);
+			ac.configure(new BulkheadSettings(true, 4, 0, 0, false, false, 1), null);
+			Bulkhead b = ac.getBulkhead(null, "/c1");
+			assertTrue(b != null && b == ac.getBulkhead(null, "/c1"));
+			assertThat(ac.getBulkheads().size(), equalTo(1));
+		} finally {
+			ac.configure(BulkheadSettings.DISABLED, null);
+		}
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.PaxWebConfig;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GzipResponseWrapperTest {
+
+	private final CompressionSettings settings = new CompressionSettings(true,
+			Collections.singleton("text/*"), Collections.singleton("text/event-stream"), 100, Deflater.DEFAULT_COMPRESSION);
+
+	@Test
+	public void largeResponseIsCompressed() throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		HttpServletResponse res = response(body, "text/plain;charset=UTF-8");
+
+		GzipResponseWrapper wrapper = new GzipResponseWrapper(res, settings, new DeflaterPool(-1, 1));
+		wrapper.setContentLength(1000);
+		PrintWriter writer = wrapper.getWriter();
+		for (int i = 0; i < 100; i++) {
+			writer.print("0123456789");
+		}
+		wrapper.finish();
+
+		verify(res).setHeader("Content-Encoding", "gzip");
+		verify(res, never()).setContentLengthLong(1000L);
+		assertTrue(body.size() < 1000);
+		assertThat(gunzip(body.toByteArray()).length(), equalTo(1000));
+	}
+
+	@Test
+	public void smallResponseIsNotCompressed() throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		HttpServletResponse res = response(body, "text/plain");
+
+		GzipResponseWrapper wrapper = new GzipResponseWrapper(res, settings, new DeflaterPool(-1, 1));
+		wrapper.getOutputStream().write("hello".getBytes(StandardCharsets.US_ASCII));
+		wrapper.finish();
+
+		verify(res, never()).setHeader("Content-Encoding", "gzip");
+		verify(res).setContentLength(5);
+		assertThat(new String(body.toByteArray(), StandardCharsets.US_ASCII), equalTo("hello"));
+	}
+
+	@Test
+	public void excludedTypeIsNotCompressed() throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		HttpServletResponse res = response(body, "text/event-stream");
+
+		GzipResponseWrapper wrapper = new GzipResponseWrapper(res, settings, new DeflaterPool(-1, 1));
+		wrapper.getOutputStream().write(new byte[200]);
+		wrapper.getOutputStream().flush();
+		wrapper.finish();
+
+		verify(res, never()).setHeader(anyString(), anyString());
+		assertThat(body.size(), equalTo(200));
+	}
+
+	@Test
+	public void flushedAndPooledStreams() throws IOException {
+		DeflaterPool pool = new DeflaterPool(1, 1);
+		for (int n = 0; n < 2; n++) {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			GzipResponseWrapper wrapper = new GzipResponseWrapper(response(body, "text/html"), settings, pool);
+			ServletOutputStream out = wrapper.getOutputStream();
+			out.write("<html>".getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+			out.write("</html>".getBytes(StandardCharsets.US_ASCII));
+			wrapper.finish();
+			assertThat(gunzip(body.toByteArray()), equalTo("<html></html>"));
+		}
+	}
+
+	@Test
+	public void asyncResponseIsFinishedBeforeCompletion() throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		HttpServletResponse res = response(body, "text/plain");
+		HttpServletRequest req = mock(HttpServletRequest.class);
+		AsyncContext asyncContext = mock(AsyncContext.class);
+		when(req.startAsync()).thenReturn(asyncContext);
+		doAnswer(invocation -> {
+			// container may close the output right after complete()
+			assertThat(gunzip(body.toByteArray()).length(), equalTo(400));
+			return null;
+		}).when(asyncContext).complete();
+
+		GzipResponseWrapper wrapper = new GzipResponseWrapper(res, settings, new DeflaterPool(-1, 1));
+		HttpServletRequest request = wrapper.wrapRequest(req);
+		wrapper.getOutputStream().write(new byte[200]);
+		AsyncContext context = request.startAsync();
+		wrapper.getOutputStream().write(new byte[200]);
+		context.complete();
+
+		verify(asyncContext).complete();
+	}
+
+	@Test
+	public void strongEtagIsWeakened() throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		HttpServletResponse res = response(body, "text/plain");
+		when(res.getHeader("ETag")).thenReturn("\"v1\"");
+
+		GzipResponseWrapper wrapper = new GzipResponseWrapper(res, settings, new DeflaterPool(-1, 1));
+		wrapper.getOutputStream().write(new byte[200]);
+		wrapper.finish();
+
+		verify(res).setHeader("ETag", "W/\"v1\"");
+		verify(res).addHeader("Vary", "Accept-Encoding");
+	}
+
+	@Test
+	public void contextOverrides() {
+		Map<String, String> params = new HashMap<>();
+		assertTrue(settings.withContextParams(params) == settings);
+		params.put(PaxWebConfig.PID_CFG_COMPRESSION_ENABLED, "false");
+		params.put(PaxWebConfig.PID_CFG_COMPRESSION_MIN_SIZE, "x");
+		CompressionSettings cs = settings.withContextParams(params);
+		assertFalse(cs.isEnabled());
+		assertThat(cs.getMinSize(), equalTo(100));
+		assertTrue(cs.getDefaults() == settings);
+		assertTrue(cs.isCompressible("TEXT/CSS; charset=UTF-8"));
+		assertFalse(cs.isCompressible("application/octet-stream"));
+	}
+
+	@Test
+	public void acceptEncoding() {
+		assertTrue(ResponseCompression.acceptsGzip("gzip, deflate, br"));
+		assertTrue(ResponseCompression.acceptsGzip("deflate;q=1.0, *;q=0.5"));
+		assertFalse(ResponseCompression.acceptsGzip("gzip;q=0, deflate"));
+		assertFalse(ResponseCompression.acceptsGzip("identity"));
+		assertFalse(ResponseCompression.acceptsGzip(null));
+	}
+
+	private HttpServletResponse response(ByteArrayOutputStream body, String contentType) throws IOException {
+		HttpServletResponse res = mock(HttpServletResponse.class);
+		when(res.getStatus()).thenReturn(200);
+		when(res.getContentType()).thenReturn(contentType);
+		when(res.getCharacterEncoding()).thenReturn("UTF-8");
+		when(res.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+			}
+
+			@Override
+			public void write(int b) {
+				body.write(b);
+			}
+		});
+		return res;
+	}
+
+	private String gunzip(byte[] data) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+			byte[] buf = new byte[256];
+			int n;
+			while ((n = in.read(buf)) > 0) {
+				result.write(buf, 0, n);
+			}
+		}
+		return new String(result.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.metrics;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletRequest;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ElementMetricsTest {
+
+	@Test
+	public void nestedTimeIsSubtracted() throws Exception {
+		ElementMetrics filter = new ElementMetrics("", "default", ElementType.FILTER, "f");
+		ElementMetrics servlet = new ElementMetrics("", "default", ElementType.SERVLET, "s");
+
+		filter.start();
+		servlet.start();
+		Thread.sleep(20);
+		servlet.stop();
+		filter.stop();
+
+		assertTrue(servlet.getHistogram().getMax() >= 20_000_000L);
+		assertTrue(filter.getHistogram().getMax() < 20_000_000L);
+	}
+
+	@Test
+	public void synchronousRequest() {
+		ElementMetrics metrics = new ElementMetrics("", "default", ElementType.SERVLET, "s");
+		ServletRequest request = mock(ServletRequest.class);
+
+		metrics.start();
+		metrics.stop(request);
+
+		assertThat(metrics.getHistogram().getCount(), equalTo(1L));
+		verify(request, never()).getAsyncContext();
+	}
+
+	@Test
+	public void asynchronousRequestIsRecordedWhenCompleted() throws Exception {
+		ElementMetrics metrics = new ElementMetrics("", "default", ElementType.SERVLET, "s");
+		ServletRequest request = mock(ServletRequest.class);
+		AsyncContext asyncContext = mock(AsyncContext.class);
+		when(request.isAsyncStarted()).thenReturn(true);
+		when(request.getAsyncContext()).thenReturn(asyncContext);
+
+		metrics.start();
+		metrics.stop(request);
+
+		// not recorded until the request completes
+		assertThat(metrics.getHistogram().getCount(), equalTo(0L));
+		ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+		verify(asyncContext).addListener(listener.capture());
+		ArgumentCaptor<Object> timer = ArgumentCaptor.forClass(Object.class);
+		verify(request).setAttribute(any(String.class), timer.capture());
+
+		// ASYNC dispatch of the same servlet - already timed
+		when(request.getAttribute(any(String.class))).thenReturn(timer.getValue());
+		metrics.start();
+		Thread.sleep(20);
+		metrics.stop(request);
+		assertThat(metrics.getHistogram().getCount(), equalTo(0L));
+
+		listener.getValue().onComplete(new AsyncEvent(asyncContext));
+		assertThat(metrics.getHistogram().getCount(), equalTo(1L));
+		// the time includes all the dispatches
+		assertTrue(metrics.getHistogram().getMax() >= 20_000_000L);
+	}
+
+	@Test
+	public void asyncListenerIsRegisteredAgain() throws Exception {
+		ElementMetrics metrics = new ElementMetrics("", "default", ElementType.SERVLET, "s");
+		ServletRequest request = mock(ServletRequest.class);
+		AsyncContext asyncContext = mock(AsyncContext.class);
+		when(request.isAsyncStarted()).thenReturn(true);
+		when(request.getAsyncContext()).thenReturn(asyncContext);
+
+		metrics.start();
+		metrics.stop(request);
+
+		ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+		verify(asyncContext).addListener(listener.capture());
+
+		AsyncContext nextContext = mock(AsyncContext.class);
+		listener.getValue().onStartAsync(new AsyncEvent(nextContext));
+		verify(nextContext).addListener(eq(listener.getValue()));
+	}
+
+}
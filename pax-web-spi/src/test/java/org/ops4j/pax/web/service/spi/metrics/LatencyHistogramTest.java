@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void bucketsAreContinuous() {
+		for (long v = 0; v < 100_000; v++) {
+			int index = LatencyHistogram.index(v);
+			assertTrue(LatencyHistogram.highestEquivalentValue(index) >= v);
+			if (index > 0) {
+				assertTrue(LatencyHistogram.highestEquivalentValue(index - 1) < v);
+			}
+		}
+		assertThat(LatencyHistogram.index(Long.MAX_VALUE), equalTo(959));
+	}
+
+	@Test
+	public void percentiles() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			h.record(TimeUnit.MICROSECONDS.toNanos(i));
+		}
+		assertThat(h.getCount(), equalTo(1000L));
+		assertThat(h.getMax(), equalTo(1_000_000L));
+		assertWithin(h.getValueAtPercentile(50d), 500_000L);
+		assertWithin(h.getValueAtPercentile(99d), 990_000L);
+		assertThat(h.getValueAtPercentile(100d), equalTo(1_000_000L));
+		assertWithin((long) h.getMean(), 500_500L);
+
+		h.reset();
+		assertThat(h.getCount(), equalTo(0L));
+		assertThat(h.getValueAtPercentile(99d), equalTo(0L));
+	}
+
+	@Test
+	public void nestedElementsRecordOwnTime() throws Exception {
+		WebMetricsRegistry registry = WebMetricsRegistry.getInstance();
+		assertTrue(registry.getElementMetrics("/c", "default", ElementType.FILTER, "f") == null);
+		registry.setEnabled(true);
+		try {
+			ElementMetrics filter = registry.getElementMetrics("/c", "default", ElementType.FILTER, "f");
+			ElementMetrics servlet = registry.getElementMetrics("/c", "default", ElementType.SERVLET, "s");
+			filter.start();
+			try {
+				servlet.start();
+				try {
+					Thread.sleep(50);
+				} finally {
+					servlet.stop();
+				}
+			} finally {
+				filter.stop();
+			}
+			assertThat(filter.getHistogram().getCount(), equalTo(1L));
+			assertTrue(servlet.getHistogram().getMax() >= TimeUnit.MILLISECONDS.toNanos(50));
+			assertTrue(filter.getHistogram().getMax() < TimeUnit.MILLISECONDS.toNanos(20));
+			assertThat(registry.getElementMetrics().size(), equalTo(2));
+		} finally {
+			registry.setEnabled(false);
+			registry.reset();
+		}
+	}
+
+	@Test
+	public void metricsAreRegisteredOnlyWhenEnabledAndRemovedWithElements() {
+		WebMetricsRegistry registry = WebMetricsRegistry.getInstance();
+		OsgiContextModel ocm = new OsgiContextModel(null, 0, 0L, true);
+		ocm.setName("default");
+		ocm.setContextPath("/c");
+		assertTrue(registry.getElementMetrics(ocm, "/c", ElementType.SERVLET, "s") == null);
+		registry.setEnabled(true);
+		try {
+			ElementMetrics servlet = registry.getElementMetrics(ocm, "/c", ElementType.SERVLET, "s");
+			ElementMetrics security = registry.getElementMetrics(ocm, "/c", ElementType.SECURITY, "handleSecurity");
+			assertTrue(servlet == registry.getElementMetrics(ocm, "/c", ElementType.SERVLET, "s"));
+			servlet.start();
+			servlet.stop();
+			security.start();
+			security.stop();
+			assertThat(registry.getElementMetrics().size(), equalTo(2));
+
+			registry.unregister(ocm, ElementType.SERVLET, "s");
+			assertThat(registry.getElementMetrics().size(), equalTo(1));
+			assertTrue("Servlet registered again gets new metrics",
+					servlet != registry.getElementMetrics(ocm, "/c", ElementType.SERVLET, "s"));
+
+			registry.unregister(ocm);
+			assertThat(registry.getElementMetrics().size(), equalTo(0));
+		} finally {
+			registry.setEnabled(false);
+			registry.reset();
+		}
+	}
+
+	private void assertWithin(long actual, long expected) {
+		assertTrue(actual + " vs " + expected, Math.abs(actual - expected) <= expected / 16);
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.model;
+
+import javax.servlet.http.HttpServlet;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.spi.model.elements.FilterModel;
+import org.ops4j.pax.web.service.spi.model.elements.ServletModel;
+import org.osgi.service.http.runtime.dto.DTOConstants;
+import org.osgi.service.http.runtime.dto.RuntimeDTO;
+import org.osgi.service.http.runtime.dto.ServletContextDTO;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RuntimeSnapshotTest {
+
+	@Test
+	public void emptySnapshot() {
+		RuntimeSnapshot snapshot = new RuntimeSnapshot();
+		assertThat(snapshot.getChangeCount(), equalTo(0L));
+		assertThat(snapshot.getRuntimeDTO().servletContextDTOs.length, equalTo(0));
+		assertFalse("Nothing to publish", snapshot.publish());
+	}
+
+	@Test
+	public void unchangedContextsAreShared() {
+		RuntimeSnapshot snapshot = new RuntimeSnapshot();
+		OsgiContextModel c1 = context("c1", "/c1", 1L);
+		OsgiContextModel c2 = context("c2", "/c2", 2L);
+		snapshot.contextAdded(c1);
+		snapshot.contextAdded(c2);
+		assertTrue(snapshot.publish());
+		assertThat(snapshot.getChangeCount(), equalTo(1L));
+
+		RuntimeDTO before = snapshot.getRuntimeDTO();
+		assertThat(before.servletContextDTOs.length, equalTo(2));
+		assertThat(before.servletContextDTOs[0].name, equalTo("c1"));
+		assertThat(before.servletContextDTOs[1].contextPath, equalTo("/c2"));
+
+		ServletModel sm = new ServletModel.Builder("s1")
+				.withUrlPatterns(new String[] { "/s1/*" })
+				.withServletClass(HttpServlet.class)
+				.withServiceRankAndId(0, 10L)
+				.withOsgiContextModel(c2)
+				.build();
+		snapshot.servletAdded(sm, false);
+		assertTrue(snapshot.publish());
+		assertThat(snapshot.getChangeCount(), equalTo(2L));
+
+		RuntimeDTO after = snapshot.getRuntimeDTO();
+		assertThat("Unchanged context reused", after.servletContextDTOs[0], sameInstance(before.servletContextDTOs[0]));
+		ServletContextDTO scDTO = after.servletContextDTOs[1];
+		assertThat(scDTO.servletDTOs.length, equalTo(1));
+		assertThat(scDTO.servletDTOs[0].name, equalTo("s1"));
+		assertThat(scDTO.servletDTOs[0].serviceId, equalTo(10L));
+		assertThat(scDTO.servletDTOs[0].servletContextId, equalTo(2L));
+		assertThat("Previous snapshot not affected", before.servletContextDTOs[1].servletDTOs.length, equalTo(0));
+	}
+
+	@Test
+	public void disabledElementsAreFailures() {
+		RuntimeSnapshot snapshot = new RuntimeSnapshot();
+		OsgiContextModel c1 = context("c1", "/", 1L);
+		snapshot.contextAdded(c1);
+
+		FilterModel fm = new FilterModel.Builder("f1")
+				.withUrlPatterns(new String[] { "/*" })
+				.withServiceRankAndId(0, 20L)
+				.withOsgiContextModel(c1)
+				.build();
+		snapshot.filterAdded(fm, true);
+		snapshot.publish();
+
+		RuntimeDTO dto = snapshot.getRuntimeDTO();
+		assertThat(dto.servletContextDTOs[0].filterDTOs.length, equalTo(0));
+		assertThat(dto.failedFilterDTOs.length, equalTo(1));
+		assertThat(dto.failedFilterDTOs[0].failureReason, equalTo(DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE));
+
+		snapshot.filterEnabled(fm, true);
+		snapshot.publish();
+		dto = snapshot.getRuntimeDTO();
+		assertThat(dto.servletContextDTOs[0].filterDTOs.length, equalTo(1));
+		assertThat(dto.servletContextDTOs[0].filterDTOs[0].name, equalTo("f1"));
+		assertThat(dto.failedFilterDTOs.length, equalTo(0));
+
+		snapshot.filterRemoved(fm);
+		snapshot.contextRemoved(c1);
+		snapshot.publish();
+		assertThat(snapshot.getRuntimeDTO().servletContextDTOs.length, equalTo(0));
+		assertThat(snapshot.getChangeCount(), equalTo(3L));
+	}
+
+	private OsgiContextModel context(String name, String path, long serviceId) {
+		OsgiContextModel ocm = new OsgiContextModel(null, 0, serviceId, true);
+		ocm.setName(name);
+		ocm.setContextPath(path);
+		return ocm;
+	}
+
+}
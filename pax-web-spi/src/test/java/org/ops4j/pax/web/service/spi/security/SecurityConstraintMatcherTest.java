@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.security;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.spi.model.elements.SecurityConstraintMappingModel;
+import org.ops4j.pax.web.service.spi.security.SecurityConstraintMatcher.DataConstraint;
+import org.ops4j.pax.web.service.spi.security.SecurityConstraintMatcher.Decision;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SecurityConstraintMatcherTest {
+
+	private static SecurityConstraintMappingModel constraint(String url, String method, String dc, String... roles) {
+		return new SecurityConstraintMappingModel(null, "c", method, url, dc, roles != null,
+				roles == null ? Collections.emptyList() : Arrays.asList(roles));
+	}
+
+	@Test
+	public void emptyMatcher() {
+		SecurityConstraintMatcher matcher = SecurityConstraintMatcher.compile(Collections.emptyList());
+		assertTrue(matcher.isEmpty());
+		assertThat(matcher.match("/anything", "GET"), sameInstance(Decision.UNCONSTRAINED));
+	}
+
+	@Test
+	public void patternPrecedence() {
+		SecurityConstraintMatcher matcher = SecurityConstraintMatcher.compile(Arrays.asList(
+				constraint("/", null, null, "default"),
+				constraint("*.jsp", null, null, "jsp"),
+				constraint("/admin/*", null, null, "admin"),
+				constraint("/admin/users/*", null, null, "users"),
+				constraint("/admin/users/list", null, null, "exact"),
+				constraint("", null, null, "root")
+		));
+
+		assertThat(matcher.match("/", "GET").getRoles(), equalTo(Collections.singleton("root")));
+		assertThat(matcher.match("/index.html", "GET").getRoles(), equalTo(Collections.singleton("default")));
+		assertThat(matcher.match("/index.jsp", "GET").getRoles(), equalTo(Collections.singleton("jsp")));
+		assertThat(matcher.match("/admin", "GET").getRoles(), equalTo(Collections.singleton("admin")));
+		assertThat(matcher.match("/admin/x.jsp", "GET").getRoles(), equalTo(Collections.singleton("admin")));
+		assertThat(matcher.match("/admin/users", "GET").getRoles(), equalTo(Collections.singleton("users")));
+		assertThat(matcher.match("/admin/users/a/b", "GET").getRoles(), equalTo(Collections.singleton("users")));
+		assertThat(matcher.match("/admin/users/list", "GET").getRoles(), equalTo(Collections.singleton("exact")));
+		assertThat(matcher.match("/administrator", "GET").getRoles(), equalTo(Collections.singleton("default")));
+	}
+
+	@Test
+	public void methodsAndCombination() {
+		SecurityConstraintMatcher matcher = SecurityConstraintMatcher.compile(Arrays.asList(
+				constraint("/app/*", null, "CONFIDENTIAL", "r1"),
+				constraint("/app/*", "POST", "NONE", "r2"),
+				constraint("/app/*", "DELETE", null),
+				constraint("/open/*", null, null, "r1"),
+				constraint("/open/*", null, null, (String[]) null)
+		));
+
+		Decision get = matcher.match("/app/x", "GET");
+		assertTrue(get.isAuthenticationRequired());
+		assertThat(get.getRoles(), equalTo(Collections.singleton("r1")));
+		assertThat(get.getDataConstraint(), equalTo(DataConstraint.CONFIDENTIAL));
+
+		Decision post = matcher.match("/app/x", "POST");
+		assertThat(post.getRoles(), equalTo(new LinkedHashSet<>(Arrays.asList("r2", "r1"))));
+		assertThat(post.getDataConstraint(), equalTo(DataConstraint.NONE));
+
+		// auth-constraint without roles precludes access
+		assertTrue(matcher.match("/app/x", "DELETE").isExcluded());
+
+		// constraint without auth-constraint allows unauthenticated access
+		Decision open = matcher.match("/open/x", "GET");
+		assertFalse(open.isExcluded());
+		assertFalse(open.isAuthenticationRequired());
+
+		assertThat(matcher.match("/other", "GET"), sameInstance(Decision.UNCONSTRAINED));
+	}
+
+	@Test
+	public void httpMethodOmissions() {
+		SecurityConstraintMappingModel omitting = constraint("/app/*", null, null, "r1");
+		omitting.setHttpMethodOmissions(Arrays.asList("GET", "head"));
+		SecurityConstraintMatcher matcher = SecurityConstraintMatcher.compile(Arrays.asList(
+				omitting,
+				constraint("/app/*", "HEAD", null, "r2")
+		));
+
+		// omitted and not constrained otherwise
+		assertFalse(matcher.match("/app/x", "GET").isAuthenticationRequired());
+		// omitted, but constrained by other constraint
+		assertThat(matcher.match("/app/x", "HEAD").getRoles(), equalTo(Collections.singleton("r2")));
+		// all other methods
+		assertThat(matcher.match("/app/x", "POST").getRoles(), equalTo(Collections.singleton("r1")));
+		assertThat(matcher.match("/app/x", "PUT").getRoles(), equalTo(Collections.singleton("r1")));
+	}
+
+	@Test
+	public void specialRoleNames() {
+		SecurityConstraintMatcher matcher = SecurityConstraintMatcher.compile(Arrays.asList(
+				constraint("/all/*", null, null, "*"),
+				constraint("/any/*", null, null, "**"),
+				constraint("/admin/*", null, null, "admin")
+		), Collections.singleton("user"));
+
+		// "*" means all the roles defined in the application
+		Decision all = matcher.match("/all/x", "GET");
+		assertThat(all.getRoles(), equalTo(new LinkedHashSet<>(Arrays.asList("user", "admin"))));
+		assertFalse(all.isAnyAuthenticatedUser());
+
+		// "**" means any authenticated user
+		Decision any = matcher.match("/any/x", "GET");
+		assertTrue(any.isAuthenticationRequired());
+		assertTrue(any.isAnyAuthenticatedUser());
+		assertTrue(any.getRoles().isEmpty());
+
+		// "**" declared as application role is just a role name
+		matcher = SecurityConstraintMatcher.compile(Collections.singletonList(constraint("/any/*", null, null, "**")),
+				Collections.singleton("**"));
+		any = matcher.match("/any/x", "GET");
+		assertFalse(any.isAnyAuthenticatedUser());
+		assertThat(any.getRoles(), equalTo(Collections.singleton("**")));
+	}
+
+}
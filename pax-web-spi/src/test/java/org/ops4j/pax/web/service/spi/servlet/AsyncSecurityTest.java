@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.util.concurrent.CompletableFuture;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.ops4j.pax.web.service.WebContainerContext;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AsyncSecurityTest {
+
+	@Test
+	public void synchronousContext() {
+		HttpServletRequest req = request();
+		HttpServletResponse res = mock(HttpServletResponse.class);
+		WebContainerContext context = mock(WebContainerContext.class);
+		when(context.handleSecurityAsync(req, res)).thenReturn(null);
+
+		assertFalse(AsyncSecurity.suspend(context, null, req, res));
+		verify(req, never()).startAsync();
+	}
+
+	@Test
+	public void grantedRequestIsDispatched() {
+		HttpServletRequest req = request();
+		HttpServletResponse res = mock(HttpServletResponse.class);
+		AsyncContext asyncContext = mock(AsyncContext.class);
+		when(req.startAsync()).thenReturn(asyncContext);
+		WebContainerContext context = mock(WebContainerContext.class);
+		CompletableFuture<Boolean> check = new CompletableFuture<>();
+		when(context.handleSecurityAsync(req, res)).thenReturn(check);
+
+		assertTrue(AsyncSecurity.suspend(context, null, req, res));
+		verify(asyncContext, never()).dispatch();
+
+		check.complete(true);
+		ArgumentCaptor<Object> grant = ArgumentCaptor.forClass(Object.class);
+		verify(req).setAttribute(eq(AsyncSecurity.GRANTED_ATTRIBUTE), grant.capture());
+		verify(asyncContext).dispatch();
+		verify(context, never()).finishSecurity(req, res);
+
+		// second pass
+		when(req.getDispatcherType()).thenReturn(DispatcherType.ASYNC);
+		when(req.getAttribute(AsyncSecurity.GRANTED_ATTRIBUTE)).thenReturn(grant.getValue());
+		assertFalse("Grant is bound to the context", AsyncSecurity.isGranted(mock(WebContainerContext.class), null, req));
+		assertTrue(AsyncSecurity.isGranted(context, null, req));
+		verify(req, times(2)).removeAttribute(AsyncSecurity.GRANTED_ATTRIBUTE);
+		assertFalse("Grant is accepted once", AsyncSecurity.isGranted(context, null, req));
+	}
+
+	@Test
+	public void deniedRequestIsCompleted() throws Exception {
+		HttpServletRequest req = request();
+		HttpServletResponse res = mock(HttpServletResponse.class);
+		AsyncContext asyncContext = mock(AsyncContext.class);
+		when(req.startAsync()).thenReturn(asyncContext);
+		WebContainerContext context = mock(WebContainerContext.class);
+		when(context.handleSecurityAsync(req, res)).thenReturn(CompletableFuture.completedFuture(false));
+
+		assertTrue(AsyncSecurity.suspend(context, null, req, res));
+		verify(res).sendError(HttpServletResponse.SC_FORBIDDEN);
+		verify(context).finishSecurity(req, res);
+		verify(asyncContext).complete();
+		verify(asyncContext, never()).dispatch();
+	}
+
+	@Test
+	public void timeoutWinsOverLateResult() throws Exception {
+		HttpServletRequest req = request();
+		HttpServletResponse res = mock(HttpServletResponse.class);
+		AsyncContext asyncContext = mock(AsyncContext.class);
+		when(req.startAsync()).thenReturn(asyncContext);
+		WebContainerContext context = mock(WebContainerContext.class);
+		CompletableFuture<Boolean> check = new CompletableFuture<>();
+		when(context.handleSecurityAsync(req, res)).thenReturn(check);
+
+		assertTrue(AsyncSecurity.suspend(context, null, req, res));
+		ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+		verify(asyncContext).addListener(listener.capture());
+		listener.getValue().onTimeout(new AsyncEvent(asyncContext));
+		verify(res).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+
+		check.complete(true);
+		verify(asyncContext, never()).dispatch();
+		verify(res, never()).sendError(HttpServletResponse.SC_FORBIDDEN);
+	}
+
+	@Test
+	public void forgedGrantIsIgnored() {
+		WebContainerContext context = mock(WebContainerContext.class);
+		HttpServletRequest req = mock(HttpServletRequest.class);
+		when(req.getDispatcherType()).thenReturn(DispatcherType.ASYNC);
+		when(req.getAttribute(AsyncSecurity.GRANTED_ATTRIBUTE)).thenReturn(Boolean.TRUE);
+		assertFalse(AsyncSecurity.isGranted(context, null, req));
+
+		when(req.getDispatcherType()).thenReturn(DispatcherType.REQUEST);
+		assertFalse(AsyncSecurity.isGranted(context, null, req));
+	}
+
+	private static HttpServletRequest request() {
+		HttpServletRequest req = mock(HttpServletRequest.class);
+		when(req.getDispatcherType()).thenReturn(DispatcherType.REQUEST);
+		when(req.isAsyncSupported()).thenReturn(true);
+		return req;
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NonBlockingResourceWriterTest {
+
+	@Test
+	public void applicability() {
+		HttpServletRequest req = mock(HttpServletRequest.class);
+		HttpServletResponse res = mock(HttpServletResponse.class);
+		when(req.getDispatcherType()).thenReturn(DispatcherType.REQUEST);
+		when(req.isAsyncSupported()).thenReturn(true);
+
+		assertTrue(NonBlockingResourceWriter.isApplicable(req, res, 1024L, 1024L));
+		assertFalse(NonBlockingResourceWriter.isApplicable(req, res, 1023L, 1024L));
+		assertFalse(NonBlockingResourceWriter.isApplicable(req, res, 1024L, -1L));
+		assertFalse(NonBlockingResourceWriter.isApplicable(req, new HttpServletResponseWrapper(res), 1024L, 0L));
+
+		when(req.getDispatcherType()).thenReturn(DispatcherType.INCLUDE);
+		assertFalse(NonBlockingResourceWriter.isApplicable(req, res, 1024L, 0L));
+
+		when(req.getDispatcherType()).thenReturn(DispatcherType.REQUEST);
+		when(req.isAsyncStarted()).thenReturn(true);
+		assertFalse(NonBlockingResourceWriter.isApplicable(req, res, 1024L, 0L));
+	}
+
+	@Test
+	public void writesUntilOutputIsNotReady() throws Exception {
+		HttpServletRequest req = mock(HttpServletRequest.class);
+		HttpServletResponse res = mock(HttpServletResponse.class);
+		AsyncContext asyncContext = mock(AsyncContext.class);
+		ServletOutputStream out = mock(ServletOutputStream.class);
+		when(req.startAsync(req, res)).thenReturn(asyncContext);
+		when(res.getOutputStream()).thenReturn(out);
+
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		doAnswer(i -> {
+			written.write(i.getArgument(0), i.getArgument(1), i.getArgument(2));
+			return null;
+		}).when(out).write(any(byte[].class), anyInt(), anyInt());
+
+		byte[] content = new byte[40 * 1024];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+		NonBlockingResourceWriter.write(req, res, new ByteArrayInputStream(content));
+		verify(asyncContext).setTimeout(0L);
+		ArgumentCaptor<WriteListener> listener = ArgumentCaptor.forClass(WriteListener.class);
+		verify(out).setWriteListener(listener.capture());
+
+		// one chunk, then the output is congested
+		when(out.isReady()).thenReturn(true, false);
+		listener.getValue().onWritePossible();
+		assertThat(written.size(), equalTo(16 * 1024));
+		verify(asyncContext, never()).complete();
+
+		when(out.isReady()).thenReturn(true);
+		listener.getValue().onWritePossible();
+		assertThat(written.toByteArray(), equalTo(content));
+		verify(asyncContext, times(1)).complete();
+	}
+
+}
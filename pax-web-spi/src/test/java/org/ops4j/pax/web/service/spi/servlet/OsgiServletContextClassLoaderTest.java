@@ -0,0 +1,176 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.framework.wiring.BundleRequirement;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWiring;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OsgiServletContextClassLoaderTest {
+
+	@Test
+	public void classesAreLoadedOnlyFromBundlesWithThePackage() throws Exception {
+		Bundle b1 = bundle(wiring("org/a/A.class"));
+		Bundle b2 = bundle(wiring("org/b/B.class"));
+		doReturn(String.class).when(b1).loadClass("org.a.A");
+		doReturn(Integer.class).when(b2).loadClass("org.b.B");
+
+		OsgiServletContextClassLoader loader = loader(b1, b2);
+
+		assertThat(loader.loadClass("org.a.A"), sameInstance(String.class));
+		assertThat(loader.loadClass("org.b.B"), sameInstance(Integer.class));
+		verify(b2, never()).loadClass("org.a.A");
+		verify(b1, never()).loadClass("org.b.B");
+	}
+
+	@Test
+	public void missingClassesAreCachedUntilInvalidated() throws Exception {
+		BundleWiring wiring = wiring("org/a/A.class");
+		Bundle b1 = bundle(wiring);
+
+		OsgiServletContextClassLoader loader = loader(b1);
+
+		missing(loader, "org.a.Missing");
+		missing(loader, "org.a.Missing");
+		verify(b1, times(1)).loadClass("org.a.Missing");
+
+		// bundle refresh
+		when(wiring.isCurrent()).thenReturn(false);
+		missing(loader, "org.a.Missing");
+		verify(b1, times(2)).loadClass("org.a.Missing");
+
+		loader.invalidate();
+		missing(loader, "org.a.Missing");
+		verify(b1, times(3)).loadClass("org.a.Missing");
+	}
+
+	@Test
+	public void missingClassesAreNotCachedWithDynamicImports() throws Exception {
+		Bundle b1 = bundle(wiring("org/a/A.class"));
+		BundleWiring dynamic = wiring("org/b/B.class");
+		BundleRequirement requirement = mock(BundleRequirement.class);
+		when(requirement.getDirectives()).thenReturn(Collections.singletonMap(Constants.RESOLUTION_DIRECTIVE,
+				PackageNamespace.RESOLUTION_DYNAMIC));
+		when(dynamic.getRevision().getDeclaredRequirements(PackageNamespace.PACKAGE_NAMESPACE))
+				.thenReturn(Collections.singletonList(requirement));
+		Bundle b2 = bundle(dynamic);
+
+		OsgiServletContextClassLoader loader = loader(b1, b2);
+
+		missing(loader, "org.c.C");
+		missing(loader, "org.c.C");
+		verify(b2, times(2)).loadClass("org.c.C");
+	}
+
+	@Test
+	public void indexIsRebuiltWhenBundleIsResolved() throws Exception {
+		Bundle b1 = bundle(wiring("org/a/A.class"));
+		Bundle b2 = bundle(null);
+		when(b2.getState()).thenReturn(Bundle.INSTALLED);
+
+		OsgiServletContextClassLoader loader = loader(b1, b2);
+
+		// unresolved bundle is always checked and the miss is not cached
+		missing(loader, "org.b.B");
+		missing(loader, "org.b.B");
+		verify(b2, times(2)).loadClass("org.b.B");
+
+		BundleWiring wiring = wiring("org/b/B.class");
+		when(b2.getState()).thenReturn(Bundle.RESOLVED);
+		when(b2.adapt(BundleWiring.class)).thenReturn(wiring);
+		doReturn(Integer.class).when(b2).loadClass("org.b.B");
+
+		assertThat(loader.loadClass("org.b.B"), sameInstance(Integer.class));
+		verify(wiring).listResources(anyString(), anyString(), anyInt());
+	}
+
+	@Test
+	public void metaInfResourcesAreLookedUpInAllBundles() throws Exception {
+		Bundle b1 = bundle(wiring("org/a/A.class", "META-INF/services/org.a.Service"));
+		Bundle b2 = bundle(wiring("org/b/B.class"));
+		URL url = new URL("file:/services/org.a.Service");
+		when(b2.getResources("META-INF/services/org.a.Service")).thenReturn(Collections.enumeration(
+				Collections.singletonList(url)));
+
+		OsgiServletContextClassLoader loader = loader(b1, b2);
+
+		List<URL> urls = Collections.list(loader.getResources("META-INF/services/org.a.Service"));
+		assertTrue(urls.contains(url));
+		verify(b1).getResources("META-INF/services/org.a.Service");
+	}
+
+	private static OsgiServletContextClassLoader loader(Bundle... bundles) {
+		OsgiServletContextClassLoader loader = new OsgiServletContextClassLoader();
+		Arrays.stream(bundles).forEach(loader::addBundle);
+		loader.makeImmutable();
+		return loader;
+	}
+
+	private static Bundle bundle(BundleWiring wiring) throws Exception {
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getState()).thenReturn(Bundle.ACTIVE);
+		when(bundle.adapt(BundleWiring.class)).thenReturn(wiring);
+		doAnswer(i -> {
+			throw new ClassNotFoundException(i.getArgument(0));
+		}).when(bundle).loadClass(anyString());
+		return bundle;
+	}
+
+	private static BundleWiring wiring(String... localResources) {
+		BundleWiring wiring = mock(BundleWiring.class);
+		BundleRevision revision = mock(BundleRevision.class);
+		when(wiring.getRevision()).thenReturn(revision);
+		when(wiring.isCurrent()).thenReturn(true);
+		when(wiring.listResources(anyString(), anyString(), anyInt())).thenReturn(Arrays.asList(localResources));
+		when(wiring.getRequiredWires(isNull())).thenReturn(Collections.emptyList());
+		return wiring;
+	}
+
+	private static void missing(ClassLoader loader, String name) {
+		try {
+			loader.loadClass(name);
+			fail("Should not load " + name);
+		} catch (ClassNotFoundException e) {
+			assertThat(e.getMessage(), equalTo(name));
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.servlet;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RequestCompletionTest {
+
+	@Test
+	public void synchronousRequest() {
+		HttpServletRequest req = mock(HttpServletRequest.class);
+		AtomicInteger calls = new AtomicInteger();
+		assertFalse(RequestCompletion.whenComplete(req, calls::incrementAndGet));
+		assertThat(calls.get(), equalTo(1));
+	}
+
+	@Test
+	public void asynchronousRequestRunsActionOnce() throws Exception {
+		HttpServletRequest req = mock(HttpServletRequest.class);
+		AsyncContext asyncContext = mock(AsyncContext.class);
+		when(req.isAsyncStarted()).thenReturn(true);
+		when(req.getAsyncContext()).thenReturn(asyncContext);
+
+		AtomicInteger calls = new AtomicInteger();
+		assertTrue(RequestCompletion.whenComplete(req, calls::incrementAndGet));
+		assertThat(calls.get(), equalTo(0));
+
+		ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+		verify(asyncContext).addListener(listener.capture());
+		AsyncEvent event = new AsyncEvent(asyncContext);
+		listener.getValue().onTimeout(event);
+		listener.getValue().onComplete(event);
+		assertThat(calls.get(), equalTo(1));
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.IOException;
+import javax.servlet.ServletException;
+
+import org.apache.catalina.AccessLog;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+/**
+ * <p>{@link AccessLog} valve that only passes request data to Pax Web's asynchronous
+ * {@link org.ops4j.pax.web.service.spi.accesslog.AccessLog}.</p>
+ *
+ * <p>Like with {@link org.apache.catalina.valves.AccessLogValve}, {@link #invoke} only passes the request
+ * further and Tomcat calls {@link #log} after the request is processed.</p>
+ */
+public class PaxWebAccessLogValve extends ValveBase implements AccessLog {
+
+	private final org.ops4j.pax.web.service.spi.accesslog.AccessLog accessLog;
+
+	private boolean requestAttributesEnabled = false;
+
+	public PaxWebAccessLogValve(org.ops4j.pax.web.service.spi.accesslog.AccessLog accessLog) {
+		super(true);
+		this.accessLog = accessLog;
+	}
+
+	@Override
+	public void invoke(Request request, Response response) throws IOException, ServletException {
+		getNext().invoke(request, response);
+	}
+
+	@Override
+	public void log(Request request, Response response, long time) {
+		if (!getState().isAvailable()) {
+			return;
+		}
+		accessLog.log(request.getCoyoteRequest().getStartTime(), request.getRemoteAddr(), request.getRemoteUser(),
+				request.getMethod(), request.getRequestURI(), request.getQueryString(), request.getProtocol(),
+				response.getStatus(), response.getBytesWritten(false),
+				request.getHeader("Referer"), request.getHeader("User-Agent"));
+	}
+
+	@Override
+	public void setRequestAttributesEnabled(boolean requestAttributesEnabled) {
+		this.requestAttributesEnabled = requestAttributesEnabled;
+	}
+
+	@Override
+	public boolean getRequestAttributesEnabled() {
+		return requestAttributesEnabled;
+	}
+
+}
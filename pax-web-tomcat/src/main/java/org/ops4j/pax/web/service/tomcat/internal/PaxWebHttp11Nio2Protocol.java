@@ -15,36 +15,34 @@
  */
 package org.ops4j.pax.web.service.tomcat.internal;
 
-import java.util.concurrent.TimeUnit;
-
 import org.apache.coyote.http11.AbstractHttp11JsseProtocol;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.net.Nio2Channel;
 import org.apache.tomcat.util.net.Nio2Endpoint;
-import org.apache.tomcat.util.threads.TaskQueue;
-import org.apache.tomcat.util.threads.TaskThreadFactory;
-import org.apache.tomcat.util.threads.ThreadPoolExecutor;
 
 /**
- * Almost like {@link org.apache.coyote.http11.Http11Nio2Protocol}, but with a slightly changed {@link Nio2Endpoint}.
+ * Almost like {@link org.apache.coyote.http11.Http11Nio2Protocol}, but with a slightly changed {@link Nio2Endpoint}
+ * ({@link PaxWebNio2Endpoint}).
  */
 public class PaxWebHttp11Nio2Protocol extends AbstractHttp11JsseProtocol<Nio2Channel> {
 
 	private static final Log LOG = LogFactory.getLog(PaxWebHttp11Nio2Protocol.class);
 
 	public PaxWebHttp11Nio2Protocol() {
-		super(new Nio2Endpoint() {
-			@Override
-			public void createExecutor() {
-				TaskQueue taskqueue = new TaskQueue();
-				TaskThreadFactory tf = new PaxWebTaskThreadFactory(getName() + "-exec-", getDaemon(), getThreadPriority());
-				ThreadPoolExecutor executor = new ThreadPoolExecutor(getMinSpareThreads(), getMaxThreads(), 60, TimeUnit.SECONDS, taskqueue, tf);
-				setExecutor(executor);
-				internalExecutor = true;
-				taskqueue.setParent((ThreadPoolExecutor) executor);
-			}
-		});
+		super(new PaxWebNio2Endpoint());
+	}
+
+	/**
+	 * Whether the connector expects PROXY protocol header before HTTP (or TLS) data
+	 * @return
+	 */
+	public boolean isProxyProtocol() {
+		return ((PaxWebNio2Endpoint) getEndpoint()).isProxyProtocol();
+	}
+
+	public void setProxyProtocol(boolean proxyProtocol) {
+		((PaxWebNio2Endpoint) getEndpoint()).setProxyProtocol(proxyProtocol);
 	}
 
 	@Override
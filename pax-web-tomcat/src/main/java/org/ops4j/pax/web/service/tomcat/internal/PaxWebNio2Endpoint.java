@@ -0,0 +1,204 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.net.Nio2Endpoint;
+import org.apache.tomcat.util.threads.TaskQueue;
+import org.apache.tomcat.util.threads.TaskThreadFactory;
+import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+
+/**
+ * {@link Nio2Endpoint} using Pax Web thread factory and optionally consuming PROXY protocol header before
+ * the connection is processed by Tomcat.
+ */
+public class PaxWebNio2Endpoint extends Nio2Endpoint {
+
+	private static final Log LOG = LogFactory.getLog(PaxWebNio2Endpoint.class);
+
+	private boolean proxyProtocol = false;
+
+	public boolean isProxyProtocol() {
+		return proxyProtocol;
+	}
+
+	public void setProxyProtocol(boolean proxyProtocol) {
+		this.proxyProtocol = proxyProtocol;
+	}
+
+	@Override
+	public void createExecutor() {
+		TaskQueue taskqueue = new TaskQueue();
+		TaskThreadFactory tf = new PaxWebTaskThreadFactory(getName() + "-exec-", getDaemon(), getThreadPriority());
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(getMinSpareThreads(), getMaxThreads(), 60, TimeUnit.SECONDS, taskqueue, tf);
+		setExecutor(executor);
+		internalExecutor = true;
+		taskqueue.setParent((ThreadPoolExecutor) executor);
+	}
+
+	@Override
+	protected boolean setSocketOptions(AsynchronousSocketChannel socket) {
+		if (!proxyProtocol) {
+			return super.setSocketOptions(socket);
+		}
+		// the header is read asynchronously, so slow peers don't block the acceptor. Tomcat gets the
+		// connection only after the header is consumed
+		new ProxyHeaderReader(socket).start();
+		return true;
+	}
+
+	/**
+	 * Passes the connection (with addresses from PROXY header) to Tomcat.
+	 * @param socket
+	 * @param addresses
+	 * @param data bytes of the request read together with the header (may be {@code null})
+	 */
+	private void proxied(AsynchronousSocketChannel socket, InetSocketAddress[] addresses, ByteBuffer data) {
+		AsynchronousSocketChannel channel = addresses == null && data == null ? socket
+				: new ProxiedAsynchronousSocketChannel(socket, addresses == null ? null : addresses[0],
+						addresses == null ? null : addresses[1], data, getExecutor());
+		if (!super.setSocketOptions(channel)) {
+			reject(socket);
+		}
+	}
+
+	/**
+	 * Closes the connection that was never passed to Tomcat - just as acceptor does when
+	 * {@link #setSocketOptions(AsynchronousSocketChannel)} fails.
+	 * @param socket
+	 */
+	private void reject(AsynchronousSocketChannel socket) {
+		countDownConnection();
+		try {
+			socket.close();
+		} catch (IOException e) {
+			LOG.debug(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads PROXY header. Version 2 header has known length and is read without reading any byte of the actual
+	 * request. Version 1 header (which is never shorter than v2 signature) is read in chunks of up to
+	 * {@link ProxyProtocol#V1_MAX_LENGTH} bytes until {@code CRLF} is found - request bytes read after the header
+	 * are passed to Tomcat before the rest of the connection data.
+	 */
+	private class ProxyHeaderReader implements CompletionHandler<Integer, Void> {
+
+		private static final int SIGNATURE = 0;
+		private static final int V1_LINE = 1;
+		private static final int V2_HEADER = 2;
+		private static final int V2_ADDRESSES = 3;
+
+		private final AsynchronousSocketChannel socket;
+		private final ByteBuffer header = ByteBuffer.allocate(ProxyProtocol.V1_MAX_LENGTH);
+		private ByteBuffer addresses;
+		private int state = SIGNATURE;
+
+		ProxyHeaderReader(AsynchronousSocketChannel socket) {
+			this.socket = socket;
+		}
+
+		public void start() {
+			header.limit(ProxyProtocol.V2_SIGNATURE.length);
+			read(header);
+		}
+
+		private void read(ByteBuffer buffer) {
+			socket.read(buffer, getConnectionTimeout(), TimeUnit.MILLISECONDS, null, this);
+		}
+
+		@Override
+		public void completed(Integer result, Void attachment) {
+			if (result < 0) {
+				failed(new EOFException("Connection closed before PROXY protocol header was received"), null);
+				return;
+			}
+			ByteBuffer current = state == V2_ADDRESSES ? addresses : header;
+			if (state != V1_LINE && current.hasRemaining()) {
+				read(current);
+				return;
+			}
+			try {
+				switch (state) {
+					case SIGNATURE:
+						if (ProxyProtocol.isV2(header)) {
+							state = V2_HEADER;
+							header.limit(ProxyProtocol.V2_HEADER_LENGTH);
+						} else if (ProxyProtocol.isV1(header)) {
+							state = V1_LINE;
+							header.limit(header.capacity());
+						} else {
+							throw new IOException("Connection doesn't start with PROXY protocol header");
+						}
+						read(header);
+						break;
+					case V1_LINE:
+						int length = ProxyProtocol.v1Length(header);
+						if (length > 0) {
+							int end = header.position();
+							header.position(length);
+							InetSocketAddress[] v1 = ProxyProtocol.parseV1(header);
+							ByteBuffer data = null;
+							if (end > length) {
+								header.limit(end);
+								data = ByteBuffer.allocate(end - length);
+								data.put(header);
+								data.flip();
+							}
+							proxied(socket, v1, data);
+						} else if (header.position() == header.capacity()) {
+							throw new IOException("PROXY protocol v1 header is too long");
+						} else {
+							read(header);
+						}
+						break;
+					case V2_HEADER:
+						state = V2_ADDRESSES;
+						addresses = ByteBuffer.allocate(ProxyProtocol.v2AddressesLength(header));
+						if (addresses.hasRemaining()) {
+							read(addresses);
+						} else {
+							proxied(socket, ProxyProtocol.parseV2(header, addresses), null);
+						}
+						break;
+					default:
+						proxied(socket, ProxyProtocol.parseV2(header, addresses), null);
+						break;
+				}
+			} catch (IOException e) {
+				failed(e, null);
+			}
+		}
+
+		@Override
+		public void failed(Throwable exc, Void attachment) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Rejecting connection without valid PROXY protocol header: " + exc.getMessage(), exc);
+			}
+			reject(socket);
+		}
+	}
+
+}
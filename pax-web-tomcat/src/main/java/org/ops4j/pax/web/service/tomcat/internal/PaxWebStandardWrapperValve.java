@@ -21,6 +21,9 @@ import javax.servlet.ServletException;
 import org.apache.catalina.connector.Request;
 import org.apache.catalina.connector.Response;
 import org.apache.catalina.valves.ValveBase;
+import org.ops4j.pax.web.service.spi.metrics.ElementMetrics;
+import org.ops4j.pax.web.service.spi.metrics.ElementType;
+import org.ops4j.pax.web.service.spi.metrics.WebMetricsRegistry;
 
 import static org.ops4j.pax.web.service.tomcat.internal.PaxWebStandardContext.PAXWEB_STANDARD_WRAPPER;
 
@@ -38,6 +41,9 @@ public class PaxWebStandardWrapperValve extends ValveBase {
 	 */
 	private final PaxWebStandardContext realContext;
 
+	/** Metrics of the servlet - registered with first request processed when metrics are enabled */
+	private ElementMetrics metrics;
+
 	public PaxWebStandardWrapperValve(ValveBase next, PaxWebStandardWrapper wrapper, PaxWebStandardContext realContext) {
 		setNext(next);
 		setAsyncSupported(wrapper.isAsyncSupported());
@@ -61,7 +67,32 @@ public class PaxWebStandardWrapperValve extends ValveBase {
 		// attributes to be used ONLY by "initial OSGi filter"
 		request.setAttribute(PAXWEB_STANDARD_WRAPPER, request.getWrapper());
 
-		getNext().invoke(request, response);
+		ElementMetrics metrics = metrics();
+		if (metrics == null) {
+			getNext().invoke(request, response);
+			return;
+		}
+		// next valve invokes the filters too, but these (and preprocessors with security handling) are timed
+		// separately and subtracted from servlet's own time
+		metrics.start();
+		try {
+			getNext().invoke(request, response);
+		} finally {
+			metrics.stop(request.getRequest());
+		}
+	}
+
+	private ElementMetrics metrics() {
+		WebMetricsRegistry registry = WebMetricsRegistry.getInstance();
+		if (!registry.isEnabled()) {
+			return null;
+		}
+		if (metrics == null) {
+			// benign race - the registry returns the same instance
+			metrics = registry.getElementMetrics(wrapper.getOsgiContextModel(),
+					realContext == null ? null : realContext.getPath(), ElementType.SERVLET, wrapper.getName());
+		}
+		return metrics;
 	}
 
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AsynchronousSocketChannel} delegating all I/O to accepted channel, but returning addresses received in
+ * PROXY protocol header. This is how Tomcat's {@code Nio2SocketWrapper} (and then
+ * {@code ServletRequest.getRemoteAddr()}) sees the original client address. Request bytes which were read
+ * together with the header are returned by the first read(s), before reading from the accepted channel.
+ */
+class ProxiedAsynchronousSocketChannel extends AsynchronousSocketChannel {
+
+	private final AsynchronousSocketChannel delegate;
+	private final SocketAddress source;
+	private final SocketAddress destination;
+
+	/** Executor used to call completion handlers of reads served from {@link #data} */
+	private final Executor executor;
+
+	/** Data read after PROXY header, {@code null} when already consumed */
+	private ByteBuffer data;
+
+	/**
+	 * Creates the channel
+	 * @param delegate accepted channel
+	 * @param source source address from PROXY header or {@code null} to use real address
+	 * @param destination destination address from PROXY header or {@code null} to use real address
+	 * @param data data read after the header (may be {@code null})
+	 * @param executor
+	 */
+	ProxiedAsynchronousSocketChannel(AsynchronousSocketChannel delegate, SocketAddress source,
+			SocketAddress destination, ByteBuffer data, Executor executor) {
+		super(delegate.provider());
+		this.delegate = delegate;
+		this.source = source;
+		this.destination = destination;
+		this.data = data == null || !data.hasRemaining() ? null : data;
+		this.executor = executor;
+	}
+
+	@Override
+	public SocketAddress getRemoteAddress() throws IOException {
+		// keep the checks (and exceptions) of real channel
+		SocketAddress address = delegate.getRemoteAddress();
+		return address == null || source == null ? address : source;
+	}
+
+	@Override
+	public SocketAddress getLocalAddress() throws IOException {
+		SocketAddress address = delegate.getLocalAddress();
+		return address == null || destination == null ? address : destination;
+	}
+
+	@Override
+	public AsynchronousSocketChannel bind(SocketAddress local) throws IOException {
+		delegate.bind(local);
+		return this;
+	}
+
+	@Override
+	public <T> AsynchronousSocketChannel setOption(SocketOption<T> name, T value) throws IOException {
+		delegate.setOption(name, value);
+		return this;
+	}
+
+	@Override
+	public <T> T getOption(SocketOption<T> name) throws IOException {
+		return delegate.getOption(name);
+	}
+
+	@Override
+	public Set<SocketOption<?>> supportedOptions() {
+		return delegate.supportedOptions();
+	}
+
+	@Override
+	public AsynchronousSocketChannel shutdownInput() throws IOException {
+		delegate.shutdownInput();
+		return this;
+	}
+
+	@Override
+	public AsynchronousSocketChannel shutdownOutput() throws IOException {
+		delegate.shutdownOutput();
+		return this;
+	}
+
+	@Override
+	public <A> void connect(SocketAddress remote, A attachment, CompletionHandler<Void, ? super A> handler) {
+		delegate.connect(remote, attachment, handler);
+	}
+
+	@Override
+	public Future<Void> connect(SocketAddress remote) {
+		return delegate.connect(remote);
+	}
+
+	@Override
+	public <A> void read(ByteBuffer dst, long timeout, TimeUnit unit, A attachment,
+			CompletionHandler<Integer, ? super A> handler) {
+		int read = transfer(dst);
+		if (read > 0) {
+			executor.execute(() -> handler.completed(read, attachment));
+			return;
+		}
+		delegate.read(dst, timeout, unit, attachment, handler);
+	}
+
+	@Override
+	public Future<Integer> read(ByteBuffer dst) {
+		int read = transfer(dst);
+		if (read > 0) {
+			return CompletableFuture.completedFuture(read);
+		}
+		return delegate.read(dst);
+	}
+
+	@Override
+	public <A> void read(ByteBuffer[] dsts, int offset, int length, long timeout, TimeUnit unit, A attachment,
+			CompletionHandler<Long, ? super A> handler) {
+		long read = 0L;
+		for (int i = offset; i < offset + length; i++) {
+			read += transfer(dsts[i]);
+		}
+		if (read > 0L) {
+			long total = read;
+			executor.execute(() -> handler.completed(total, attachment));
+			return;
+		}
+		delegate.read(dsts, offset, length, timeout, unit, attachment, handler);
+	}
+
+	/**
+	 * Moves data read after PROXY header to the buffer
+	 * @param dst
+	 * @return number of bytes transferred
+	 */
+	private synchronized int transfer(ByteBuffer dst) {
+		if (data == null || !dst.hasRemaining()) {
+			return 0;
+		}
+		int count = Math.min(data.remaining(), dst.remaining());
+		int limit = data.limit();
+		data.limit(data.position() + count);
+		dst.put(data);
+		data.limit(limit);
+		if (!data.hasRemaining()) {
+			data = null;
+		}
+		return count;
+	}
+
+	@Override
+	public <A> void write(ByteBuffer src, long timeout, TimeUnit unit, A attachment,
+			CompletionHandler<Integer, ? super A> handler) {
+		delegate.write(src, timeout, unit, attachment, handler);
+	}
+
+	@Override
+	public Future<Integer> write(ByteBuffer src) {
+		return delegate.write(src);
+	}
+
+	@Override
+	public <A> void write(ByteBuffer[] srcs, int offset, int length, long timeout, TimeUnit unit, A attachment,
+			CompletionHandler<Long, ? super A> handler) {
+		delegate.write(srcs, offset, length, timeout, unit, attachment, handler);
+	}
+
+	@Override
+	public boolean isOpen() {
+		return delegate.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		delegate.close();
+	}
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>Parser of HAProxy PROXY protocol headers (see
+ * <a href="https://www.haproxy.org/download/2.3/doc/proxy-protocol.txt">proxy-protocol.txt</a>). Tomcat
+ * doesn't support this protocol, so {@link PaxWebNio2Endpoint} reads the header before passing the connection
+ * to Tomcat.</p>
+ *
+ * <p>Headers are parsed directly from {@link ByteBuffer buffers} filled by the endpoint (using absolute
+ * positions). Version 2 header has known length and is read exactly. Version 1 header is read in chunks, so
+ * the application data read after the header are passed to Tomcat by {@link ProxiedAsynchronousSocketChannel}
+ * before any other data from the connection.</p>
+ */
+final class ProxyProtocol {
+
+	/** Binary signature of version 2 header. Version 1 header can't be shorter than this signature. */
+	static final byte[] V2_SIGNATURE = new byte[] {
+			0x0D, 0x0A, 0x0D, 0x0A, 0x00, 0x0D, 0x0A, 0x51, 0x55, 0x49, 0x54, 0x0A
+	};
+
+	/** Length of fixed part of version 2 header: signature, version/command, family and address length. */
+	static final int V2_HEADER_LENGTH = 16;
+
+	/** Maximum length of version 1 header (including {@code CRLF}). */
+	static final int V1_MAX_LENGTH = 107;
+
+	private static final byte[] V1_PREFIX = "PROXY ".getBytes(StandardCharsets.US_ASCII);
+
+	private ProxyProtocol() {
+	}
+
+	/**
+	 * Checks whether the buffer (filled with at least {@link #V2_SIGNATURE} length bytes) starts with version 2
+	 * signature.
+	 * @param buffer
+	 * @return
+	 */
+	static boolean isV2(ByteBuffer buffer) {
+		return startsWith(buffer, V2_SIGNATURE);
+	}
+
+	/**
+	 * Checks whether the buffer (filled with at least {@link #V2_SIGNATURE} length bytes) starts with version 1
+	 * header.
+	 * @param buffer
+	 * @return
+	 */
+	static boolean isV1(ByteBuffer buffer) {
+		return startsWith(buffer, V1_PREFIX);
+	}
+
+	/**
+	 * Finds the end of version 1 header within the bytes already read into the buffer (up to its position).
+	 * @param buffer
+	 * @return the length of the header including {@code CRLF} or {@code -1} if there's no {@code CRLF} yet
+	 */
+	static int v1Length(ByteBuffer buffer) {
+		int p = buffer.position();
+		for (int i = 1; i < p; i++) {
+			if (buffer.get(i - 1) == '\r' && buffer.get(i) == '\n') {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the length of addresses part of version 2 header from its fixed part.
+	 * @param header
+	 * @return
+	 */
+	static int v2AddressesLength(ByteBuffer header) {
+		return ((header.get(14) & 0xFF) << 8) | (header.get(15) & 0xFF);
+	}
+
+	/**
+	 * Parses complete version 1 header ({@code PROXY TCP4|TCP6|UNKNOWN ...\r\n}).
+	 * @param buffer buffer with the header ending at buffer's position
+	 * @return source and destination addresses or {@code null} if real connection addresses should be used
+	 * @throws IOException if the header is not valid
+	 */
+	static InetSocketAddress[] parseV1(ByteBuffer buffer) throws IOException {
+		byte[] bytes = new byte[buffer.position() - 2];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(i);
+		}
+		String[] fields = new String(bytes, StandardCharsets.US_ASCII).split(" ");
+		if (fields.length >= 2 && "UNKNOWN".equals(fields[1])) {
+			// rest of the line should be ignored
+			return null;
+		}
+		if (fields.length != 6 || !"PROXY".equals(fields[0])) {
+			throw new IOException("Invalid PROXY protocol v1 header");
+		}
+		boolean v6;
+		if ("TCP4".equals(fields[1])) {
+			v6 = false;
+		} else if ("TCP6".equals(fields[1])) {
+			v6 = true;
+		} else {
+			throw new IOException("Unsupported PROXY protocol v1 family: " + fields[1]);
+		}
+		InetAddress source = v6 ? parseV6(fields[2]) : parseV4(fields[2]);
+		InetAddress destination = v6 ? parseV6(fields[3]) : parseV4(fields[3]);
+		return new InetSocketAddress[] {
+				new InetSocketAddress(source, parsePort(fields[4])),
+				new InetSocketAddress(destination, parsePort(fields[5]))
+		};
+	}
+
+	/**
+	 * Parses version 2 header.
+	 * @param header buffer with fixed part of the header
+	 * @param addresses buffer with addresses part of the header (with optional TLVs, which are ignored)
+	 * @return source and destination addresses or {@code null} if real connection addresses should be used
+	 * @throws IOException if the header is not valid
+	 */
+	static InetSocketAddress[] parseV2(ByteBuffer header, ByteBuffer addresses) throws IOException {
+		int versionCommand = header.get(12) & 0xFF;
+		if ((versionCommand & 0xF0) != 0x20) {
+			throw new IOException("Unsupported PROXY protocol version: " + (versionCommand >> 4));
+		}
+		int command = versionCommand & 0x0F;
+		if (command == 0x00) {
+			// LOCAL - connection established by the proxy itself (health checks)
+			return null;
+		}
+		if (command != 0x01) {
+			throw new IOException("Unsupported PROXY protocol v2 command: " + command);
+		}
+		int addressLength;
+		switch ((header.get(13) & 0xF0) >> 4) {
+			case 0x1:
+				addressLength = 4;
+				break;
+			case 0x2:
+				addressLength = 16;
+				break;
+			default:
+				// AF_UNSPEC or AF_UNIX - no usable IP address
+				return null;
+		}
+		if (addresses.limit() < 2 * addressLength + 4) {
+			throw new IOException("PROXY protocol v2 header is too short for its address family");
+		}
+		byte[] source = new byte[addressLength];
+		byte[] destination = new byte[addressLength];
+		for (int i = 0; i < addressLength; i++) {
+			source[i] = addresses.get(i);
+			destination[i] = addresses.get(addressLength + i);
+		}
+		int ports = 2 * addressLength;
+		int sourcePort = ((addresses.get(ports) & 0xFF) << 8) | (addresses.get(ports + 1) & 0xFF);
+		int destinationPort = ((addresses.get(ports + 2) & 0xFF) << 8) | (addresses.get(ports + 3) & 0xFF);
+		return new InetSocketAddress[] {
+				new InetSocketAddress(InetAddress.getByAddress(source), sourcePort),
+				new InetSocketAddress(InetAddress.getByAddress(destination), destinationPort)
+		};
+	}
+
+	private static boolean startsWith(ByteBuffer buffer, byte[] prefix) {
+		if (buffer.position() < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (buffer.get(i) != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses dotted IPv4 address without involving name resolution.
+	 * @param address
+	 * @return
+	 * @throws IOException
+	 */
+	private static InetAddress parseV4(String address) throws IOException {
+		String[] octets = address.split("\\.", -1);
+		if (octets.length != 4) {
+			throw new IOException("Invalid IPv4 address in PROXY protocol header: " + address);
+		}
+		byte[] bytes = new byte[4];
+		for (int i = 0; i < 4; i++) {
+			int octet = parseNumber(octets[i], 3);
+			if (octet > 255) {
+				throw new IOException("Invalid IPv4 address in PROXY protocol header: " + address);
+			}
+			bytes[i] = (byte) octet;
+		}
+		return InetAddress.getByAddress(bytes);
+	}
+
+	/**
+	 * Parses IPv6 address - bracketed literal is never resolved by {@link InetAddress#getByName(String)}.
+	 * @param address
+	 * @return
+	 * @throws IOException
+	 */
+	private static InetAddress parseV6(String address) throws IOException {
+		if (address.indexOf(':') < 0 || address.indexOf('[') >= 0 || address.indexOf('%') >= 0) {
+			throw new IOException("Invalid IPv6 address in PROXY protocol header: " + address);
+		}
+		try {
+			return InetAddress.getByName("[" + address + "]");
+		} catch (UnknownHostException e) {
+			throw new IOException("Invalid IPv6 address in PROXY protocol header: " + address, e);
+		}
+	}
+
+	private static int parsePort(String port) throws IOException {
+		int value = parseNumber(port, 5);
+		if (value > 65535) {
+			throw new IOException("Invalid port in PROXY protocol header: " + port);
+		}
+		return value;
+	}
+
+	private static int parseNumber(String value, int maxDigits) throws IOException {
+		if (value.isEmpty() || value.length() > maxDigits) {
+			throw new IOException("Invalid number in PROXY protocol header: " + value);
+		}
+		int result = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new IOException("Invalid number in PROXY protocol header: " + value);
+			}
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+}
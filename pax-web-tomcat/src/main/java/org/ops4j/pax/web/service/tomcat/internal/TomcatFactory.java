@@ -16,6 +16,7 @@
 package org.ops4j.pax.web.service.tomcat.internal;
 
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLParameters;
 
@@ -157,6 +158,7 @@ public class TomcatFactory {
 		defaultConnector.setAllowTrace(false);
 		protocol.setServer(null);
 		protocol.setServerRemoveAppProvidedValues(true);
+		protocol.setProxyProtocol(isProxyProtocol(sc, "http"));
 
 		// don't set an executor here, as we'd get warning:
 		// "The NIO2 connector requires an exclusive executor to operate properly on shutdown"
@@ -166,9 +168,9 @@ public class TomcatFactory {
 			defaultConnector.setProperty("connectionTimeout", sc.getConnectorIdleTimeout().toString());
 		}
 
-		if (http2Available) {
+		if (http2Available && sc.isHttp2CleartextEnabled()) {
 			LOG.info("HTTP/2 ClearText support available, adding \"h2c\" protocol support to default connector");
-			defaultConnector.addUpgradeProtocol(new Http2Protocol());
+			defaultConnector.addUpgradeProtocol(createHttp2Protocol(sc));
 		}
 
 		LOG.info("Default Tomcat connector created: {}", defaultConnector);
@@ -201,6 +203,7 @@ public class TomcatFactory {
 		secureConnector.setAllowTrace(false);
 		protocol.setServer(null);
 		protocol.setServerRemoveAppProvidedValues(true);
+		protocol.setProxyProtocol(isProxyProtocol(sc, "https"));
 
 		// don't set an executor here, as we'd get warning:
 		// "The NIO2 connector requires an exclusive executor to operate properly on shutdown"
@@ -342,10 +345,16 @@ public class TomcatFactory {
 //			sslContextFactory.setMaxCertPathLength(secc.getMaxCertPathLength());
 //		}
 
-		if (http2Available) {
+		if (http2Available && sc.isHttp2Enabled()) {
 			LOG.info("HTTP/2 support available, adding \"h2\" protocol support to secure connector");
 
-			secureConnector.addUpgradeProtocol(new Http2Protocol());
+			secureConnector.addUpgradeProtocol(createHttp2Protocol(sc));
+
+			// Tomcat always prefers protocols of upgrade protocol handlers during ALPN negotiation
+			String[] alpn = sc.getAlpnProtocols();
+			if (alpn.length > 0 && !"h2".equals(alpn[0])) {
+				LOG.debug("Not supported ALPN protocol preference parameter, \"h2\" is always preferred");
+			}
 		}
 
 		LOG.info("Secure Tomcat connector created: {}", secureConnector);
@@ -353,4 +362,40 @@ public class TomcatFactory {
 		return secureConnector;
 	}
 
+	/**
+	 * Checks whether given kind of connector ({@code http} or {@code https}) should expect
+	 * PROXY protocol header.
+	 * @param sc
+	 * @param kind
+	 * @return
+	 */
+	private boolean isProxyProtocol(ServerConfiguration sc, String kind) {
+		return Arrays.asList(sc.getProxyProtocolConnectors()).contains(kind);
+	}
+
+	/**
+	 * Creates {@link Http2Protocol} configured using HTTP/2 settings from {@link ServerConfiguration}.
+	 * @param sc
+	 * @return
+	 */
+	private Http2Protocol createHttp2Protocol(ServerConfiguration sc) {
+		Http2Protocol http2 = new Http2Protocol();
+		if (sc.getHttp2MaxConcurrentStreams() != null) {
+			http2.setMaxConcurrentStreams(sc.getHttp2MaxConcurrentStreams());
+		}
+		if (sc.getHttp2InitialStreamWindowSize() != null) {
+			http2.setInitialWindowSize(sc.getHttp2InitialStreamWindowSize());
+		}
+		if (sc.getHttp2InitialSessionWindowSize() != null) {
+			LOG.debug("Not supported HTTP/2 Initial Session Window Size parameter");
+		}
+		if (sc.getHttp2HeaderTableSize() != null) {
+			LOG.debug("Not supported HTTP/2 Header Table Size parameter");
+		}
+		if (sc.getHttp2MaxFrameSize() != null) {
+			LOG.debug("Not supported HTTP/2 Max Frame Size parameter");
+		}
+		return http2;
+	}
+
 }
@@ -62,6 +62,7 @@ import org.apache.catalina.loader.WebappLoader;
 import org.apache.catalina.session.StandardManager;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.valves.AccessLogValve;
+import org.apache.catalina.valves.ValveBase;
 import org.apache.catalina.webresources.TomcatURLStreamHandlerFactory;
 import org.apache.tomcat.util.descriptor.web.ErrorPage;
 import org.apache.tomcat.util.descriptor.web.FilterDef;
@@ -71,6 +72,8 @@ import org.apache.tomcat.util.descriptor.web.WebXmlParser;
 import org.ops4j.pax.web.service.spi.config.Configuration;
 import org.ops4j.pax.web.service.spi.config.LogConfiguration;
 import org.ops4j.pax.web.service.spi.config.SessionConfiguration;
+import org.ops4j.pax.web.service.spi.metrics.ElementType;
+import org.ops4j.pax.web.service.spi.metrics.WebMetricsRegistry;
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
 import org.ops4j.pax.web.service.spi.model.ServletContextModel;
 import org.ops4j.pax.web.service.spi.model.elements.ContainerInitializerModel;
@@ -154,6 +157,9 @@ class TomcatServerWrapper implements BatchVisitor {
 	/** Server's thread pool */
 	private Executor serverExecutor;
 
+	/** Pax Web's asynchronous request log, if configured instead of Tomcat's own {@link AccessLogValve} */
+	private org.ops4j.pax.web.service.spi.accesslog.AccessLog accessLog;
+
 	private final TomcatFactory tomcatFactory;
 
 	/** Single map of context path to {@link Context} for fast access */
@@ -404,6 +410,11 @@ class TomcatServerWrapper implements BatchVisitor {
 			verifyConnector(address, httpsPort, httpsEnabled, true,
 					() -> tomcatFactory.createSecureConnector(server, address, serverExecutor, configuration));
 		}
+
+		if (configuration.server().getUnixDomainSocket() != null) {
+			LOG.warn("Unix domain socket connector is supported only by Jetty runtime, {} is ignored",
+					configuration.server().getUnixDomainSocket());
+		}
 	}
 
 	/**
@@ -502,15 +513,22 @@ class TomcatServerWrapper implements BatchVisitor {
 			throw new IllegalArgumentException(logDir + " is not a valid directory to store request logs");
 		}
 
-		AccessLogValve ncsaLogger = /*lc.isLogNCSAExtended() ? new ExtendedAccessLogValve() : */new AccessLogValve();
-		ncsaLogger.setPattern(lc.isLogNCSAExtended() ? "combined" : "common");
-
-		// org.apache.catalina.valves.AccessLogValve.getLogFile
-		ncsaLogger.setDirectory(new File(lc.getLogNCSADirectory()).getAbsolutePath());
-		ncsaLogger.setPrefix(lc.getLogNCSAFile());
-		ncsaLogger.setFileDateFormat("." + lc.getLogNCSAFilenameDateFormat());
-		ncsaLogger.setSuffix(".log");
-		ncsaLogger.setBuffered(lc.getLogNCSABuffered());
+		ValveBase ncsaLogger;
+		if (lc.isLogNCSAAsync()) {
+			accessLog = new org.ops4j.pax.web.service.spi.accesslog.AccessLog(lc);
+			ncsaLogger = new PaxWebAccessLogValve(accessLog);
+		} else {
+			AccessLogValve ncsaLogValve = /*lc.isLogNCSAExtended() ? new ExtendedAccessLogValve() : */new AccessLogValve();
+			ncsaLogValve.setPattern(lc.isLogNCSAExtended() ? "combined" : "common");
+
+			// org.apache.catalina.valves.AccessLogValve.getLogFile
+			ncsaLogValve.setDirectory(new File(lc.getLogNCSADirectory()).getAbsolutePath());
+			ncsaLogValve.setPrefix(lc.getLogNCSAFile());
+			ncsaLogValve.setFileDateFormat("." + lc.getLogNCSAFilenameDateFormat());
+			ncsaLogValve.setSuffix(".log");
+			ncsaLogValve.setBuffered(lc.getLogNCSABuffered());
+			ncsaLogger = ncsaLogValve;
+		}
 
 		AccessLogAdapter adapter = null;
 		Valve[] valves = engine.getPipeline().getValves();
@@ -526,7 +544,7 @@ class TomcatServerWrapper implements BatchVisitor {
 		}
 
 		if (adapter != null) {
-			adapter.add(ncsaLogger);
+			adapter.add((AccessLog) ncsaLogger);
 			// not adding our NCSA Logger - assuming one is configured with tomcat-server.xml
 //			engine.getPipeline().addValve(adapter);
 		} else {
@@ -548,6 +566,9 @@ class TomcatServerWrapper implements BatchVisitor {
 		try {
 			Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
 			TomcatURLStreamHandlerFactory.disable();
+			if (accessLog != null) {
+				accessLog.start();
+			}
 			server.start();
 		} finally {
 			Thread.currentThread().setContextClassLoader(tccl);
@@ -563,6 +584,11 @@ class TomcatServerWrapper implements BatchVisitor {
 
 			LOG.info("Destroying Tomcat server {}", server);
 			server.destroy();
+
+			if (accessLog != null) {
+				accessLog.stop();
+				accessLog = null;
+			}
 		} catch (final Throwable e) {
 			LOG.error("Problem stopping Tomcat server {}", e.getMessage(), e);
 		}
@@ -820,6 +846,12 @@ class TomcatServerWrapper implements BatchVisitor {
 			osgiContextModels.get(contextPath).remove(osgiModel);
 
 			removedOsgiServletContext.unregister();
+
+			// metrics are identified by context name and path, so they may still be used by other OSGi context
+			String name = osgiModel.getName();
+			if (osgiContextModels.get(contextPath).stream().noneMatch(ocm -> name.equals(ocm.getName()))) {
+				WebMetricsRegistry.getInstance().unregister(osgiModel);
+			}
 		}
 
 		// there may be a change in what's the "best" (highest ranked) OsgiContextModel for given
@@ -938,6 +970,9 @@ class TomcatServerWrapper implements BatchVisitor {
 				}
 				LOG.info("Removing servlet {}", model);
 
+				model.getContextModels().forEach(ocm -> WebMetricsRegistry.getInstance()
+						.unregister(ocm, ElementType.SERVLET, model.getName()));
+
 				Set<String> done = new HashSet<>();
 
 				// proper order ensures that (assuming above scenario), for /c1, ocm2 will be chosen and ocm1 skipped
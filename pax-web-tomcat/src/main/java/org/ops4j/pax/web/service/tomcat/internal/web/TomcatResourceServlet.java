@@ -17,10 +17,12 @@ package org.ops4j.pax.web.service.tomcat.internal.web;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import javax.servlet.DispatcherType;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -28,6 +30,7 @@ import org.apache.catalina.LifecycleException;
 import org.apache.catalina.WebResource;
 import org.apache.catalina.servlets.DefaultServlet;
 import org.ops4j.pax.web.service.spi.config.ResourceConfiguration;
+import org.ops4j.pax.web.service.spi.servlet.NonBlockingResourceWriter;
 import org.ops4j.pax.web.service.spi.servlet.OsgiScopedServletContext;
 import org.ops4j.pax.web.service.spi.servlet.OsgiServletContext;
 import org.ops4j.pax.web.service.spi.util.Path;
@@ -46,6 +49,12 @@ public class TomcatResourceServlet extends DefaultServlet {
 
 	public static final Logger LOG = LoggerFactory.getLogger(TomcatResourceServlet.class);
 
+	/**
+	 * Request/response being served by {@link #serveResource}, when the content may be written by
+	 * {@link #copy(InputStream, ServletOutputStream)} without blocking
+	 */
+	private static final ThreadLocal<Exchange> NON_BLOCKING = new ThreadLocal<>();
+
 	/** If specified, this is the directory to fetch resource files from */
 	private final File baseDirectory;
 
@@ -62,6 +71,9 @@ public class TomcatResourceServlet extends DefaultServlet {
 	private boolean redirectWelcome = false;
 	private boolean pathInfoOnly = true;
 
+	/** Minimal size (in bytes) of virtual resources written without blocking, negative to disable */
+	private long nonBlockingThreshold = 64 * 1024L;
+
 	public TomcatResourceServlet(File baseDirectory, String chroot, ResourceConfiguration resourceConfig) {
 		this.baseDirectory = baseDirectory;
 		this.chroot = chroot;
@@ -119,6 +131,11 @@ public class TomcatResourceServlet extends DefaultServlet {
 		resources.setCacheTtl(resourceConfig == null || resourceConfig.maxCacheTTL() == null
 				? 5000 : resourceConfig.maxCacheTTL());
 
+		if (resourceConfig != null && resourceConfig.nonBlockingThreshold() != null) {
+			int threshold = resourceConfig.nonBlockingThreshold();
+			nonBlockingThreshold = threshold < 0 ? -1L : threshold * 1024L;
+		}
+
 		LOG.info("Initialized Tomcat Resource Servlet for base=\"{}\" with cache maxSize={}kB, maxEntrySize={}kB, TTL={}ms",
 				baseDirectory != null ? baseDirectory : chroot,
 				resources.getCacheMaxSize(), resources.getCacheObjectMaxSize(), resources.getCacheTtl());
@@ -161,7 +178,22 @@ public class TomcatResourceServlet extends DefaultServlet {
 		}
 
 		if (requestURI == null || !requestURI.endsWith("/")) {
-			super.serveResource(request, response, content, inputEncoding);
+			if (content && nonBlockingThreshold >= 0L && request.getHeader("Range") == null) {
+				// large virtual resources (e.g., bundle entries) are written without blocking in
+				// copy(InputStream, ServletOutputStream)
+				String path = getRelativePath(request, true);
+				WebResource resource = path == null ? null : resources.getResource(path);
+				if (resource != null && resource.isVirtual() && resource.isFile()
+						&& NonBlockingResourceWriter.isApplicable(request, response,
+						resource.getContentLength(), nonBlockingThreshold)) {
+					NON_BLOCKING.set(new Exchange(request, response));
+				}
+			}
+			try {
+				super.serveResource(request, response, content, inputEncoding);
+			} finally {
+				NON_BLOCKING.remove();
+			}
 			return;
 		}
 
@@ -268,6 +300,24 @@ public class TomcatResourceServlet extends DefaultServlet {
 		}
 	}
 
+	/**
+	 * Override {@link DefaultServlet#copy(InputStream, ServletOutputStream)} to write large virtual resources
+	 * using {@link NonBlockingResourceWriter}.
+	 * @param is
+	 * @param ostream
+	 * @throws IOException
+	 */
+	@Override
+	protected void copy(InputStream is, ServletOutputStream ostream) throws IOException {
+		Exchange exchange = NON_BLOCKING.get();
+		if (exchange == null) {
+			super.copy(is, ostream);
+			return;
+		}
+		NON_BLOCKING.remove();
+		NonBlockingResourceWriter.write(exchange.request, exchange.response, is);
+	}
+
 	/**
 	 * <p>Override {@link DefaultServlet#getRelativePath(HttpServletRequest, boolean)} to use only path info. Just
 	 * as {@link org.apache.catalina.servlets.WebdavServlet} and just as Jetty does it with {@code pathInfoOnly}
@@ -317,4 +367,14 @@ public class TomcatResourceServlet extends DefaultServlet {
 		return childPath;
 	}
 
+	private static final class Exchange {
+		private final HttpServletRequest request;
+		private final HttpServletResponse response;
+
+		Exchange(HttpServletRequest request, HttpServletResponse response) {
+			this.request = request;
+			this.response = response;
+		}
+	}
+
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ProxiedAsynchronousSocketChannelTest {
+
+	@Test
+	public void dataReadWithHeaderIsReturnedFirst() throws Exception {
+		try (AsynchronousServerSocketChannel server = AsynchronousServerSocketChannel.open()
+				.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+				AsynchronousSocketChannel client = AsynchronousSocketChannel.open()) {
+			client.connect(server.getLocalAddress()).get(5, TimeUnit.SECONDS);
+			AsynchronousSocketChannel accepted = server.accept().get(5, TimeUnit.SECONDS);
+			client.write(ByteBuffer.wrap("1.1\r\n".getBytes(StandardCharsets.US_ASCII))).get(5, TimeUnit.SECONDS);
+
+			InetSocketAddress source = new InetSocketAddress("192.168.0.1", 56324);
+			ProxiedAsynchronousSocketChannel channel = new ProxiedAsynchronousSocketChannel(accepted, source, null,
+					ByteBuffer.wrap("GET / HTTP/".getBytes(StandardCharsets.US_ASCII)), Runnable::run);
+			assertThat(channel.getRemoteAddress(), equalTo(source));
+			assertThat(channel.getLocalAddress(), equalTo(accepted.getLocalAddress()));
+
+			ByteBuffer buffer = ByteBuffer.allocate(16);
+			buffer.limit(6);
+			assertThat(channel.read(buffer).get(5, TimeUnit.SECONDS), equalTo(6));
+
+			CompletableFuture<Integer> result = new CompletableFuture<>();
+			buffer.limit(buffer.capacity());
+			channel.read(buffer, 5, TimeUnit.SECONDS, null, new CompletionHandler<Integer, Void>() {
+				@Override
+				public void completed(Integer r, Void attachment) {
+					result.complete(r);
+				}
+
+				@Override
+				public void failed(Throwable exc, Void attachment) {
+					result.completeExceptionally(exc);
+				}
+			});
+			assertThat(result.get(5, TimeUnit.SECONDS), equalTo(5));
+
+			// the rest comes from the accepted channel
+			ByteBuffer rest = ByteBuffer.allocate(16);
+			while (rest.position() < 5) {
+				channel.read(rest).get(5, TimeUnit.SECONDS);
+			}
+			buffer.flip();
+			rest.flip();
+			assertThat(StandardCharsets.US_ASCII.decode(buffer).toString()
+					+ StandardCharsets.US_ASCII.decode(rest).toString(), equalTo("GET / HTTP/1.1\r\n"));
+			channel.close();
+		}
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ProxyProtocolTest {
+
+	@Test
+	public void v1Tcp4() throws IOException {
+		ByteBuffer header = v1("PROXY TCP4 192.168.0.1 10.0.0.1 56324 8080\r\n");
+		assertThat(ProxyProtocol.isV2(header), equalTo(false));
+		assertThat(ProxyProtocol.isV1(header), equalTo(true));
+		assertThat(ProxyProtocol.v1Length(header), equalTo(header.position()));
+		InetSocketAddress[] addresses = ProxyProtocol.parseV1(header);
+		assertThat(addresses[0].getAddress().getHostAddress(), equalTo("192.168.0.1"));
+		assertThat(addresses[0].getPort(), equalTo(56324));
+		assertThat(addresses[1].getAddress().getHostAddress(), equalTo("10.0.0.1"));
+		assertThat(addresses[1].getPort(), equalTo(8080));
+	}
+
+	@Test
+	public void v1Tcp6() throws IOException {
+		InetSocketAddress[] addresses = ProxyProtocol.parseV1(v1("PROXY TCP6 2001:db8::1 ::1 443 8443\r\n"));
+		assertThat(addresses[0].getAddress().getHostAddress(), equalTo("2001:db8:0:0:0:0:0:1"));
+		assertThat(addresses[1].getPort(), equalTo(8443));
+	}
+
+	@Test
+	public void v1WithRequestData() throws IOException {
+		ByteBuffer header = v1("PROXY TCP4 192.168.0.1 10.0.0.1 56324 8080\r\nGET / HTTP/1.1\r\n");
+		int length = ProxyProtocol.v1Length(header);
+		assertThat(length, equalTo(44));
+		header.position(length);
+		assertThat(ProxyProtocol.parseV1(header)[0].getPort(), equalTo(56324));
+
+		assertThat(ProxyProtocol.v1Length(v1("PROXY TCP4 192.168.0.1 10.0.0.1 56324 80")), equalTo(-1));
+	}
+
+	@Test
+	public void v1Unknown() throws IOException {
+		assertThat(ProxyProtocol.parseV1(v1("PROXY UNKNOWN\r\n")), nullValue());
+	}
+
+	@Test(expected = IOException.class)
+	public void v1InvalidAddress() throws IOException {
+		ProxyProtocol.parseV1(v1("PROXY TCP4 256.0.0.1 10.0.0.1 1 2\r\n"));
+	}
+
+	@Test(expected = IOException.class)
+	public void v1HostName() throws IOException {
+		ProxyProtocol.parseV1(v1("PROXY TCP6 localhost ::1 1 2\r\n"));
+	}
+
+	@Test
+	public void v2Inet() throws IOException {
+		ByteBuffer header = v2Header(0x21, 0x11, 12 + 3);
+		assertThat(ProxyProtocol.isV2(header), equalTo(true));
+		assertThat(ProxyProtocol.isV1(header), equalTo(false));
+		assertThat(ProxyProtocol.v2AddressesLength(header), equalTo(15));
+		// addresses, ports and ignored TLV
+		ByteBuffer addresses = ByteBuffer.wrap(new byte[] {
+				(byte) 192, (byte) 168, 0, 1, 10, 0, 0, 1, (byte) 0xDC, 0x04, 0x1F, (byte) 0x90, 0x04, 0x00, 0x00
+		});
+		InetSocketAddress[] result = ProxyProtocol.parseV2(header, addresses);
+		assertThat(result[0].getAddress().getHostAddress(), equalTo("192.168.0.1"));
+		assertThat(result[0].getPort(), equalTo(56324));
+		assertThat(result[1].getAddress().getHostAddress(), equalTo("10.0.0.1"));
+		assertThat(result[1].getPort(), equalTo(8080));
+	}
+
+	@Test
+	public void v2Local() throws IOException {
+		assertThat(ProxyProtocol.parseV2(v2Header(0x20, 0x00, 0), ByteBuffer.allocate(0)), nullValue());
+	}
+
+	@Test(expected = IOException.class)
+	public void v2TooShort() throws IOException {
+		ProxyProtocol.parseV2(v2Header(0x21, 0x21, 12), ByteBuffer.allocate(12));
+	}
+
+	/**
+	 * Returns a buffer in the state left by the endpoint after reading the header.
+	 * @param line
+	 * @return
+	 */
+	private ByteBuffer v1(String line) {
+		ByteBuffer buffer = ByteBuffer.allocate(ProxyProtocol.V1_MAX_LENGTH);
+		buffer.put(line.getBytes(StandardCharsets.US_ASCII));
+		return buffer;
+	}
+
+	private ByteBuffer v2Header(int versionCommand, int family, int length) {
+		ByteBuffer buffer = ByteBuffer.allocate(ProxyProtocol.V1_MAX_LENGTH);
+		buffer.put(ProxyProtocol.V2_SIGNATURE);
+		buffer.put((byte) versionCommand).put((byte) family).putShort((short) length);
+		return buffer;
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.undertow.internal;
+
+import java.net.InetSocketAddress;
+import java.security.Principal;
+
+import io.undertow.security.api.SecurityContext;
+import io.undertow.security.idm.Account;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import org.ops4j.pax.web.service.spi.accesslog.AccessLog;
+
+/**
+ * <p>{@link HttpHandler} that passes request data to Pax Web's asynchronous {@link AccessLog} when exchange
+ * completes. Used instead of {@link io.undertow.server.handlers.accesslog.AccessLogHandler} (with its own
+ * XNIO log worker).</p>
+ *
+ * <p>The same (stateless) {@link ExchangeCompletionListener} is used for all the exchanges, so there's no
+ * allocation for each request. The timestamp is taken when the exchange completes.</p>
+ */
+public class PaxWebAccessLogHandler implements HttpHandler {
+
+	private final HttpHandler next;
+	private final ExchangeCompletionListener listener;
+
+	public PaxWebAccessLogHandler(HttpHandler next, AccessLog accessLog) {
+		this.next = next;
+		this.listener = (exchange, nextListener) -> {
+			try {
+				log(accessLog, exchange);
+			} finally {
+				nextListener.proceed();
+			}
+		};
+	}
+
+	@Override
+	public void handleRequest(HttpServerExchange exchange) throws Exception {
+		exchange.addExchangeCompleteListener(listener);
+		next.handleRequest(exchange);
+	}
+
+	private static void log(AccessLog accessLog, HttpServerExchange exchange) {
+		InetSocketAddress source = exchange.getSourceAddress();
+		String remoteAddr = source == null ? null
+				: source.getAddress() == null ? source.getHostString() : source.getAddress().getHostAddress();
+		String remoteUser = null;
+		SecurityContext sc = exchange.getSecurityContext();
+		if (sc != null) {
+			Account account = sc.getAuthenticatedAccount();
+			Principal principal = account == null ? null : account.getPrincipal();
+			remoteUser = principal == null ? null : principal.getName();
+		}
+		String query = exchange.getQueryString();
+
+		accessLog.log(System.currentTimeMillis(), remoteAddr, remoteUser, exchange.getRequestMethod().toString(),
+				exchange.getRequestURI(), query == null || query.isEmpty() ? null : query,
+				exchange.getProtocol().toString(), exchange.getStatusCode(), exchange.getResponseBytesSent(),
+				exchange.getRequestHeaders().getFirst(Headers.REFERER),
+				exchange.getRequestHeaders().getFirst(Headers.USER_AGENT));
+	}
+
+}
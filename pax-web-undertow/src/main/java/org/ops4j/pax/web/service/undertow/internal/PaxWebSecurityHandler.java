@@ -15,6 +15,7 @@
  */
 package org.ops4j.pax.web.service.undertow.internal;
 
+import java.io.IOException;
 import javax.servlet.Servlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -25,7 +26,13 @@ import io.undertow.server.HttpServerExchange;
 import io.undertow.servlet.api.ServletInfo;
 import io.undertow.servlet.handlers.ServletRequestContext;
 import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.spi.metrics.ElementMetrics;
+import org.ops4j.pax.web.service.spi.metrics.ElementType;
+import org.ops4j.pax.web.service.spi.metrics.WebMetricsRegistry;
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
+import org.ops4j.pax.web.service.spi.servlet.AsyncSecurity;
+import org.ops4j.pax.web.service.spi.servlet.OsgiFilterChain;
+import org.ops4j.pax.web.service.spi.servlet.RequestCompletion;
 
 public class PaxWebSecurityHandler implements HandlerWrapper {
 
@@ -50,14 +57,29 @@ public class PaxWebSecurityHandler implements HandlerWrapper {
 					HttpServletResponse res = (HttpServletResponse) context.getServletResponse();
 
 					WebContainerContext webContext = null;
+					OsgiContextModel osgiContextModel = null;
 					if (!paxWebServletInfo.is404()) {
 						webContext = paxWebServletInfo.getWebContainerContext();
+						osgiContextModel = paxWebServletInfo.getOsgiContextModel();
 					} else {
 						webContext = defaultWebContainerContext;
+						osgiContextModel = defaultOsgiContextModel;
 					}
 
+					boolean granted = webContext == null || AsyncSecurity.isGranted(webContext, osgiContextModel, req);
+					if (!granted && AsyncSecurity.suspend(webContext, osgiContextModel, req, res)) {
+						// the request is dispatched again after the security check completes
+						return;
+					}
 					try {
-						if (webContext == null || webContext.handleSecurity(req, res)) {
+						if (granted || handleSecurity(webContext, osgiContextModel, req, res)) {
+							if (!OsgiFilterChain.checkSecurityConstraints(osgiContextModel, req)) {
+								// security constraints of the context are not fulfilled after handleSecurity()
+								if (!res.isCommitted()) {
+									res.sendError(HttpServletResponse.SC_FORBIDDEN);
+								}
+								return;
+							}
 							// continue normally with normal filters and target servlet
 							handler.handleRequest(exchange);
 						} else {
@@ -73,7 +95,9 @@ public class PaxWebSecurityHandler implements HandlerWrapper {
 						}
 					} finally {
 						if (webContext != null) {
-							webContext.finishSecurity(req, res);
+							// deferred until the end of asynchronous processing, if it was started
+							WebContainerContext wc = webContext;
+							RequestCompletion.whenComplete(req, () -> wc.finishSecurity(req, res));
 						}
 					}
 				}
@@ -81,6 +105,30 @@ public class PaxWebSecurityHandler implements HandlerWrapper {
 		};
 	}
 
+	/**
+	 * Calls {@link WebContainerContext#handleSecurity} recording its latency if metrics are enabled.
+	 * @param webContext
+	 * @param osgiContextModel
+	 * @param req
+	 * @param res
+	 * @return
+	 * @throws IOException
+	 */
+	private boolean handleSecurity(WebContainerContext webContext, OsgiContextModel osgiContextModel,
+			HttpServletRequest req, HttpServletResponse res) throws IOException {
+		ElementMetrics metrics = WebMetricsRegistry.getInstance().getElementMetrics(osgiContextModel,
+				req.getContextPath(), ElementType.SECURITY, "handleSecurity");
+		if (metrics == null) {
+			return webContext.handleSecurity(req, res);
+		}
+		metrics.start();
+		try {
+			return webContext.handleSecurity(req, res);
+		} finally {
+			metrics.stop();
+		}
+	}
+
 	public OsgiContextModel getDefaultOsgiContextModel() {
 		return defaultOsgiContextModel;
 	}
@@ -18,12 +18,19 @@ package org.ops4j.pax.web.service.undertow.internal;
 import javax.servlet.Servlet;
 import javax.servlet.ServletContext;
 
+import io.undertow.server.HandlerWrapper;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
 import io.undertow.servlet.api.InstanceFactory;
 import io.undertow.servlet.api.InstanceHandle;
 import io.undertow.servlet.api.ServletInfo;
+import io.undertow.servlet.handlers.ServletRequestContext;
 import io.undertow.servlet.util.ImmediateInstanceFactory;
 import io.undertow.servlet.util.ImmediateInstanceHandle;
 import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.spi.metrics.ElementMetrics;
+import org.ops4j.pax.web.service.spi.metrics.ElementType;
+import org.ops4j.pax.web.service.spi.metrics.WebMetricsRegistry;
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
 import org.ops4j.pax.web.service.spi.model.elements.ServletModel;
 import org.ops4j.pax.web.service.spi.servlet.OsgiInitializedServlet;
@@ -62,6 +69,9 @@ public class PaxWebServletInfo extends ServletInfo {
 	 */
 	private boolean is404 = false;
 
+	/** Metrics of this servlet - registered with first request processed when metrics are enabled */
+	private ElementMetrics metrics;
+
 	/**
 	 * Constructor to use when wrapping internal {@link Servlet servlets} which won't use OSGi machinery.
 	 *
@@ -77,6 +87,8 @@ public class PaxWebServletInfo extends ServletInfo {
 		webContainerContext = null;
 		this.servlet = servlet;
 		this.is404 = is404;
+
+		addHandlerChainWrapper(new MetricsHandlerWrapper());
 	}
 
 	public PaxWebServletInfo(ServletModel model, OsgiContextModel osgiContextModel,
@@ -105,6 +117,8 @@ public class PaxWebServletInfo extends ServletInfo {
 
 		this.servletContext = ((ServletModelFactory)super.getInstanceFactory()).getServletContext();
 		this.webContainerContext = osgiContextModel.resolveHttpContext(servletModel.getRegisteringBundle());
+
+		addHandlerChainWrapper(new MetricsHandlerWrapper());
 	}
 
 	public ServletModel getServletModel() {
@@ -153,13 +167,63 @@ public class PaxWebServletInfo extends ServletInfo {
 		info.setExecutor(getExecutor());
 		info.setRequireWelcomeFileMapping(isRequireWelcomeFileMapping());
 		getSecurityRoleRefs().forEach(r -> info.addSecurityRoleRef(r.getRole(), r.getLinkedRole()));
-		getHandlerChainWrappers().forEach(info::addHandlerChainWrapper);
+		// the clone has its own MetricsHandlerWrapper
+		getHandlerChainWrappers().stream().filter(w -> !(w instanceof MetricsHandlerWrapper))
+				.forEach(info::addHandlerChainWrapper);
 		if (getServletSecurityInfo() != null) {
 			info.setServletSecurityInfo(getServletSecurityInfo().clone());
 		}
 		return info;
 	}
 
+	private ElementMetrics metrics(HttpServerExchange exchange) {
+		WebMetricsRegistry registry = WebMetricsRegistry.getInstance();
+		if (!registry.isEnabled()) {
+			return null;
+		}
+		if (metrics == null) {
+			// benign race - the registry returns the same instance
+			ServletRequestContext context = exchange.getAttachment(ServletRequestContext.ATTACHMENT_KEY);
+			metrics = registry.getElementMetrics(osgiContextModel,
+					context == null ? null : context.getDeployment().getDeploymentInfo().getContextPath(),
+					ElementType.SERVLET, getName());
+		}
+		return metrics;
+	}
+
+	/**
+	 * {@link HandlerWrapper} for the handler that invokes the servlet (after the filters), which records
+	 * the latency of the servlet when metrics are enabled.
+	 */
+	private class MetricsHandlerWrapper implements HandlerWrapper {
+
+		@Override
+		@SuppressWarnings("Convert2Lambda")
+		public HttpHandler wrap(HttpHandler handler) {
+			return new HttpHandler() {
+				@Override
+				public void handleRequest(HttpServerExchange exchange) throws Exception {
+					ElementMetrics metrics = metrics(exchange);
+					if (metrics == null) {
+						handler.handleRequest(exchange);
+						return;
+					}
+					metrics.start();
+					try {
+						handler.handleRequest(exchange);
+					} finally {
+						ServletRequestContext context = exchange.getAttachment(ServletRequestContext.ATTACHMENT_KEY);
+						if (context != null && context.getServletRequest() != null) {
+							metrics.stop(context.getServletRequest());
+						} else {
+							metrics.stop();
+						}
+					}
+				}
+			};
+		}
+	}
+
 	/**
 	 * An {@link InstanceFactory} that returns {@link Servlet servlet instance} from {@link ServletModel}.
 	 */
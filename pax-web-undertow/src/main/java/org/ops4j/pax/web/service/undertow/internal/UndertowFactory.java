@@ -31,6 +31,7 @@ import java.security.cert.CertificateFactory;
 import java.security.cert.CollectionCertStoreParameters;
 import java.security.cert.PKIXBuilderParameters;
 import java.security.cert.X509CertSelector;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -65,6 +66,7 @@ import io.undertow.servlet.handlers.MarkSecureHandler;
 import io.undertow.util.HttpString;
 import org.ops4j.pax.web.service.spi.config.Configuration;
 import org.ops4j.pax.web.service.spi.config.SecurityConfiguration;
+import org.ops4j.pax.web.service.spi.config.ServerConfiguration;
 import org.ops4j.pax.web.service.undertow.internal.configuration.model.IoSubsystem;
 import org.ops4j.pax.web.service.undertow.internal.configuration.model.SecurityRealm;
 import org.ops4j.pax.web.service.undertow.internal.configuration.model.Server;
@@ -265,7 +267,11 @@ public class UndertowFactory {
 	 */
 	public UndertowFactory.AcceptingChannelWithAddress createDefaultListener(String address, HttpHandler rootHandler,
 			Configuration configuration) {
-		return createListener(address, rootHandler, configuration, new Server.HttpListener(),
+		Server.HttpListener def = new Server.HttpListener();
+		def.setEnableHttp2(configuration.server().isHttp2CleartextEnabled());
+		def.setProxyProtocol(isProxyProtocol(configuration.server(), "http"));
+		configureHttp2(def, configuration.server());
+		return createListener(address, rootHandler, configuration, def,
 				new InetSocketAddress(address, configuration.server().getHttpPort()));
 	}
 
@@ -278,10 +284,94 @@ public class UndertowFactory {
 	 */
 	public UndertowFactory.AcceptingChannelWithAddress createSecureListener(String address, HttpHandler rootHandler,
 			Configuration configuration) {
-		return createListener(address, rootHandler, configuration, new Server.HttpsListener(),
+		Server.HttpsListener def = new Server.HttpsListener();
+		def.setEnableHttp2(configuration.server().isHttp2Enabled());
+		def.setProxyProtocol(isProxyProtocol(configuration.server(), "https"));
+		configureHttp2(def, configuration.server());
+		return createListener(address, rootHandler, configuration, def,
 			new InetSocketAddress(address, configuration.server().getHttpSecurePort()));
 	}
 
+	/**
+	 * Passes HTTP/2 settings from {@link ServerConfiguration} to default listener definition. Listeners
+	 * defined in XML use own HTTP/2 settings.
+	 * @param def
+	 * @param sc
+	 */
+	private void configureHttp2(Server.Listener def, ServerConfiguration sc) {
+		Integer maxConcurrentStreams = sc.getHttp2MaxConcurrentStreams();
+		Integer initialStreamWindowSize = sc.getHttp2InitialStreamWindowSize();
+		Integer headerTableSize = sc.getHttp2HeaderTableSize();
+		Integer maxFrameSize = sc.getHttp2MaxFrameSize();
+		if (sc.getHttp2InitialSessionWindowSize() != null) {
+			LOG.debug("Not supported HTTP/2 Initial Session Window Size parameter");
+		}
+		if (def instanceof Server.HttpListener) {
+			Server.HttpListener http = (Server.HttpListener) def;
+			if (maxConcurrentStreams != null) {
+				http.setHttp2MaxConcurrentStreams(maxConcurrentStreams);
+			}
+			if (initialStreamWindowSize != null) {
+				http.setHttp2InitialWindowSize(initialStreamWindowSize);
+			}
+			if (headerTableSize != null) {
+				http.setHttp2HeaderTableSize(headerTableSize);
+			}
+			if (maxFrameSize != null) {
+				http.setHttp2MaxFrameSize(maxFrameSize);
+			}
+		} else if (def instanceof Server.HttpsListener) {
+			Server.HttpsListener https = (Server.HttpsListener) def;
+			if (maxConcurrentStreams != null) {
+				https.setHttp2MaxConcurrentStreams(maxConcurrentStreams);
+			}
+			if (initialStreamWindowSize != null) {
+				https.setHttp2InitialWindowSize(initialStreamWindowSize);
+			}
+			if (headerTableSize != null) {
+				https.setHttp2HeaderTableSize(headerTableSize);
+			}
+			if (maxFrameSize != null) {
+				https.setHttp2MaxFrameSize(maxFrameSize);
+			}
+		}
+	}
+
+	/**
+	 * Checks whether given kind of default listener ({@code http} or {@code https}) should
+	 * expect PROXY protocol header.
+	 * @param sc
+	 * @param kind
+	 * @return
+	 */
+	private boolean isProxyProtocol(ServerConfiguration sc, String kind) {
+		return Arrays.asList(sc.getProxyProtocolConnectors()).contains(kind);
+	}
+
+	/**
+	 * Translates ALPN protocol preference into weight of {@code h2} protocol. {@code http/1.1} is registered
+	 * by {@link AlpnOpenListener} with weight {@code 0}.
+	 * @param protocols
+	 * @return weight of {@code h2} protocol or {@link Integer#MIN_VALUE} if {@code h2} shouldn't be negotiated
+	 */
+	private int alpnWeight(String[] protocols) {
+		for (String p : protocols) {
+			if (Http2OpenListener.HTTP2.equals(p)) {
+				// just as in io.undertow.Undertow.start()
+				return 10;
+			}
+			if ("http/1.1".equals(p)) {
+				break;
+			}
+		}
+		for (String p : protocols) {
+			if (Http2OpenListener.HTTP2.equals(p)) {
+				return -10;
+			}
+		}
+		return Integer.MIN_VALUE;
+	}
+
 	/**
 	 * Creates a <em>listener</em> by invoking main
 	 * {@link #createListener(Configuration, Server.Listener, HttpHandler, SecurityRealm, XnioWorker, ByteBufferPool, InetSocketAddress)}
@@ -336,11 +426,11 @@ public class UndertowFactory {
 		openListener = httpListener;
 
 		if (definition instanceof Server.HttpsListener) {
-			if (alpnAvailable && http2Available && definition.isEnableHttp2()) {
+			int weight = alpnWeight(config.server().getAlpnProtocols());
+			if (alpnAvailable && http2Available && definition.isEnableHttp2() && weight != Integer.MIN_VALUE) {
 				AlpnOpenListener alpnListener = new AlpnOpenListener(bufferPoolForListener, undertowOptions, httpListener);
 				Http2OpenListener http2Listener = new Http2OpenListener(bufferPoolForListener, undertowOptions);
 				http2Listener.setRootHandler(listenerSpecificHandler);
-				int weight = 10; // just as in io.undertow.Undertow.start()
 				alpnListener.addProtocol(Http2OpenListener.HTTP2, http2Listener, weight);
 //				alpnListener.addProtocol(Http2OpenListener.HTTP2_14, http2Listener, 7);
 				openListener = alpnListener;
@@ -352,8 +442,9 @@ public class UndertowFactory {
 		// the "server"
 		if (definition instanceof Server.HttpListener) {
 			// useProxyProtocol can't be specified via XML. Undertow.Builder allows it via
-			// io.undertow.Undertow.ListenerConfig.useProxyProtocol
-			if (/*listener.useProxyProtocol*/ false) {
+			// io.undertow.Undertow.ListenerConfig.useProxyProtocol, Pax Web sets it for default listeners
+			// from org.ops4j.pax.web.server.proxyProtocol property
+			if (definition.isProxyProtocol()) {
 				finalListener = new ProxyProtocolOpenListener(openListener, null, bufferPoolForListener, OptionMap.EMPTY);
 			}
 			ChannelListener<AcceptingChannel<StreamConnection>> acceptListener = ChannelListeners.openListenerAdapter(finalListener);
@@ -392,7 +483,7 @@ public class UndertowFactory {
 			SSLContext sslContext = buildSSLContext(config, https, realm);
 			UndertowXnioSsl xnioSsl = new UndertowXnioSsl(xnio, sslParameters, bufferPoolForListener, sslContext);
 
-			if (/*listener.useProxyProtocol*/ false) {
+			if (definition.isProxyProtocol()) {
 				finalListener = new ProxyProtocolOpenListener(openListener, xnioSsl, bufferPoolForListener, sslParameters);
 			}
 			ChannelListener<AcceptingChannel<SslConnection>> acceptListener = ChannelListeners.openListenerAdapter(finalListener);
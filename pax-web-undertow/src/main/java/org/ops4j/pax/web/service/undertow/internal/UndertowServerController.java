@@ -194,6 +194,12 @@ public class UndertowServerController implements ServerController/*, IdentityMan
 
 		undertowResourceServlet.setCachingConfiguration(metadataCacheSize, maxEntrySize, maxSize, maxAge);
 
+		Integer nonBlockingThreshold = configuration.resources().nonBlockingThreshold();
+		if (nonBlockingThreshold == null) {
+			nonBlockingThreshold = 64;
+		}
+		undertowResourceServlet.setNonBlockingThreshold(nonBlockingThreshold < 0 ? -1L : nonBlockingThreshold * 1024L);
+
 		return undertowResourceServlet;
 	}
 
@@ -84,9 +84,12 @@ import io.undertow.servlet.core.ManagedServlet;
 import io.undertow.servlet.handlers.ServletHandler;
 import io.undertow.servlet.util.ImmediateInstanceFactory;
 import io.undertow.servlet.util.InMemorySessionPersistence;
+import org.ops4j.pax.web.service.spi.accesslog.AccessLog;
 import org.ops4j.pax.web.service.spi.config.Configuration;
 import org.ops4j.pax.web.service.spi.config.LogConfiguration;
 import org.ops4j.pax.web.service.spi.config.SessionConfiguration;
+import org.ops4j.pax.web.service.spi.metrics.ElementType;
+import org.ops4j.pax.web.service.spi.metrics.WebMetricsRegistry;
 import org.ops4j.pax.web.service.spi.model.OsgiContextModel;
 import org.ops4j.pax.web.service.spi.model.ServletContextModel;
 import org.ops4j.pax.web.service.spi.model.elements.ContainerInitializerModel;
@@ -190,6 +193,9 @@ class UndertowServerWrapper implements BatchVisitor {
 
 	private final UndertowFactory undertowFactory;
 
+	/** Pax Web's asynchronous request log, if configured instead of Undertow's own {@link AccessLogHandler} */
+	private AccessLog accessLog;
+
 	/**
 	 * Single <em>container</em> for all Undertow contexts. It can directly map context path to
 	 * {@link DeploymentManager} instances.
@@ -331,6 +337,11 @@ class UndertowServerWrapper implements BatchVisitor {
 		// PID config: org.osgi.service.http.enabled and org.osgi.service.http.secure.enabled
 		verifyListenerConfiguration();
 
+		if (configuration.server().getUnixDomainSocket() != null) {
+			LOG.warn("Unix domain socket listener is supported only by Jetty runtime, {} is ignored",
+					configuration.server().getUnixDomainSocket());
+		}
+
 		// default session configuration is prepared, but not set in the server instance. It can be set
 		// only after first context is created
 		this.defaultSessionCookieConfig = configuration.session().getDefaultSessionCookieConfig();
@@ -770,6 +781,12 @@ class UndertowServerWrapper implements BatchVisitor {
 
 		// properties based log configuration:
 
+		if (lc.isLogNCSAAsync()) {
+			accessLog = new AccessLog(lc);
+			rootHandler = new PaxWebAccessLogHandler(rootHandler, accessLog);
+			return;
+		}
+
 		if (lc.isLogNCSAFormatEnabled()) {
 			String logNCSADirectory = lc.getLogNCSADirectory();
 			String baseName = lc.getLogNCSAFile();
@@ -810,6 +827,9 @@ class UndertowServerWrapper implements BatchVisitor {
 	public void start() throws Exception {
 		LOG.info("Starting {}", this);
 
+		if (accessLog != null) {
+			accessLog.start();
+		}
 		this.listeners.values().forEach(l -> l.getAcceptingChannel().resumeAccepts());
 	}
 
@@ -847,6 +867,11 @@ class UndertowServerWrapper implements BatchVisitor {
 		this.bufferPools.values().forEach(ByteBufferPool::close);
 		this.bufferPools.clear();
 		undertowFactory.closeDefaultPoolAndBuffer();
+
+		if (accessLog != null) {
+			accessLog.stop();
+			accessLog = null;
+		}
 	}
 
 	/**
@@ -998,6 +1023,12 @@ class UndertowServerWrapper implements BatchVisitor {
 			osgiContextModels.get(contextPath).remove(osgiModel);
 
 			removedOsgiServletContext.unregister();
+
+			// metrics are identified by context name and path, so they may still be used by other OSGi context
+			String name = osgiModel.getName();
+			if (osgiContextModels.get(contextPath).stream().noneMatch(ocm -> name.equals(ocm.getName()))) {
+				WebMetricsRegistry.getInstance().unregister(osgiModel);
+			}
 		}
 
 		// there may be a change in what's the "best" (highest ranked) OsgiContextModel for given
@@ -1144,6 +1175,9 @@ class UndertowServerWrapper implements BatchVisitor {
 				}
 				LOG.info("Removing servlet {}", model);
 
+				model.getContextModels().forEach(ocm -> WebMetricsRegistry.getInstance()
+						.unregister(ocm, ElementType.SERVLET, model.getName()));
+
 				Set<String> done = new HashSet<>();
 
 				// proper order ensures that (assuming above scenario), for /c1, ocm2 will be chosen and ocm1 skipped
@@ -22,6 +22,7 @@ import java.util.LinkedList;
 import java.util.List;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlType;
 
 import io.undertow.protocols.http2.Http2Channel;
@@ -366,6 +367,13 @@ public class Server {
 		@XmlAttribute(name = "rfc6265-cookie-validation")
 		protected boolean rfc6265CookieValidation = false;
 
+		/**
+		 * Undertow: io.undertow.Undertow.ListenerConfig#useProxyProtocol - not available in Wildfly 4.0 XSD,
+		 * so it's set only for listeners created from {@code org.ops4j.pax.web.server.proxyProtocol} property.
+		 */
+		@XmlTransient
+		protected boolean proxyProtocol = false;
+
 		public String getName() {
 			return name;
 		}
@@ -558,6 +566,14 @@ public class Server {
 			this.rfc6265CookieValidation = rfc6265CookieValidation;
 		}
 
+		public boolean isProxyProtocol() {
+			return proxyProtocol;
+		}
+
+		public void setProxyProtocol(boolean proxyProtocol) {
+			this.proxyProtocol = proxyProtocol;
+		}
+
 		public abstract boolean isProxyAddressForwarding();
 
 		public abstract boolean isCertificateForwarding();
@@ -606,6 +622,7 @@ public class Server {
 			sb.append(", no request timeout: ").append(noRequestTimeout);
 			sb.append(", request parse timeout: ").append(requestParseTimeout);
 			sb.append(", rfc6265 cookie validation: ").append(rfc6265CookieValidation);
+			sb.append(", proxy protocol: ").append(proxyProtocol);
 			return sb.toString();
 		}
 	}
@@ -59,6 +59,7 @@ import io.undertow.util.ETagUtils;
 import io.undertow.util.Headers;
 import io.undertow.util.Methods;
 import io.undertow.util.StatusCodes;
+import org.ops4j.pax.web.service.spi.servlet.NonBlockingResourceWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -106,6 +107,9 @@ public class DefaultServlet extends HttpServlet {
     private boolean resolveAgainstContextRoot;
     private boolean allowPost = false;
 
+    /** Pax Web: minimal size (in bytes) of non-file resources written without blocking, negative to disable */
+    protected long nonBlockingThreshold = -1L;
+
     @Override
     public void init(ServletConfig config) throws ServletException {
         super.init(config);
@@ -391,6 +395,13 @@ public class DefaultServlet extends HttpServlet {
         final boolean include = req.getDispatcherType() == DispatcherType.INCLUDE;
         if (!req.getMethod().equals(Methods.HEAD_STRING)) {
             if(rangeResponse == null) {
+                // Pax Web: large resources without file path (e.g., bundle entries) are written without blocking
+                Long length = resource.getContentLength();
+                if (length != null && resource.getFilePath() == null && resource.getUrl() != null
+                        && NonBlockingResourceWriter.isApplicable(req, resp, length, nonBlockingThreshold)) {
+                    NonBlockingResourceWriter.write(req, resp, resource.getUrl().openStream());
+                    return;
+                }
                 resource.serve(exchange.getResponseSender(), exchange, completionCallback(include));
             } else {
                 ((RangeAwareResource)resource).serveRange(exchange.getResponseSender(), exchange, start, end, completionCallback(include));
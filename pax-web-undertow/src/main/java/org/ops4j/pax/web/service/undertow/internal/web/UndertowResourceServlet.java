@@ -111,6 +111,14 @@ public class UndertowResourceServlet extends DefaultServlet implements ResourceM
 		this.cacheConfigurable = true;
 	}
 
+	/**
+	 * Sets minimal size (in bytes) of resources without file path, which are written using non-blocking I/O.
+	 * @param nonBlockingThreshold negative value disables non-blocking writes
+	 */
+	public void setNonBlockingThreshold(long nonBlockingThreshold) {
+		this.nonBlockingThreshold = nonBlockingThreshold;
+	}
+
 	public void setWelcomeFiles(String[] welcomeFiles) {
 		this.welcomeFiles = welcomeFiles;
 		configureCache();